@@ -0,0 +1,165 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts row binds and times the layout pass of a refresh on a 500 item feed.
+ * The old ListView adapter rebound every visible row on each refresh, which is what
+ * notifyDataSetChanged does here, while the diff rebinds only the rows that changed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsAdapterBenchmark {
+
+    private static final String LOG_TAG = NewsAdapterBenchmark.class.getSimpleName();
+    private static final int FEED_SIZE = 500;
+
+    private RecyclerView mRecyclerView;
+    private CountingAdapter mAdapter;
+
+    /**
+     * Adapter which counts how many times a row was bound.
+     */
+    private static class CountingAdapter extends NewsAdapter {
+
+        int binds;
+
+        CountingAdapter(Context context) {
+            super(context, null);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull NewsViewHolder holder, int position) {
+            binds++;
+            super.onBindViewHolder(holder, position);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(), R.style.AppTheme);
+                mRecyclerView = new RecyclerView(context);
+                mRecyclerView.setLayoutManager(new LinearLayoutManager(context));
+                mRecyclerView.setItemAnimator(null);
+                mAdapter = new CountingAdapter(context);
+                mRecyclerView.setAdapter(mAdapter);
+            }
+        });
+        submitAndLayout(feed(FEED_SIZE, "title"));
+    }
+
+    @Test
+    public void refreshWithOneChangedRow_rebindsOnlyThatRow() {
+        List<News> refreshed = feed(FEED_SIZE, "title");
+        News changed = refreshed.get(1);
+        refreshed.set(1, new News(changed.getSection(), "changed title", changed.getWebUrl(),
+                changed.getDate(), changed.getAuthor(), changed.getPillarName()));
+
+        final int visible = mRecyclerView.getChildCount();
+        mAdapter.binds = 0;
+        long diffNanos = submitAndLayout(refreshed);
+        int diffBinds = mAdapter.binds;
+
+        mAdapter.binds = 0;
+        long fullNanos = notifyAllAndLayout();
+        int fullBinds = mAdapter.binds;
+
+        Log.i(LOG_TAG, String.format("refresh of %d items, %d rows visible", FEED_SIZE, visible));
+        Log.i(LOG_TAG, String.format("  full rebind: %d binds, layout %.2f ms", fullBinds, fullNanos / 1e6));
+        Log.i(LOG_TAG, String.format("  diff       : %d binds, layout %.2f ms", diffBinds, diffNanos / 1e6));
+
+        assertEquals(1, diffBinds);
+        assertEquals(visible, fullBinds);
+    }
+
+    @Test
+    public void appendedPage_doesNotRebindShownRows() {
+        List<News> longer = feed(FEED_SIZE, "title");
+        longer.addAll(feed(FEED_SIZE + 20, "title").subList(FEED_SIZE, FEED_SIZE + 20));
+
+        mAdapter.binds = 0;
+        submitAndLayout(longer);
+
+        assertEquals(0, mAdapter.binds);
+        assertEquals(FEED_SIZE + 20, mAdapter.getItemCount());
+    }
+
+    @Test
+    public void unchangedRefresh_bindsNothing() {
+        mAdapter.binds = 0;
+        submitAndLayout(feed(FEED_SIZE, "title"));
+
+        assertEquals(0, mAdapter.binds);
+        assertTrue(mRecyclerView.getChildCount() > 0);
+    }
+
+    // Submit the list, wait for the diff and time the layout pass which applies it
+    private long submitAndLayout(final List<News> newsList) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.submitList(newsList);
+            }
+        });
+        while (mAdapter.hasPendingDiff()) {
+            SystemClock.sleep(5);
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+        return layout();
+    }
+
+    private long notifyAllAndLayout() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.notifyDataSetChanged();
+            }
+        });
+        return layout();
+    }
+
+    private long layout() {
+        final long[] nanos = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                mRecyclerView.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+                mRecyclerView.layout(0, 0, 1080, 1920);
+                nanos[0] = System.nanoTime() - start;
+            }
+        });
+        return nanos[0];
+    }
+
+    private static List<News> feed(int size, String title) {
+        List<News> newsList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            newsList.add(new News("World news", title + " " + i, "https://www.theguardian.com/world/" + i,
+                    "2019-01-29T17:45:20Z", "Christian Davies", "News"));
+        }
+        return newsList;
+    }
+}
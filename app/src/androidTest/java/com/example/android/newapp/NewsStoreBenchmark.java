@@ -0,0 +1,185 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.newapp.NewsContract.NewsEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the local article store and times its queries on 10k and 100k articles:
+ * the section feed read through its index and a keyword looked up in the full-text
+ * index, next to the LIKE scan over the titles which the index replaces.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsStoreBenchmark {
+
+    private static final String LOG_TAG = NewsStoreBenchmark.class.getSimpleName();
+    private static final String DATABASE_NAME = "news_benchmark.db";
+    private static final int RUNS = 20;
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] SECTIONS = {"news", "sport", "culture", "lifeandstyle", "commentisfree"};
+    private static final String[] WORDS = {"election", "budget", "climate", "football", "festival",
+            "museum", "storm", "market", "court", "vaccine", "river", "garden", "bridge", "strike"};
+    private static final String[] AUTHORS = {"Christian Davies", "Jessica Elgot", "Damian Carrington",
+            "Barney Ronay", "Mark Brown"};
+
+    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+
+    static {
+        DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    private Context mContext;
+    private NewsDbHelper mDbHelper;
+    private NewsStore mStore;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDbHelper = new NewsDbHelper(mContext, DATABASE_NAME);
+        mStore = new NewsStore(mDbHelper);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void keyword_matchesPrefixesOfTitleAndAuthor() {
+        mStore.save("news", Arrays.asList(
+                article(1, "Polish election results", "Christian Davies"),
+                article(2, "Budget vote delayed", "Jessica Elgot"),
+                article(3, "Storm warning for the coast", null)));
+
+        assertEquals(1, mStore.query("news", "elect", 10).size());
+        assertEquals(1, mStore.query("news", "ELGOT", 10).size());
+        assertEquals(1, mStore.query(null, "budget vote", 10).size());
+        assertEquals(0, mStore.query("sport", "budget", 10).size());
+        assertEquals(3, mStore.query("news", "", 10).size());
+        // Operators typed by the user are plain words
+        assertEquals(0, mStore.query("news", "\"storm OR budget*", 10).size());
+    }
+
+    @Test
+    public void savingAgain_updatesTheArticleAndItsIndex() {
+        mStore.save("news", Arrays.asList(article(1, "Old title", null)));
+        mStore.save("news", Arrays.asList(article(1, "New title", null)));
+
+        assertEquals(1, mStore.size());
+        assertEquals(0, mStore.query(null, "old", 10).size());
+        assertEquals("New title", mStore.query(null, "new", 10).get(0).getTitle());
+    }
+
+    @Test
+    public void queryLatency_10k() {
+        benchmark(10000);
+    }
+
+    @Test
+    public void queryLatency_100k() {
+        benchmark(100000);
+    }
+
+    private void benchmark(int size) {
+        long start = System.nanoTime();
+        List<News> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < size; i++) {
+            batch.add(generated(i));
+            if (batch.size() == BATCH_SIZE || i == size - 1) {
+                mStore.save(SECTIONS[(i / BATCH_SIZE) % SECTIONS.length], batch);
+                batch.clear();
+            }
+        }
+        long insertNanos = System.nanoTime() - start;
+        assertEquals(size, mStore.size());
+
+        long sectionNanos = 0;
+        long keywordNanos = 0;
+        long sectionKeywordNanos = 0;
+        long likeNanos = 0;
+        for (int run = 0; run < RUNS; run++) {
+            String section = SECTIONS[run % SECTIONS.length];
+            String word = WORDS[run % WORDS.length];
+
+            start = System.nanoTime();
+            List<News> feed = mStore.query(section, null, NewsStore.DEFAULT_QUERY_LIMIT);
+            sectionNanos += System.nanoTime() - start;
+            assertEquals(NewsStore.DEFAULT_QUERY_LIMIT, feed.size());
+
+            start = System.nanoTime();
+            List<News> found = mStore.query(null, word, NewsStore.DEFAULT_QUERY_LIMIT);
+            keywordNanos += System.nanoTime() - start;
+            assertTrue(!found.isEmpty());
+
+            start = System.nanoTime();
+            mStore.query(section, word, NewsStore.DEFAULT_QUERY_LIMIT);
+            sectionKeywordNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int scanned = likeScan(word);
+            likeNanos += System.nanoTime() - start;
+            assertEquals(found.size(), scanned);
+        }
+
+        Log.i(LOG_TAG, String.format("%d articles, inserted in %.0f ms", size, insertNanos / 1e6));
+        Log.i(LOG_TAG, String.format("  section feed     : %.2f ms", sectionNanos / 1e6 / RUNS));
+        Log.i(LOG_TAG, String.format("  keyword (fts)    : %.2f ms", keywordNanos / 1e6 / RUNS));
+        Log.i(LOG_TAG, String.format("  section + keyword: %.2f ms", sectionKeywordNanos / 1e6 / RUNS));
+        Log.i(LOG_TAG, String.format("  keyword (like)   : %.2f ms", likeNanos / 1e6 / RUNS));
+    }
+
+    // The query the full-text index replaces, every title is read and compared
+    private int likeScan(String word) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + NewsEntry.COLUMN_WEB_URL + " FROM " + NewsEntry.TABLE_NAME
+                + " WHERE " + NewsEntry.COLUMN_TITLE + " LIKE ? OR " + NewsEntry.COLUMN_AUTHOR + " LIKE ?"
+                + " ORDER BY " + NewsEntry.COLUMN_TIME + " DESC LIMIT " + NewsStore.DEFAULT_QUERY_LIMIT,
+                new String[]{"%" + word + "%", "%" + word + "%"});
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Titles are made of three of the words, so every word matches a known share of the articles
+    private static News generated(int i) {
+        String title = capitalize(WORDS[i % WORDS.length]) + " " + WORDS[(i / 3) % WORDS.length]
+                + " and " + WORDS[(i / 7) % WORDS.length] + " " + i;
+        return article(i, title, AUTHORS[i % AUTHORS.length]);
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static News article(int i, String title, String author) {
+        // One article a minute going back from the start of 2019
+        String date = DATE_FORMAT.format(new Date(1546300800000L - i * 60000L));
+        return new News("World news", title, "https://www.theguardian.com/world/" + i, date, author, "News");
+    }
+}
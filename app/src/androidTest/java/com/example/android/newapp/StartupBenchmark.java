@@ -0,0 +1,195 @@
+package com.example.android.newapp;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Launches the feed screen over and over and measures time to first content, from the
+ * creation of the activity to its first frame with News on it, with and without the
+ * snapshot of the last feed. The Guardian API is replaced by a local server which
+ * answers after {@link #NETWORK_DELAY_MILLIS}, like a phone network would, and the
+ * cache and the store are emptied before every launch, so without a snapshot the
+ * first News come from the network. The process stays alive between launches, so it
+ * is the activity part of a cold start that is measured.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    private static final String LOG_TAG = StartupBenchmark.class.getSimpleName();
+    private static final int LAUNCHES = 10;
+    private static final long NETWORK_DELAY_MILLIS = 300;
+    private static final long CONTENT_TIMEOUT_MILLIS = 10 * 1000;
+
+    private Context mContext;
+    private Instrumentation mInstrumentation;
+    private MockWebServer mServer;
+    private OkHttpClient mClient;
+    private List<String> mUrls;
+    private List<News> mNews;
+
+    @Before
+    public void setUp() throws Exception {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mContext = InstrumentationRegistry.getTargetContext();
+        int pageSize = NewsProjection.FEED.getPageSize(mContext);
+        final String body = feed(pageSize);
+
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(body).setHeader("Content-Type", "application/json")
+                        .setHeadersDelay(NETWORK_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+        mServer.start();
+
+        // Every request of the app goes to the local server instead
+        final HttpUrl server = mServer.url("/");
+        mClient = QueryUtils.getClient();
+        QueryUtils.setClient(QueryUtils.newClientBuilder().addInterceptor(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                HttpUrl url = request.url().newBuilder().scheme(server.scheme()).host(server.host())
+                        .port(server.port()).build();
+                return chain.proceed(request.newBuilder().url(url).build());
+            }
+        }).build());
+
+        mUrls = NewsQueries.fromPreferences(mContext, NewsProjection.FEED, 1, pageSize);
+        mNews = QueryUtils.extractNews(new ByteArrayInputStream(body.getBytes(Charset.forName("UTF-8"))));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        QueryUtils.setClient(mClient);
+        mServer.shutdown();
+        forgetFeed();
+    }
+
+    @Test
+    public void timeToFirstContent_withAndWithoutSnapshot() throws Exception {
+        // One launch each to warm up classes and resources
+        launchWithoutSnapshot();
+        launchWithSnapshot();
+
+        long[] without = new long[LAUNCHES];
+        long[] with = new long[LAUNCHES];
+        for (int i = 0; i < LAUNCHES; i++) {
+            without[i] = launchWithoutSnapshot();
+            with[i] = launchWithSnapshot();
+        }
+        Arrays.sort(without);
+        Arrays.sort(with);
+
+        Log.i(LOG_TAG, String.format("Time to first content, %d launches each, network answers after %d ms",
+                LAUNCHES, NETWORK_DELAY_MILLIS));
+        Log.i(LOG_TAG, String.format("  without snapshot: median %6.1f ms, max %6.1f ms",
+                without[LAUNCHES / 2] / 1e6, without[LAUNCHES - 1] / 1e6));
+        Log.i(LOG_TAG, String.format("  with snapshot   : median %6.1f ms, max %6.1f ms",
+                with[LAUNCHES / 2] / 1e6, with[LAUNCHES - 1] / 1e6));
+
+        assertTrue(with[LAUNCHES / 2] < without[LAUNCHES / 2]);
+        assertTrue(with[LAUNCHES / 2] < TimeUnit.MILLISECONDS.toNanos(NETWORK_DELAY_MILLIS));
+    }
+
+    private long launchWithoutSnapshot() throws Exception {
+        forgetFeed();
+        return launch();
+    }
+
+    private long launchWithSnapshot() throws Exception {
+        forgetFeed();
+        LastFeedSnapshot.getInstance(mContext).write(mUrls, mNews);
+        return launch();
+    }
+
+    // Nothing of the feed is left on the device, also nothing still being written
+    private void forgetFeed() {
+        LastFeedSnapshot.getInstance(mContext).clear();
+        NewsStore.getInstance(mContext).clear();
+        NewsCache cache = NewsCache.getInstance(mContext);
+        for (String url : mUrls) {
+            cache.remove(url);
+        }
+    }
+
+    // Start the feed screen and wait until it has drawn News
+    private long launch() throws Exception {
+        Histogram firstContent = Metrics.getInstance().histogram(Metrics.STAGE_FIRST_CONTENT);
+        firstContent.reset();
+
+        Intent intent = new Intent(mContext, NewsActivity.class).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        Activity activity = mInstrumentation.startActivitySync(intent);
+        try {
+            long deadline = System.currentTimeMillis() + CONTENT_TIMEOUT_MILLIS;
+            while (firstContent.getCount() == 0) {
+                assertTrue("No News drawn", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+            return firstContent.getMaxNanos();
+        } finally {
+            activity.finish();
+            mInstrumentation.waitForIdleSync();
+        }
+    }
+
+    // Search response as the Guardian API would send it
+    private static String feed(int size) throws IOException {
+        StringWriter output = new StringWriter();
+        JsonWriter writer = new JsonWriter(output);
+        writer.beginObject().name("response").beginObject()
+                .name("status").value("ok")
+                .name("pageSize").value(size)
+                .name("results").beginArray();
+        String[] sections = {"World news", "Sport", "Culture", "Opinion"};
+        String[] pillars = {"News", "Sport", "Arts", "Opinion"};
+        for (int i = 0; i < size; i++) {
+            writer.beginObject()
+                    .name("sectionName").value(sections[i % sections.length])
+                    .name("webTitle").value("Article number " + i + " of the startup benchmark")
+                    .name("webUrl").value("https://www.theguardian.com/world/2019/jan/29/article-" + i)
+                    .name("webPublicationDate").value(String.format("2019-01-29T%02d:%02d:00Z", 23 - i / 60 % 24, 59 - i % 60))
+                    .name("pillarName").value(pillars[i % pillars.length])
+                    .name("tags").beginArray().beginObject().name("webTitle").value("Christian Davies").endObject()
+                    .endArray()
+                    .endObject();
+        }
+        writer.endArray().endObject().endObject();
+        writer.close();
+        return output.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls a 1,000 item feed with a thumbnail on every row down and back up, with the
+ * images served by a local stand-in for the Guardian media server. Compares decoding
+ * the full image on every bind, which is what a naive getView would do, with the
+ * thumbnail pipeline: time spent decoding, number of decodes and peak memory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailBenchmark {
+
+    private static final String LOG_TAG = ThumbnailBenchmark.class.getSimpleName();
+    private static final int FEED_SIZE = 1000;
+    private static final int VISIBLE_ROWS = 8;
+    private static final int PREFETCH_ROWS = 6;
+
+    /** Distinct images served, every row still has its own url */
+    private static final int IMAGES = 20;
+    private static final int IMAGE_WIDTH = 500;
+    private static final int IMAGE_HEIGHT = 300;
+
+    private MockWebServer mServer;
+    private final List<byte[]> mImages = new ArrayList<>();
+    private List<String> mUrls;
+    private File mDirectory;
+    private ExecutorService mExecutor;
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * What one scroll down and back up cost.
+     */
+    private static final class Run {
+        int decodes;
+        long decodeNanos;
+        /** Every image has the same size, so every bitmap has too */
+        long bytesPerBitmap;
+        long peakBytes;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        Paint paint = new Paint();
+        for (int i = 0; i < IMAGES; i++) {
+            // Some detail, so the JPEG is about as big as a real photo thumbnail
+            Bitmap bitmap = Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            canvas.drawColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            for (int line = 0; line < 200; line++) {
+                paint.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+                canvas.drawLine(random.nextInt(IMAGE_WIDTH), random.nextInt(IMAGE_HEIGHT),
+                        random.nextInt(IMAGE_WIDTH), random.nextInt(IMAGE_HEIGHT), paint);
+            }
+            ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, jpeg);
+            bitmap.recycle();
+            mImages.add(jpeg.toByteArray());
+        }
+
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                int index = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1, path.indexOf(".jpg")));
+                return new MockResponse().setBody(new Buffer().write(mImages.get(index % IMAGES)))
+                        .setHeader("Content-Type", "image/jpeg");
+            }
+        });
+        mServer.start();
+
+        mUrls = new ArrayList<>();
+        for (int i = 0; i < FEED_SIZE; i++) {
+            mUrls.add(mServer.url("/img/media/" + i + ".jpg").toString());
+        }
+
+        Context context = InstrumentationRegistry.getTargetContext();
+        mDirectory = new File(context.getCacheDir(), "thumbnail_benchmark");
+        mExecutor = ThumbnailLoader.newExecutor();
+        mWidth = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_width);
+        mHeight = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+        new ThumbnailDiskCache(mDirectory, 0, Clock.SYSTEM).clear();
+    }
+
+    @Test
+    public void scrollDecodeWorkAndPeakMemory() throws Exception {
+        Run naive = scrollNaive();
+        Run pipeline = scrollPipeline();
+
+        Log.i(LOG_TAG, String.format("%d rows scrolled down and back up, %d visible, thumbnail view %d x %d px",
+                FEED_SIZE, VISIBLE_ROWS, mWidth, mHeight));
+        Log.i(LOG_TAG, String.format("  full decode on bind: %5d decodes, %7.1f ms decoding, %4d KB per bitmap, peak %6d KB",
+                naive.decodes, naive.decodeNanos / 1e6, naive.bytesPerBitmap / 1024, naive.peakBytes / 1024));
+        Log.i(LOG_TAG, String.format("  thumbnail pipeline : %5d decodes, %7.1f ms decoding, %4d KB per bitmap, peak %6d KB",
+                pipeline.decodes, pipeline.decodeNanos / 1e6, pipeline.bytesPerBitmap / 1024,
+                pipeline.peakBytes / 1024));
+
+        assertTrue(pipeline.decodes < naive.decodes);
+        assertTrue(pipeline.bytesPerBitmap <= naive.bytesPerBitmap / 2);
+    }
+
+    // Every bind downloads and decodes the full image, only the visible rows keep theirs
+    private Run scrollNaive() throws Exception {
+        Run run = new Run();
+        long baseline = usedBytes();
+        Deque<Bitmap> visible = new ArrayDeque<>();
+        for (int position : scrollPositions()) {
+            Response response = QueryUtils.getClient().newCall(new Request.Builder().url(mUrls.get(position)).build())
+                    .execute();
+            byte[] image = response.body().bytes();
+            long start = System.nanoTime();
+            Bitmap bitmap = BitmapFactory.decodeByteArray(image, 0, image.length);
+            run.decodeNanos += System.nanoTime() - start;
+            run.decodes++;
+            run.bytesPerBitmap = bitmap.getByteCount();
+
+            visible.addLast(bitmap);
+            if (visible.size() > VISIBLE_ROWS) {
+                visible.removeFirst();
+            }
+            run.peakBytes = Math.max(run.peakBytes, usedBytes() - baseline);
+        }
+        return run;
+    }
+
+    // Bind through the memory cache, the rest is decoded at the view size ahead of time
+    private Run scrollPipeline() throws Exception {
+        ThumbnailLoader loader = new ThumbnailLoader(
+                new ThumbnailMemoryCache(ThumbnailMemoryCache.defaultMaxBytes()),
+                new ThumbnailDiskCache(mDirectory, ThumbnailDiskCache.DEFAULT_MAX_BYTES, Clock.SYSTEM),
+                mExecutor, new Handler(Looper.getMainLooper()));
+        Histogram decodes = Metrics.getInstance().histogram(Metrics.STAGE_DECODE);
+        decodes.reset();
+
+        Run run = new Run();
+        long baseline = usedBytes();
+        int previous = -1;
+        for (int position : scrollPositions()) {
+            Bitmap bitmap = loader.getBitmap(mUrls.get(position), mWidth, mHeight);
+            run.bytesPerBitmap = bitmap.getByteCount();
+            if (position > previous) {
+                for (int ahead = position + 1; ahead <= position + PREFETCH_ROWS && ahead < FEED_SIZE; ahead++) {
+                    loader.prefetch(mUrls.get(ahead), mWidth, mHeight);
+                }
+            }
+            previous = position;
+            run.peakBytes = Math.max(run.peakBytes, usedBytes() - baseline);
+        }
+        run.decodes = (int) decodes.getCount();
+        run.decodeNanos = decodes.getCount() * decodes.getMeanNanos();
+        return run;
+    }
+
+    // Rows in the order they come into view, down to the end of the feed and back up
+    private static int[] scrollPositions() {
+        int[] positions = new int[2 * FEED_SIZE];
+        for (int i = 0; i < FEED_SIZE; i++) {
+            positions[i] = i;
+            positions[FEED_SIZE + i] = FEED_SIZE - 1 - i;
+        }
+        return positions;
+    }
+
+    // Java heap and native heap together, bitmap pixels live in one or the other
+    // depending on the Android version
+    private static long usedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+}
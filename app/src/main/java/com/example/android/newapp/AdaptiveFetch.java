@@ -0,0 +1,100 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.preference.PreferenceManager;
+import android.telephony.TelephonyManager;
+
+/**
+ * Chooses the {@link FetchStrategy} of the feed from the link measured by the fetches of
+ * the app, and remembers it. The next cold start keeps it until the link is measured
+ * again, and the sync job warms the queries of the remembered strategy, so both find
+ * the cached responses and the snapshot of the feed the user saw last.
+ * <p>
+ * Reads the preferences, call it off the main thread on a cold start.
+ */
+public final class AdaptiveFetch {
+
+    /** Preference key of the strategy chosen last */
+    static final String KEY_FETCH_STRATEGY = "fetch_strategy";
+
+    /** Round trip and decoded throughput assumed on 2G and 3G while nothing was measured */
+    private static final double PRIOR_2G_RTT_MILLIS = 800;
+    private static final double PRIOR_2G_BYTES_PER_SECOND = 40 * 1024;
+    private static final double PRIOR_3G_RTT_MILLIS = 300;
+    private static final double PRIOR_3G_BYTES_PER_SECOND = 150 * 1024;
+
+    private AdaptiveFetch() {}
+
+    /**
+     * @return strategy chosen last, the default one before the first choice
+     */
+    public static FetchStrategy getLast(Context context) {
+        String name = PreferenceManager.getDefaultSharedPreferences(context).getString(KEY_FETCH_STRATEGY, null);
+        if (name != null) {
+            try {
+                return FetchStrategy.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                // Not a strategy any more, start over with the default one
+            }
+        }
+        return FetchStrategy.DEFAULT;
+    }
+
+    /**
+     * Choose the strategy of the feed about to be loaded and remember it.
+     * @param current strategy of the feed on screen, null for the one chosen last
+     */
+    public static FetchStrategy choose(Context context, FetchStrategy current) {
+        if (current == null) {
+            current = getLast(context);
+        }
+        NetworkEstimator estimator = QueryUtils.getNetworkEstimator();
+        updatePrior(context, estimator);
+        FetchStrategy strategy = NewsProjection.FEED.newPlanner(context).choose(estimator, current);
+
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        if (!strategy.name().equals(preferences.getString(KEY_FETCH_STRATEGY, null))) {
+            preferences.edit().putString(KEY_FETCH_STRATEGY, strategy.name()).apply();
+        }
+        return strategy;
+    }
+
+    /**
+     * Only the slow mobile networks say something about the link by their type. On wifi
+     * and LTE it may be anything, the last measurement and the last strategy are better.
+     */
+    private static void updatePrior(Context context, NetworkEstimator estimator) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo netInfo = cm.getActiveNetworkInfo();
+        if (netInfo == null || netInfo.getType() != ConnectivityManager.TYPE_MOBILE) {
+            estimator.setPrior(NetworkEstimator.UNKNOWN, NetworkEstimator.UNKNOWN);
+            return;
+        }
+        switch (netInfo.getSubtype()) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                estimator.setPrior(PRIOR_2G_RTT_MILLIS, PRIOR_2G_BYTES_PER_SECOND);
+                break;
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+                estimator.setPrior(PRIOR_3G_RTT_MILLIS, PRIOR_3G_BYTES_PER_SECOND);
+                break;
+            default:
+                estimator.setPrior(NetworkEstimator.UNKNOWN, NetworkEstimator.UNKNOWN);
+                break;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.android.newapp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Article bodies kept in memory by web url, so the reader shows a prefetched article
+ * without waiting for anything. The least recently read bodies are dropped when the
+ * characters of all kept ones go over the limit.
+ */
+public final class ArticleBodyCache {
+
+    private final Map<String, String> mBodies = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxChars;
+    private long mChars;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    /**
+     * @param maxChars limit of the characters of all kept bodies
+     */
+    public ArticleBodyCache(long maxChars) {
+        mMaxChars = maxChars;
+    }
+
+    /**
+     * @return limit for the cache shared by the app, a small part of the heap, two bytes a character
+     */
+    public static long defaultMaxChars() {
+        return Runtime.getRuntime().maxMemory() / 32 / 2;
+    }
+
+    /**
+     * @return body of the article, or null when it isn't kept
+     */
+    public synchronized String get(String webUrl) {
+        String body = mBodies.get(webUrl);
+        if (body == null) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return body;
+    }
+
+    /**
+     * @return true when the body of the article is kept, without counting a hit or a miss
+     */
+    public synchronized boolean contains(String webUrl) {
+        return mBodies.containsKey(webUrl);
+    }
+
+    public synchronized void put(String webUrl, String body) {
+        remove(webUrl);
+        if (body.length() > mMaxChars) {
+            // Would push everything else out and still not fit
+            return;
+        }
+        mBodies.put(webUrl, body);
+        mChars += body.length();
+        Iterator<String> eldest = mBodies.values().iterator();
+        while (mChars > mMaxChars && eldest.hasNext()) {
+            mChars -= eldest.next().length();
+            eldest.remove();
+            mEvictions++;
+        }
+    }
+
+    synchronized void remove(String webUrl) {
+        String body = mBodies.remove(webUrl);
+        if (body != null) {
+            mChars -= body.length();
+        }
+    }
+
+    public synchronized void clear() {
+        mBodies.clear();
+        mChars = 0;
+        mHits = 0;
+        mMisses = 0;
+        mEvictions = 0;
+    }
+
+    /**
+     * @return characters of all kept bodies
+     */
+    public synchronized long size() {
+        return mChars;
+    }
+
+    public synchronized int getEntryCount() {
+        return mBodies.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Loads the text of articles for the in-app reader. The rows on screen are likely to be
+ * tapped next, their bodies are asked for in the background, all of them in one search
+ * by ids with the bodyText field, and kept in an {@link ArticleBodyCache}. Opening one of
+ * them then takes no request at all, opening another one asks for just its body.
+ */
+public final class ArticlePrefetcher {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = ArticlePrefetcher.class.getName();
+
+    /** Most bodies asked for in one request */
+    static final int MAX_BATCH = 10;
+
+    /**
+     * Builds the query URL which returns the bodies of the articles.
+     */
+    public interface Queries {
+        /**
+         * @param contentIds Guardian ids of the articles, e.g. "politics/2019/jan/29/brexit-vote"
+         */
+        String url(List<String> contentIds);
+    }
+
+    private static ArticlePrefetcher sInstance;
+
+    private final ArticleBodyCache mCache;
+    private final Executor mExecutor;
+    private final Queries mQueries;
+
+    /** Prefetches queued or in flight by the web url of every article they load */
+    private final Map<String, Prefetch> mInFlight = new HashMap<>();
+
+    private int mRequestCount;
+
+    /**
+     * @param executor runs the prefetches
+     */
+    public ArticlePrefetcher(ArticleBodyCache cache, Executor executor, Queries queries) {
+        mCache = cache;
+        mExecutor = executor;
+        mQueries = queries;
+    }
+
+    /**
+     * @return prefetcher shared by the whole app, one prefetch at a time
+     */
+    public static synchronized ArticlePrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticlePrefetcher(new ArticleBodyCache(ArticleBodyCache.defaultMaxChars()),
+                    Executors.newSingleThreadExecutor(), new Queries() {
+                        @Override
+                        public String url(List<String> contentIds) {
+                            return NewsQueries.bodies(contentIds);
+                        }
+                    });
+        }
+        return sInstance;
+    }
+
+    public ArticleBodyCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * @return Guardian id of the article, the path of its web url, or null when the url has none
+     */
+    static String contentId(String webUrl) {
+        try {
+            String path = new URI(webUrl).getPath();
+            return path == null || path.length() <= 1 ? null : path.substring(1);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Load the bodies of the articles in the background, leaving out the ones kept or
+     * already being loaded.
+     * @param webUrls articles likely to be opened soon, the first ones first
+     */
+    public void prefetch(List<String> webUrls) {
+        final List<String> missing = new ArrayList<>();
+        Prefetch task;
+        synchronized (mInFlight) {
+            for (String webUrl : webUrls) {
+                if (missing.size() < MAX_BATCH && webUrl != null && !mInFlight.containsKey(webUrl)
+                        && !mCache.contains(webUrl) && contentId(webUrl) != null) {
+                    missing.add(webUrl);
+                }
+            }
+            if (missing.isEmpty()) {
+                return;
+            }
+            task = new Prefetch(new Callable<Map<String, String>>() {
+                @Override
+                public Map<String, String> call() {
+                    try {
+                        // Articles opened while the batch waited for the executor were loaded on their own
+                        List<String> webUrls = new ArrayList<>();
+                        for (String webUrl : missing) {
+                            if (!mCache.contains(webUrl)) {
+                                webUrls.add(webUrl);
+                            }
+                        }
+                        return fetch(webUrls);
+                    } finally {
+                        synchronized (mInFlight) {
+                            mInFlight.keySet().removeAll(missing);
+                        }
+                    }
+                }
+            });
+            for (String webUrl : missing) {
+                mInFlight.put(webUrl, task);
+            }
+        }
+        mExecutor.execute(task);
+    }
+
+    /**
+     * Get the body of the article, waiting for the prefetch loading it or asking for it
+     * on the calling thread. A prefetch still queued behind others isn't waited for, the
+     * article is asked for alone. Don't call it on the main thread.
+     * @return body of the article, or null when it couldn't be loaded
+     */
+    public String load(String webUrl) {
+        String body = mCache.get(webUrl);
+        if (body != null) {
+            return body;
+        }
+        Prefetch task;
+        synchronized (mInFlight) {
+            task = mInFlight.get(webUrl);
+        }
+        if (task != null && task.isStarted()) {
+            try {
+                Map<String, String> bodies = task.get();
+                if (bodies != null && bodies.containsKey(webUrl)) {
+                    return bodies.get(webUrl);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                Log.e(LOG_TAG, "Prefetch failed", e);
+            }
+        }
+        List<String> webUrls = new ArrayList<>();
+        webUrls.add(webUrl);
+        Map<String, String> bodies = fetch(webUrls);
+        return bodies != null ? bodies.get(webUrl) : null;
+    }
+
+    /**
+     * Prefetch of one batch, which knows whether the executor got to it yet.
+     */
+    private static final class Prefetch extends FutureTask<Map<String, String>> {
+
+        private volatile boolean mStarted;
+
+        Prefetch(Callable<Map<String, String>> callable) {
+            super(callable);
+        }
+
+        @Override
+        public void run() {
+            mStarted = true;
+            super.run();
+        }
+
+        boolean isStarted() {
+            return mStarted;
+        }
+    }
+
+    /**
+     * @return number of requests made, prefetches and single loads together
+     */
+    public synchronized int getRequestCount() {
+        return mRequestCount;
+    }
+
+    // Ask for the bodies and keep them, null when the request failed
+    private Map<String, String> fetch(List<String> webUrls) {
+        List<String> contentIds = new ArrayList<>();
+        for (String webUrl : webUrls) {
+            String contentId = contentId(webUrl);
+            if (contentId != null) {
+                contentIds.add(contentId);
+            }
+        }
+        if (contentIds.isEmpty()) {
+            return null;
+        }
+        synchronized (this) {
+            mRequestCount++;
+        }
+
+        Response response = null;
+        try {
+            Call call = QueryUtils.getClient().newCall(
+                    new Request.Builder().url(mQueries.url(contentIds)).get().build());
+            call.timeout().timeout(QueryUtils.LOAD_DEADLINE_MILLIS, TimeUnit.MILLISECONDS);
+            response = call.execute();
+            if (!response.isSuccessful()) {
+                Log.e(LOG_TAG, "Error response code: " + response.code());
+                return null;
+            }
+            Map<String, String> bodies = parseBodies(response.body().byteStream());
+            for (Map.Entry<String, String> body : bodies.entrySet()) {
+                mCache.put(body.getKey(), body.getValue());
+            }
+            Metrics.getInstance().increment(Metrics.COUNTER_BODIES_LOADED, bodies.size());
+            return bodies;
+        } catch (IOException | IllegalStateException e) {
+            Log.e(LOG_TAG, "Problem loading article bodies", e);
+            return null;
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Read the bodyText field of every result of a search response.
+     * @return body by web url of the article, results without a body are left out
+     */
+    static Map<String, String> parseBodies(InputStream inputStream) throws IOException {
+        Map<String, String> bodies = new HashMap<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("response")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!reader.nextName().equals("results")) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readResult(reader, bodies);
+                    }
+                    reader.endArray();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        return bodies;
+    }
+
+    private static void readResult(JsonReader reader, Map<String, String> bodies) throws IOException {
+        String webUrl = null;
+        String body = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("webUrl") && reader.peek() == JsonToken.STRING) {
+                webUrl = reader.nextString();
+            } else if (name.equals("fields") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("bodyText") && reader.peek() == JsonToken.STRING) {
+                        body = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (webUrl != null && body != null) {
+            bodies.put(webUrl, body);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * First page of the feed as it was last shown, kept as a {@link NewsSnapshot} so a cold
+ * start can put it on screen before any loader has run. The snapshot belongs to the
+ * queries it was loaded for, a feed picked differently in the settings doesn't see it.
+ * Only the snapshot of the latest feed is kept.
+ */
+public final class LastFeedSnapshot {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = LastFeedSnapshot.class.getName();
+
+    private static final String DIRECTORY_NAME = "last_feed";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private static LastFeedSnapshot sInstance;
+
+    private final File mDirectory;
+
+    /** Writes one snapshot after the other, off the main thread */
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "LastFeedSnapshot");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public LastFeedSnapshot(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * @return snapshot shared by the whole app, stored in the app files directory
+     */
+    public static synchronized LastFeedSnapshot getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new LastFeedSnapshot(new File(context.getApplicationContext().getFilesDir(), DIRECTORY_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Read the snapshot of the feed. Blocks on disk, so not for the main thread.
+     * @param urls query URLs of the first page of the feed
+     * @return News last shown for these queries, or null when there are none
+     */
+    public List<News> read(List<String> urls) {
+        File file = snapshotFile(urls);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        try {
+            return NewsSnapshot.read(file);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Dropping unreadable snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Replace the snapshot with the News now shown for the feed. Blocks on disk.
+     */
+    public void write(List<String> urls, List<News> newsList) {
+        File file = snapshotFile(urls);
+        if (file == null) {
+            return;
+        }
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Can't create snapshot directory " + mDirectory);
+            return;
+        }
+        try {
+            NewsSnapshot.write(newsList, file);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing snapshot", e);
+            return;
+        }
+
+        // A snapshot of another feed would never be read again
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File other : files) {
+                if (!other.equals(file)) {
+                    other.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #write(List, List)}, done in the background.
+     */
+    public void writeAsync(List<String> urls, List<News> newsList) {
+        final List<String> urlsCopy = new ArrayList<>(urls);
+        final List<News> newsCopy = new ArrayList<>(newsList);
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(urlsCopy, newsCopy);
+            }
+        });
+    }
+
+    /**
+     * Remove every snapshot, after the writes still pending. Blocks until it is done.
+     */
+    public void clear() {
+        try {
+            mWriter.submit(new Runnable() {
+                @Override
+                public void run() {
+                    File[] files = mDirectory.listFiles();
+                    if (files != null) {
+                        for (File file : files) {
+                            file.delete();
+                        }
+                    }
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // One file per feed, named after its normalized queries
+    private File snapshotFile(List<String> urls) {
+        StringBuilder key = new StringBuilder();
+        for (String url : urls) {
+            String query = NewsCache.normalizeQuery(url);
+            if (query == null) {
+                return null;
+            }
+            key.append(query).append('\n');
+        }
+        return new File(mDirectory, NewsCache.md5(key.toString()) + SNAPSHOT_SUFFIX);
+    }
+}
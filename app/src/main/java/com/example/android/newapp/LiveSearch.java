@@ -0,0 +1,283 @@
+package com.example.android.newapp;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Searches by keyword while it is being typed. A keystroke only starts a search once no
+ * other one followed for the debounce delay, and supersedes the search still running,
+ * whose HTTP call and parse are aborted. Searches run one after the other on a single
+ * thread, so there is never more than one request on the network. Results of the
+ * keywords typed lately are kept for a while, going back to one of them doesn't ask
+ * the server again.
+ *
+ * Everything but the fetch happens on the thread of the {@link Scheduler}, the main
+ * thread in the app.
+ */
+public final class LiveSearch {
+
+    /** Typing faster than this is one keyword */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+
+    /** How long results of a keyword are shown again without asking the server */
+    public static final long DEFAULT_CACHE_TTL_MILLIS = 5 * 60 * 1000;
+
+    /** Keywords whose results are kept */
+    static final int MAX_CACHED_KEYWORDS = 20;
+
+    /**
+     * Runs tasks later on the thread which calls {@link #setQuery}, e.g. a Handler.
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    /**
+     * Loads the News of a query, giving up when cancelled.
+     */
+    public interface Fetcher {
+        /**
+         * @return News, or null when the request failed or was cancelled
+         */
+        List<News> fetch(String url, FetchCancellation cancellation);
+    }
+
+    /**
+     * Builds the query URL of a keyword.
+     */
+    public interface Queries {
+        String url(String keyword);
+    }
+
+    /**
+     * Receives the results of the current keyword, on the thread of the scheduler.
+     */
+    public interface Listener {
+        /**
+         * @param keyword normalized keyword the News were found for
+         * @param newsList found News, or null when the request failed
+         */
+        void onResults(String keyword, List<News> newsList);
+    }
+
+    private final Scheduler mScheduler;
+    private final ExecutorService mFetchExecutor;
+    private final Fetcher mFetcher;
+    private final Queries mQueries;
+    private final Listener mListener;
+    private final Clock mClock;
+    private final long mDebounceMillis;
+    private final long mCacheTtlMillis;
+
+    /** Results of the latest keywords, least recently used first */
+    private final Map<String, CachedResults> mCache =
+            new LinkedHashMap<String, CachedResults>(MAX_CACHED_KEYWORDS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedResults> eldest) {
+                    return size() > MAX_CACHED_KEYWORDS;
+                }
+            };
+
+    /** Keyword typed last, normalized */
+    private String mKeyword = "";
+
+    /** Search waiting for the typing to stop, or null */
+    private Runnable mDebounced;
+
+    /** Search handed to the fetch thread and not delivered yet, or null */
+    private Search mInFlight;
+
+    private volatile int mFetchCount;
+    private int mCancelledCount;
+    private int mCacheHitCount;
+
+    /**
+     * @param fetchExecutor runs the fetches, must have a single thread so that a search
+     *                      only starts once the one it superseded gave up
+     */
+    public LiveSearch(Scheduler scheduler, ExecutorService fetchExecutor, Fetcher fetcher, Queries queries,
+                      Listener listener, Clock clock, long debounceMillis, long cacheTtlMillis) {
+        mScheduler = scheduler;
+        mFetchExecutor = fetchExecutor;
+        mFetcher = fetcher;
+        mQueries = queries;
+        mListener = listener;
+        mClock = clock;
+        mDebounceMillis = debounceMillis;
+        mCacheTtlMillis = cacheTtlMillis;
+    }
+
+    /**
+     * Trimmed and lower case, the Guardian search ignores the case.
+     */
+    static String normalize(String keyword) {
+        return keyword == null ? "" : keyword.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the keyword typed last, normalized, empty when there is none
+     */
+    public String getKeyword() {
+        return mKeyword;
+    }
+
+    /**
+     * Called on every change of the search box. Results of a recent keyword are delivered
+     * at once, other keywords are searched once the typing stops. An empty keyword only
+     * stops the search.
+     */
+    public void setQuery(String keyword) {
+        final String normalized = normalize(keyword);
+        if (normalized.equals(mKeyword)) {
+            return;
+        }
+        mKeyword = normalized;
+        cancelPending();
+        if (normalized.isEmpty()) {
+            return;
+        }
+
+        List<News> cached = getCached(normalized);
+        if (cached != null) {
+            mCacheHitCount++;
+            mListener.onResults(normalized, cached);
+            return;
+        }
+
+        mDebounced = new Runnable() {
+            @Override
+            public void run() {
+                mDebounced = null;
+                start(normalized);
+            }
+        };
+        mScheduler.postDelayed(mDebounced, mDebounceMillis);
+    }
+
+    /**
+     * Stop the search for good, e.g. when the screen is destroyed.
+     */
+    public void shutdown() {
+        cancelPending();
+        mFetchExecutor.shutdown();
+    }
+
+    // Drop the debounced search and abort the one in flight, their keyword was replaced
+    private void cancelPending() {
+        if (mDebounced != null) {
+            mScheduler.cancel(mDebounced);
+            mDebounced = null;
+        }
+        if (mInFlight != null) {
+            mInFlight.mCancellation.cancel();
+            mInFlight = null;
+            mCancelledCount++;
+        }
+    }
+
+    private List<News> getCached(String keyword) {
+        CachedResults cached = mCache.get(keyword);
+        if (cached == null) {
+            return null;
+        }
+        if (mClock.currentTimeMillis() - cached.mStoredMillis >= mCacheTtlMillis) {
+            mCache.remove(keyword);
+            return null;
+        }
+        return cached.mNews;
+    }
+
+    private void start(String keyword) {
+        Search search = new Search(keyword, mQueries.url(keyword));
+        mInFlight = search;
+        try {
+            mFetchExecutor.execute(search);
+        } catch (RejectedExecutionException e) {
+            // Shut down, nobody waits for the results any more
+            mInFlight = null;
+        }
+    }
+
+    // On the scheduler thread. Results of a search superseded meanwhile are dropped.
+    private void deliver(Search search, List<News> newsList) {
+        if (search != mInFlight) {
+            return;
+        }
+        mInFlight = null;
+        if (newsList != null) {
+            mCache.put(search.mKeyword, new CachedResults(newsList, mClock.currentTimeMillis()));
+        }
+        mListener.onResults(search.mKeyword, newsList);
+    }
+
+    /**
+     * @return number of fetches which were started, cancelled ones included
+     */
+    public int getFetchCount() {
+        return mFetchCount;
+    }
+
+    /**
+     * @return number of searches superseded before their results were delivered
+     */
+    public int getCancelledCount() {
+        return mCancelledCount;
+    }
+
+    /**
+     * @return number of keywords answered from the cache of recent results
+     */
+    public int getCacheHitCount() {
+        return mCacheHitCount;
+    }
+
+    /**
+     * Search of one keyword, runs on the fetch thread.
+     */
+    private final class Search implements Runnable {
+
+        final String mKeyword;
+        final String mUrl;
+        final FetchCancellation mCancellation = new FetchCancellation();
+
+        Search(String keyword, String url) {
+            mKeyword = keyword;
+            mUrl = url;
+        }
+
+        @Override
+        public void run() {
+            // Superseded while it was waiting for the previous search to give up
+            if (mCancellation.isCancelled()) {
+                return;
+            }
+            mFetchCount++;
+            final List<News> newsList = mFetcher.fetch(mUrl, mCancellation);
+            if (mCancellation.isCancelled()) {
+                return;
+            }
+            mScheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(Search.this, newsList);
+                }
+            }, 0);
+        }
+    }
+
+    private static final class CachedResults {
+        final List<News> mNews;
+        final long mStoredMillis;
+
+        CachedResults(List<News> news, long storedMillis) {
+            mNews = news;
+            mStoredMillis = storedMillis;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.android.newapp;
+
+import java.util.List;
+
+/**
+ * Table a loader built of the News it loaded, in the background, so the main thread only
+ * has to submit it. It holds the rows the News were added to as well, the table is only
+ * of use while those are still the ones on screen.
+ */
+final class LoadedTable {
+
+    private final List<News> mNews;
+    private final NewsTable mBase;
+    private final NewsTable mTable;
+
+    private LoadedTable(List<News> newsList, NewsTable base, NewsTable table) {
+        mNews = newsList;
+        mBase = base;
+        mTable = table;
+    }
+
+    /**
+     * @param newsList loaded News, null when the load failed
+     * @param base rows the News are added to, null for a table of the News alone
+     * @param prepend true to put the News on top of the base, false to add them at the end
+     * @return base with the News whose web url it doesn't have yet, null without News
+     */
+    static LoadedTable build(List<News> newsList, NewsTable base, boolean prepend) {
+        if (newsList == null) {
+            return null;
+        }
+        if (base == null) {
+            base = NewsTable.EMPTY;
+        }
+        NewsTable table = prepend ? base.prependMissing(newsList) : base.appendMissing(newsList);
+        return new LoadedTable(newsList, base, table);
+    }
+
+    /**
+     * @param newsList delivered News
+     * @param base rows they are added to now, {@link NewsTable#EMPTY} for a first page
+     * @return the table built of exactly these, null when it was built of something else
+     */
+    NewsTable get(List<News> newsList, NewsTable base) {
+        return newsList == mNews && base == mBase ? mTable : null;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.android.newapp;
+
+import android.util.Log;
+
+/**
+ * Writes every trace to the log as one line of JSON. Nothing is written unless the tag
+ * is enabled, e.g. with {@code adb shell setprop log.tag.NewsMetrics DEBUG}.
+ */
+public class LogMetricsExporter implements MetricsExporter {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = "NewsMetrics";
+
+    @Override
+    public void onTrace(FetchTrace trace) {
+        if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            Log.d(LOG_TAG, trace.toJson());
+        }
+    }
+
+    /**
+     * Write all histograms and counters to the log as JSON.
+     */
+    public static void logDump(Metrics metrics) {
+        if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            Log.d(LOG_TAG, metrics.dump());
+        }
+    }
+}
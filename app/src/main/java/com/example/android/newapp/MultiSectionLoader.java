@@ -0,0 +1,166 @@
+package com.example.android.newapp;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Loads a combined feed of several sections. One request per section runs in parallel
+ * and the merged News are delivered every time another section has finished.
+ */
+public class MultiSectionLoader extends AsyncTaskLoader<List<News>> implements NewsTableLoader {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = MultiSectionLoader.class.getName();
+
+    /** Query URLs, one per section */
+    private final List<String> mUrls;
+
+    /** Disk cache of responses, may be null */
+    private final NewsCache mCache;
+
+    /** Local article store, may be null */
+    private final NewsStore mStore;
+
+    /** When false only the complete merged feed is delivered */
+    private final boolean mDeliverPartialResults;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Last delivered News, handed out again when the loader is started once more */
+    private List<News> mNews;
+
+    /** News of every section, the ones delivered before them are partial */
+    private volatile List<News> mCompleteNews;
+
+    /** Rows on screen, the News of a next page are added to them */
+    private volatile NewsTable mShownTable;
+
+    /** Table of the last delivered News */
+    private volatile LoadedTable mLoadedTable;
+
+    /**
+     * @param urls query URLs, one per section
+     * @param cache disk cache of responses, null to always use the network
+     * @param store local article store, null to not keep the articles
+     * @param deliverPartialResults deliver the feed after every finished section, not only at the end
+     */
+    public MultiSectionLoader(Context context, List<String> urls, NewsCache cache, NewsStore store,
+                              boolean deliverPartialResults) {
+        super(context);
+        mUrls = urls;
+        mCache = cache;
+        mStore = store;
+        mDeliverPartialResults = deliverPartialResults;
+    }
+
+    @Override
+    public void setShownTable(NewsTable table) {
+        mShownTable = table;
+    }
+
+    @Override
+    public LoadedTable getLoadedTable() {
+        return mLoadedTable;
+    }
+
+    /**
+     * @return true when the delivered News are only the sections finished so far, the
+     *         complete feed is still to come
+     */
+    public boolean isPartialResult() {
+        return mNews != null && mNews != mCompleteNews;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        // Show what was already loaded instead of fetching every section again
+        if (mNews != null) {
+            deliverResult(mNews);
+        }
+        if (takeContentChanged() || mNews == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void deliverResult(List<News> data) {
+        mNews = data;
+        super.deliverResult(data);
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mNews = null;
+        mCompleteNews = null;
+        mLoadedTable = null;
+    }
+
+    @Override
+    public List<News> loadInBackground() {
+        SectionFanOut fanOut = new SectionFanOut(SectionFanOut.getSharedExecutor(), new SectionFanOut.Fetcher() {
+            @Override
+            public List<News> fetch(String url) {
+                return fetchSection(url);
+            }
+        });
+
+        SectionFanOut.Listener listener = null;
+        if (mDeliverPartialResults) {
+            listener = new SectionFanOut.Listener() {
+                @Override
+                public void onPartialResult(final List<News> mergedSoFar, int finishedSections, int totalSections) {
+                    // The last one is delivered as the result of the load
+                    if (finishedSections == totalSections || mergedSoFar.isEmpty()) {
+                        return;
+                    }
+                    final List<News> partial = SectionColors.resolve(getContext(), mergedSoFar);
+                    final LoadedTable loaded = LoadedTable.build(partial, null, false);
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (isStarted()) {
+                                mLoadedTable = loaded;
+                                deliverResult(partial);
+                            }
+                        }
+                    });
+                }
+            };
+        }
+
+        try {
+            List<News> newsList = SectionColors.resolve(getContext(), fanOut.fetch(mUrls, listener));
+            // Only a next page goes at the end of the rows on screen, the first one replaces them
+            mLoadedTable = LoadedTable.build(newsList, mDeliverPartialResults ? null : mShownTable, false);
+            mCompleteNews = newsList;
+            return newsList;
+        } catch (InterruptedException e) {
+            Log.e(LOG_TAG, "Loading of sections interrupted", e);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // Answer a single section from a fresh cache entry, then from the network, then from a stale entry
+    private List<News> fetchSection(String url) {
+        NewsCache.Entry cached = mCache != null ? mCache.get(url) : null;
+        if (cached != null && cached.isFresh()) {
+            return cached.getNews();
+        }
+        List<News> result = QueryUtils.fetchEarthquakeData(url, mCache);
+        if (result != null && mStore != null) {
+            mStore.save(Uri.parse(url).getQueryParameter("section"), result);
+        }
+        if (result == null && cached != null) {
+            return cached.getNews();
+        }
+        return result;
+    }
+}
@@ -4,36 +4,54 @@ import android.app.LoaderManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
-import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
-import android.preference.PreferenceManager;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.os.Bundle;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
+import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
 
 public class NewsActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<News>> {
 
     public static final String LOG_TAG = NewsActivity.class.getName();
-    private static final String GUARDIAN_REQUEST_URL = "https://content.guardianapis.com/search?";
-    //private static final String USGS_REQUEST_URL = "https://content.guardianapis.com/search?order-by=newest&show-tags=contributor&q=poland&api-key=198bd83e-4184-4fe4-a532-6754428428a7";
-    // private static final String USGS_REQUEST_URL = "https://content.guardianapis.com/search?show-tags=contributor&q=poland&api-key=198bd83e-4184-4fe4-a532-6754428428a7";
     /**
      * Constant value for the earthquake loader ID. We can choose any integer.
      * This really only comes into play if you're using multiple loaders.
      */
     private static final int NEWS_LOADER_ID = 1;
 
+    /**
+     * Loader ID for the next pages of the feed, which are appended to the list.
+     */
+    private static final int NEWS_PAGE_LOADER_ID = 2;
+
+    /** Bundle key of the page number passed to the page loader */
+    private static final String KEY_PAGE = "page";
+
+    /** Saved state key of the query URLs of the shown feed */
+    private static final String KEY_QUERY_URLS = "query_urls";
+
+    /** Saved state key of the fetch strategy of the shown feed */
+    private static final String KEY_FETCH_STRATEGY = "fetch_strategy";
+
     /**
      * Adapter for the list of News
      */
@@ -41,106 +59,667 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
     private TextView mEmptyView;
     private ProgressBar mSeekBar;
 
+    /**
+     * Decides when the next page is loaded
+     */
+    private NewsPaginator mPaginator;
+
+    /** Sizes the pages of the fetch strategies for this screen */
+    private FetchPlanner mPlanner;
+
+    /**
+     * Page size, projection and article prefetch of the feed, chosen from the link when
+     * the feed is loaded. Its pages all have the same size, so it only changes with a
+     * new first page.
+     */
+    private FetchStrategy mStrategy;
+
+    /** Rows below the last visible one whose thumbnails are loaded ahead */
+    private int mThumbnailPrefetchRows;
+
+    /**
+     * Query URLs of the first page loader, to tell whether the settings changed since
+     */
+    private ArrayList<String> mQueryUrls;
+
+    /** When onCreate started, time to first content is measured from there */
+    private long mCreateNanos;
+
+    /**
+     * Reads the settings and the last feed snapshot on a cold start, the first page
+     * loader is only started once it is done
+     */
+    private StartupTask mStartupTask;
+
+    /** Searches the keyword typed in the search box while it is typed */
+    private LiveSearch mLiveSearch;
+
+    /**
+     * News of the feed while search results are shown instead, null when not searching.
+     * The loaders keep running, what they deliver meanwhile is held in mHeldResults.
+     */
+    private NewsTable mFeedTable;
+
+    /** Feed deliveries which came during a search, shown once the search is cleared */
+    private final List<HeldResult> mHeldResults = new ArrayList<>();
+
+    /** First page delivered last, handed out again by its loader after a rotation */
+    private List<News> mFirstPageNews;
+
+    /** Spinner and empty view of the feed, put back when the search is cleared */
+    private int mFeedSpinnerVisibility;
+    private int mFeedEmptyVisibility;
+    private CharSequence mFeedEmptyText;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mCreateNanos = System.nanoTime();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_news);
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView newsListView = findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout
+        RecyclerView newsListView = findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        newsListView.setLayoutManager(layoutManager);
 
         //Find seek bar in view
         mSeekBar = findViewById(R.id.loading_spinner);
 
-        //Set the empty view for list
+        //Find the empty view, shown when there is nothing in the list
         mEmptyView = findViewById(R.id.empty_state);
-        newsListView.setEmptyView(mEmptyView);
 
-        // Create a new adapter that takes an empty list of earthquakes as input
-        mAdapter = new NewsAdapter(this, new ArrayList<News>());
+        // Create a new adapter, clicking a row opens the News in the reader
+        mAdapter = new NewsAdapter(this, new NewsAdapter.OnNewsClickListener() {
+            @Override
+            public void onNewsClick(News currentNews) {
+                ReaderActivity.start(NewsActivity.this, currentNews, System.nanoTime());
+            }
+        });
 
-        // Set the adapter on the {@link ListView}
+        // Set the adapter on the {@link RecyclerView}
         // so the list can be populated in the user interface
         newsListView.setAdapter(mAdapter);
 
+        // Rotated, the feed keeps its strategy. A cold start has the default one until the
+        // startup task chose one, nothing is loaded before.
+        mPlanner = NewsProjection.FEED.newPlanner(this);
+        FetchStrategy strategy = savedInstanceState != null
+                ? (FetchStrategy) savedInstanceState.getSerializable(KEY_FETCH_STRATEGY) : null;
+        setStrategy(strategy != null ? strategy : FetchStrategy.DEFAULT);
+
+        // Rotated, the pages loaded so far stay on screen and the paginator goes on from them
+        Retained retained = (Retained) getLastCustomNonConfigurationInstance();
+        if (retained != null && retained.mPaginator.getPageSize() == mPaginator.getPageSize()) {
+            mPaginator = retained.mPaginator;
+            mFirstPageNews = retained.mFirstPageNews;
+            mAdapter.submitTable(retained.mFeedTable);
+            if (retained.mFeedTable.size() > 0) {
+                mSeekBar.setVisibility(View.GONE);
+            }
+        }
 
-        if (isDeviceConnected(this)) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+        mThumbnailPrefetchRows = getResources().getInteger(R.integer.thumbnail_prefetch_rows);
 
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
+        // Search every section as the keyword is typed, the feed comes back once it is cleared
+        mLiveSearch = createLiveSearch();
+        EditText searchBox = findViewById(R.id.search_box);
+        searchBox.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable text) {
+                onSearchChanged(text.toString());
+            }
+        });
+
+        if (savedInstanceState != null) {
+            mQueryUrls = savedInstanceState.getStringArrayList(KEY_QUERY_URLS);
+        }
+
+        // Deliveries held back by a search during the rotation, the feed is on screen for now
+        if (retained != null) {
+            for (HeldResult result : retained.mHeldResults) {
+                onLoadFinished(result.mLoaderId, result.mDeltaResult, result.mPartial, result.mNews, result.mLoaded);
+            }
+        }
+
+        // Get a reference to the LoaderManager, in order to interact with loaders.
+        LoaderManager loaderManager = getLoaderManager();
+
+        if (loaderManager.getLoader(NEWS_LOADER_ID) != null) {
+            // Rotated or back from the settings, the loader still holds the News
             loaderManager.initLoader(NEWS_LOADER_ID, null, this);
+            // and the page loading during the rotation is still awaited
+            int loadingPage = mPaginator.getLoadingPage();
+            if (loadingPage != NewsPaginator.NO_PAGE) {
+                Bundle args = new Bundle();
+                args.putInt(KEY_PAGE, loadingPage);
+                loaderManager.initLoader(NEWS_PAGE_LOADER_ID, args, this);
+            }
         } else {
-            mSeekBar.setVisibility(View.GONE);
-            mEmptyView.setText(R.string.no_connection);
+            // Cold start. The settings, the fetch strategy and the snapshot of the last feed
+            // are read in the background, the loader is started after them (see onStartupFeedRead).
+            mStartupTask = new StartupTask(this);
+            mStartupTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
         }
+        watchFirstContent(newsListView);
 
-        // Set a OnItemClickListener to list item
-        newsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Keep the feed warm in the background, a job pending with these settings keeps its period.
+        // Nothing on screen depends on it, so it waits until the first frames are done.
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
+            public boolean queueIdle() {
+                if (!isFinishing()) {
+                    NewsSyncScheduler.schedule(NewsActivity.this);
+                }
+                return false;
+            }
+        });
 
-                News currentNews = mAdapter.getItem(position);
+        // Load the next page in the background when the user gets close to the end of the list.
+        // RecyclerView also calls onScrolled after a layout, so a short first page is followed up too.
+        newsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                // The rows the user stopped at are the ones likely to be opened
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchArticles(layoutManager.findFirstVisibleItemPosition());
+                }
+            }
 
-                // Convert the String URL into a URI object (to pass into the Intent constructor)
-                Uri newsUri = Uri.parse(currentNews.getWebUrl());
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int totalItemCount = mAdapter.getItemCount();
+                if (totalItemCount == 0) {
+                    return;
+                }
+                // A layout, e.g. the first page was just shown, and not a scroll
+                if (dx == 0 && dy == 0) {
+                    prefetchArticles(layoutManager.findFirstVisibleItemPosition());
+                }
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                // Only while scrolling down, the rows above are in the caches already
+                if (dy > 0) {
+                    mAdapter.prefetchThumbnails(lastVisible + 1, mThumbnailPrefetchRows);
+                }
+                // Search results are a single page, the feed pages wait for the search to end
+                if (mFeedTable != null) {
+                    return;
+                }
+                int page = mPaginator.onScrolled(lastVisible, totalItemCount);
+                if (page != NewsPaginator.NO_PAGE) {
+                    Bundle args = new Bundle();
+                    args.putInt(KEY_PAGE, page);
+                    getLoaderManager().restartLoader(NEWS_PAGE_LOADER_ID, args, NewsActivity.this);
+                }
+            }
+        });
+    }
+
+    // Load the bodies of the rows on screen in the background, in one request
+    private void prefetchArticles(int firstVisible) {
+        int rows = mStrategy.getArticlePrefetchRows();
+        if (rows == 0 || firstVisible == RecyclerView.NO_POSITION || !isDeviceConnected(this)) {
+            return;
+        }
+        ArticlePrefetcher.getInstance(this).prefetch(mAdapter.getWebUrls(firstVisible, rows));
+    }
+
+    /**
+     * Use the strategy for the next first page. The paginator only starts over when the
+     * pages change size, the queries change then too and the first page is loaded again.
+     */
+    private void setStrategy(FetchStrategy strategy) {
+        mStrategy = strategy;
+        int pageSize = mPlanner.getPageSize(strategy);
+        if (mPaginator == null || mPaginator.getPageSize() != pageSize) {
+            mPaginator = new NewsPaginator(pageSize, getResources().getInteger(R.integer.news_prefetch_distance));
+        }
+    }
+
+    private LiveSearch createLiveSearch() {
+        final Context context = getApplicationContext();
+        final Handler handler = new Handler();
+        return new LiveSearch(new LiveSearch.Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMillis) {
+                handler.postDelayed(task, delayMillis);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+        }, Executors.newSingleThreadExecutor(), new LiveSearch.Fetcher() {
+            @Override
+            public List<News> fetch(String url, FetchCancellation cancellation) {
+                // Not cached on disk, the results of recent keywords are kept in memory by the search
+                return SectionColors.resolve(context,
+                        QueryUtils.fetchEarthquakeData(url, null, QueryUtils.LOAD_DEADLINE_MILLIS, cancellation));
+            }
+        }, new LiveSearch.Queries() {
+            @Override
+            public String url(String keyword) {
+                return NewsQueries.search(keyword, NewsProjection.feed(mStrategy), mPaginator.getPageSize());
+            }
+        }, new LiveSearch.Listener() {
+            @Override
+            public void onResults(String keyword, List<News> newsList) {
+                showSearchResults(newsList);
+            }
+        }, Clock.SYSTEM, LiveSearch.DEFAULT_DEBOUNCE_MILLIS, LiveSearch.DEFAULT_CACHE_TTL_MILLIS);
+    }
+
+    /**
+     * Called on every change of the search box.
+     */
+    private void onSearchChanged(String text) {
+        String keyword = LiveSearch.normalize(text);
+        if (keyword.equals(mLiveSearch.getKeyword())) {
+            return;
+        }
+        if (keyword.isEmpty()) {
+            mLiveSearch.setQuery(keyword);
+            endSearch();
+            return;
+        }
+        if (mFeedTable == null) {
+            // Put aside what the feed shows, the results take its place
+            mFeedTable = mAdapter.getSubmittedTable();
+            mFeedSpinnerVisibility = mSeekBar.getVisibility();
+            mFeedEmptyVisibility = mEmptyView.getVisibility();
+            mFeedEmptyText = mEmptyView.getText();
+        }
+        // Hidden straight away again when the keyword was searched lately
+        mSeekBar.setVisibility(View.VISIBLE);
+        mLiveSearch.setQuery(keyword);
+    }
+
+    private void showSearchResults(List<News> newsList) {
+        if (mFeedTable == null) {
+            return;
+        }
+        mSeekBar.setVisibility(View.GONE);
+        List<News> results = newsList != null ? newsList : new ArrayList<News>();
+        mAdapter.submitList(results);
+        mEmptyView.setText(newsList == null && !isDeviceConnected(this)
+                ? R.string.no_connection : R.string.no_search_results);
+        mEmptyView.setVisibility(results.isEmpty() ? View.VISIBLE : View.GONE);
+    }
 
-                // Create a new intent to view the earthquake URI
-                Intent websiteIntent = new Intent(Intent.ACTION_VIEW, newsUri);
+    // Show the feed again, with what its loaders delivered during the search
+    private void endSearch() {
+        if (mFeedTable == null) {
+            return;
+        }
+        NewsTable feed = mFeedTable;
+        mFeedTable = null;
+        mAdapter.submitTable(feed);
+        mSeekBar.setVisibility(mFeedSpinnerVisibility);
+        mEmptyView.setVisibility(mFeedEmptyVisibility);
+        mEmptyView.setText(mFeedEmptyText);
+
+        List<HeldResult> held = new ArrayList<>(mHeldResults);
+        mHeldResults.clear();
+        for (HeldResult result : held) {
+            onLoadFinished(result.mLoaderId, result.mDeltaResult, result.mPartial, result.mNews, result.mLoaded);
+        }
+    }
 
-                startActivity(websiteIntent);
+    /**
+     * Records when the first News are drawn. Every frame is let through, holding one back
+     * would only make the first content later.
+     */
+    private void watchFirstContent(final View listView) {
+        listView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (mAdapter.getItemCount() > 0) {
+                    long elapsed = System.nanoTime() - mCreateNanos;
+                    Metrics.getInstance().histogram(Metrics.STAGE_FIRST_CONTENT).record(elapsed);
+                    Metrics.getInstance().histogram(mStrategy.getFirstContentStage()).record(elapsed);
+                    listView.getViewTreeObserver().removeOnPreDrawListener(this);
+                }
+                return true;
             }
         });
     }
 
+    /**
+     * Called on the main thread once the startup task is done.
+     * @param strategy of the feed about to be loaded
+     * @param snapshot News of the last feed shown with these settings and strategy, or null
+     */
+    private void onStartupFeedRead(FetchStrategy strategy, List<News> snapshot) {
+        mStartupTask = null;
+        setStrategy(strategy);
+        if (snapshot != null && !snapshot.isEmpty() && mFeedTable != null && mFeedTable.size() == 0) {
+            // Typed a search before the snapshot was read, it is the feed to go back to
+            mFeedTable = NewsTable.of(snapshot);
+            mFeedSpinnerVisibility = View.GONE;
+        } else if (snapshot != null && !snapshot.isEmpty() && mAdapter.getItemCount() == 0) {
+            // Shown until the loader delivers, which only rebinds the rows that changed
+            mSeekBar.setVisibility(View.GONE);
+            mAdapter.submitList(snapshot);
+        }
+        // The settings are in memory now, creating the loader doesn't wait for the disk.
+        // It is started offline too, the background sync may have left the feed in the cache.
+        getLoaderManager().initLoader(NEWS_LOADER_ID, null, this);
+    }
+
     @Override
-    public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
+    protected void onRestart() {
+        super.onRestart();
+        // Back from the settings or another app, maybe on another network. A new strategy
+        // changes the queries, and onStart loads the feed again with them.
+        if (mStartupTask == null) {
+            setStrategy(AdaptiveFetch.choose(this, mStrategy));
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        // The loader keeps its News across rotations and trips to the settings, so only a
+        // changed feed is loaded again. During a cold start the loader is yet to be created
+        // with the current settings anyway.
+        if (mStartupTask == null && mQueryUrls != null && !mQueryUrls.equals(NewsQueries.fromPreferences(this,
+                NewsProjection.feed(mStrategy), 1, mPaginator.getPageSize()))) {
+            if (mFeedTable != null) {
+                mFeedSpinnerVisibility = View.VISIBLE;
+            } else {
+                mSeekBar.setVisibility(View.VISIBLE);
+            }
+            getLoaderManager().restartLoader(NEWS_LOADER_ID, null, this);
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Timings of everything loaded and shown so far, when the metrics log is enabled
+        LogMetricsExporter.logDump(Metrics.getInstance());
+    }
 
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mStartupTask != null) {
+            mStartupTask.cancel(false);
+            mStartupTask = null;
+        }
+        mLiveSearch.shutdown();
+    }
 
-        // getString retrieves a String value from the preferences. The second parameter is the default value for this preference.
-        String keyword = sharedPrefs.getString(getString(R.string.settings_keyword_key), getString(R.string.settings_keyword_default));
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ThumbnailLoader.getInstance(this).trimMemory(level);
+    }
 
-        String section = sharedPrefs.getString(getString(R.string.settings_category_key), getString(R.string.settings_category_default));
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putStringArrayList(KEY_QUERY_URLS, mQueryUrls);
+        outState.putSerializable(KEY_FETCH_STRATEGY, mStrategy);
+    }
 
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        // The search is typed again from the restored search box, the feed goes back on screen
+        NewsTable feed = mFeedTable != null ? mFeedTable : mAdapter.getSubmittedTable();
+        return new Retained(mPaginator, feed, mFirstPageNews, mHeldResults);
+    }
 
-        // parse breaks apart the URI string that's passed into its parameter
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+    @Override
+    public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
 
-        // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+        int page = bundle != null ? bundle.getInt(KEY_PAGE, 1) : 1;
 
-        // Append query parameter and its value. For example, the `order-by=newest`
-        uriBuilder.appendQueryParameter("section", section);
-        uriBuilder.appendQueryParameter("q", keyword);
-        uriBuilder.appendQueryParameter("order-by", "newest");
-        uriBuilder.appendQueryParameter("show-tags", "contributor");
-        uriBuilder.appendQueryParameter("api-key", "198bd83e-4184-4fe4-a532-6754428428a7");
+        List<String> urls = NewsQueries.fromPreferences(this, NewsProjection.feed(mStrategy), page,
+                mPaginator.getPageSize());
+        if (i == NEWS_LOADER_ID) {
+            mQueryUrls = new ArrayList<>(urls);
+        }
+
+        if (urls.size() > 1) {
+            // One query per section, they run in parallel and are merged by date.
+            // Next pages are appended once, so only the first page streams partial results
+            MultiSectionLoader loader = new MultiSectionLoader(this, urls, NewsCache.getInstance(this),
+                    NewsStore.getInstance(this), i == NEWS_LOADER_ID);
+            loader.setShownTable(mAdapter.getSubmittedTable());
+            return loader;
+        }
+
+        String url = urls.get(0);
+
+        // Next pages are appended once, so they must not be delivered stale and then again fresh
+        if (i == NEWS_PAGE_LOADER_ID) {
+            NewsLoader loader = new NewsLoader(this, url, NewsCache.getInstance(this), NewsStore.getInstance(this),
+                    false);
+            loader.setShownTable(mAdapter.getSubmittedTable());
+            return loader;
+        }
 
         // Create a new loader for the given URL
-        return new NewsLoader(this, uriBuilder.toString());
+        return new NewsLoader(this, url);
     }
 
     @Override
     public void onLoadFinished(Loader<List<News>> loader, List<News> newsList) {
+        onLoadFinished(loader.getId(), loader instanceof NewsLoader && ((NewsLoader) loader).isDeltaResult(),
+                loader instanceof MultiSectionLoader && ((MultiSectionLoader) loader).isPartialResult(),
+                newsList, loader instanceof NewsTableLoader ? ((NewsTableLoader) loader).getLoadedTable() : null);
+    }
+
+    private void onLoadFinished(int loaderId, boolean deltaResult, boolean partial, List<News> newsList,
+                                LoadedTable loaded) {
+        // Search results are on screen, the feed is updated once the search is cleared
+        if (mFeedTable != null) {
+            mHeldResults.add(new HeldResult(loaderId, deltaResult, partial, newsList, loaded));
+            return;
+        }
+        long deliverStart = System.nanoTime();
+        try {
+            showLoadedNews(loaderId, deltaResult, partial, newsList, loaded);
+            setShownTable();
+        } finally {
+            Metrics.getInstance().histogram(Metrics.STAGE_DELIVER).record(System.nanoTime() - deliverStart);
+        }
+    }
+
+    // Put the loaded News on screen, the first page replaces the list and the next ones are appended.
+    // The loader built the table in the background, it is only put together here when it was
+    // built on other rows than the ones shown now.
+    private void showLoadedNews(int loaderId, boolean deltaResult, boolean partial, List<News> newsList,
+                                LoadedTable loaded) {
+        NewsTable shown = mAdapter.getSubmittedTable();
+
+        // Next page only adds its new News at the end of the list
+        if (loaderId == NEWS_PAGE_LOADER_ID) {
+            // Page which is not awaited any more, e.g. reloaded when coming back to the activity
+            if (mPaginator.getLoadingPage() == NewsPaginator.NO_PAGE) {
+                return;
+            }
+            List<News> appended = mPaginator.onPageLoaded(mPaginator.getLoadingPage(), newsList);
+            if (!appended.isEmpty()) {
+                NewsTable table = loadedTable(loaded, newsList, shown, appended.size());
+                if (table != null) {
+                    mAdapter.submitTable(table);
+                } else {
+                    mAdapter.appendNews(appended);
+                }
+            }
+            return;
+        }
+
         mSeekBar.setVisibility(View.GONE);
-        mEmptyView.setText(R.string.no_news_found);
-        // Clear the adapter of previous earthquake data
-        mAdapter.clear();
+        mEmptyView.setText(isDeviceConnected(this) ? R.string.no_news_found : R.string.no_connection);
+
+        // Handed out again, e.g. after a rotation, its rows and the pages below are on screen already
+        if (newsList != null && newsList == mFirstPageNews) {
+            mEmptyView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+            return;
+        }
 
-        // If there is a valid list of {@link News}es, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (newsList != null && !newsList.isEmpty()) {
-            mAdapter.addAll(newsList);
+        // A refresh which only brought the News published since, they go on top and the
+        // pages below stay
+        if (deltaResult && mPaginator.getLastLoadedPage() > 0) {
+            List<News> prepended = mPaginator.onPrepended(newsList);
+            if (!prepended.isEmpty()) {
+                NewsTable table = loadedTable(loaded, newsList, shown, prepended.size());
+                if (table != null) {
+                    mAdapter.submitTable(table);
+                } else {
+                    mAdapter.prependNews(prepended);
+                }
+                saveSnapshot(newsList);
+            }
+            return;
+        }
+
+        // Sections finished so far, they are only shown. The feed starts over once all of
+        // them are in, a section arriving must not reset the pages or write the snapshot.
+        if (partial) {
+            NewsTable table = loadedTable(loaded, newsList, NewsTable.EMPTY, newsList.size());
+            mAdapter.submitTable(table != null ? table : NewsTable.of(newsList));
+            mEmptyView.setVisibility(newsList.isEmpty() ? View.VISIBLE : View.GONE);
+            return;
+        }
+
+        // The first page starts the feed over, drop the page which may still be loading
+        getLoaderManager().destroyLoader(NEWS_PAGE_LOADER_ID);
+        mPaginator.reset();
+        List<News> firstPage = mPaginator.onPageLoaded(1, newsList);
+        mFirstPageNews = newsList;
+
+        // Replace the News in the adapter. Only the rows which really changed
+        // since the previous load are rebound.
+        NewsTable table = loadedTable(loaded, newsList, NewsTable.EMPTY, firstPage.size());
+        mAdapter.submitTable(table != null ? table : NewsTable.of(firstPage));
+        mEmptyView.setVisibility(firstPage.isEmpty() ? View.VISIBLE : View.GONE);
+
+        saveSnapshot(firstPage);
+    }
+
+    // Table the loader built of the News on the given rows, null when it was built of others
+    private static NewsTable loadedTable(LoadedTable loaded, List<News> newsList, NewsTable base, int added) {
+        NewsTable table = loaded != null ? loaded.get(newsList, base) : null;
+        return table != null && table.size() == base.size() + added ? table : null;
+    }
+
+    // A refresh of the first page which only brings the News published since puts them on
+    // top of the rows shown now
+    private void setShownTable() {
+        Loader<List<News>> loader = getLoaderManager().getLoader(NEWS_LOADER_ID);
+        if (loader instanceof NewsTableLoader) {
+            ((NewsTableLoader) loader).setShownTable(mAdapter.getSubmittedTable());
+        }
+    }
+
+    // What the next cold start shows before anything is loaded
+    private void saveSnapshot(List<News> firstPage) {
+        if (!firstPage.isEmpty() && mQueryUrls != null) {
+            LastFeedSnapshot.getInstance(this).writeAsync(mQueryUrls, firstPage);
         }
     }
 
     @Override
     public void onLoaderReset(Loader<List<News>> loader) {
-        // Loader reset, so we can clear out our existing data.
-        mAdapter.clear();
+        // Only the first page loader owns the data, the page loader just appends to it
+        if (loader.getId() == NEWS_LOADER_ID) {
+            if (mFeedTable != null) {
+                // The search stays on screen, there is no feed to go back to any more
+                mFeedTable = NewsTable.EMPTY;
+                mHeldResults.clear();
+                return;
+            }
+            // Loader reset, so we can clear out our existing data.
+            mAdapter.submitList(null);
+        }
+    }
+
+    /**
+     * Feed delivery which came while search results were shown.
+     */
+    private static final class HeldResult {
+        final int mLoaderId;
+        final boolean mDeltaResult;
+        final boolean mPartial;
+        final List<News> mNews;
+        final LoadedTable mLoaded;
+
+        HeldResult(int loaderId, boolean deltaResult, boolean partial, List<News> news, LoadedTable loaded) {
+            mLoaderId = loaderId;
+            mDeltaResult = deltaResult;
+            mPartial = partial;
+            mNews = news;
+            mLoaded = loaded;
+        }
+    }
+
+    /**
+     * What the feed keeps across a configuration change, the loaders keep their News
+     * themselves.
+     */
+    private static final class Retained {
+        final NewsPaginator mPaginator;
+        final NewsTable mFeedTable;
+        final List<News> mFirstPageNews;
+        final List<HeldResult> mHeldResults;
+
+        Retained(NewsPaginator paginator, NewsTable feedTable, List<News> firstPageNews,
+                 List<HeldResult> heldResults) {
+            mPaginator = paginator;
+            mFeedTable = feedTable;
+            mFirstPageNews = firstPageNews;
+            mHeldResults = new ArrayList<>(heldResults);
+        }
+    }
+
+    /**
+     * Reads the feed settings and the snapshot of the last feed off the main thread, and
+     * chooses the fetch strategy, which reads the one chosen last. The settings are read
+     * first so they are cached by the time the loader needs them.
+     */
+    private static class StartupTask extends AsyncTask<Void, Void, List<News>> {
+
+        private final Context mContext;
+        private final FetchPlanner mPlanner;
+        private final WeakReference<NewsActivity> mActivity;
+
+        /** Chosen in the background, read in onPostExecute */
+        private FetchStrategy mStrategy;
+
+        StartupTask(NewsActivity activity) {
+            mContext = activity.getApplicationContext();
+            mPlanner = activity.mPlanner;
+            mActivity = new WeakReference<>(activity);
+        }
+
+        @Override
+        protected List<News> doInBackground(Void... voids) {
+            mStrategy = AdaptiveFetch.choose(mContext, null);
+            List<String> urls = NewsQueries.fromPreferences(mContext, NewsProjection.feed(mStrategy), 1,
+                    mPlanner.getPageSize(mStrategy));
+            // The snapshot has no colors, resolving them here keeps the first bind cheap
+            return SectionColors.resolve(mContext, LastFeedSnapshot.getInstance(mContext).read(urls));
+        }
+
+        @Override
+        protected void onPostExecute(List<News> snapshot) {
+            NewsActivity activity = mActivity.get();
+            if (activity != null && !activity.isFinishing()) {
+                activity.onStartupFeedRead(mStrategy, snapshot);
+            }
+        }
     }
 
     /**
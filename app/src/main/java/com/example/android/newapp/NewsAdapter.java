@@ -1,129 +1,331 @@
 package com.example.android.newapp;
 
-import android.app.Activity;
-
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-import android.support.v4.content.ContextCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-public class NewsAdapter extends ArrayAdapter<News> {
+public class NewsAdapter extends RecyclerView.Adapter<NewsAdapter.NewsViewHolder> {
 
     /**
-     * This is our own custom constructor (it doesn't mirror a superclass constructor).
-     * The context is used to inflate the layout file, and the list is the data we want
-     * to populate into the lists.
-     * @param context The current context. Used to inflate the layout file.
-     * @param newsList  List of objects to display in a list.
+     * Receives clicks on the rows of the list.
      */
-    public NewsAdapter(Activity context, List<News> newsList){
+    public interface OnNewsClickListener {
+        void onNewsClick(News news);
+    }
 
-        // Here, we initialize the ArrayAdapter's internal storage for the context and the list.
-        // the second argument is used when the ArrayAdapter is populating a single TextView.
-        // Because this is a custom adapter for two TextViews and an ImageView, the adapter is not
-        // going to use this second argument, so it can be any value. Here, we used 0.
-        super(context,0, newsList);
+    /**
+     * Receives what a row shows, read out of the table by {@link #bindRow}.
+     */
+    interface RowBinder {
+        void bind(int sectionColor, String section, String title, String displayDate, String author,
+                  String thumbnailUrl);
     }
 
     /**
-     * Provides a view for an AdapterView (ListView, GridView, etc.)
-     *
-     * @param position The position in the list of data that should be displayed in the
-     *                 list item view.
-     * @param convertView The recycled view to populate.
-     * @param parent The parent ViewGroup that is used for inflation.
-     * @return The View for the position in the AdapterView.
+     * Two rows are the same item when they point to the same article. The article is
+     * rebound only when something shown in its row has changed. Compares the columns
+     * of the tables, no News is built for it.
      */
-    @NonNull
-    @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+    static final class TableDiff extends DiffUtil.Callback {
+
+        private final NewsTable mOldTable;
+        private final NewsTable mNewTable;
 
-        // Check if the existing view is being reused, otherwise inflate the view
-        View listItemView = convertView;
-        if(listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(R.layout.list_item, parent, false);
+        TableDiff(NewsTable oldTable, NewsTable newTable) {
+            mOldTable = oldTable;
+            mNewTable = newTable;
         }
 
-        // Get the {@link News} object located at this position in the list
-        News currentNews = getItem(position);
+        @Override
+        public int getOldListSize() {
+            return mOldTable.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewTable.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return mOldTable.hasSameWebUrl(oldPosition, mNewTable, newPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return mOldTable.hasSameContents(oldPosition, mNewTable, newPosition);
+        }
+    }
+
+    /** Computes the differences of the tables off the main thread, one at a time */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Context mContext;
+    private final OnNewsClickListener mListener;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Thumbnails are decoded in the background at the size of their view */
+    private final ThumbnailLoader mThumbnails;
+    private final int mThumbnailWidth;
+    private final int mThumbnailHeight;
+
+    /** Time taken by every bind */
+    private final Histogram mBindHistogram = Metrics.getInstance().histogram(Metrics.STAGE_BIND);
+
+    /**
+     * Rows on screen. Kept as columns with the repeated values shared, a long feed takes
+     * a fraction of the heap of a list of News.
+     */
+    private NewsTable mShownTable = NewsTable.EMPTY;
+
+    /** Last submitted table, it may still be waiting for its difference to be computed */
+    private NewsTable mSubmittedTable = NewsTable.EMPTY;
+
+    /** Counts the submits, the difference computed for an older one is dropped */
+    private int mSubmitCount;
+
+    /**
+     * The context is used to inflate the layout file.
+     * @param context The current context. Used to inflate the layout file.
+     * @param listener Receives clicks on the rows.
+     */
+    public NewsAdapter(Context context, OnNewsClickListener listener){
+        mContext = context;
+        mListener = listener;
+        mThumbnails = ThumbnailLoader.getInstance(context);
+        mThumbnailWidth = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_width);
+        mThumbnailHeight = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
+    }
 
-        // Find the TextView in the list_item.xml layout with the ID section
-        TextView sectionTextView = (TextView) listItemView.findViewById(R.id.section_text_view);
+    /**
+     * Holds the views of one row, so they are looked up only once when the row is created.
+     */
+    static class NewsViewHolder extends RecyclerView.ViewHolder implements RowBinder {
 
-        // Get color background for section
-        int sectionColor = getSectionColor(currentNews.getPillarName());
-        //Set color background for section
-        sectionTextView.setBackgroundColor(sectionColor);
+        final TextView sectionTextView;
+        final TextView titleTextView;
+        final TextView dateTextView;
+        final TextView authorTextView;
+        final ImageView thumbnailImageView;
 
-        // Get the Section from the current News object and
-        // set this text on the sectionTextView
-        sectionTextView.setText(currentNews.getSection());
+        NewsViewHolder(View itemView) {
+            super(itemView);
+            sectionTextView = itemView.findViewById(R.id.section_text_view);
+            titleTextView = itemView.findViewById(R.id.title_text_view);
+            dateTextView = itemView.findViewById(R.id.date_date_text_view);
+            authorTextView = itemView.findViewById(R.id.author_text_view);
+            thumbnailImageView = itemView.findViewById(R.id.thumbnail_image_view);
+        }
 
+        // The text shown was prepared on the loader thread, so binding does no formatting
+        @Override
+        public void bind(int sectionColor, String section, String title, String displayDate, String author,
+                         String thumbnailUrl) {
+            //Set color background for section
+            sectionTextView.setBackgroundColor(sectionColor);
 
+            // Set this text on the sectionTextView
+            sectionTextView.setText(section);
 
-        // Find the TextView in the list_item.xml layout with the ID title
-        TextView titleTextView = (TextView) listItemView.findViewById(R.id.title_text_view);
-        // Get the title from the current News object and
-        // set this text on the titleTextView
-        titleTextView.setText(currentNews.getTitle());
+            // Set this text on the titleTextView
+            titleTextView.setText(title);
 
-        // Get the date from the current News object
-        String date = currentNews.getDate();
+            // Set date of publication as a text on the dateTextView
+            dateTextView.setText(displayDate);
 
-        // Prepare appropriate date format
-        String dateOfPublication;
+            // Set author as a text on the authorTextView
+            authorTextView.setText(author);
+
+            thumbnailImageView.setVisibility(thumbnailUrl != null ? View.VISIBLE : View.GONE);
+        }
+    }
+
+    /**
+     * Replace the shown News. The difference is computed in the background and only the
+     * rows which changed are rebound.
+     * @param newsList new News to show, null to clear the list
+     */
+    public void submitList(List<News> newsList) {
+        submitTable(NewsTable.of(newsList));
+    }
+
+    /**
+     * Replace the shown rows, the same way as {@link #submitList(List)}.
+     * @param table rows to show, null to clear the list
+     */
+    public void submitTable(NewsTable table) {
+        final NewsTable newTable = table != null ? table : NewsTable.EMPTY;
+        if (newTable == mSubmittedTable) {
+            return;
+        }
+        final int submit = ++mSubmitCount;
+        mSubmittedTable = newTable;
+        final NewsTable oldTable = mShownTable;
 
-        String[] parts = date.split("T");
-        dateOfPublication = parts[0];
+        // Nothing to compare, the rows are all inserted or all removed
+        if (oldTable.size() == 0 || newTable.size() == 0) {
+            mShownTable = newTable;
+            if (oldTable.size() > 0) {
+                notifyItemRangeRemoved(0, oldTable.size());
+            }
+            if (newTable.size() > 0) {
+                notifyItemRangeInserted(0, newTable.size());
+            }
+            return;
+        }
 
-        // Find the TextView in the list_item.xml layout with the ID date?_date
-        TextView dateTextView = (TextView) listItemView.findViewById(R.id.date_date_text_view);
-        // Set date as a text on the dateTextView
-        dateTextView.setText(dateOfPublication);
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new TableDiff(oldTable, newTable));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Another table was submitted meanwhile, its own difference follows
+                        if (submit == mSubmitCount) {
+                            mShownTable = newTable;
+                            result.dispatchUpdatesTo(NewsAdapter.this);
+                        }
+                    }
+                });
+            }
+        });
+    }
 
-        // Find the TextView in the list_item.xml layout with the ID author
-        TextView authorTextView =(TextView) listItemView.findViewById(R.id.author_text_view);
-        // Set author as a text on the authorTextView
-        authorTextView.setText(currentNews.getAuthor());
+    /**
+     * @return rows as last submitted, whether they are on screen yet or not
+     */
+    public NewsTable getSubmittedTable() {
+        return mSubmittedTable;
+    }
 
+    /**
+     * @return true while the last submitted rows wait for their difference to be computed
+     */
+    boolean hasPendingDiff() {
+        return mShownTable != mSubmittedTable;
+    }
 
-        // Return the whole list item layout
-        // so that it can be shown in the ListView
-        return listItemView;
+    /**
+     * Add News at the end of the list. Rows already shown are not rebound.
+     */
+    public void appendNews(List<News> newsList) {
+        submitTable(mSubmittedTable.append(newsList));
+    }
 
+    /**
+     * Add News at the top of the list. Rows already shown are not rebound and the list
+     * stays scrolled where it is.
+     */
+    public void prependNews(List<News> newsList) {
+        submitTable(mSubmittedTable.prepend(newsList));
     }
 
-    // Choose a color for appropriate section
-    private int getSectionColor(String pillarSection){
-        int sectionColorID ;
+    /**
+     * Load the thumbnails of the rows which are about to be scrolled into view.
+     * @param fromPosition first row to load
+     * @param count number of rows
+     */
+    public void prefetchThumbnails(int fromPosition, int count) {
+        NewsTable table = mShownTable;
+        int end = Math.min(table.size(), fromPosition + count);
+        for (int position = Math.max(0, fromPosition); position < end; position++) {
+            mThumbnails.prefetch(table.getThumbnailUrl(position), mThumbnailWidth, mThumbnailHeight);
+        }
+    }
 
-        switch (pillarSection) {
-            case "News":
-                sectionColorID = R.color.section_news;
-                break;
-            case "Opinion":
-                sectionColorID = R.color.section_opinion;
-                break;
-            case "Sport":
-                sectionColorID = R.color.section_sport;
-                break;
-            case "Arts":
-                sectionColorID = R.color.section_culture;
-                break;
-            case "Lifestyle":
-                sectionColorID = R.color.section_lifestyle;
-                break;
-            default:
-                sectionColorID = R.color.section_other;
-                break;
+    /**
+     * @param fromPosition first row
+     * @param count number of rows
+     * @return web urls of the shown rows, fewer near the end of the list
+     */
+    public List<String> getWebUrls(int fromPosition, int count) {
+        NewsTable table = mShownTable;
+        int start = Math.max(0, fromPosition);
+        int end = Math.min(table.size(), fromPosition + count);
+        List<String> webUrls = new ArrayList<>(Math.max(0, end - start));
+        for (int position = start; position < end; position++) {
+            webUrls.add(table.getWebUrl(position));
         }
+        return webUrls;
+    }
+
+    /**
+     * @return News shown at the position, built from the row for the caller
+     */
+    public News getItem(int position) {
+        return mShownTable.get(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mShownTable.size();
+    }
+
+    @NonNull
+    @Override
+    public NewsViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(mContext).inflate(R.layout.list_item, parent, false);
+        final NewsViewHolder holder = new NewsViewHolder(listItemView);
+
+        // Set a click listener once per row, it looks up the News shown at the time of the click
+        listItemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && mListener != null) {
+                    mListener.onNewsClick(getItem(position));
+                }
+            }
+        });
+        return holder;
+    }
 
-        return ContextCompat.getColor(getContext(), sectionColorID);
+    /**
+     * Fill the row with the News located at this position in the list.
+     *
+     * @param holder The views of the row to populate.
+     * @param position The position in the list of data that should be displayed in the row.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull NewsViewHolder holder, int position) {
+        long bindStart = System.nanoTime();
+
+        NewsTable table = mShownTable;
+        bindRow(table, position, holder);
+
+        // Decoded in the background, or set at once when it is still in memory
+        mThumbnails.load(holder.thumbnailImageView, table.getThumbnailUrl(position), mThumbnailWidth,
+                mThumbnailHeight);
+
+        mBindHistogram.record(System.nanoTime() - bindStart);
+    }
+
+    /**
+     * Read the row straight from the columns of the table, no News is built for it.
+     */
+    static void bindRow(NewsTable table, int position, RowBinder binder) {
+        binder.bind(table.getSectionColor(position), table.getSection(position), table.getTitle(position),
+                table.getDisplayDate(position), table.getAuthor(position), table.getThumbnailUrl(position));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull NewsViewHolder holder) {
+        // The row goes back to the pool, its image is not wanted any more
+        mThumbnails.load(holder.thumbnailImageView, null, mThumbnailWidth, mThumbnailHeight);
     }
 }
@@ -0,0 +1,502 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Disk cache of Guardian responses. Every entry is the raw JSON body of a successful
+ * response prefixed with the time it was stored, so it survives process death and is
+ * parsed with the same {@link NewsParser} as a network response.
+ *
+ * Entries are keyed by the normalized query: all query parameters except the api key,
+ * sorted by name, so the same section / keyword / order gives the same entry no matter
+ * how the URL was built. When the directory grows over its size limit the least
+ * recently used entries are deleted.
+ *
+ * The parsed News of recent queries are also kept in a {@link NewsMemoryCache}, so the
+ * same query asked again in this process is answered without touching the disk.
+ */
+public final class NewsCache implements FeedLoad.Cache {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = NewsCache.class.getName();
+
+    /** Default time after which an entry is stale */
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000;
+
+    /** Default size limit of the whole cache directory */
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final String DIRECTORY_NAME = "news";
+    private static final String ENTRY_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static NewsCache sInstance;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final long mTtlMillis;
+    private final Clock mClock;
+    private final NewsMemoryCache mMemory;
+
+    /** Temp files of the recorders still writing, any other one was left behind */
+    private final Set<File> mWriting = new HashSet<>();
+
+    /**
+     * One cached response.
+     */
+    public static final class Entry implements FeedLoad.Cached {
+
+        private final List<News> mNews;
+        private final long mStoredAt;
+        private final boolean mFresh;
+
+        Entry(List<News> news, long storedAt, boolean fresh) {
+            mNews = news;
+            mStoredAt = storedAt;
+            mFresh = fresh;
+        }
+
+        @Override
+        public List<News> getNews() {
+            return mNews;
+        }
+
+        public long getStoredAt() {
+            return mStoredAt;
+        }
+
+        /**
+         * @return true when the entry is younger than the cache TTL
+         */
+        @Override
+        public boolean isFresh() {
+            return mFresh;
+        }
+    }
+
+    /**
+     * Copies the response body into a cache file while it is being read.
+     * The entry becomes visible only after {@link #commit(List)}.
+     */
+    public final class Recorder implements GuardianClient.Recording {
+
+        private final String mKey;
+        private final long mStoredAt;
+        private final File mTempFile;
+        private final File mEntryFile;
+        private final OutputStream mOutput;
+        private final InputStream mInputStream;
+        private boolean mDone;
+
+        private Recorder(String key, File entryFile, InputStream body) throws IOException {
+            mKey = key;
+            mEntryFile = entryFile;
+            // The same query may be fetched on several threads, each writes its own temp file
+            mTempFile = new File(entryFile.getPath() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+            mStoredAt = mClock.currentTimeMillis();
+            startWriting(mTempFile);
+            DataOutputStream output;
+            try {
+                output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mTempFile)));
+                output.writeLong(mStoredAt);
+            } catch (IOException e) {
+                stopWriting(mTempFile);
+                mTempFile.delete();
+                throw e;
+            }
+            mOutput = output;
+            mInputStream = new TeeInputStream(body, mOutput);
+        }
+
+        /**
+         * @return stream which should be read instead of the response body
+         */
+        @Override
+        public InputStream getInputStream() {
+            return mInputStream;
+        }
+
+        /**
+         * Copy whatever the parser did not read and publish the entry.
+         * @param parsed News parsed from the body, kept in memory for the next reads
+         */
+        @Override
+        public void commit(List<News> parsed) {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            try {
+                byte[] buffer = new byte[4096];
+                while (mInputStream.read(buffer) != -1) {
+                    // Reading through the tee stream copies the rest of the body
+                }
+                mOutput.close();
+                if (!mTempFile.renameTo(mEntryFile)) {
+                    throw new IOException("Can't rename " + mTempFile);
+                }
+                stopWriting(mTempFile);
+                mEntryFile.setLastModified(mClock.currentTimeMillis());
+                mMemory.put(mKey, parsed, mStoredAt);
+                trimToSize();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem writing cache entry", e);
+                abort();
+            }
+        }
+
+        /**
+         * Drop the partially written entry.
+         */
+        @Override
+        public void abort() {
+            mDone = true;
+            try {
+                mOutput.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing cache entry", e);
+            }
+            mTempFile.delete();
+            stopWriting(mTempFile);
+        }
+    }
+
+    public NewsCache(File directory, long maxBytes, long ttlMillis, Clock clock) {
+        this(directory, maxBytes, ttlMillis, clock, new NewsMemoryCache(NewsMemoryCache.defaultMaxBytes()));
+    }
+
+    /**
+     * @param memory memory cache of the parsed News, in front of the files
+     */
+    public NewsCache(File directory, long maxBytes, long ttlMillis, Clock clock, NewsMemoryCache memory) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mTtlMillis = ttlMillis;
+        mClock = clock;
+        mMemory = memory;
+        // A process killed in the middle of a response leaves its temp file behind
+        deleteTempFiles();
+    }
+
+    /**
+     * @return cache shared by the whole app, stored in the app cache directory
+     */
+    public static synchronized NewsCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME);
+            sInstance = new NewsCache(directory, DEFAULT_MAX_BYTES, DEFAULT_TTL_MILLIS, Clock.SYSTEM,
+                    new NewsMemoryCache(NewsMemoryCache.defaultMaxBytes()));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return memory cache of the parsed News, in front of the files
+     */
+    public NewsMemoryCache getMemoryCache() {
+        return mMemory;
+    }
+
+    /**
+     * Return the cached entry for the query, or null when there is none or it can't be read.
+     * Reading an entry marks it as recently used.
+     */
+    @Override
+    public Entry get(String url) {
+        String key = normalizeQuery(url);
+        if (key == null) {
+            return null;
+        }
+
+        // The file decides whether there is an entry, so trimming the disk also drops it here
+        File file = entryFile(key);
+        if (!file.exists()) {
+            mMemory.remove(key);
+            return null;
+        }
+
+        // Parsed earlier in this process, e.g. before the activity was recreated
+        NewsMemoryCache.Entry remembered = mMemory.get(key);
+        if (remembered != null) {
+            long now = mClock.currentTimeMillis();
+            file.setLastModified(now);
+            return new Entry(remembered.getNews(), remembered.getStoredAt(),
+                    now - remembered.getStoredAt() < mTtlMillis);
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            long storedAt = input.readLong();
+            List<News> newsList = NewsParser.parse(input);
+            long now = mClock.currentTimeMillis();
+            file.setLastModified(now);
+            mMemory.put(key, newsList, storedAt);
+            return new Entry(newsList, storedAt, now - storedAt < mTtlMillis);
+        } catch (IOException | IllegalStateException e) {
+            Log.e(LOG_TAG, "Dropping unreadable cache entry", e);
+            file.delete();
+            return null;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem closing cache entry", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start recording a response body for the query.
+     * @return recorder, or null when the entry can't be created
+     */
+    @Override
+    public Recorder record(String url, InputStream body) {
+        String key = normalizeQuery(url);
+        if (key == null) {
+            return null;
+        }
+        File file = entryFile(key);
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Can't create cache directory " + mDirectory);
+            return null;
+        }
+        try {
+            return new Recorder(key, file, body);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem creating cache entry", e);
+            return null;
+        }
+    }
+
+    /**
+     * Restart the TTL of the entry, used when the server said the response has not changed.
+     */
+    @Override
+    public void markFresh(String url) {
+        String key = normalizeQuery(url);
+        if (key == null) {
+            return;
+        }
+        long now = mClock.currentTimeMillis();
+        mMemory.markFresh(key, now);
+        File file = entryFile(key);
+        if (!file.exists()) {
+            return;
+        }
+
+        RandomAccessFile output = null;
+        try {
+            output = new RandomAccessFile(file, "rw");
+            output.writeLong(now);
+            output.close();
+            output = null;
+            file.setLastModified(now);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem updating cache entry", e);
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem closing cache entry", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the entry for the query.
+     */
+    public void remove(String url) {
+        String key = normalizeQuery(url);
+        if (key != null) {
+            mMemory.remove(key);
+            entryFile(key).delete();
+        }
+    }
+
+    /**
+     * @return size in bytes of all entries on disk
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (File file : entries()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    // Delete the least recently used entries until the cache fits in its size limit
+    private synchronized void trimToSize() {
+        deleteTempFiles();
+        List<File> files = new ArrayList<>(Arrays.asList(entries()));
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= mMaxBytes) {
+            return;
+        }
+
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long diff = first.lastModified() - second.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.size() && size > mMaxBytes; i++) {
+            File file = files.get(i);
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private synchronized void startWriting(File tempFile) {
+        mWriting.add(tempFile);
+    }
+
+    private synchronized void stopWriting(File tempFile) {
+        mWriting.remove(tempFile);
+    }
+
+    // Delete the temp files no recorder writes any more, they are never renamed to an entry
+    private synchronized void deleteTempFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX) && !mWriting.contains(file)) {
+                file.delete();
+            }
+        }
+    }
+
+    private File[] entries() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        List<File> entries = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                entries.add(file);
+            }
+        }
+        return entries.toArray(new File[entries.size()]);
+    }
+
+    private File entryFile(String key) {
+        return new File(mDirectory, md5(key) + ENTRY_SUFFIX);
+    }
+
+    /**
+     * Build the cache key of the request URL: path and query parameters sorted by name,
+     * without the api key.
+     * @return key, or null when the URL is not valid
+     */
+    static String normalizeQuery(String url) {
+        return GuardianClient.queryKey(url);
+    }
+
+    static String md5(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to provide MD5
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Input stream that writes every byte it reads to the given output.
+     */
+    private static final class TeeInputStream extends FilterInputStream {
+
+        private final OutputStream mOutput;
+
+        TeeInputStream(InputStream in, OutputStream output) {
+            super(in);
+            mOutput = output;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mOutput.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                mOutput.write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must still reach the cache file
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // The parser closes its reader when done, but the recorder still has to
+            // drain the rest of the body. The connection stream is closed by its owner.
+        }
+    }
+}
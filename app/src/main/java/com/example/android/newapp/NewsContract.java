@@ -0,0 +1,59 @@
+package com.example.android.newapp;
+
+import android.provider.BaseColumns;
+
+/**
+ * Names of the tables and columns of the local article store.
+ */
+public final class NewsContract {
+
+    private NewsContract() {}
+
+    /**
+     * Every article fetched from the Guardian, one row per web url.
+     */
+    public static final class NewsEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "news";
+
+        /** Web url of the article, unique */
+        public static final String COLUMN_WEB_URL = "web_url";
+
+        public static final String COLUMN_TITLE = "title";
+
+        /** Section name shown in the list, e.g. "World news" */
+        public static final String COLUMN_SECTION_NAME = "section_name";
+
+        /** Section of the query which returned the article, e.g. "news" */
+        public static final String COLUMN_QUERY_SECTION = "query_section";
+
+        /** Date of publication as sent by the Guardian */
+        public static final String COLUMN_DATE = "date";
+
+        /** Date of publication in milliseconds since the epoch */
+        public static final String COLUMN_TIME = "time_millis";
+
+        public static final String COLUMN_AUTHOR = "author";
+
+        public static final String COLUMN_PILLAR_NAME = "pillar_name";
+
+        /** Url of the thumbnail image, may be null */
+        public static final String COLUMN_THUMBNAIL = "thumbnail";
+
+        private NewsEntry() {}
+    }
+
+    /**
+     * Full-text index of the title and authors of the articles. It is an FTS4 table
+     * with external content, the text itself is kept only in the {@link NewsEntry} table.
+     */
+    public static final class NewsSearch {
+
+        public static final String TABLE_NAME = "news_fts";
+
+        /** Row id of the article in the {@link NewsEntry} table */
+        public static final String COLUMN_DOC_ID = "docid";
+
+        private NewsSearch() {}
+    }
+}
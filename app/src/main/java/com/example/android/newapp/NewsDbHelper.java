@@ -0,0 +1,75 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.android.newapp.NewsContract.NewsEntry;
+import com.example.android.newapp.NewsContract.NewsSearch;
+
+/**
+ * Creates the database of the local article store.
+ */
+public class NewsDbHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "news.db";
+    private static final int DATABASE_VERSION = 2;
+
+    public NewsDbHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * @param name file name of the database, null for a database kept only in memory
+     */
+    NewsDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + NewsEntry.TABLE_NAME + " ("
+                + NewsEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + NewsEntry.COLUMN_WEB_URL + " TEXT NOT NULL UNIQUE, "
+                + NewsEntry.COLUMN_TITLE + " TEXT NOT NULL, "
+                + NewsEntry.COLUMN_SECTION_NAME + " TEXT, "
+                + NewsEntry.COLUMN_QUERY_SECTION + " TEXT, "
+                + NewsEntry.COLUMN_DATE + " TEXT, "
+                + NewsEntry.COLUMN_TIME + " INTEGER NOT NULL, "
+                + NewsEntry.COLUMN_AUTHOR + " TEXT, "
+                + NewsEntry.COLUMN_PILLAR_NAME + " TEXT, "
+                + NewsEntry.COLUMN_THUMBNAIL + " TEXT)");
+
+        // Feeds are always read newest first, either for one section or for all of them
+        db.execSQL("CREATE INDEX news_section_time ON " + NewsEntry.TABLE_NAME
+                + " (" + NewsEntry.COLUMN_QUERY_SECTION + ", " + NewsEntry.COLUMN_TIME + " DESC)");
+        db.execSQL("CREATE INDEX news_time ON " + NewsEntry.TABLE_NAME
+                + " (" + NewsEntry.COLUMN_TIME + " DESC)");
+
+        db.execSQL("CREATE VIRTUAL TABLE " + NewsSearch.TABLE_NAME + " USING fts4("
+                + "content=\"" + NewsEntry.TABLE_NAME + "\", "
+                + NewsEntry.COLUMN_TITLE + ", " + NewsEntry.COLUMN_AUTHOR + ")");
+
+        // Keep the full-text index in step with the articles table
+        db.execSQL("CREATE TRIGGER news_after_insert AFTER INSERT ON " + NewsEntry.TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + NewsSearch.TABLE_NAME + " (docid, " + NewsEntry.COLUMN_TITLE + ", " + NewsEntry.COLUMN_AUTHOR + ") "
+                + "VALUES (new." + NewsEntry._ID + ", new." + NewsEntry.COLUMN_TITLE + ", new." + NewsEntry.COLUMN_AUTHOR + "); END");
+        db.execSQL("CREATE TRIGGER news_before_delete BEFORE DELETE ON " + NewsEntry.TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + NewsSearch.TABLE_NAME + " (" + NewsSearch.TABLE_NAME + ", docid, " + NewsEntry.COLUMN_TITLE + ", " + NewsEntry.COLUMN_AUTHOR + ") "
+                + "VALUES ('delete', old." + NewsEntry._ID + ", old." + NewsEntry.COLUMN_TITLE + ", old." + NewsEntry.COLUMN_AUTHOR + "); END");
+        db.execSQL("CREATE TRIGGER news_before_update BEFORE UPDATE ON " + NewsEntry.TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + NewsSearch.TABLE_NAME + " (" + NewsSearch.TABLE_NAME + ", docid, " + NewsEntry.COLUMN_TITLE + ", " + NewsEntry.COLUMN_AUTHOR + ") "
+                + "VALUES ('delete', old." + NewsEntry._ID + ", old." + NewsEntry.COLUMN_TITLE + ", old." + NewsEntry.COLUMN_AUTHOR + "); END");
+        db.execSQL("CREATE TRIGGER news_after_update AFTER UPDATE ON " + NewsEntry.TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + NewsSearch.TABLE_NAME + " (docid, " + NewsEntry.COLUMN_TITLE + ", " + NewsEntry.COLUMN_AUTHOR + ") "
+                + "VALUES (new." + NewsEntry._ID + ", new." + NewsEntry.COLUMN_TITLE + ", new." + NewsEntry.COLUMN_AUTHOR + "); END");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store only holds copies of the Guardian articles, so it can simply start over
+        db.execSQL("DROP TABLE IF EXISTS " + NewsSearch.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + NewsEntry.TABLE_NAME);
+        onCreate(db);
+    }
+}
@@ -5,34 +5,114 @@ import android.content.Context;
 
 import java.util.List;
 
-public class NewsLoader extends AsyncTaskLoader<List<News>> {
+public class NewsLoader extends AsyncTaskLoader<List<News>> implements NewsTableLoader {
 
     /** Tag for log messages */
     private static final String LOG_TAG = NewsLoader.class.getName();
 
-    /** Query URL */
-    private String mUrl;
+    /** Cache, store and delta refresh of the query, the loader only runs it in the background */
+    private final FeedLoad mFeed;
+
+    /** Last delivered News, handed out again when the loader is started once more */
+    private List<News> mNews;
+
+    /** Rows on screen, a next page or a delta refresh is added to them */
+    private volatile NewsTable mShownTable;
+
+    /** Table of the last loaded News */
+    private volatile LoadedTable mLoadedTable;
 
     public NewsLoader(Context context, String url){
+        this(context, url, NewsCache.getInstance(context), NewsStore.getInstance(context), true);
+        setDeltaRefresh(true);
+    }
+
+    public NewsLoader(Context context, String url, NewsCache cache, boolean staleWhileRevalidate){
+        this(context, url, cache, null, staleWhileRevalidate);
+    }
+
+    /**
+     * @param cache disk cache of responses, null to always use the network
+     * @param store local article store, null to not keep the articles
+     * @param staleWhileRevalidate deliver stale cached News at once and then the fresh ones,
+     *                             for a query not in the cache the matching stored articles
+     */
+    public NewsLoader(Context context, String url, NewsCache cache, NewsStore store, boolean staleWhileRevalidate){
         super(context);
-        mUrl = url;
+        mFeed = new FeedLoad(QueryUtils.getNewsEngine(), url, cache, store, staleWhileRevalidate);
+    }
+
+    /**
+     * Refresh stale News with only what was published since, see {@link NewsDelta}. Only
+     * for the first page of a feed ordered by newest.
+     */
+    public void setDeltaRefresh(boolean deltaRefresh) {
+        mFeed.setDeltaRefresh(deltaRefresh);
+    }
+
+    /**
+     * @return true when the last loaded News are the ones delivered before, with the News
+     *         published since on top. The rows below them don't have to change.
+     */
+    public boolean isDeltaResult() {
+        return mFeed.isDeltaResult();
+    }
+
+    @Override
+    public void setShownTable(NewsTable table) {
+        mShownTable = table;
+    }
+
+    @Override
+    public LoadedTable getLoadedTable() {
+        return mLoadedTable;
     }
 
     @Override
     protected void onStartLoading() {
-       forceLoad();
+        // Coming back to the activity, e.g. after a rotation or from the settings, shows
+        // what was already loaded instead of fetching and parsing the feed again
+        if (mNews != null) {
+            deliverResult(mNews);
+        }
+        if (takeContentChanged() || mNews == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mNews = null;
+        mLoadedTable = null;
     }
 
     @Override
     public List<News> loadInBackground(){
+        // Resolve everything the rows need here, so binding them does no work
+        List<News> newsList = SectionColors.resolve(getContext(), load());
 
-        // Don't perform the request if there are no URLs, or the first URL is null.
-        if(mUrl== null){
-            return null;
-        }
+        // The first page replaces the rows on screen unless only the News published since
+        // were loaded, a next page always goes at their end
+        boolean deltaRefresh = mFeed.isDeltaRefresh();
+        boolean prepend = deltaRefresh && mFeed.isDeltaResult();
+        mLoadedTable = LoadedTable.build(newsList, prepend || !deltaRefresh ? mShownTable : null, prepend);
+        return newsList;
+    }
+
+    // Load the News from the cache or from the network, package-private for the tests
+    List<News> load() {
+        return mFeed.load();
+    }
 
-        // Perform the HTTP request for earthquake data and process the response.
-        List<News> result = QueryUtils.fetchEarthquakeData(mUrl);
-        return result;
+    @Override
+    public void deliverResult(List<News> data) {
+        mNews = data;
+        super.deliverResult(data);
+
+        // Stale News are on screen now, so go for the fresh ones
+        if (isStarted() && mFeed.revalidate(data)) {
+            forceLoad();
+        }
     }
 }
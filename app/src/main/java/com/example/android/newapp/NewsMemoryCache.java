@@ -0,0 +1,167 @@
+package com.example.android.newapp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed {@link News} of recent queries kept in memory, in front of the disk cache. A
+ * loader created again for the same query, e.g. after a rotation, gets its News back
+ * without reading or parsing the cache file. The least recently used queries are dropped
+ * when the estimated size of all kept News goes over the limit.
+ */
+public final class NewsMemoryCache {
+
+    /**
+     * News of one query and the time they were received.
+     */
+    static final class Entry {
+
+        private final List<News> mNews;
+        private final long mBytes;
+        private long mStoredAt;
+
+        Entry(List<News> news, long bytes, long storedAt) {
+            mNews = news;
+            mBytes = bytes;
+            mStoredAt = storedAt;
+        }
+
+        /**
+         * @return copy of the News list, which the caller is free to change
+         */
+        List<News> getNews() {
+            return new ArrayList<>(mNews);
+        }
+
+        long getStoredAt() {
+            return mStoredAt;
+        }
+    }
+
+    private final Map<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxBytes;
+    private long mBytes;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    /**
+     * @param maxBytes limit of the estimated size of all kept News
+     */
+    public NewsMemoryCache(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @return limit for the cache shared by the app, a small part of the heap
+     */
+    public static long defaultMaxBytes() {
+        return Runtime.getRuntime().maxMemory() / 16;
+    }
+
+    synchronized Entry get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return entry;
+    }
+
+    synchronized void put(String key, List<News> newsList, long storedAt) {
+        long bytes = estimateBytes(newsList);
+        remove(key);
+        if (bytes > mMaxBytes) {
+            // Would push everything else out and still not fit
+            return;
+        }
+        mEntries.put(key, new Entry(new ArrayList<>(newsList), bytes, storedAt));
+        mBytes += bytes;
+        trimToSize();
+    }
+
+    /**
+     * Restart the age of the entry, used when the server said the response has not changed.
+     */
+    synchronized void markFresh(String key, long storedAt) {
+        Entry entry = mEntries.get(key);
+        if (entry != null) {
+            entry.mStoredAt = storedAt;
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mBytes -= entry.mBytes;
+        }
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mBytes = 0;
+        mHits = 0;
+        mMisses = 0;
+        mEvictions = 0;
+    }
+
+    /**
+     * @return estimated size of all kept News in bytes
+     */
+    public synchronized long size() {
+        return mBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return mEntries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    private void trimToSize() {
+        Iterator<Entry> eldest = mEntries.values().iterator();
+        while (mBytes > mMaxBytes && eldest.hasNext()) {
+            mBytes -= eldest.next().mBytes;
+            eldest.remove();
+            mEvictions++;
+        }
+    }
+
+    /**
+     * Rough heap size of the News: their strings plus the object headers around them.
+     */
+    static long estimateBytes(List<News> newsList) {
+        long bytes = 16 + 4L * newsList.size();
+        for (News news : newsList) {
+            bytes += 64
+                    + estimateBytes(news.getSection())
+                    + estimateBytes(news.getTitle())
+                    + estimateBytes(news.getWebUrl())
+                    + estimateBytes(news.getDate())
+                    + estimateBytes(news.getAuthor())
+                    + estimateBytes(news.getPillarName())
+                    + estimateBytes(news.getThumbnailUrl())
+                    + estimateBytes(news.getDisplayDate());
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(String text) {
+        return text == null ? 0 : 40 + 2L * text.length();
+    }
+}
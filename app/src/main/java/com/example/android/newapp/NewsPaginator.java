@@ -0,0 +1,133 @@
+package com.example.android.newapp;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps track of the pages of the feed loaded so far and decides when the next one
+ * should be prefetched. Only one page request can be in flight at a time, so scrolling
+ * past the threshold again while a page is loading does not request it twice.
+ */
+public class NewsPaginator {
+
+    /** Value returned when no page should be requested */
+    public static final int NO_PAGE = -1;
+
+    private final int mPageSize;
+    private final int mPrefetchDistance;
+
+    /** Web urls of every News shown, used to drop items which moved to the next page */
+    private final Set<String> mWebUrls = new HashSet<>();
+
+    private int mLastLoadedPage;
+    private int mLoadingPage = NO_PAGE;
+    private boolean mEndReached;
+
+    /**
+     * @param pageSize number of News asked for in each page
+     * @param prefetchDistance how many rows before the end of the list the next page is requested
+     */
+    public NewsPaginator(int pageSize, int prefetchDistance) {
+        mPageSize = pageSize;
+        mPrefetchDistance = prefetchDistance;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Forget all pages, used when the first page is loaded again.
+     */
+    public void reset() {
+        mWebUrls.clear();
+        mLastLoadedPage = 0;
+        mLoadingPage = NO_PAGE;
+        mEndReached = false;
+    }
+
+    /**
+     * @param lastVisiblePosition position of the last row on screen
+     * @param itemCount number of rows in the list
+     * @return number of the page to request now, or {@link #NO_PAGE}
+     */
+    public int onScrolled(int lastVisiblePosition, int itemCount) {
+        if (mLoadingPage != NO_PAGE || mEndReached || mLastLoadedPage == 0) {
+            return NO_PAGE;
+        }
+        if (itemCount - 1 - lastVisiblePosition > mPrefetchDistance) {
+            return NO_PAGE;
+        }
+        mLoadingPage = mLastLoadedPage + 1;
+        return mLoadingPage;
+    }
+
+    /**
+     * @return page being loaded now, or {@link #NO_PAGE}
+     */
+    public int getLoadingPage() {
+        return mLoadingPage;
+    }
+
+    /**
+     * Record the loaded page.
+     * @param page number of the page, 1 for the first one
+     * @param newsList News of the page, null when the request failed
+     * @return News which are not in the list yet and should be appended
+     */
+    public List<News> onPageLoaded(int page, List<News> newsList) {
+        if (page == mLoadingPage) {
+            mLoadingPage = NO_PAGE;
+        }
+
+        List<News> appended = new ArrayList<>();
+        if (newsList == null) {
+            // Don't hammer a failing server on every scroll event, the next refresh starts over
+            mEndReached = true;
+            return appended;
+        }
+
+        mLastLoadedPage = Math.max(mLastLoadedPage, page);
+        if (newsList.size() < mPageSize) {
+            mEndReached = true;
+        }
+        for (News news : newsList) {
+            if (mWebUrls.add(news.getWebUrl())) {
+                appended.add(news);
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Record News put on top of the list by a refresh. The pages keep their numbers, the
+     * News they have in common with the shown ones are dropped when they are loaded.
+     * @param newsList refreshed first page, the shown News with the new ones on top
+     * @return News which are not in the list yet and should be put on top of it
+     */
+    public List<News> onPrepended(List<News> newsList) {
+        List<News> prepended = new ArrayList<>();
+        for (News news : newsList) {
+            if (mWebUrls.add(news.getWebUrl())) {
+                prepended.add(news);
+            }
+        }
+        return prepended;
+    }
+
+    /**
+     * @return number of the last page loaded, 0 when none was
+     */
+    public int getLastLoadedPage() {
+        return mLastLoadedPage;
+    }
+
+    /**
+     * @return true when the last page of the feed has been loaded
+     */
+    public boolean isEndReached() {
+        return mEndReached;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.DisplayMetrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * What a screen shows of every {@link News}, and so what its queries ask the Guardian
+ * API for. Section, title, url, date and pillar are part of every result, the author
+ * costs a contributor tag with the bio of every contributor and the thumbnail an extra
+ * field, so only screens which show them ask for them. The page size is the number of
+ * rows which fit on the screen, plus what the paginator needs to not ask for the next
+ * page straight away, and more or less than that with the {@link FetchStrategy} of the
+ * link.
+ */
+public final class NewsProjection {
+
+    /** Guardian limit of the page-size parameter */
+    static final int MAX_PAGE_SIZE = FetchStrategy.MAX_PAGE_SIZE;
+
+    /** Parts of a News a screen can show on top of the ones every result has */
+    public enum Field {
+        /** Needs the contributor tags */
+        AUTHOR,
+        /** Needs the thumbnail field */
+        THUMBNAIL
+    }
+
+    /** Rows of the feed list, see list_item.xml */
+    public static final NewsProjection FEED =
+            new NewsProjection(R.dimen.news_row_min_height, Field.AUTHOR, Field.THUMBNAIL);
+
+    /** Rows of the feed list on a slow link, titles only, see {@link FetchStrategy#SMALL} */
+    public static final NewsProjection FEED_LEAN = new NewsProjection(R.dimen.news_row_min_height);
+
+    private final int mRowHeightResource;
+    private final Set<Field> mFields;
+
+    /**
+     * @param rowHeightResource dimension of the shortest row of the screen
+     * @param fields shown on top of section, title, date and pillar
+     */
+    public NewsProjection(int rowHeightResource, Field... fields) {
+        mRowHeightResource = rowHeightResource;
+        Set<Field> set = EnumSet.noneOf(Field.class);
+        set.addAll(Arrays.asList(fields));
+        mFields = Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * @return projection of the feed rows with the strategy
+     */
+    public static NewsProjection feed(FetchStrategy strategy) {
+        return strategy.isLean() ? FEED_LEAN : FEED;
+    }
+
+    public boolean shows(Field field) {
+        return mFields.contains(field);
+    }
+
+    /**
+     * @return value of the show-tags parameter, or null when no tag is shown
+     */
+    public String getShowTags() {
+        return shows(Field.AUTHOR) ? "contributor" : null;
+    }
+
+    /**
+     * @return value of the show-fields parameter, or null when only default fields are shown
+     */
+    public String getShowFields() {
+        return shows(Field.THUMBNAIL) ? "thumbnail" : null;
+    }
+
+    /**
+     * Add the show-tags and show-fields parameters the screen needs, nothing else.
+     */
+    void appendTo(Uri.Builder uriBuilder) {
+        String tags = getShowTags();
+        if (tags != null) {
+            uriBuilder.appendQueryParameter("show-tags", tags);
+        }
+        String fields = getShowFields();
+        if (fields != null) {
+            uriBuilder.appendQueryParameter("show-fields", fields);
+        }
+    }
+
+    /**
+     * @return number of News in a page of the screen on this device
+     */
+    public int getPageSize(Context context) {
+        return newPlanner(context).getPageSize(FetchStrategy.DEFAULT);
+    }
+
+    /**
+     * @return planner which sizes the pages of the strategies for the screen on this device
+     */
+    public FetchPlanner newPlanner(Context context) {
+        // The longer side, so rotating doesn't change the queries and reload the feed
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int maxPageSize = context.getResources().getInteger(R.integer.news_page_size);
+        return new FetchPlanner(visibleRows(Math.max(metrics.heightPixels, metrics.widthPixels),
+                context.getResources().getDimensionPixelSize(mRowHeightResource), maxPageSize),
+                context.getResources().getInteger(R.integer.news_prefetch_distance), maxPageSize);
+    }
+
+    /**
+     * The first page fills the screen and the paginator asks for the next one once the
+     * list is scrolled to prefetchDistance rows from its end, so a page needs one row
+     * more than those two together, or the second page is requested with the first.
+     * @param maxPageSize most News in a page, whatever the screen
+     */
+    static int pageSize(int screenHeight, int rowHeight, int prefetchDistance, int maxPageSize) {
+        return FetchStrategy.DEFAULT.pageSize(visibleRows(screenHeight, rowHeight, maxPageSize),
+                prefetchDistance, maxPageSize);
+    }
+
+    private static int visibleRows(int screenHeight, int rowHeight, int maxPageSize) {
+        return rowHeight > 0 ? (screenHeight + rowHeight - 1) / rowHeight : maxPageSize;
+    }
+}
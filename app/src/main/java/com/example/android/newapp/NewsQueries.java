@@ -0,0 +1,108 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds the Guardian query URLs of the feed picked in the settings. The activity and the
+ * background sync use the same URLs, so what the sync stores is what the activity reads.
+ * What every result carries is decided by the {@link NewsProjection} of the screen.
+ */
+public final class NewsQueries {
+
+    private static final String GUARDIAN_REQUEST_URL = "https://content.guardianapis.com/search?";
+    private static final String API_KEY = "198bd83e-4184-4fe4-a532-6754428428a7";
+    //private static final String USGS_REQUEST_URL = "https://content.guardianapis.com/search?order-by=newest&show-tags=contributor&q=poland&api-key=198bd83e-4184-4fe4-a532-6754428428a7";
+    // private static final String USGS_REQUEST_URL = "https://content.guardianapis.com/search?show-tags=contributor&q=poland&api-key=198bd83e-4184-4fe4-a532-6754428428a7";
+
+    private NewsQueries() {}
+
+    /**
+     * @return one query URL for the category, or one per section of the combined feed
+     *         when at least two sections are picked
+     */
+    public static List<String> fromPreferences(Context context, NewsProjection projection, int page, int pageSize) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        // getString retrieves a String value from the preferences. The second parameter is the default value for this preference.
+        String keyword = sharedPrefs.getString(context.getString(R.string.settings_keyword_key),
+                context.getString(R.string.settings_keyword_default));
+
+        String section = sharedPrefs.getString(context.getString(R.string.settings_category_key),
+                context.getString(R.string.settings_category_default));
+
+        // Sections picked for the combined feed, when there are at least two of them
+        Set<String> sections = sharedPrefs.getStringSet(context.getString(R.string.settings_sections_key),
+                Collections.<String>emptySet());
+
+        List<String> urls = new ArrayList<>();
+        if (sections.size() > 1) {
+            // Sorted, so the same sections always give the same requests
+            for (String combinedSection : new TreeSet<>(sections)) {
+                urls.add(build(combinedSection, keyword, projection, page, pageSize));
+            }
+        } else {
+            urls.add(build(section, keyword, projection, page, pageSize));
+        }
+        return urls;
+    }
+
+    /**
+     * @return Guardian query URL of the first page of a search in every section
+     */
+    public static String search(String keyword, NewsProjection projection, int pageSize) {
+        return build(null, keyword, projection, 1, pageSize);
+    }
+
+    /**
+     * @return Guardian query URL for a page of the section, null for every section
+     */
+    public static String build(String section, String keyword, NewsProjection projection, int page, int pageSize) {
+
+        // parse breaks apart the URI string that's passed into its parameter
+        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+
+        // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+
+        // Append query parameter and its value. For example, the `order-by=newest`
+        // No section means every section, e.g. for a search
+        if (section != null) {
+            uriBuilder.appendQueryParameter("section", section);
+        }
+        // No keyword means every article of the section, an empty q is left out
+        if (keyword != null && !keyword.isEmpty()) {
+            uriBuilder.appendQueryParameter("q", keyword);
+        }
+        uriBuilder.appendQueryParameter("order-by", "newest");
+        projection.appendTo(uriBuilder);
+        uriBuilder.appendQueryParameter("page", String.valueOf(page));
+        uriBuilder.appendQueryParameter("page-size", String.valueOf(pageSize));
+        uriBuilder.appendQueryParameter("api-key", API_KEY);
+
+        return uriBuilder.toString();
+    }
+
+    /**
+     * @param contentIds Guardian ids of the articles, see {@link ArticlePrefetcher#contentId(String)}
+     * @return Guardian query URL of the text of the articles, one result each
+     */
+    public static String bodies(List<String> contentIds) {
+        Uri.Builder uriBuilder = Uri.parse(GUARDIAN_REQUEST_URL).buildUpon();
+        uriBuilder.appendQueryParameter("ids", TextUtils.join(",", contentIds));
+        // Plain text, the reader lays it out itself
+        uriBuilder.appendQueryParameter("show-fields", "bodyText");
+        uriBuilder.appendQueryParameter("page-size", String.valueOf(contentIds.size()));
+        uriBuilder.appendQueryParameter("api-key", API_KEY);
+        return uriBuilder.toString();
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.android.newapp.NewsContract.NewsEntry;
+import com.example.android.newapp.NewsContract.NewsSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local copy of every article loaded from the Guardian. It lets a new keyword be answered
+ * at once from the full-text index of titles and authors, before the network has replied,
+ * and keeps the feed readable offline. The sync job prunes it, see {@link #prune(long, long, int)}.
+ */
+public class NewsStore implements FeedLoad.Store {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = NewsStore.class.getName();
+
+    /** Most articles returned by one local query */
+    public static final int DEFAULT_QUERY_LIMIT = 50;
+
+    /** Most articles kept, the oldest go first. A few MB with the index. */
+    public static final int MAX_ARTICLES = 2000;
+
+    /** Articles published longer ago than this are dropped, they are hardly searched for */
+    public static final long MAX_AGE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    private static final String[] PROJECTION = {
+            NewsEntry.COLUMN_SECTION_NAME,
+            NewsEntry.COLUMN_TITLE,
+            NewsEntry.COLUMN_WEB_URL,
+            NewsEntry.COLUMN_DATE,
+            NewsEntry.COLUMN_AUTHOR,
+            NewsEntry.COLUMN_PILLAR_NAME,
+            NewsEntry.COLUMN_THUMBNAIL
+    };
+
+    private static NewsStore sInstance;
+
+    private final NewsDbHelper mDbHelper;
+
+    public NewsStore(NewsDbHelper dbHelper) {
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * @return store shared by the whole app
+     */
+    public static synchronized NewsStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NewsStore(new NewsDbHelper(context.getApplicationContext()));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Insert the articles, or update the ones already stored, in one transaction.
+     * @param querySection section of the query which returned them, may be null
+     */
+    public void save(String querySection, List<News> newsList) {
+        if (newsList == null || newsList.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+
+        // Update first, so the row keeps its id and the full-text index is touched only for it
+        SQLiteStatement update = db.compileStatement("UPDATE " + NewsEntry.TABLE_NAME + " SET "
+                + NewsEntry.COLUMN_TITLE + " = ?, "
+                + NewsEntry.COLUMN_SECTION_NAME + " = ?, "
+                + NewsEntry.COLUMN_QUERY_SECTION + " = ?, "
+                + NewsEntry.COLUMN_DATE + " = ?, "
+                + NewsEntry.COLUMN_TIME + " = ?, "
+                + NewsEntry.COLUMN_AUTHOR + " = ?, "
+                + NewsEntry.COLUMN_PILLAR_NAME + " = ?, "
+                + NewsEntry.COLUMN_THUMBNAIL + " = ? WHERE "
+                + NewsEntry.COLUMN_WEB_URL + " = ?");
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + NewsEntry.TABLE_NAME + " ("
+                + NewsEntry.COLUMN_TITLE + ", "
+                + NewsEntry.COLUMN_SECTION_NAME + ", "
+                + NewsEntry.COLUMN_QUERY_SECTION + ", "
+                + NewsEntry.COLUMN_DATE + ", "
+                + NewsEntry.COLUMN_TIME + ", "
+                + NewsEntry.COLUMN_AUTHOR + ", "
+                + NewsEntry.COLUMN_PILLAR_NAME + ", "
+                + NewsEntry.COLUMN_THUMBNAIL + ", "
+                + NewsEntry.COLUMN_WEB_URL + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+        db.beginTransaction();
+        try {
+            for (News news : newsList) {
+                bind(update, querySection, news);
+                if (update.executeUpdateDelete() == 0) {
+                    bind(insert, querySection, news);
+                    insert.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            insert.close();
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, String querySection, News news) {
+        statement.clearBindings();
+        statement.bindString(1, news.getTitle());
+        bindNullable(statement, 2, news.getSection());
+        bindNullable(statement, 3, querySection);
+        bindNullable(statement, 4, news.getDate());
+        statement.bindLong(5, news.getTimeInMillis());
+        bindNullable(statement, 6, news.getAuthor());
+        bindNullable(statement, 7, news.getPillarName());
+        bindNullable(statement, 8, news.getThumbnailUrl());
+        statement.bindString(9, news.getWebUrl());
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Keep the News a Guardian query URL returned, see {@link #save(String, List)}.
+     */
+    @Override
+    public void saveUrl(String url, List<News> newsList) {
+        save(Uri.parse(url).getQueryParameter("section"), newsList);
+    }
+
+    /**
+     * Find at most {@link #DEFAULT_QUERY_LIMIT} stored articles matching a Guardian query URL.
+     */
+    @Override
+    public List<News> queryUrl(String url) {
+        return queryUrl(url, DEFAULT_QUERY_LIMIT);
+    }
+
+    /**
+     * Find the stored articles matching a Guardian query URL, see {@link #query(String, String, int)}.
+     */
+    public List<News> queryUrl(String url, int limit) {
+        Uri uri = Uri.parse(url);
+        return query(uri.getQueryParameter("section"), uri.getQueryParameter("q"), limit);
+    }
+
+    /**
+     * Find the stored articles, newest first.
+     * @param querySection section to look in, null or empty for all of them
+     * @param keyword words which all have to start a word of the title or of an author,
+     *                null or empty for every article
+     * @param limit most articles returned
+     */
+    public List<News> query(String querySection, String keyword, int limit) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        String match = toMatchQuery(keyword);
+        boolean bySection = !TextUtils.isEmpty(querySection);
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < PROJECTION.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("n.").append(PROJECTION[i]);
+        }
+        sql.append(" FROM ").append(NewsEntry.TABLE_NAME).append(" n");
+
+        List<String> args = new ArrayList<>();
+        List<String> where = new ArrayList<>();
+        if (match != null) {
+            // Look the keyword up in the index and only then fetch those rows
+            where.add("n." + NewsEntry._ID + " IN (SELECT " + NewsSearch.COLUMN_DOC_ID
+                    + " FROM " + NewsSearch.TABLE_NAME + " WHERE " + NewsSearch.TABLE_NAME + " MATCH ?)");
+            args.add(match);
+        }
+        if (bySection) {
+            where.add("n." + NewsEntry.COLUMN_QUERY_SECTION + " = ?");
+            args.add(querySection);
+        }
+        for (int i = 0; i < where.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(where.get(i));
+        }
+        sql.append(" ORDER BY n.").append(NewsEntry.COLUMN_TIME).append(" DESC LIMIT ").append(limit);
+
+        List<News> newsList = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(sql.toString(), args.toArray(new String[args.size()]));
+            while (cursor.moveToNext()) {
+                newsList.add(new News(cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4), cursor.getString(5), cursor.getString(6)));
+            }
+        } catch (RuntimeException e) {
+            // A malformed match expression should not take the whole load down
+            Log.e(LOG_TAG, "Problem querying the local store", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return newsList;
+    }
+
+    /**
+     * @return number of stored articles
+     */
+    public long size() {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        SQLiteStatement count = db.compileStatement("SELECT COUNT(*) FROM " + NewsEntry.TABLE_NAME);
+        try {
+            return count.simpleQueryForLong();
+        } finally {
+            count.close();
+        }
+    }
+
+    /**
+     * Drop the articles published before the cutoff, and the oldest ones beyond the most
+     * kept. The full-text index follows through its trigger.
+     * @param nowMillis current time
+     * @param maxAgeMillis age of the oldest article kept
+     * @param maxArticles most articles kept
+     * @return number of articles dropped
+     */
+    public int prune(long nowMillis, long maxAgeMillis, int maxArticles) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            int deleted = db.delete(NewsEntry.TABLE_NAME, NewsEntry.COLUMN_TIME + " < ?",
+                    new String[]{String.valueOf(nowMillis - maxAgeMillis)});
+            deleted += db.delete(NewsEntry.TABLE_NAME, NewsEntry._ID + " IN (SELECT " + NewsEntry._ID
+                    + " FROM " + NewsEntry.TABLE_NAME + " ORDER BY " + NewsEntry.COLUMN_TIME + " DESC LIMIT -1 OFFSET "
+                    + maxArticles + ")", null);
+            db.setTransactionSuccessful();
+            return deleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Remove every stored article.
+     */
+    public void clear() {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.delete(NewsEntry.TABLE_NAME, null, null);
+    }
+
+    /**
+     * Turn the words typed by the user into an FTS prefix query, e.g. "brexit vote" into
+     * "brexit* vote*". Everything but letters and digits is dropped, so user input can't
+     * form FTS operators.
+     * @return match expression, or null when there is no word to look for
+     */
+    static String toMatchQuery(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= keyword.length(); i++) {
+            char c = i < keyword.length() ? keyword.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+                continue;
+            }
+            // FTS operators are upper case, so words like "or" stay plain terms
+            if (word.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(word.toString().toLowerCase()).append('*');
+                word.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+}
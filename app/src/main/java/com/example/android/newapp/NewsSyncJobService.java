@@ -0,0 +1,104 @@
+package com.example.android.newapp;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Runs the periodic sync of the feed, see {@link NewsSyncScheduler}.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class NewsSyncJobService extends JobService {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = NewsSyncJobService.class.getName();
+
+    /** Preference keys of the last sync, kept for the logs and for checking the job runs */
+    static final String KEY_LAST_SYNC_AT = "last_sync_at";
+    static final String KEY_LAST_SYNC_MILLIS = "last_sync_millis";
+
+    private SyncTask mTask;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        // The job is started on the main thread, the requests go out on the shared executor
+        mTask = new SyncTask(params);
+        mTask.execute();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints are gone, e.g. the device left wifi. Try again when they are back.
+        if (mTask != null) {
+            mTask.stop();
+            mTask = null;
+        }
+        return true;
+    }
+
+    private class SyncTask extends AsyncTask<Void, Void, NewsSyncer.Result> {
+
+        private final JobParameters mParams;
+
+        /** Aborts the requests of the sync, interrupting the task only stops its wait */
+        private final FetchCancellation mCancellation = new FetchCancellation();
+
+        SyncTask(JobParameters params) {
+            mParams = params;
+        }
+
+        void stop() {
+            mCancellation.cancel();
+            cancel(true);
+        }
+
+        @Override
+        protected NewsSyncer.Result doInBackground(Void... voids) {
+            // The feed screen reads what is synced here, so it is asked for the same way,
+            // with the strategy it chose last
+            FetchStrategy strategy = AdaptiveFetch.getLast(NewsSyncJobService.this);
+            List<String> urls = NewsQueries.fromPreferences(NewsSyncJobService.this, NewsProjection.feed(strategy), 1,
+                    NewsProjection.FEED.newPlanner(NewsSyncJobService.this).getPageSize(strategy));
+
+            final NewsStore store = NewsStore.getInstance(NewsSyncJobService.this);
+            NewsSyncer syncer = new NewsSyncer(NewsCache.getInstance(NewsSyncJobService.this),
+                    new NewsSyncer.Sink() {
+                        @Override
+                        public void onSynced(String url, List<News> newsList) {
+                            store.save(Uri.parse(url).getQueryParameter("section"), newsList);
+                        }
+                    }, Clock.SYSTEM, SectionFanOut.getSharedExecutor());
+            try {
+                NewsSyncer.Result result = syncer.sync(urls, mCancellation);
+                // Only the newest articles are worth keeping, and the store would grow forever
+                store.prune(System.currentTimeMillis(), NewsStore.MAX_AGE_MILLIS, NewsStore.MAX_ARTICLES);
+                return result;
+            } catch (InterruptedException e) {
+                Log.i(LOG_TAG, "Sync stopped");
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(NewsSyncer.Result result) {
+            mTask = null;
+            if (result == null) {
+                jobFinished(mParams, true);
+                return;
+            }
+            PreferenceManager.getDefaultSharedPreferences(NewsSyncJobService.this).edit()
+                    .putLong(KEY_LAST_SYNC_AT, result.getStartedAt())
+                    .putLong(KEY_LAST_SYNC_MILLIS, result.getDurationMillis())
+                    .apply();
+            jobFinished(mParams, result.needsRetry());
+        }
+    }
+}
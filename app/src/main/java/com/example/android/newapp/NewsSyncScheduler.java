@@ -0,0 +1,91 @@
+package com.example.android.newapp;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+/**
+ * Schedules the periodic background sync of the feed with the constraints picked in the
+ * settings. JobScheduler needs API 21, older devices simply load the feed when the app opens.
+ */
+public final class NewsSyncScheduler {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = NewsSyncScheduler.class.getName();
+
+    /** Id of the sync job, scheduling it again replaces the pending one */
+    static final int SYNC_JOB_ID = 1;
+
+    /** How often the feed is synced */
+    public static final long SYNC_INTERVAL_MILLIS = 60 * 60 * 1000;
+
+    private NewsSyncScheduler() {}
+
+    /**
+     * Schedule the sync, or reschedule it when the settings changed. A job already pending
+     * with the current settings is left alone, scheduling it again would start its period
+     * over and a sync would never run while the app is opened more often than that.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        boolean enabled = sharedPrefs.getBoolean(context.getString(R.string.settings_sync_key),
+                context.getResources().getBoolean(R.bool.settings_sync_default));
+        boolean unmeteredOnly = sharedPrefs.getBoolean(context.getString(R.string.settings_sync_unmetered_key),
+                context.getResources().getBoolean(R.bool.settings_sync_unmetered_default));
+        boolean chargingOnly = sharedPrefs.getBoolean(context.getString(R.string.settings_sync_charging_key),
+                context.getResources().getBoolean(R.bool.settings_sync_charging_default));
+
+        if (enabled) {
+            scheduleJob(context, unmeteredOnly, chargingOnly);
+        } else {
+            cancelJob(context);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJob(Context context, boolean unmeteredOnly, boolean chargingOnly) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        JobInfo job = new JobInfo.Builder(SYNC_JOB_ID, new ComponentName(context, NewsSyncJobService.class))
+                .setPeriodic(SYNC_INTERVAL_MILLIS)
+                .setRequiredNetworkType(unmeteredOnly ? JobInfo.NETWORK_TYPE_UNMETERED : JobInfo.NETWORK_TYPE_ANY)
+                .setRequiresCharging(chargingOnly)
+                .setPersisted(true)
+                .build();
+        if (isPending(scheduler, job)) {
+            return;
+        }
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(LOG_TAG, "Can't schedule the feed sync");
+        }
+    }
+
+    // True when the job is scheduled already the same way. getPendingJob needs API 24.
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static boolean isPending(JobScheduler scheduler, JobInfo job) {
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == job.getId()) {
+                return pending.getService().equals(job.getService())
+                        && pending.getIntervalMillis() == job.getIntervalMillis()
+                        && pending.getNetworkType() == job.getNetworkType()
+                        && pending.isRequireCharging() == job.isRequireCharging()
+                        && pending.isPersisted() == job.isPersisted();
+            }
+        }
+        return false;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void cancelJob(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        scheduler.cancel(SYNC_JOB_ID);
+    }
+}
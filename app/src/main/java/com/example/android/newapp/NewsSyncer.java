@@ -0,0 +1,160 @@
+package com.example.android.newapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pre-warms the cache with the feed picked in the settings, so the app opens on fresh
+ * News without waiting for the network. All queries of one sync go out together as one
+ * batch on the shared fan-out executor, and queries whose cache entry is still fresh are
+ * skipped.
+ */
+public class NewsSyncer {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = NewsSyncer.class.getName();
+
+    /**
+     * Outcome of one sync.
+     */
+    public static final class Result {
+
+        private final long mStartedAt;
+        private final long mDurationMillis;
+        private final int mFetched;
+        private final int mSkipped;
+        private final int mFailed;
+
+        Result(long startedAt, long durationMillis, int fetched, int skipped, int failed) {
+            mStartedAt = startedAt;
+            mDurationMillis = durationMillis;
+            mFetched = fetched;
+            mSkipped = skipped;
+            mFailed = failed;
+        }
+
+        public long getStartedAt() {
+            return mStartedAt;
+        }
+
+        public long getDurationMillis() {
+            return mDurationMillis;
+        }
+
+        /** @return number of queries loaded from the network */
+        public int getFetched() {
+            return mFetched;
+        }
+
+        /** @return number of queries with a fresh cache entry, which were not requested */
+        public int getSkipped() {
+            return mSkipped;
+        }
+
+        /** @return number of queries which could not be loaded */
+        public int getFailed() {
+            return mFailed;
+        }
+
+        /**
+         * @return true when the sync should be tried again later
+         */
+        public boolean needsRetry() {
+            return mFailed > 0 && mFetched == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "fetched " + mFetched + ", skipped " + mSkipped + ", failed " + mFailed
+                    + " in " + mDurationMillis + " ms";
+        }
+    }
+
+    /**
+     * Saves the News of a synced query somewhere else than the cache, e.g. the local store.
+     */
+    public interface Sink {
+        void onSynced(String url, List<News> newsList);
+    }
+
+    private final NewsCache mCache;
+    private final Sink mSink;
+    private final Clock mClock;
+    private final Executor mExecutor;
+
+    /**
+     * @param cache cache the queries are written into
+     * @param sink receives the News of every fetched query, may be null
+     * @param executor runs the requests of a batch in parallel
+     */
+    public NewsSyncer(NewsCache cache, Sink sink, Clock clock, Executor executor) {
+        mCache = cache;
+        mSink = sink;
+        mClock = clock;
+        mExecutor = executor;
+    }
+
+    /**
+     * Bring every query up to date and block until they are all done.
+     */
+    public Result sync(List<String> urls) throws InterruptedException {
+        return sync(urls, null);
+    }
+
+    /**
+     * Bring every query up to date, the way {@link #sync(List)} does, in a sync which can
+     * be given up while it runs.
+     * @param cancellation aborts the requests in flight and the ones not sent yet, may be null
+     * @throws InterruptedException when the caller was interrupted or the sync cancelled
+     */
+    public Result sync(List<String> urls, final FetchCancellation cancellation) throws InterruptedException {
+        long startedAt = mClock.currentTimeMillis();
+
+        // Only what went stale goes out, everything else is already good to show
+        List<String> stale = new ArrayList<>();
+        for (String url : urls) {
+            NewsCache.Entry cached = mCache.get(url);
+            if (cached == null || !cached.isFresh()) {
+                stale.add(url);
+            }
+        }
+
+        final AtomicInteger fetched = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        if (!stale.isEmpty()) {
+            SectionFanOut fanOut = new SectionFanOut(mExecutor, new SectionFanOut.Fetcher() {
+                @Override
+                public List<News> fetch(String url) {
+                    // Still queued when the sync was given up
+                    if (cancellation != null && cancellation.isCancelled()) {
+                        return null;
+                    }
+                    List<News> newsList = QueryUtils.fetchEarthquakeData(url, mCache, QueryUtils.LOAD_DEADLINE_MILLIS,
+                            cancellation);
+                    if (newsList == null) {
+                        failed.incrementAndGet();
+                        return null;
+                    }
+                    fetched.incrementAndGet();
+                    if (mSink != null) {
+                        mSink.onSynced(url, newsList);
+                    }
+                    return newsList;
+                }
+            });
+            fanOut.fetch(stale, null);
+        }
+        if (cancellation != null && cancellation.isCancelled()) {
+            throw new InterruptedException("Sync cancelled");
+        }
+
+        Result result = new Result(startedAt, mClock.currentTimeMillis() - startedAt,
+                fetched.get(), urls.size() - stale.size(), failed.get());
+        Log.i(LOG_TAG, "Sync " + result);
+        return result;
+    }
+}
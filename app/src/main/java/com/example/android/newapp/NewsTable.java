@@ -0,0 +1,419 @@
+package com.example.android.newapp;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The feed kept column by column instead of as one {@link News} object per row. Section,
+ * pillar, author and shown date are the same few values on many rows, every row only
+ * holds the index of its value in a dictionary of them. The web url is split at its last
+ * slash, the part before it, e.g. "https://www.theguardian.com/politics/2019/jan/29/",
+ * is shared the same way. Dates are one long per row, their text is only kept for the
+ * odd date which isn't the formatted time.
+ *
+ * A table never changes, appending or prepending News gives a new table which starts
+ * with the dictionaries of the old one. Rows are read one column at a time by position,
+ * {@link #get(int)} builds a News only when one has to be handed on, e.g. on a click.
+ */
+public final class NewsTable {
+
+    /** Index of a missing value */
+    private static final int NONE = -1;
+
+    public static final NewsTable EMPTY = new Builder(0).build();
+
+    private final int mSize;
+
+    // Dictionaries, the values the columns below point to
+    private final String[] mSectionValues;
+    private final String[] mPillarValues;
+    private final String[] mAuthorValues;
+    private final String[] mDisplayDateValues;
+    private final String[] mUrlPrefixValues;
+
+    // Columns, one entry per row
+    private final int[] mSections;
+    private final int[] mPillars;
+    private final int[] mAuthors;
+    private final int[] mDisplayDates;
+    private final int[] mWebUrlPrefixes;
+    private final String[] mWebUrlPaths;
+    private final String[] mTitles;
+    // Kept whole, the list asks for it on every bind
+    private final String[] mThumbnailUrls;
+    private final long[] mTimes;
+    private final int[] mSectionColors;
+    // Null when every date is the formatted time, else the text of the rows whose isn't
+    private final String[] mDateTexts;
+
+    private NewsTable(Builder builder) {
+        int size = builder.mSize;
+        mSize = size;
+        mSectionValues = builder.mSectionValues.toArray();
+        mPillarValues = builder.mPillarValues.toArray();
+        mAuthorValues = builder.mAuthorValues.toArray();
+        mDisplayDateValues = builder.mDisplayDateValues.toArray();
+        mUrlPrefixValues = builder.mUrlPrefixValues.toArray();
+        mSections = trim(builder.mSections, size);
+        mPillars = trim(builder.mPillars, size);
+        mAuthors = trim(builder.mAuthors, size);
+        mDisplayDates = trim(builder.mDisplayDates, size);
+        mWebUrlPrefixes = trim(builder.mWebUrlPrefixes, size);
+        mWebUrlPaths = trim(builder.mWebUrlPaths, size);
+        mTitles = trim(builder.mTitles, size);
+        mThumbnailUrls = trim(builder.mThumbnailUrls, size);
+        mTimes = trim(builder.mTimes, size);
+        mSectionColors = trim(builder.mSectionColors, size);
+        mDateTexts = builder.mHasDateTexts ? trim(builder.mDateTexts, size) : null;
+    }
+
+    /**
+     * @return table of the News, in their order
+     */
+    public static NewsTable of(List<News> newsList) {
+        if (newsList == null || newsList.isEmpty()) {
+            return EMPTY;
+        }
+        Builder builder = new Builder(newsList.size());
+        builder.addAll(newsList);
+        return builder.build();
+    }
+
+    /**
+     * @return new table with the News after the rows of this one
+     */
+    public NewsTable append(List<News> newsList) {
+        if (newsList.isEmpty()) {
+            return this;
+        }
+        Builder builder = new Builder(this, mSize + newsList.size());
+        builder.addRows(this);
+        builder.addAll(newsList);
+        return builder.build();
+    }
+
+    /**
+     * @return new table with the News before the rows of this one
+     */
+    public NewsTable prepend(List<News> newsList) {
+        if (newsList.isEmpty()) {
+            return this;
+        }
+        Builder builder = new Builder(this, mSize + newsList.size());
+        builder.addAll(newsList);
+        builder.addRows(this);
+        return builder.build();
+    }
+
+    /**
+     * Same as {@link #append(List)}, leaving out the News whose web url is in the table
+     * already or earlier in the list, the way {@link NewsPaginator} does.
+     */
+    public NewsTable appendMissing(List<News> newsList) {
+        return append(missing(newsList));
+    }
+
+    /**
+     * Same as {@link #prepend(List)}, leaving out the News whose web url is in the table
+     * already or earlier in the list.
+     */
+    public NewsTable prependMissing(List<News> newsList) {
+        return prepend(missing(newsList));
+    }
+
+    // News of the list whose web url isn't in the table yet, every url once
+    private List<News> missing(List<News> newsList) {
+        Set<String> webUrls = new HashSet<>(mSize * 2);
+        for (int row = 0; row < mSize; row++) {
+            webUrls.add(getWebUrl(row));
+        }
+        List<News> missing = new ArrayList<>();
+        for (News news : newsList) {
+            if (webUrls.add(news.getWebUrl())) {
+                missing.add(news);
+            }
+        }
+        return missing;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public String getSection(int row) {
+        return value(mSectionValues, mSections[row]);
+    }
+
+    public String getTitle(int row) {
+        return mTitles[row];
+    }
+
+    /**
+     * @return web url of the row, put back together so it is a new String every time,
+     *         null when the News had none
+     */
+    public String getWebUrl(int row) {
+        String path = mWebUrlPaths[row];
+        int prefix = mWebUrlPrefixes[row];
+        return prefix == NONE ? path : mUrlPrefixValues[prefix].concat(path);
+    }
+
+    /**
+     * @return true when the row and the row of the other table point to the same
+     *         article, without putting their web urls back together
+     */
+    public boolean hasSameWebUrl(int row, NewsTable other, int otherRow) {
+        return equal(mWebUrlPaths[row], other.mWebUrlPaths[otherRow])
+                && equal(value(mUrlPrefixValues, mWebUrlPrefixes[row]),
+                value(other.mUrlPrefixValues, other.mWebUrlPrefixes[otherRow]));
+    }
+
+    /**
+     * @return true when everything the row shows is the same as in the row of the other table
+     */
+    public boolean hasSameContents(int row, NewsTable other, int otherRow) {
+        return mTimes[row] == other.mTimes[otherRow]
+                && equal(mTitles[row], other.mTitles[otherRow])
+                && equal(getSection(row), other.getSection(otherRow))
+                && equal(getAuthor(row), other.getAuthor(otherRow))
+                && equal(getPillarName(row), other.getPillarName(otherRow))
+                && equal(mThumbnailUrls[row], other.mThumbnailUrls[otherRow])
+                && equal(dateText(row), other.dateText(otherRow));
+    }
+
+    /**
+     * @return date of publication as received, formatted from the time when it is that,
+     *         null when the News had none
+     */
+    public String getDate(int row) {
+        String date = dateText(row);
+        if (date != null || mTimes[row] == NewsDates.UNKNOWN) {
+            return date;
+        }
+        return NewsDates.format(mTimes[row]);
+    }
+
+    public String getAuthor(int row) {
+        return value(mAuthorValues, mAuthors[row]);
+    }
+
+    public String getPillarName(int row) {
+        return value(mPillarValues, mPillars[row]);
+    }
+
+    public String getThumbnailUrl(int row) {
+        return mThumbnailUrls[row];
+    }
+
+    public long getTimeInMillis(int row) {
+        return mTimes[row];
+    }
+
+    public String getDisplayDate(int row) {
+        return value(mDisplayDateValues, mDisplayDates[row]);
+    }
+
+    public int getSectionColor(int row) {
+        return mSectionColors[row];
+    }
+
+    /**
+     * @return News of the row, a new object every time
+     */
+    public News get(int row) {
+        return new News(getSection(row), mTitles[row], getWebUrl(row), getDate(row), getAuthor(row),
+                getPillarName(row), mThumbnailUrls[row], mTimes[row], mSectionColors[row]);
+    }
+
+    /**
+     * @return read-only list of the rows, which builds each News when it is asked for
+     */
+    public List<News> asList() {
+        return new AbstractList<News>() {
+            @Override
+            public News get(int index) {
+                return NewsTable.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return mSize;
+            }
+        };
+    }
+
+    // The builder arrays are as long as the table when it knew its size up front
+    private static int[] trim(int[] column, int size) {
+        return column.length == size ? column : Arrays.copyOf(column, size);
+    }
+
+    private static long[] trim(long[] column, int size) {
+        return column.length == size ? column : Arrays.copyOf(column, size);
+    }
+
+    private static String[] trim(String[] column, int size) {
+        return column.length == size ? column : Arrays.copyOf(column, size);
+    }
+
+    // Date text kept for the row, null when it is the formatted time
+    private String dateText(int row) {
+        return mDateTexts != null ? mDateTexts[row] : null;
+    }
+
+    private static String value(String[] values, int index) {
+        return index == NONE ? null : values[index];
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Values of a column and their indexes while the table is being built.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> mIndexes = new HashMap<>();
+        private String[] mValues;
+
+        // Starts with the values of the old table, so its indexes stay valid
+        Dictionary(String[] values) {
+            mValues = values.clone();
+            for (int i = 0; i < values.length; i++) {
+                mIndexes.put(values[i], i);
+            }
+        }
+
+        int index(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer index = mIndexes.get(value);
+            if (index == null) {
+                index = mIndexes.size();
+                if (index == mValues.length) {
+                    mValues = Arrays.copyOf(mValues, Math.max(8, index * 2));
+                }
+                mValues[index] = value;
+                mIndexes.put(value, index);
+            }
+            return index;
+        }
+
+        String[] toArray() {
+            return Arrays.copyOf(mValues, mIndexes.size());
+        }
+    }
+
+    private static final class Builder {
+
+        private final Dictionary mSectionValues;
+        private final Dictionary mPillarValues;
+        private final Dictionary mAuthorValues;
+        private final Dictionary mDisplayDateValues;
+        private final Dictionary mUrlPrefixValues;
+
+        private int mSize;
+        private final int[] mSections;
+        private final int[] mPillars;
+        private final int[] mAuthors;
+        private final int[] mDisplayDates;
+        private final int[] mWebUrlPrefixes;
+        private final String[] mWebUrlPaths;
+        private final String[] mTitles;
+        private final String[] mThumbnailUrls;
+        private final long[] mTimes;
+        private final int[] mSectionColors;
+        private final String[] mDateTexts;
+        private boolean mHasDateTexts;
+
+        Builder(int capacity) {
+            this(null, capacity);
+        }
+
+        /**
+         * @param base table whose dictionaries are taken over, may be null
+         */
+        Builder(NewsTable base, int capacity) {
+            String[] none = new String[0];
+            mSectionValues = new Dictionary(base != null ? base.mSectionValues : none);
+            mPillarValues = new Dictionary(base != null ? base.mPillarValues : none);
+            mAuthorValues = new Dictionary(base != null ? base.mAuthorValues : none);
+            mDisplayDateValues = new Dictionary(base != null ? base.mDisplayDateValues : none);
+            mUrlPrefixValues = new Dictionary(base != null ? base.mUrlPrefixValues : none);
+            mSections = new int[capacity];
+            mPillars = new int[capacity];
+            mAuthors = new int[capacity];
+            mDisplayDates = new int[capacity];
+            mWebUrlPrefixes = new int[capacity];
+            mWebUrlPaths = new String[capacity];
+            mTitles = new String[capacity];
+            mThumbnailUrls = new String[capacity];
+            mTimes = new long[capacity];
+            mSectionColors = new int[capacity];
+            mDateTexts = new String[capacity];
+        }
+
+        void addAll(List<News> newsList) {
+            for (News news : newsList) {
+                add(news);
+            }
+        }
+
+        void add(News news) {
+            int row = mSize++;
+            mSections[row] = mSectionValues.index(news.getSection());
+            mPillars[row] = mPillarValues.index(news.getPillarName());
+            mAuthors[row] = mAuthorValues.index(news.getAuthor());
+            mDisplayDates[row] = mDisplayDateValues.index(news.getDisplayDate());
+            String webUrl = news.getWebUrl();
+            int slash = webUrl != null ? webUrl.lastIndexOf('/') : NONE;
+            if (slash > 0) {
+                mWebUrlPrefixes[row] = mUrlPrefixValues.index(webUrl.substring(0, slash + 1));
+                mWebUrlPaths[row] = webUrl.substring(slash + 1);
+            } else {
+                mWebUrlPrefixes[row] = NONE;
+                mWebUrlPaths[row] = webUrl;
+            }
+            mTitles[row] = news.getTitle();
+            mThumbnailUrls[row] = news.getThumbnailUrl();
+            mTimes[row] = news.getTimeInMillis();
+            mSectionColors[row] = news.getSectionColor();
+            if (news.getDate() != null && !NewsDates.isFormatted(news.getDate(), news.getTimeInMillis())) {
+                mDateTexts[row] = news.getDate();
+                mHasDateTexts = true;
+            }
+        }
+
+        // Rows of the table the dictionaries were taken over from, their indexes are kept
+        void addRows(NewsTable table) {
+            int row = mSize;
+            int size = table.mSize;
+            System.arraycopy(table.mSections, 0, mSections, row, size);
+            System.arraycopy(table.mPillars, 0, mPillars, row, size);
+            System.arraycopy(table.mAuthors, 0, mAuthors, row, size);
+            System.arraycopy(table.mDisplayDates, 0, mDisplayDates, row, size);
+            System.arraycopy(table.mWebUrlPrefixes, 0, mWebUrlPrefixes, row, size);
+            System.arraycopy(table.mWebUrlPaths, 0, mWebUrlPaths, row, size);
+            System.arraycopy(table.mTitles, 0, mTitles, row, size);
+            System.arraycopy(table.mThumbnailUrls, 0, mThumbnailUrls, row, size);
+            System.arraycopy(table.mTimes, 0, mTimes, row, size);
+            System.arraycopy(table.mSectionColors, 0, mSectionColors, row, size);
+            if (table.mDateTexts != null) {
+                System.arraycopy(table.mDateTexts, 0, mDateTexts, row, size);
+                mHasDateTexts = true;
+            }
+            mSize += size;
+        }
+
+        NewsTable build() {
+            return new NewsTable(this);
+        }
+    }
+}
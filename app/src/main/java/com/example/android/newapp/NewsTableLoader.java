@@ -0,0 +1,19 @@
+package com.example.android.newapp;
+
+/**
+ * Loader of the feed which builds the table of what it loads before delivering it, see
+ * {@link LoadedTable}.
+ */
+interface NewsTableLoader {
+
+    /**
+     * @param table rows on screen, a next page is added at their end and a refresh which
+     *              only brought the News published since on top of them
+     */
+    void setShownTable(NewsTable table);
+
+    /**
+     * @return table of the News delivered last, null when none was built
+     */
+    LoadedTable getLoadedTable();
+}
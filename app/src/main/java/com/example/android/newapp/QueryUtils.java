@@ -1,23 +1,13 @@
 package com.example.android.newapp;
 
-import android.text.TextUtils;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
+import okhttp3.OkHttpClient;
+
 /**
  * Helper methods related to requesting and receiving earthquake data from USGS.
  */
@@ -33,177 +23,173 @@ public final class QueryUtils {
     /** Tag for log messages */
     private static final String LOG_TAG = NewsLoader.class.getName();
 
-    /**
-     * Query the Guardian and return an {@link List<News>} object to represent a single News.
-     */
-    public static List<News> fetchEarthquakeData(String requestUrl) {
-
+    /** Default time allowed for opening a connection */
+    public static final long CONNECT_TIMEOUT_MILLIS = GuardianClient.CONNECT_TIMEOUT_MILLIS;
 
-        // Create URL object
-        URL url = createUrl(requestUrl);
+    /** Default time allowed between two reads of the response */
+    public static final long READ_TIMEOUT_MILLIS = GuardianClient.READ_TIMEOUT_MILLIS;
 
-        // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
-        try {
-            jsonResponse = makeHttpRequest(url);
-        } catch (IOException e) {
-            Log.e(NewsActivity.LOG_TAG, "Error closing input stream", e);
-        }
+    /** Default time allowed for a whole load, all attempts and waits between them included */
+    public static final long LOAD_DEADLINE_MILLIS = GuardianClient.LOAD_DEADLINE_MILLIS;
 
-        // Extract relevant fields from the JSON response and create an {@link News} object
-        List<News> newsList = extractNews (jsonResponse);
+    /**
+     * Client shared by the whole app. The fetching, retrying and parsing live in the core
+     * module, which runs on a plain JVM too.
+     */
+    private static final GuardianClient sGuardian = new GuardianClient();
 
-        // Return the {@link News}
-        return newsList;
+    /**
+     * Runs the fetches of the feed loaders on the shared client. Scrolling fast or going
+     * through the sections quickly can't pile up more of them than it takes, the ones
+     * beyond are turned away and the loader answers from its cache, see {@link FeedLoad}.
+     */
+    private static final NewsEngine sEngine = new NewsEngine(sGuardian, NewsEngine.DEFAULT_MAX_IN_FLIGHT,
+            NewsEngine.DEFAULT_MAX_QUEUED);
+
+    /** Round trip and throughput of the link, measured by the fetches of the whole app */
+    private static final NetworkEstimator sNetworkEstimator = new NetworkEstimator(Clock.SYSTEM);
+
+    static {
+        // Traces of the fetches go to logcat, when the metrics log is enabled
+        Metrics.getInstance().addExporter(new LogMetricsExporter());
+        Metrics.getInstance().addExporter(sNetworkEstimator);
+
+        // What went wrong in a fetch goes to logcat, as it did before the client moved to core
+        sGuardian.setLogger(new GuardianClient.Logger() {
+            @Override
+            public void error(String message, Throwable e) {
+                Log.e(LOG_TAG, message, e);
+            }
+        });
     }
 
     /**
-     * Returns new URL object from the given string URL.
+     * @return client shared by the whole app
      */
-    private static URL createUrl(String stringUrl) {
-        URL url = null;
-        try {
-            url = new URL(stringUrl);
-        } catch (MalformedURLException exception) {
-            Log.e(NewsActivity.LOG_TAG, "Error with creating URL", exception);
-            return null;
-        }
-        return url;
+    public static GuardianClient getGuardianClient() {
+        return sGuardian;
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * @return engine running the fetches of the feed loaders
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
-        // If the url is null, than return earlier
-        if(url == null){
-            return jsonResponse;
-        }
-
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
-        try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.connect();
-
-            //If the response was successful(code 200)
-            //then read the input stream and parse the response
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(NewsActivity.LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
-            }
-        } catch (IOException e) {
-            Log.e(NewsActivity.LOG_TAG, "Problem can't connect", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                // function must handle java.io.IOException here
-                inputStream.close();
-            }
-        }
-        return jsonResponse;
+    public static NewsEngine getNewsEngine() {
+        return sEngine;
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
+     * @return estimate of the link from the fetches made lately
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
-            }
-        }
-        return output.toString();
+    public static NetworkEstimator getNetworkEstimator() {
+        return sNetworkEstimator;
     }
 
     /**
-     * Return a list of {@link News} objects that has been built up from
-     * parsing a JSON response.
+     * @return validators of earlier responses together with the bytes saved by them
      */
-    public static ArrayList<News> extractNews(String jsonResponse) {
-
-        // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(jsonResponse)) {
-            return null;
-        }
-
-        // Create an empty ArrayList that we can start adding News to
-        ArrayList<News> newsList = new ArrayList<>();
-
-        // Try to parse the SAMPLE_JSON_RESPONSE. If there's a problem with the way the JSON
-        // is formatted, a JSONException exception object will be thrown.
-        // Catch the exception so the app doesn't crash, and print the error message to the logs.
-        try {
-
-            //Create new JSONObject that holds data from SAMPLE_JSON_RESPONSE
-            JSONObject jObj = new JSONObject(jsonResponse);
-
-            JSONObject response = jObj.getJSONObject("response");
-
-            JSONArray resultsArray = response.getJSONArray("results");
+    public static ConditionalGetCache getConditionalGetCache() {
+        return sGuardian.getConditionalGetCache();
+    }
 
-            for (int i = 0; i < resultsArray.length(); i++){
-                JSONObject news = resultsArray.getJSONObject(i);
+    /**
+     * @return builder of a client with the default timeouts, pool, traffic counter and tracing,
+     * to be changed and passed to {@link #setClient(OkHttpClient)}
+     */
+    public static OkHttpClient.Builder newClientBuilder() {
+        return sGuardian.newClientBuilder();
+    }
 
-                // Extract the value for the key called "sectionName"
-                String section = news.getString("sectionName");
+    /**
+     * Replace the shared client, e.g. to change the timeouts.
+     */
+    public static void setClient(OkHttpClient client) {
+        sGuardian.setClient(client);
+    }
 
-                // Extract the value for the key called "webTitle"
-                String title = news.getString("webTitle");
+    public static OkHttpClient getClient() {
+        return sGuardian.getClient();
+    }
 
-                // Extract the value for the key called "webUrl"
-                String urlAddress = news.getString("webUrl");
+    public static void setRetryPolicy(RetryPolicy retryPolicy) {
+        sGuardian.setRetryPolicy(retryPolicy);
+    }
 
-                // Extract the value for the key called "webPublicationDate"
-                String date = news.getString("webPublicationDate");
+    public static RetryPolicy getRetryPolicy() {
+        return sGuardian.getRetryPolicy();
+    }
 
-                // Extract the value for the key called "pillarName"
-                String pillar = news.getString("pillarName");
+    /**
+     * Replace the shared circuit breaker, e.g. to change its threshold.
+     */
+    public static void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        sGuardian.setCircuitBreaker(circuitBreaker);
+    }
 
-                // Prepare String that contains full name of author
-                String fullAuthor = null;
+    public static CircuitBreaker getCircuitBreaker() {
+        return sGuardian.getCircuitBreaker();
+    }
 
-                JSONArray tagsArray = news.getJSONArray("tags");
+    /**
+     * @return coalescer of identical requests, with the number of requests it saved
+     */
+    public static RequestCoalescer getRequestCoalescer() {
+        return sGuardian.getRequestCoalescer();
+    }
 
-                for(int j =0; j<tagsArray.length(); j++ ){
-                    JSONObject tagsObject = tagsArray.getJSONObject(j);
+    /**
+     * @return counter of the response bytes received over the network, before gzip decoding
+     */
+    public static TrafficCounter getTrafficCounter() {
+        return sGuardian.getTrafficCounter();
+    }
 
-                    String author =  tagsObject.getString("webTitle");
+    /**
+     * Query the Guardian and return an {@link List<News>} object to represent a single News.
+     */
+    public static List<News> fetchEarthquakeData(String requestUrl) {
+        return fetchEarthquakeData(requestUrl, null);
+    }
 
-                    if(j == 0) {
-                        fullAuthor = author;
-                    } else{
-                        fullAuthor = fullAuthor + "\n" + author;
-                    }
-                }
+    /**
+     * Query the Guardian and store the successful response in the given cache.
+     * @param cache where the response body is recorded, may be null
+     */
+    public static List<News> fetchEarthquakeData(String requestUrl, NewsCache cache) {
+        return fetchEarthquakeData(requestUrl, cache, LOAD_DEADLINE_MILLIS);
+    }
 
-                // Add new news to ArrayList<News>
-                newsList.add(new News(section, title, urlAddress, date, fullAuthor, pillar));
-            }
+    /**
+     * Query the Guardian, trying again after transient failures until the deadline.
+     * @param cache where the response body is recorded, may be null
+     * @param deadlineMillis time allowed for all attempts together
+     * @return News, or null when there was no successful response in time, in which
+     *         case the caller should fall back to what it has cached
+     */
+    public static List<News> fetchEarthquakeData(String requestUrl, NewsCache cache, long deadlineMillis) {
+        return fetchEarthquakeData(requestUrl, cache, deadlineMillis, null);
+    }
 
-        } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
-            Log.e("QueryUtils", "Problem parsing the earthquake JSON results", e);
+    /**
+     * Query the Guardian, the way {@link #fetchEarthquakeData(String, NewsCache, long)}
+     * does, in a fetch which can be given up while it runs.
+     * @param cancellation cancels the fetch, may be null
+     * @return News, or null when there was no successful response in time or the fetch
+     *         was cancelled
+     */
+    public static List<News> fetchEarthquakeData(String requestUrl, NewsCache cache, long deadlineMillis,
+                                                 FetchCancellation cancellation) {
+        List<News> newsList = sGuardian.fetch(requestUrl, cache, deadlineMillis, cancellation);
+        if (newsList == null && (cancellation == null || !cancellation.isCancelled())) {
+            Log.e(LOG_TAG, "No News loaded for " + requestUrl);
         }
-
-        // Return the list of earthquakes
         return newsList;
     }
+
+    /**
+     * Return a list of {@link News} objects read directly from the response stream,
+     * without building the whole JSON String or JSON tree first.
+     */
+    public static ArrayList<News> extractNews(InputStream inputStream) {
+        return GuardianClient.extractNews(inputStream);
+    }
 }
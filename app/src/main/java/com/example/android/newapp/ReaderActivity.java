@@ -0,0 +1,186 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Shows the text of one article. Articles whose body was prefetched from the feed are
+ * drawn in the first frame, the others are loaded behind a spinner.
+ */
+public class ReaderActivity extends AppCompatActivity {
+
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_SECTION = "section";
+    private static final String EXTRA_SECTION_COLOR = "section_color";
+    private static final String EXTRA_BYLINE = "byline";
+    private static final String EXTRA_WEB_URL = "web_url";
+
+    /** System.nanoTime() of the tap on the row, time to content is measured from there */
+    private static final String EXTRA_TAP_NANOS = "tap_nanos";
+
+    private String mWebUrl;
+    private long mTapNanos;
+
+    private TextView mBodyView;
+    private TextView mEmptyView;
+    private ProgressBar mSpinner;
+
+    private BodyTask mBodyTask;
+
+    /**
+     * Open the reader on the article of the row.
+     * @param tapNanos System.nanoTime() of the tap
+     */
+    public static void start(Context context, News news, long tapNanos) {
+        String byline = news.getAuthor();
+        if (!TextUtils.isEmpty(news.getDisplayDate())) {
+            byline = TextUtils.isEmpty(byline) ? news.getDisplayDate() : byline + ", " + news.getDisplayDate();
+        }
+        Intent intent = new Intent(context, ReaderActivity.class);
+        intent.putExtra(EXTRA_TITLE, news.getTitle());
+        intent.putExtra(EXTRA_SECTION, news.getSection());
+        intent.putExtra(EXTRA_SECTION_COLOR, news.getSectionColor());
+        intent.putExtra(EXTRA_BYLINE, byline);
+        intent.putExtra(EXTRA_WEB_URL, news.getWebUrl());
+        intent.putExtra(EXTRA_TAP_NANOS, tapNanos);
+        context.startActivity(intent);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_reader);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+
+        Intent intent = getIntent();
+        mWebUrl = intent.getStringExtra(EXTRA_WEB_URL);
+        // Only the first creation follows the tap, after a rotation the time would be bogus
+        if (savedInstanceState == null) {
+            mTapNanos = intent.getLongExtra(EXTRA_TAP_NANOS, 0);
+        }
+
+        TextView sectionView = findViewById(R.id.reader_section);
+        sectionView.setText(intent.getStringExtra(EXTRA_SECTION));
+        sectionView.setBackgroundColor(intent.getIntExtra(EXTRA_SECTION_COLOR,
+                ContextCompat.getColor(this, R.color.section_other)));
+        TextView titleView = findViewById(R.id.reader_title);
+        titleView.setText(intent.getStringExtra(EXTRA_TITLE));
+        TextView bylineView = findViewById(R.id.reader_byline);
+        String byline = intent.getStringExtra(EXTRA_BYLINE);
+        bylineView.setText(byline);
+        bylineView.setVisibility(TextUtils.isEmpty(byline) ? View.GONE : View.VISIBLE);
+
+        mBodyView = findViewById(R.id.reader_body);
+        mEmptyView = findViewById(R.id.reader_empty_state);
+        mSpinner = findViewById(R.id.reader_loading_spinner);
+
+        // Prefetched, nothing to wait for
+        String body = ArticlePrefetcher.getInstance(this).getCache().get(mWebUrl);
+        if (body != null) {
+            showBody(body);
+        } else {
+            mSpinner.setVisibility(View.VISIBLE);
+            mBodyTask = new BodyTask(this, mWebUrl);
+            mBodyTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mBodyTask != null) {
+            mBodyTask.cancel(false);
+            mBodyTask = null;
+        }
+    }
+
+    private void showBody(String body) {
+        mBodyTask = null;
+        mSpinner.setVisibility(View.GONE);
+        if (TextUtils.isEmpty(body)) {
+            mEmptyView.setText(R.string.reader_no_body);
+            mEmptyView.setVisibility(View.VISIBLE);
+            return;
+        }
+        mBodyView.setText(body);
+        watchFirstContent();
+    }
+
+    // Record the time from the tap to the first frame which has the text on it
+    private void watchFirstContent() {
+        if (mTapNanos == 0) {
+            return;
+        }
+        final long tapNanos = mTapNanos;
+        mTapNanos = 0;
+        mBodyView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                Metrics.getInstance().histogram(Metrics.STAGE_TAP_TO_CONTENT).record(System.nanoTime() - tapNanos);
+                mBodyView.getViewTreeObserver().removeOnPreDrawListener(this);
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.reader, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_open_in_browser) {
+            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(mWebUrl)));
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Loads the body which wasn't prefetched, or waits for the prefetch which is loading it.
+     */
+    private static class BodyTask extends AsyncTask<Void, Void, String> {
+
+        private final ArticlePrefetcher mPrefetcher;
+        private final String mWebUrl;
+        private final WeakReference<ReaderActivity> mActivity;
+
+        BodyTask(ReaderActivity activity, String webUrl) {
+            mPrefetcher = ArticlePrefetcher.getInstance(activity);
+            mWebUrl = webUrl;
+            mActivity = new WeakReference<>(activity);
+        }
+
+        @Override
+        protected String doInBackground(Void... voids) {
+            return mPrefetcher.load(mWebUrl);
+        }
+
+        @Override
+        protected void onPostExecute(String body) {
+            ReaderActivity activity = mActivity.get();
+            if (activity != null && !activity.isFinishing()) {
+                activity.showBody(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.newapp;
+
+import android.content.Context;
+import android.support.v4.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the background color of the section of every {@link News}. It runs on the
+ * loader thread, so the list rows only read a ready color int.
+ */
+public final class SectionColors {
+
+    private SectionColors() {}
+
+    /**
+     * Give every News in the list its section color. Each color is resolved only once.
+     * The News may be shared with the caches and other loaders, they are copied with the
+     * color, see {@link News#withSectionColor(int)}.
+     * @return new list of the News with their colors, null for null
+     */
+    public static List<News> resolve(Context context, List<News> newsList) {
+        if (newsList == null) {
+            return null;
+        }
+
+        Map<String, Integer> colors = new HashMap<>();
+        List<News> colored = new ArrayList<>(newsList.size());
+        for (News news : newsList) {
+            Integer color = colors.get(news.getPillarName());
+            if (color == null) {
+                color = ContextCompat.getColor(context, getColorResource(news.getPillarName()));
+                colors.put(news.getPillarName(), color);
+            }
+            colored.add(news.withSectionColor(color));
+        }
+        return colored;
+    }
+
+    // Choose a color for appropriate section
+    static int getColorResource(String pillarSection){
+        if (pillarSection == null) {
+            return R.color.section_other;
+        }
+
+        int sectionColorID ;
+
+        switch (pillarSection) {
+            case "News":
+                sectionColorID = R.color.section_news;
+                break;
+            case "Opinion":
+                sectionColorID = R.color.section_opinion;
+                break;
+            case "Sport":
+                sectionColorID = R.color.section_sport;
+                break;
+            case "Arts":
+                sectionColorID = R.color.section_culture;
+                break;
+            case "Lifestyle":
+                sectionColorID = R.color.section_lifestyle;
+                break;
+            default:
+                sectionColorID = R.color.section_other;
+                break;
+        }
+
+        return sectionColorID;
+    }
+}
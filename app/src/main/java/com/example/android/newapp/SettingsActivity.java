@@ -2,12 +2,16 @@ package com.example.android.newapp;
 
 import android.content.SharedPreferences;
 import android.preference.ListPreference;
+import android.preference.MultiSelectListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class SettingsActivity extends AppCompatActivity {
 
     @Override
@@ -16,7 +20,8 @@ public class SettingsActivity extends AppCompatActivity {
         setContentView(R.layout.activity_settings);
     }
 
-    public static class NewsPreferencesFragment extends PreferenceFragment implements Preference.OnPreferenceChangeListener{
+    public static class NewsPreferencesFragment extends PreferenceFragment implements Preference.OnPreferenceChangeListener,
+            SharedPreferences.OnSharedPreferenceChangeListener{
 
         @Override
         public void onCreate(Bundle savedInstanceState){
@@ -28,11 +33,43 @@ public class SettingsActivity extends AppCompatActivity {
 
             Preference section = findPreference(getString(R.string.settings_category_key));
             bindPreferenceSummaryToValue(section);
+
+            Preference sections = findPreference(getString(R.string.settings_sections_key));
+            bindPreferenceSummaryToValue(sections);
+        }
+
+        @Override
+        public void onResume() {
+            super.onResume();
+            getPreferenceScreen().getSharedPreferences().registerOnSharedPreferenceChangeListener(this);
+        }
+
+        @Override
+        public void onPause() {
+            getPreferenceScreen().getSharedPreferences().unregisterOnSharedPreferenceChangeListener(this);
+            super.onPause();
         }
 
         @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            // The new value is saved by now, so the job is scheduled with it
+            if (key.equals(getString(R.string.settings_sync_key))
+                    || key.equals(getString(R.string.settings_sync_unmetered_key))
+                    || key.equals(getString(R.string.settings_sync_charging_key))) {
+                NewsSyncScheduler.schedule(getActivity());
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
         public boolean onPreferenceChange(Preference preference, Object value) {
 
+            if(preference instanceof MultiSelectListPreference){
+                MultiSelectListPreference multiSelectPreference = (MultiSelectListPreference) preference;
+                preference.setSummary(getSectionsSummary(multiSelectPreference, (Set<String>) value));
+                return true;
+            }
+
             String stringValue = value.toString();
             if(preference instanceof ListPreference){
                 ListPreference listPreference = (ListPreference) preference;
@@ -52,8 +89,32 @@ public class SettingsActivity extends AppCompatActivity {
         private void bindPreferenceSummaryToValue(Preference preference) {
             preference.setOnPreferenceChangeListener(this);
             SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(preference.getContext());
+            if (preference instanceof MultiSelectListPreference) {
+                Set<String> preferenceSet = preferences.getStringSet(preference.getKey(), Collections.<String>emptySet());
+                onPreferenceChange(preference, preferenceSet);
+                return;
+            }
             String preferenceString = preferences.getString(preference.getKey(), "");
             onPreferenceChange(preference, preferenceString);
         }
+
+        // Labels of the picked sections, in the order they have in the list
+        private String getSectionsSummary(MultiSelectListPreference preference, Set<String> values) {
+            if (values.size() < 2) {
+                return getString(R.string.settings_sections_none);
+            }
+            StringBuilder summary = new StringBuilder();
+            CharSequence[] labels = preference.getEntries();
+            CharSequence[] entryValues = preference.getEntryValues();
+            for (int i = 0; i < entryValues.length; i++) {
+                if (values.contains(entryValues[i].toString())) {
+                    if (summary.length() > 0) {
+                        summary.append(", ");
+                    }
+                    summary.append(labels[i]);
+                }
+            }
+            return summary.toString();
+        }
     }
 }
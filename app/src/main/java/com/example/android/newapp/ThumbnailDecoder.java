@@ -0,0 +1,55 @@
+package com.example.android.newapp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.File;
+
+/**
+ * Decodes thumbnails no bigger than needed for the view showing them. The size of the
+ * image is read first, then it is decoded with the largest power of two subsampling
+ * which keeps it at least as big as the view. Thumbnails have no transparency, so they
+ * take 2 bytes per pixel instead of 4.
+ */
+public final class ThumbnailDecoder {
+
+    private ThumbnailDecoder() {}
+
+    /**
+     * @return decoded image, or null when the file is not an image
+     */
+    public static Bitmap decode(File file, int reqWidth, int reqHeight) {
+        long start = System.nanoTime();
+
+        // Only read the size, nothing is allocated for the pixels
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+
+        Metrics.getInstance().histogram(Metrics.STAGE_DECODE).record(System.nanoTime() - start);
+        return bitmap;
+    }
+
+    /**
+     * @return largest power of two by which the image can be subsampled while both
+     *         sides stay at least as big as requested
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
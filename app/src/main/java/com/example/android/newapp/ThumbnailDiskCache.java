@@ -0,0 +1,193 @@
+package com.example.android.newapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Disk cache of the encoded thumbnail images, one file per image url. The files are
+ * kept as downloaded, so they can be decoded again at any size. When the directory grows
+ * over its size limit the least recently used images are deleted.
+ */
+public final class ThumbnailDiskCache {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = ThumbnailDiskCache.class.getName();
+
+    /** Default size limit of the whole cache directory */
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static final String ENTRY_SUFFIX = ".img";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final Clock mClock;
+
+    /** Estimated size of the directory, -1 until it was measured */
+    private long mSize = -1;
+
+    public ThumbnailDiskCache(File directory, long maxBytes, Clock clock) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mClock = clock;
+        deleteTempFiles();
+    }
+
+    /**
+     * Return the file of the image and mark it as recently used.
+     * @return file, or null when the image is not cached
+     */
+    public File get(String url) {
+        File file = entryFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        file.setLastModified(mClock.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Copy the image into the cache. The entry appears only once it was completely written,
+     * so a reader never sees half an image.
+     * @return file of the image, or null when it could not be written
+     */
+    public File put(String url, InputStream image) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Can't create cache directory " + mDirectory);
+            return null;
+        }
+        File file = entryFile(url);
+        // Several threads may download the same image, each writes its own temp file
+        File tempFile = new File(file.getPath() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(tempFile);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = image.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            output.close();
+            output = null;
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Can't rename " + tempFile);
+            }
+            file.setLastModified(mClock.currentTimeMillis());
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing thumbnail", e);
+            tempFile.delete();
+            return null;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem closing thumbnail", e);
+                }
+                tempFile.delete();
+            }
+        }
+        added(file.length());
+        return file;
+    }
+
+    /**
+     * @return size in bytes of all images on disk
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (File file : entries()) {
+            size += file.length();
+        }
+        mSize = size;
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (File file : entries()) {
+            file.delete();
+        }
+        mSize = 0;
+    }
+
+    // Count the new file and trim once the estimate goes over the limit, so the
+    // directory is not listed after every download
+    private synchronized void added(long bytes) {
+        if (mSize < 0) {
+            size();
+        } else {
+            mSize += bytes;
+        }
+        if (mSize > mMaxBytes) {
+            trimToSize();
+        }
+    }
+
+    // Delete the least recently used images until the cache fits in its size limit
+    private void trimToSize() {
+        List<File> files = new ArrayList<>(Arrays.asList(entries()));
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long diff = first.lastModified() - second.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.size() && size > mMaxBytes; i++) {
+            File file = files.get(i);
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+        mSize = size;
+    }
+
+    // Nothing writes before the cache is open, so every temp file was left by a download
+    // which never finished, e.g. of a killed process. Their names are per thread and never
+    // written again.
+    private void deleteTempFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    private File[] entries() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        List<File> entries = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                entries.add(file);
+            }
+        }
+        return entries.toArray(new File[entries.size()]);
+    }
+
+    private File entryFile(String url) {
+        return new File(mDirectory, NewsCache.md5(url) + ENTRY_SUFFIX);
+    }
+}
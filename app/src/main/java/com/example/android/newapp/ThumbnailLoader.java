@@ -0,0 +1,337 @@
+package com.example.android.newapp;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Loads the thumbnails of the list rows. An image is looked up in memory, then on disk
+ * and only then downloaded, and it is decoded at the size of its view on a small
+ * background pool. A row which is recycled cancels its image if that was not started
+ * yet, so a fling doesn't leave a queue of images nobody will see.
+ * <p>
+ * The images of the rows on screen go before the prefetched ones. Only the newest
+ * prefetches are kept waiting, the older ones are for rows the list has scrolled past.
+ */
+public final class ThumbnailLoader {
+
+    /** Tag for log messages */
+    private static final String LOG_TAG = ThumbnailLoader.class.getName();
+
+    /** Images downloaded and decoded at the same time */
+    public static final int THREADS = 3;
+
+    /** Prefetches waiting for a thread, two scroll steps of rows */
+    static final int MAX_QUEUED_PREFETCHES = 12;
+
+    private static final String DIRECTORY_NAME = "thumbnails";
+
+    private static ThumbnailLoader sInstance;
+
+    private final ThumbnailMemoryCache mMemory;
+    private final ThumbnailDiskCache mDisk;
+    private final ExecutorService mExecutor;
+    private final Handler mMainHandler;
+
+    /** Keys being prefetched, so an image is not asked for twice while scrolling */
+    private final Set<String> mPrefetching = Collections.synchronizedSet(new HashSet<String>());
+
+    /** Images of the rows on screen waiting for a thread, guarded by the loader */
+    private final Deque<Job> mJobs = new ArrayDeque<>();
+
+    /** Prefetches waiting for a thread, oldest first, guarded by the loader */
+    private final Deque<Prefetch> mPrefetches = new ArrayDeque<>();
+
+    /**
+     * Runs the next waiting image. One is executed for every queued image, an image which
+     * was cancelled or dropped meanwhile leaves it nothing or the next one to run.
+     */
+    private final Runnable mRunNext = new Runnable() {
+        @Override
+        public void run() {
+            Runnable next = next();
+            if (next != null) {
+                next.run();
+            }
+        }
+    };
+
+    public ThumbnailLoader(ThumbnailMemoryCache memory, ThumbnailDiskCache disk, ExecutorService executor,
+                           Handler mainHandler) {
+        mMemory = memory;
+        mDisk = disk;
+        mExecutor = executor;
+        mMainHandler = mainHandler;
+    }
+
+    /**
+     * @return loader shared by the whole app, its images are stored in the app cache directory
+     */
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME);
+            sInstance = new ThumbnailLoader(new ThumbnailMemoryCache(ThumbnailMemoryCache.defaultMaxBytes()),
+                    new ThumbnailDiskCache(directory, ThumbnailDiskCache.DEFAULT_MAX_BYTES, Clock.SYSTEM),
+                    newExecutor(), new Handler(Looper.getMainLooper()));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return pool of background threads decoding the thumbnails
+     */
+    static ExecutorService newExecutor() {
+        return Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Scrolling on the main thread comes first
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "ThumbnailLoader #" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public ThumbnailMemoryCache getMemoryCache() {
+        return mMemory;
+    }
+
+    public ThumbnailDiskCache getDiskCache() {
+        return mDisk;
+    }
+
+    /**
+     * Show the thumbnail in the view, replacing the image the view was waiting for.
+     * Must be called on the main thread.
+     * @param url of the image, null to only clear the view
+     * @param width size the image is decoded for, in pixels
+     */
+    public void load(ImageView view, String url, int width, int height) {
+        cancel(view);
+        if (url == null) {
+            view.setImageDrawable(null);
+            return;
+        }
+
+        // Already decoded, e.g. the row scrolled back into view
+        Bitmap cached = mMemory.get(ThumbnailMemoryCache.key(url, width, height));
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        Job job = new Job(view, url, width, height);
+        view.setTag(R.id.thumbnail_job, job);
+        synchronized (this) {
+            mJobs.add(job);
+        }
+        mExecutor.execute(mRunNext);
+    }
+
+    /**
+     * Forget the image the view is waiting for, e.g. when its row is recycled.
+     * Must be called on the main thread.
+     */
+    public void cancel(ImageView view) {
+        Object tag = view.getTag(R.id.thumbnail_job);
+        if (tag instanceof Job) {
+            ((Job) tag).cancel();
+            view.setTag(R.id.thumbnail_job, null);
+        }
+    }
+
+    /**
+     * Download and decode the thumbnail of a row which is about to be shown.
+     */
+    public void prefetch(String url, int width, int height) {
+        if (url == null) {
+            return;
+        }
+        String key = ThumbnailMemoryCache.key(url, width, height);
+        if (mMemory.get(key) != null || !mPrefetching.add(key)) {
+            return;
+        }
+        Prefetch dropped = null;
+        synchronized (this) {
+            mPrefetches.add(new Prefetch(key, url, width, height));
+            if (mPrefetches.size() > MAX_QUEUED_PREFETCHES) {
+                dropped = mPrefetches.poll();
+            }
+        }
+        // Asked for again if its row still comes into view
+        if (dropped != null) {
+            mPrefetching.remove(dropped.mKey);
+        }
+        mExecutor.execute(mRunNext);
+    }
+
+    /**
+     * Get the thumbnail from memory, disk or network, blocking until it is decoded.
+     * Must not be called on the main thread.
+     * @return decoded image, or null when it could not be loaded
+     */
+    public Bitmap getBitmap(String url, int width, int height) {
+        String key = ThumbnailMemoryCache.key(url, width, height);
+        Bitmap bitmap = mMemory.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        File file = mDisk.get(url);
+        if (file == null) {
+            file = download(url);
+        }
+        if (file == null) {
+            return null;
+        }
+        bitmap = ThumbnailDecoder.decode(file, width, height);
+        if (bitmap != null) {
+            mMemory.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Give memory back when the system runs low, see {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mMemory.trimToSize(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            mMemory.trimToSize(mMemory.maxSize() / 2);
+        }
+    }
+
+    // Image of a row on screen first, then the oldest prefetch which was kept
+    private synchronized Runnable next() {
+        Job job = mJobs.poll();
+        return job != null ? job : mPrefetches.poll();
+    }
+
+    private synchronized void remove(Job job) {
+        mJobs.remove(job);
+    }
+
+    // Download the image straight into the disk cache
+    private File download(String url) {
+        Response response = null;
+        try {
+            response = QueryUtils.getClient().newCall(new Request.Builder().url(url).build()).execute();
+            if (!response.isSuccessful()) {
+                Log.e(LOG_TAG, "Error response code " + response.code() + " for " + url);
+                return null;
+            }
+            return mDisk.put(url, response.body().byteStream());
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Problem downloading thumbnail " + url, e);
+            return null;
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Image a view is waiting for.
+     */
+    private final class Job implements Runnable {
+
+        private final ImageView mView;
+        private final String mUrl;
+        private final int mWidth;
+        private final int mHeight;
+        private volatile boolean mCancelled;
+
+        Job(ImageView view, String url, int width, int height) {
+            mView = view;
+            mUrl = url;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            // Once started the image is finished even if the row goes away, it ends up in
+            // the caches for when the row comes back
+            final Bitmap bitmap = getBitmap(mUrl, mWidth, mHeight);
+            if (bitmap == null || mCancelled) {
+                return;
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled && mView.getTag(R.id.thumbnail_job) == Job.this) {
+                        mView.setTag(R.id.thumbnail_job, null);
+                        mView.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+
+        // Called on the main thread, like the code which submitted the job
+        void cancel() {
+            mCancelled = true;
+            remove(this);
+        }
+    }
+
+    /**
+     * Image of a row which is about to be shown, it only ends up in the caches.
+     */
+    private final class Prefetch implements Runnable {
+
+        private final String mKey;
+        private final String mUrl;
+        private final int mWidth;
+        private final int mHeight;
+
+        Prefetch(String key, String url, int width, int height) {
+            mKey = key;
+            mUrl = url;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public void run() {
+            try {
+                getBitmap(mUrl, mWidth, mHeight);
+            } finally {
+                mPrefetching.remove(mKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.newapp;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * Decoded thumbnails kept in memory, so rows scrolled back into view are bound at once.
+ * Bounded by the bytes of the bitmaps, the least recently shown ones are dropped first.
+ */
+public final class ThumbnailMemoryCache {
+
+    private final LruCache<String, Bitmap> mBitmaps;
+
+    /**
+     * @param maxBytes limit of the size of all kept bitmaps
+     */
+    public ThumbnailMemoryCache(int maxBytes) {
+        mBitmaps = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        };
+    }
+
+    /**
+     * @return limit for the cache shared by the app, a part of the heap
+     */
+    public static int defaultMaxBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * @return key of the image decoded for the given size
+     */
+    static String key(String url, int width, int height) {
+        return url + '@' + width + 'x' + height;
+    }
+
+    public Bitmap get(String key) {
+        return mBitmaps.get(key);
+    }
+
+    public void put(String key, Bitmap bitmap) {
+        mBitmaps.put(key, bitmap);
+    }
+
+    /**
+     * Drop the least recently used bitmaps until the cache is at most the given size.
+     */
+    public void trimToSize(int maxBytes) {
+        mBitmaps.trimToSize(maxBytes);
+    }
+
+    public int size() {
+        return mBitmaps.size();
+    }
+
+    public int maxSize() {
+        return mBitmaps.maxSize();
+    }
+
+    public int hitCount() {
+        return mBitmaps.hitCount();
+    }
+
+    public int missCount() {
+        return mBitmaps.missCount();
+    }
+}
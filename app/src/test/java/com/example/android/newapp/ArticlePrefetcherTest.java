@@ -0,0 +1,292 @@
+package com.example.android.newapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prefetches article bodies from a local server which answers a search by ids with the
+ * bodyText field of every asked article, each response taking a while like a real one.
+ * The {@link Report} prints how long opening a prefetched article takes against one
+ * which wasn't.
+ */
+public class ArticlePrefetcherTest {
+
+    /** Time to the response headers of every request, a mobile round trip or two */
+    private static final long RESPONSE_DELAY_MILLIS = 200;
+
+    private static final String WEB_URL_PREFIX = "https://www.theguardian.com/";
+
+    private MockWebServer mServer;
+    private ExecutorService mExecutor;
+    private ArticlePrefetcher mPrefetcher;
+
+    /** ids parameter of every request the server got, in order */
+    private final List<String> mRequestedIds = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                HttpUrl url = request.getRequestUrl();
+                String ids = url.queryParameter("ids");
+                mRequestedIds.add(ids);
+                if (!"bodyText".equals(url.queryParameter("show-fields"))) {
+                    return new MockResponse().setResponseCode(400);
+                }
+                return new MockResponse().setBody(bodiesResponse(ids.split(",")))
+                        .setHeadersDelay(RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+        mServer.start();
+        mExecutor = Executors.newSingleThreadExecutor();
+        mPrefetcher = newPrefetcher(new ArticleBodyCache(1000000));
+        TestFixtures.resetResilience();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+        TestFixtures.resetResilience();
+    }
+
+    @Test
+    public void visibleRows_areFetchedInOneRequest() throws Exception {
+        List<String> webUrls = webUrls(0, 5);
+
+        mPrefetcher.prefetch(webUrls);
+        awaitPrefetches();
+
+        assertEquals(1, mRequestedIds.size());
+        assertEquals("world/0,world/1,world/2,world/3,world/4", mRequestedIds.get(0));
+        assertEquals(5, mPrefetcher.getCache().getEntryCount());
+        for (String webUrl : webUrls) {
+            assertEquals(body(ArticlePrefetcher.contentId(webUrl)), mPrefetcher.getCache().get(webUrl));
+        }
+    }
+
+    @Test
+    public void keptAndLoadingBodies_areNotAskedForAgain() throws Exception {
+        mPrefetcher.prefetch(webUrls(0, 3));
+        // Scrolled on by two rows while the first prefetch is in flight
+        mPrefetcher.prefetch(webUrls(2, 3));
+        awaitPrefetches();
+        mPrefetcher.prefetch(webUrls(0, 5));
+
+        assertEquals(Arrays.asList("world/0,world/1,world/2", "world/3,world/4"), mRequestedIds);
+        assertEquals(2, mPrefetcher.getRequestCount());
+    }
+
+    @Test
+    public void prefetchedArticle_opensWithoutRequest() throws Exception {
+        mPrefetcher.prefetch(webUrls(0, 5));
+        awaitPrefetches();
+        int requests = mRequestedIds.size();
+
+        String body = mPrefetcher.load(WEB_URL_PREFIX + "world/3");
+
+        assertEquals(body("world/3"), body);
+        assertEquals(requests, mRequestedIds.size());
+    }
+
+    @Test
+    public void openedDuringPrefetch_waitsForIt() throws Exception {
+        mPrefetcher.prefetch(webUrls(0, 5));
+
+        // Tapped after the request went out, before the response came
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mRequestedIds.isEmpty() && System.nanoTime() < end) {
+            Thread.sleep(5);
+        }
+        String body = mPrefetcher.load(WEB_URL_PREFIX + "world/2");
+
+        assertEquals(body("world/2"), body);
+        assertEquals(1, mRequestedIds.size());
+        assertEquals(1, mPrefetcher.getRequestCount());
+    }
+
+    @Test
+    public void openedWhilePrefetchQueued_isFetchedAlone() throws Exception {
+        // The executor is busy with another batch
+        final CountDownLatch busy = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    busy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        mPrefetcher.prefetch(webUrls(0, 5));
+
+        String body = mPrefetcher.load(WEB_URL_PREFIX + "world/2");
+        busy.countDown();
+        awaitPrefetches();
+
+        assertEquals(body("world/2"), body);
+        // The queued batch leaves out the article loaded meanwhile
+        assertEquals(Arrays.asList("world/2", "world/0,world/1,world/3,world/4"), mRequestedIds);
+    }
+
+    @Test
+    public void articleNotPrefetched_isFetchedAlone() throws Exception {
+        String body = mPrefetcher.load(WEB_URL_PREFIX + "world/7");
+
+        assertEquals(body("world/7"), body);
+        assertEquals(Collections.singletonList("world/7"), mRequestedIds);
+        assertTrue(mPrefetcher.getCache().contains(WEB_URL_PREFIX + "world/7"));
+    }
+
+    @Test
+    public void leastRecentlyReadBodies_areEvicted() {
+        ArticleBodyCache cache = new ArticleBodyCache(25);
+
+        cache.put("a", "0123456789");
+        cache.put("b", "0123456789");
+        cache.get("a");
+        cache.put("c", "0123456789");
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(20, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // Bigger than the whole cache, it is not kept and doesn't push the others out
+        cache.put("d", "012345678901234567890123456789");
+        assertFalse(cache.contains("d"));
+        assertEquals(2, cache.getEntryCount());
+    }
+
+    @Test
+    public void contentId_isPathOfWebUrl() {
+        assertEquals("politics/2019/jan/29/brexit-vote",
+                ArticlePrefetcher.contentId("https://www.theguardian.com/politics/2019/jan/29/brexit-vote"));
+        assertNull(ArticlePrefetcher.contentId("https://www.theguardian.com/"));
+        assertNull(ArticlePrefetcher.contentId("not a url"));
+    }
+
+    @Test
+    public void parseBodies_leavesOutResultsWithoutBody() throws Exception {
+        JSONObject root = new JSONObject(bodiesResponse(new String[]{"world/0", "world/1"}));
+        root.getJSONObject("response").getJSONArray("results").getJSONObject(1).remove("fields");
+
+        Map<String, String> bodies = ArticlePrefetcher.parseBodies(
+                new ByteArrayInputStream(root.toString().getBytes(Charset.forName("UTF-8"))));
+
+        assertEquals(1, bodies.size());
+        assertEquals(body("world/0"), bodies.get(WEB_URL_PREFIX + "world/0"));
+    }
+
+    /**
+     * Not an assertion of the times themselves, only that the prefetched article opens
+     * sooner, the numbers are printed.
+     */
+    @Test
+    @Category(Report.class)
+    public void reportTimeToContent() throws Exception {
+        mPrefetcher.prefetch(webUrls(0, 5));
+        awaitPrefetches();
+
+        long start = System.nanoTime();
+        mPrefetcher.load(WEB_URL_PREFIX + "world/4");
+        long prefetchedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        mPrefetcher.load(WEB_URL_PREFIX + "world/9");
+        long coldNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("Time to the body of an article, %d ms to the response headers",
+                RESPONSE_DELAY_MILLIS));
+        System.out.println(String.format("  prefetched: %8.3f ms", prefetchedNanos / 1e6));
+        System.out.println(String.format("  cold      : %8.3f ms", coldNanos / 1e6));
+        assertTrue(prefetchedNanos < coldNanos);
+    }
+
+    private ArticlePrefetcher newPrefetcher(ArticleBodyCache cache) {
+        return new ArticlePrefetcher(cache, mExecutor, new ArticlePrefetcher.Queries() {
+            @Override
+            public String url(List<String> contentIds) {
+                StringBuilder ids = new StringBuilder();
+                for (String contentId : contentIds) {
+                    ids.append(ids.length() > 0 ? "," : "").append(contentId);
+                }
+                return mServer.url("/search").newBuilder()
+                        .addQueryParameter("ids", ids.toString())
+                        .addQueryParameter("show-fields", "bodyText")
+                        .addQueryParameter("page-size", String.valueOf(contentIds.size()))
+                        .build().toString();
+            }
+        });
+    }
+
+    // Wait for the prefetches submitted so far, the executor runs them one at a time
+    private void awaitPrefetches() throws Exception {
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    private static List<String> webUrls(int first, int count) {
+        List<String> webUrls = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            webUrls.add(WEB_URL_PREFIX + "world/" + i);
+        }
+        return webUrls;
+    }
+
+    private static String body(String contentId) {
+        return "Text of " + contentId + ". The rest of the article follows.";
+    }
+
+    private static String bodiesResponse(String[] contentIds) {
+        try {
+            JSONArray results = new JSONArray();
+            for (String contentId : contentIds) {
+                results.put(new JSONObject()
+                        .put("id", contentId)
+                        .put("webUrl", WEB_URL_PREFIX + contentId)
+                        .put("fields", new JSONObject().put("bodyText", body(contentId))));
+            }
+            return new JSONObject().put("response", new JSONObject()
+                    .put("status", "ok")
+                    .put("total", contentIds.length)
+                    .put("results", results)).toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConditionalGetTest {
+
+    private static final String LAST_MODIFIED = "Tue, 29 Jan 2019 18:42:11 GMT";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private String mFixture;
+    private long mFixtureBytes;
+    private ConditionalGetCache mValidators;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mFixture = TestFixtures.read(TestFixtures.SEARCH_10);
+        mFixtureBytes = TestFixtures.bytes(mFixture).length;
+        mValidators = QueryUtils.getConditionalGetCache();
+        mValidators.clear();
+        TestFixtures.resetResilience();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        mValidators.clear();
+        TestFixtures.resetResilience();
+    }
+
+    @Test
+    public void notModified_reusesParsedNews() throws Exception {
+        String url = url("section=news");
+        mServer.enqueue(new MockResponse().setBody(mFixture).setHeader("ETag", "\"v1\""));
+        mServer.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+        mServer.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+
+        List<News> first = QueryUtils.fetchEarthquakeData(url);
+        List<News> second = QueryUtils.fetchEarthquakeData(url);
+        List<News> third = QueryUtils.fetchEarthquakeData(url);
+
+        assertNull(mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v1\"", mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v1\"", mServer.takeRequest().getHeader("If-None-Match"));
+
+        // The very same News objects come back, so nothing was parsed again
+        assertEquals(10, second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+            assertSame(first.get(i), third.get(i));
+        }
+
+        assertEquals(1, mValidators.getFullResponses());
+        assertEquals(2, mValidators.getNotModifiedResponses());
+        assertEquals(mFixtureBytes, mValidators.getBytesReceived());
+        assertEquals(2 * mFixtureBytes, mValidators.getBytesSaved());
+    }
+
+    @Test
+    public void lastModified_isSentAsIfModifiedSince() throws Exception {
+        String url = url("section=sport");
+        mServer.enqueue(new MockResponse().setBody(mFixture).setHeader("Last-Modified", LAST_MODIFIED));
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        QueryUtils.fetchEarthquakeData(url);
+        List<News> second = QueryUtils.fetchEarthquakeData(url);
+
+        mServer.takeRequest();
+        RecordedRequest conditional = mServer.takeRequest();
+        assertEquals(LAST_MODIFIED, conditional.getHeader("If-Modified-Since"));
+        assertNull(conditional.getHeader("If-None-Match"));
+        assertEquals(10, second.size());
+    }
+
+    @Test
+    public void changedFeed_replacesValidatorsAndNews() throws Exception {
+        String url = url("section=news");
+        String changed = TestFixtures.repeat(TestFixtures.SEARCH_10, 3);
+        mServer.enqueue(new MockResponse().setBody(mFixture).setHeader("ETag", "\"v1\""));
+        mServer.enqueue(new MockResponse().setBody(changed).setHeader("ETag", "\"v2\""));
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        QueryUtils.fetchEarthquakeData(url);
+        List<News> second = QueryUtils.fetchEarthquakeData(url);
+        List<News> third = QueryUtils.fetchEarthquakeData(url);
+
+        mServer.takeRequest();
+        assertEquals("\"v1\"", mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v2\"", mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(3, second.size());
+        assertEquals(3, third.size());
+        assertEquals(TestFixtures.bytes(changed).length, mValidators.getBytesSaved());
+    }
+
+    @Test
+    public void responseWithoutValidators_isNotConditional() throws Exception {
+        String url = url("section=news");
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+
+        QueryUtils.fetchEarthquakeData(url);
+        QueryUtils.fetchEarthquakeData(url);
+
+        mServer.takeRequest();
+        RecordedRequest second = mServer.takeRequest();
+        assertNull(second.getHeader("If-None-Match"));
+        assertNull(second.getHeader("If-Modified-Since"));
+        assertEquals(0, mValidators.getBytesSaved());
+    }
+
+    @Test
+    public void notModified_refreshesDiskCacheEntry() throws Exception {
+        FakeClock clock = new FakeClock(1548787331000L);
+        NewsCache cache = new NewsCache(mFolder.newFolder("news"), NewsCache.DEFAULT_MAX_BYTES, 1000, clock);
+        String url = url("section=news");
+        mServer.enqueue(new MockResponse().setBody(mFixture).setHeader("ETag", "\"v1\""));
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        QueryUtils.fetchEarthquakeData(url, cache);
+        clock.advance(5000);
+        assertFalse(cache.get(url).isFresh());
+
+        QueryUtils.fetchEarthquakeData(url, cache);
+        assertTrue(cache.get(url).isFresh());
+    }
+
+    private String url(String query) {
+        return mServer.url("/search?" + query + "&api-key=test").toString();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.android.newapp;
+
+/**
+ * {@link Clock} which only moves when the test says so.
+ */
+final class FakeClock implements Clock {
+
+    private long mNow;
+
+    FakeClock(long now) {
+        mNow = now;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return mNow;
+    }
+
+    synchronized void advance(long millis) {
+        mNow += millis;
+    }
+}
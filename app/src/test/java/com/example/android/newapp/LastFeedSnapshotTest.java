@@ -0,0 +1,84 @@
+package com.example.android.newapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LastFeedSnapshotTest {
+
+    private static final List<String> WORLD = Arrays.asList(
+            "https://content.guardianapis.com/search?section=world&page=1&page-size=10&api-key=test");
+    private static final List<String> SPORT_AND_MUSIC = Arrays.asList(
+            "https://content.guardianapis.com/search?section=sport&page=1&page-size=10&api-key=test",
+            "https://content.guardianapis.com/search?section=music&page=1&page-size=10&api-key=test");
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDirectory;
+    private List<News> mNews;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = new File(mFolder.getRoot(), "last_feed");
+        mNews = TestFixtures.news(TestFixtures.read(TestFixtures.SEARCH_10));
+    }
+
+    @Test
+    public void writtenFeed_isReadBackForSameQueries() {
+        LastFeedSnapshot snapshot = new LastFeedSnapshot(mDirectory);
+
+        snapshot.write(WORLD, mNews);
+
+        // Same query with its parameters in another order and another key
+        List<News> read = snapshot.read(Arrays.asList(
+                "https://content.guardianapis.com/search?page-size=10&api-key=other&page=1&section=world"));
+        assertNotNull(read);
+        assertEquals(mNews.size(), read.size());
+        assertEquals(mNews.get(0).getWebUrl(), read.get(0).getWebUrl());
+    }
+
+    @Test
+    public void otherFeed_hasNoSnapshot() {
+        LastFeedSnapshot snapshot = new LastFeedSnapshot(mDirectory);
+
+        snapshot.write(WORLD, mNews);
+
+        assertNull(snapshot.read(SPORT_AND_MUSIC));
+    }
+
+    @Test
+    public void newFeed_replacesSnapshotOfPreviousOne() {
+        LastFeedSnapshot snapshot = new LastFeedSnapshot(mDirectory);
+
+        snapshot.write(WORLD, mNews);
+        snapshot.write(SPORT_AND_MUSIC, mNews.subList(0, 3));
+
+        assertNull(snapshot.read(WORLD));
+        assertEquals(3, snapshot.read(SPORT_AND_MUSIC).size());
+        assertEquals(1, mDirectory.listFiles().length);
+    }
+
+    @Test
+    public void brokenSnapshot_isDropped() throws Exception {
+        LastFeedSnapshot snapshot = new LastFeedSnapshot(mDirectory);
+        snapshot.write(WORLD, mNews);
+        File file = mDirectory.listFiles()[0];
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(new byte[]{1, 2, 3});
+        output.close();
+
+        assertNull(snapshot.read(WORLD));
+        assertEquals(0, mDirectory.listFiles().length);
+    }
+}
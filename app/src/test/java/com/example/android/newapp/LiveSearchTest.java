@@ -0,0 +1,317 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Types keywords into a live search at a given pace, on a fake clock, against a local
+ * server which counts the requests it gets. A search slower than the typing is answered
+ * with a body trickling in, so superseding it has to abort the parse too.
+ */
+public class LiveSearchTest {
+
+    private static final long DEBOUNCE = LiveSearch.DEFAULT_DEBOUNCE_MILLIS;
+    private static final long TTL = LiveSearch.DEFAULT_CACHE_TTL_MILLIS;
+
+    /** Keyword whose response takes far longer than the typing */
+    private static final String SLOW_KEYWORD = "bre";
+
+    private MockWebServer mServer;
+    private FakeClock mClock;
+    private FakeScheduler mScheduler;
+    private ExecutorService mFetchExecutor;
+    private LiveSearch mSearch;
+    private String mFixture;
+
+    /** Keywords of the requests the server got, in order */
+    private final List<String> mRequested = Collections.synchronizedList(new ArrayList<String>());
+
+    /** Keywords delivered to the listener and their number of News, null when failed */
+    private final List<String> mDelivered = new ArrayList<>();
+    private final List<Integer> mDeliveredSizes = new ArrayList<>();
+
+    private final AtomicInteger mFetching = new AtomicInteger();
+    private final AtomicInteger mMaxFetching = new AtomicInteger();
+
+    /**
+     * {@link LiveSearch.Scheduler} on the fake clock. Tasks only run when the test
+     * advances the clock, on the test thread.
+     */
+    private static final class FakeScheduler implements LiveSearch.Scheduler {
+
+        private final FakeClock mClock;
+        private final List<Runnable> mTasks = new ArrayList<>();
+        private final List<Long> mRunAt = new ArrayList<>();
+
+        FakeScheduler(FakeClock clock) {
+            mClock = clock;
+        }
+
+        @Override
+        public synchronized void postDelayed(Runnable task, long delayMillis) {
+            mTasks.add(task);
+            mRunAt.add(mClock.currentTimeMillis() + delayMillis);
+        }
+
+        @Override
+        public synchronized void cancel(Runnable task) {
+            int index = mTasks.indexOf(task);
+            if (index >= 0) {
+                mTasks.remove(index);
+                mRunAt.remove(index);
+            }
+        }
+
+        // Run the tasks due by then in their order, moving the clock along
+        void advance(long millis) {
+            long until = mClock.currentTimeMillis() + millis;
+            while (true) {
+                Runnable next = null;
+                synchronized (this) {
+                    int nextIndex = -1;
+                    for (int i = 0; i < mTasks.size(); i++) {
+                        if (mRunAt.get(i) <= until && (nextIndex < 0 || mRunAt.get(i) < mRunAt.get(nextIndex))) {
+                            nextIndex = i;
+                        }
+                    }
+                    if (nextIndex >= 0) {
+                        mClock.advance(mRunAt.get(nextIndex) - mClock.currentTimeMillis());
+                        next = mTasks.remove(nextIndex);
+                        mRunAt.remove(nextIndex);
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                next.run();
+            }
+            mClock.advance(until - mClock.currentTimeMillis());
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = TestFixtures.read(TestFixtures.SEARCH_10);
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String keyword = request.getRequestUrl().queryParameter("q");
+                mRequested.add(keyword);
+                MockResponse response = new MockResponse().setBody(mFixture);
+                if (SLOW_KEYWORD.equals(keyword)) {
+                    // About a minute for the whole body
+                    response.throttleBody(256, 1, TimeUnit.SECONDS);
+                }
+                return response;
+            }
+        });
+        mServer.start();
+        mClock = new FakeClock(1548787331000L);
+        mScheduler = new FakeScheduler(mClock);
+        mFetchExecutor = Executors.newSingleThreadExecutor();
+        mSearch = new LiveSearch(mScheduler, mFetchExecutor, new LiveSearch.Fetcher() {
+            @Override
+            public List<News> fetch(String url, FetchCancellation cancellation) {
+                int fetching = mFetching.incrementAndGet();
+                mMaxFetching.set(Math.max(mMaxFetching.get(), fetching));
+                try {
+                    return QueryUtils.fetchEarthquakeData(url, null, QueryUtils.LOAD_DEADLINE_MILLIS, cancellation);
+                } finally {
+                    mFetching.decrementAndGet();
+                }
+            }
+        }, new LiveSearch.Queries() {
+            @Override
+            public String url(String keyword) {
+                return mServer.url("/search").newBuilder()
+                        .addQueryParameter("q", keyword)
+                        .addQueryParameter("order-by", "newest")
+                        .addQueryParameter("page", "1")
+                        .addQueryParameter("page-size", "10")
+                        .build().toString();
+            }
+        }, new LiveSearch.Listener() {
+            @Override
+            public void onResults(String keyword, List<News> newsList) {
+                mDelivered.add(keyword);
+                mDeliveredSizes.add(newsList != null ? newsList.size() : null);
+            }
+        }, mClock, DEBOUNCE, TTL);
+        QueryUtils.getConditionalGetCache().clear();
+        QueryUtils.getCircuitBreaker().reset();
+        Metrics.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mSearch.shutdown();
+        mFetchExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        mServer.shutdown();
+        QueryUtils.getConditionalGetCache().clear();
+    }
+
+    @Test
+    public void fastTyping_sendsOneRequest() throws Exception {
+        type("brexit", 100);
+        settle();
+
+        assertEquals(Collections.singletonList("brexit"), mRequested);
+        assertEquals(Collections.singletonList("brexit"), mDelivered);
+        assertEquals(Integer.valueOf(10), mDeliveredSizes.get(0));
+        assertEquals(1, mSearch.getFetchCount());
+        assertEquals(0, mSearch.getCancelledCount());
+    }
+
+    @Test
+    public void pauseMidWord_searchesBothAndCancelsNothingFinished() throws Exception {
+        type("brex", 100);
+        settle();
+        // Goes on typing the same word
+        mSearch.setQuery("brexi");
+        mScheduler.advance(100);
+        mSearch.setQuery("brexit");
+        settle();
+
+        assertEquals(Arrays.asList("brex", "brexit"), mRequested);
+        assertEquals(Arrays.asList("brex", "brexit"), mDelivered);
+        assertEquals(0, mSearch.getCancelledCount());
+    }
+
+    @Test
+    public void supersededSearch_isAbortedAndNeverDelivered() throws Exception {
+        type(SLOW_KEYWORD, 100);
+        mScheduler.advance(DEBOUNCE);
+        // The slow search is on the network, its body trickling in
+        mServer.takeRequest(5, TimeUnit.SECONDS);
+        long start = System.nanoTime();
+
+        type("brexit", 100);
+        settle();
+
+        // Cancelling closed the connection at once, not after the minute of the body
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(2, mRequested.size());
+        assertEquals(Collections.singletonList("brexit"), mDelivered);
+        assertEquals(1, mSearch.getCancelledCount());
+        assertEquals(1, mMaxFetching.get());
+        assertEquals(1, Metrics.getInstance().getCount(Metrics.COUNTER_CANCELLED));
+        assertEquals(0, Metrics.getInstance().getCount(Metrics.COUNTER_ERRORS));
+        // An aborted fetch says nothing about the health of the server
+        assertTrue(QueryUtils.getCircuitBreaker().allowRequest());
+    }
+
+    @Test
+    public void recentKeyword_isAnsweredFromCache() throws Exception {
+        type("brexit", 100);
+        settle();
+        // Deleting back to a keyword searched a moment ago
+        mSearch.setQuery("brexi");
+        mScheduler.advance(100);
+        mSearch.setQuery("Brexit ");
+        settle();
+
+        assertEquals(1, mRequested.size());
+        assertEquals(1, mSearch.getCacheHitCount());
+        assertEquals(2, mDelivered.size());
+        assertEquals("brexit", mDelivered.get(1));
+    }
+
+    @Test
+    public void expiredKeyword_isSearchedAgain() throws Exception {
+        type("brexit", 100);
+        settle();
+        mSearch.setQuery("");
+        mScheduler.advance(TTL);
+        mSearch.setQuery("brexit");
+        settle();
+
+        assertEquals(2, mRequested.size());
+        assertEquals(0, mSearch.getCacheHitCount());
+    }
+
+    @Test
+    public void clearedQuery_sendsNothing() throws Exception {
+        type("bre", 100);
+        mSearch.setQuery("");
+        settle();
+
+        assertEquals(0, mServer.getRequestCount());
+        assertTrue(mDelivered.isEmpty());
+        assertEquals(0, mSearch.getFetchCount());
+    }
+
+    /**
+     * Not an assertion beyond the one request in flight, only a report. Requests sent
+     * for the same sentence typed at different paces, against one per keystroke.
+     */
+    @Test
+    @Category(Report.class)
+    public void reportRequestsPerTypingPace() throws Exception {
+        String typed = "european union";
+        long[] paces = {80, 150, 250, 400};
+        System.out.println(String.format("Typing \"%s\", %d keystrokes, debounce %d ms", typed, typed.length(),
+                DEBOUNCE));
+        for (long pace : paces) {
+            int before = mServer.getRequestCount();
+            int cancelledBefore = mSearch.getCancelledCount();
+            mSearch.setQuery("");
+            type(typed, pace);
+            settle();
+            System.out.println(String.format("  %3d ms per key: %2d requests, %d cancelled", pace,
+                    mServer.getRequestCount() - before, mSearch.getCancelledCount() - cancelledBefore));
+        }
+        assertEquals(1, mMaxFetching.get());
+    }
+
+    // Type the keyword one character at a time, millis apart
+    private void type(String keyword, long millis) {
+        for (int i = 1; i <= keyword.length(); i++) {
+            mSearch.setQuery(keyword.substring(0, i));
+            if (i < keyword.length()) {
+                mScheduler.advance(millis);
+                awaitFetches();
+                // Results of a finished search are shown before the next keystroke
+                mScheduler.advance(0);
+            }
+        }
+    }
+
+    // Let the typing stop, wait for the fetches and deliver their results
+    private void settle() {
+        mScheduler.advance(DEBOUNCE);
+        awaitFetches();
+        mScheduler.advance(0);
+    }
+
+    private void awaitFetches() {
+        try {
+            mFetchExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
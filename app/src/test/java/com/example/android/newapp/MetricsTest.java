@@ -0,0 +1,120 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    private MockWebServer mServer;
+    private String mFixture;
+    private InMemoryMetricsExporter mExporter;
+    private Metrics mMetrics;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mFixture = TestFixtures.read(TestFixtures.SEARCH_10);
+        mMetrics = Metrics.getInstance();
+        mMetrics.reset();
+        mExporter = new InMemoryMetricsExporter();
+        mMetrics.addExporter(mExporter);
+        QueryUtils.getConditionalGetCache().clear();
+        QueryUtils.setRetryPolicy(new RetryPolicy(3, 10, 10));
+        QueryUtils.getCircuitBreaker().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mMetrics.removeExporter(mExporter);
+        mServer.shutdown();
+        QueryUtils.getConditionalGetCache().clear();
+        QueryUtils.setRetryPolicy(RetryPolicy.DEFAULT);
+    }
+
+    @Test
+    public void fetch_producesOneTraceTaggedWithTheQuery() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+
+        QueryUtils.fetchEarthquakeData(mServer.url("/search?section=news&q=brexit%20vote&api-key=secret").toString());
+
+        List<FetchTrace> traces = mExporter.getTraces();
+        assertEquals(1, traces.size());
+        FetchTrace trace = traces.get(0);
+        assertEquals("news", trace.getTags().get("section"));
+        assertEquals("brexit vote", trace.getTags().get("q"));
+        assertFalse(trace.getTags().containsKey("api-key"));
+        assertEquals(200, trace.getResponseCode());
+        assertEquals(TestFixtures.bytes(mFixture).length, trace.getBytes());
+        assertEquals(10, trace.getItems());
+        assertNull(trace.getError());
+        assertNotEquals(FetchTrace.NOT_MEASURED, trace.getTtfbNanos());
+        assertNotEquals(FetchTrace.NOT_MEASURED, trace.getBodyNanos());
+        assertTrue(trace.getTotalNanos() >= trace.getTtfbNanos());
+        assertFalse(trace.toJson().contains("secret"));
+    }
+
+    @Test
+    public void fetch_feedsTheStageHistogramsAndCounters() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+
+        QueryUtils.fetchEarthquakeData(mServer.url("/search?section=news").toString());
+        QueryUtils.fetchEarthquakeData(mServer.url("/search?section=sport").toString());
+
+        assertEquals(2, mMetrics.histogram(Metrics.STAGE_FETCH).getCount());
+        assertEquals(2, mMetrics.histogram(Metrics.STAGE_TTFB).getCount());
+        assertEquals(2, mMetrics.histogram(Metrics.STAGE_BODY).getCount());
+        assertEquals(2, mMetrics.getCount(Metrics.COUNTER_REQUESTS));
+        assertEquals(20, mMetrics.getCount(Metrics.COUNTER_ITEMS));
+        assertEquals(2 * TestFixtures.bytes(mFixture).length, mMetrics.getCount(Metrics.COUNTER_BYTES));
+        assertEquals(0, mMetrics.getCount(Metrics.COUNTER_ERRORS));
+        assertTrue(mMetrics.dump().contains("\"fetch\":{\"count\":2"));
+    }
+
+    @Test
+    public void failedFetch_isCountedAsError() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        QueryUtils.fetchEarthquakeData(mServer.url("/search?section=news").toString());
+
+        // One trace for the whole load, every attempt is counted as a request
+        assertEquals(1, mExporter.getTraces().size());
+        FetchTrace trace = mExporter.getTraces().get(0);
+        assertEquals(503, trace.getResponseCode());
+        assertEquals("http 503", trace.getError());
+        assertEquals(3, trace.getAttempts());
+        assertEquals(1, mMetrics.getCount(Metrics.COUNTER_ERRORS));
+        assertEquals(3, mMetrics.getCount(Metrics.COUNTER_REQUESTS));
+        assertEquals(2, mMetrics.getCount(Metrics.COUNTER_RETRIES));
+    }
+
+    @Test
+    public void histogramPercentiles_areWithinTheirBucket() {
+        Histogram histogram = new Histogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1000000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50500000L, histogram.getMeanNanos());
+        assertEquals(100000000L, histogram.getMaxNanos());
+        long median = histogram.getPercentileNanos(0.5);
+        assertTrue(median >= 50000000L && median <= 2 * 50000000L);
+        assertEquals(100000000L, histogram.getPercentileNanos(0.99));
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NewsCacheTest {
+
+    private static final long TTL = 60 * 1000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private FakeClock mClock;
+    private File mDirectory;
+    private String mFixture;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClock = new FakeClock(1548787331000L);
+        mDirectory = new File(mFolder.getRoot(), "news");
+        mFixture = TestFixtures.read(TestFixtures.SEARCH_10);
+        QueryUtils.getCircuitBreaker().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        QueryUtils.setRetryPolicy(RetryPolicy.DEFAULT);
+    }
+
+    @Test
+    public void cachedResponse_isServedAfterServerIsGone() throws Exception {
+        NewsCache cache = new NewsCache(mDirectory, NewsCache.DEFAULT_MAX_BYTES, TTL, mClock);
+        String url = url("section=news&q=poland&order-by=newest");
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+
+        List<News> fetched = QueryUtils.fetchEarthquakeData(url, cache);
+        mServer.shutdown();
+
+        // A new cache over the same directory stands for the app after process death
+        NewsCache.Entry entry = new NewsCache(mDirectory, NewsCache.DEFAULT_MAX_BYTES, TTL, mClock).get(url);
+        assertNotNull(entry);
+        assertTrue(entry.isFresh());
+        assertEquals(fetched.size(), entry.getNews().size());
+        for (int i = 0; i < fetched.size(); i++) {
+            assertEquals(fetched.get(i).getWebUrl(), entry.getNews().get(i).getWebUrl());
+            assertEquals(fetched.get(i).getAuthor(), entry.getNews().get(i).getAuthor());
+        }
+    }
+
+    @Test
+    public void entry_becomesStaleAfterTtl() throws Exception {
+        NewsCache cache = new NewsCache(mDirectory, NewsCache.DEFAULT_MAX_BYTES, TTL, mClock);
+        String url = url("section=news");
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        QueryUtils.fetchEarthquakeData(url, cache);
+
+        mClock.advance(TTL - 1);
+        assertTrue(cache.get(url).isFresh());
+
+        mClock.advance(1);
+        NewsCache.Entry stale = cache.get(url);
+        assertFalse(stale.isFresh());
+        assertEquals(10, stale.getNews().size());
+    }
+
+    @Test
+    public void malformedResponse_isNotCached() throws Exception {
+        NewsCache cache = new NewsCache(mDirectory, NewsCache.DEFAULT_MAX_BYTES, TTL, mClock);
+        String url = url("section=news");
+        mServer.enqueue(new MockResponse().setBody(mFixture.substring(0, mFixture.length() / 2)));
+
+        assertNull(QueryUtils.fetchEarthquakeData(url, cache));
+
+        assertNull(cache.get(url));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void errorResponse_isNotCached() throws Exception {
+        NewsCache cache = new NewsCache(mDirectory, NewsCache.DEFAULT_MAX_BYTES, TTL, mClock);
+        String url = url("section=news");
+        QueryUtils.setRetryPolicy(RetryPolicy.NONE);
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+
+        assertNull(QueryUtils.fetchEarthquakeData(url, cache));
+        assertNull(cache.get(url));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntry_isEvicted() throws Exception {
+        int entrySize = mFixture.getBytes("UTF-8").length + 8;
+        NewsCache cache = new NewsCache(mDirectory, entrySize * 2, TTL, mClock);
+        String first = url("section=news");
+        String second = url("section=sport");
+        String third = url("section=culture");
+
+        for (String url : new String[]{first, second}) {
+            mServer.enqueue(new MockResponse().setBody(mFixture));
+            QueryUtils.fetchEarthquakeData(url, cache);
+            mClock.advance(1000);
+        }
+        // Use the first entry so the second one becomes the oldest
+        assertNotNull(cache.get(first));
+        mClock.advance(1000);
+
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        QueryUtils.fetchEarthquakeData(third, cache);
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertTrue(cache.size() <= entrySize * 2);
+    }
+
+    @Test
+    public void leftTempFile_isDeletedWhenTheCacheOpens() throws Exception {
+        assertTrue(mDirectory.mkdirs());
+        File left = new File(mDirectory, "0123456789abcdef.json.7.tmp");
+        assertTrue(left.createNewFile());
+
+        new NewsCache(mDirectory, NewsCache.DEFAULT_MAX_BYTES, TTL, mClock);
+
+        assertFalse(left.exists());
+    }
+
+    @Test
+    public void trim_deletesLeftTempFilesButNotTheOnesBeingWritten() throws Exception {
+        NewsCache cache = new NewsCache(mDirectory, NewsCache.DEFAULT_MAX_BYTES, TTL, mClock);
+        String writing = url("section=news");
+        NewsCache.Recorder recorder = cache.record(writing, new ByteArrayInputStream(mFixture.getBytes("UTF-8")));
+        File left = new File(mDirectory, "0123456789abcdef.json.7.tmp");
+        assertTrue(left.createNewFile());
+
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        QueryUtils.fetchEarthquakeData(url("section=sport"), cache);
+
+        assertFalse(left.exists());
+        assertEquals(1, tempFiles());
+        recorder.commit(Collections.<News>emptyList());
+        assertEquals(0, tempFiles());
+        assertNotNull(cache.get(writing));
+    }
+
+    @Test
+    public void normalizeQuery_ignoresApiKeyAndParameterOrder() {
+        String a = NewsCache.normalizeQuery("https://content.guardianapis.com/search?section=news&q=poland&order-by=newest&api-key=one");
+        String b = NewsCache.normalizeQuery("https://content.guardianapis.com/search?order-by=newest&api-key=two&q=poland&section=news");
+        String c = NewsCache.normalizeQuery("https://content.guardianapis.com/search?order-by=newest&q=poland&section=sport");
+
+        assertEquals(a, b);
+        assertNotEquals(a, c);
+    }
+
+    private int tempFiles() {
+        int count = 0;
+        for (String name : mDirectory.list()) {
+            if (name.endsWith(".tmp")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+        private String url(String query) {
+        return mServer.url("/search?" + query + "&api-key=test").toString();
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.android.newapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a refresh asks only for the News published since the shown ones, puts
+ * them on top without duplicates and leaves the rest alone, and counts the parsing it
+ * saves against loading the first page again.
+ */
+public class NewsDeltaTest {
+
+    private static final long TTL = 10 * 60 * 1000;
+    private static final int PAGE_SIZE = 10;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private FakeClock mClock;
+    private NewsCache mCache;
+    private String mFixture;
+    private String mUrl;
+
+    /**
+     * Started loader which loads and delivers synchronously, so the refresh after a
+     * stale delivery happens right away.
+     */
+    private static class RefreshingLoader extends NewsLoader {
+
+        final List<List<News>> delivered = new ArrayList<>();
+
+        RefreshingLoader(String url, NewsCache cache) {
+            super(null, url, cache, null, true);
+            setDeltaRefresh(true);
+        }
+
+        @Override
+        public boolean isStarted() {
+            return true;
+        }
+
+        @Override
+        public void forceLoad() {
+            deliverResult(load());
+        }
+
+        @Override
+        public void deliverResult(List<News> data) {
+            delivered.add(data);
+            super.deliverResult(data);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClock = new FakeClock(1548787331000L);
+        mCache = new NewsCache(new File(mFolder.getRoot(), "news"), NewsCache.DEFAULT_MAX_BYTES, TTL, mClock,
+                new NewsMemoryCache(1024 * 1024));
+        mFixture = TestFixtures.read(TestFixtures.SEARCH_10);
+        mUrl = mServer.url("/search?section=news&page=1&page-size=" + PAGE_SIZE + "&api-key=test").toString();
+        QueryUtils.getConditionalGetCache().clear();
+        QueryUtils.getCircuitBreaker().reset();
+        Metrics.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        QueryUtils.getConditionalGetCache().clear();
+    }
+
+    @Test
+    public void merge_putsNewNewsOnTopAndKeepsShownOrder() {
+        List<News> shown = Arrays.asList(news("a", "2019-01-29T18:00:00Z"), news("b", "2019-01-29T17:00:00Z"),
+                news("c", "2019-01-29T16:00:00Z"));
+        // The newest shown one comes back, from-date is "on or after", and a new one twice
+        List<News> delta = Arrays.asList(news("e", "2019-01-29T19:30:00Z"), news("d", "2019-01-29T19:00:00Z"),
+                news("d", "2019-01-29T19:00:00Z"), news("a", "2019-01-29T18:00:00Z"));
+
+        List<News> merged = NewsDelta.merge(shown, delta);
+
+        assertEquals(Arrays.asList("e", "d", "a", "b", "c"), webUrls(merged));
+        // The shown News are kept as they are, not replaced by their copies from the delta
+        assertSame(shown.get(0), merged.get(2));
+    }
+
+    @Test
+    public void emptyDelta_leavesShownNews() {
+        List<News> shown = Arrays.asList(news("a", "2019-01-29T18:00:00Z"), news("b", "2019-01-29T17:00:00Z"));
+
+        assertEquals(webUrls(shown), webUrls(NewsDelta.merge(shown, new ArrayList<News>())));
+    }
+
+    @Test
+    public void url_asksFromNewestKnownDate() {
+        List<News> shown = Arrays.asList(news("a", "yesterday"), news("b", "2019-01-29T17:00:00Z"),
+                news("c", "2019-01-29T18:42:11Z"));
+
+        assertEquals("https://content.guardianapis.com/search?section=news&from-date=2019-01-29T18%3A42%3A11Z",
+                NewsDelta.url("https://content.guardianapis.com/search?section=news", shown));
+        assertNull(NewsDelta.url("https://content.guardianapis.com/search", Arrays.asList(news("a", "yesterday"))));
+    }
+
+    @Test
+    public void pageSize_isReadFromQuery() {
+        assertEquals(20, NewsDelta.pageSize("https://content.guardianapis.com/search?page=1&page-size=20"));
+        assertEquals(10, NewsDelta.pageSize("https://content.guardianapis.com/search?page=1"));
+    }
+
+    @Test
+    public void staleRefresh_loadsOnlyNewNewsAndMergesThemOnTop() throws Exception {
+        List<News> stale = primeStaleCache();
+        // Two new articles and the newest shown one again
+        mServer.enqueue(new MockResponse().setBody(delta(2, true)));
+
+        RefreshingLoader loader = new RefreshingLoader(mUrl, mCache);
+        loader.onStartLoading();
+
+        assertEquals(2, loader.delivered.size());
+        List<News> refreshed = loader.delivered.get(1);
+        assertTrue(loader.isDeltaResult());
+        assertEquals(PAGE_SIZE + 2, refreshed.size());
+        assertEquals(webUrls(stale), webUrls(refreshed.subList(2, refreshed.size())));
+
+        mServer.takeRequest();
+        RecordedRequest refresh = mServer.takeRequest();
+        assertEquals(NewsDates.format(newest(stale)), refresh.getRequestUrl().queryParameter("from-date"));
+        assertEquals(PAGE_SIZE - 3, Metrics.getInstance().getCount(Metrics.COUNTER_DELTA_SAVED));
+    }
+
+    @Test
+    public void fullDelta_loadsFirstPageAgain() throws Exception {
+        primeStaleCache();
+        // As many new News as a page, there may be more between them and the shown ones
+        mServer.enqueue(new MockResponse().setBody(delta(PAGE_SIZE, false)));
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+
+        RefreshingLoader loader = new RefreshingLoader(mUrl, mCache);
+        loader.onStartLoading();
+
+        assertFalse(loader.isDeltaResult());
+        assertEquals(PAGE_SIZE, loader.delivered.get(1).size());
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(0, Metrics.getInstance().getCount(Metrics.COUNTER_DELTA_SAVED));
+    }
+
+    @Test
+    public void failedDelta_keepsShownNews() throws Exception {
+        List<News> stale = primeStaleCache();
+        QueryUtils.setRetryPolicy(RetryPolicy.NONE);
+        try {
+            mServer.enqueue(new MockResponse().setResponseCode(503));
+
+            RefreshingLoader loader = new RefreshingLoader(mUrl, mCache);
+            loader.onStartLoading();
+
+            assertTrue(loader.isDeltaResult());
+            assertEquals(webUrls(stale), webUrls(loader.delivered.get(1)));
+        } finally {
+            QueryUtils.setRetryPolicy(RetryPolicy.DEFAULT);
+        }
+    }
+
+    /**
+     * Refreshes which each find 0 to 3 new articles only parse those and the newest one
+     * shown, instead of the whole first page.
+     */
+    @Test
+    public void deltaRefreshes_saveParsingTheShownNews() throws Exception {
+        List<News> stale = primeStaleCache();
+        int refreshes = 0;
+        int deltaParsed = 0;
+        for (int newNews = 0; newNews <= 3; newNews++) {
+            mServer.enqueue(new MockResponse().setBody(delta(newNews, true)));
+            RefreshingLoader loader = new RefreshingLoader(mUrl, mCache);
+            loader.onStartLoading();
+            assertTrue(loader.isDeltaResult());
+            assertEquals(stale.size() + newNews, loader.delivered.get(1).size());
+            refreshes++;
+            deltaParsed += newNews + 1;
+        }
+        long saved = Metrics.getInstance().getCount(Metrics.COUNTER_DELTA_SAVED);
+
+        assertEquals(refreshes * PAGE_SIZE - deltaParsed, saved);
+    }
+
+    // Load the fixture into the cache and let it go stale
+    private List<News> primeStaleCache() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        List<News> news = new NewsLoader(null, mUrl, mCache, null, false).load();
+        mClock.advance(TTL + 1);
+        return news;
+    }
+
+    // Response with new articles, optionally followed by the newest one of the fixture
+    private String delta(int newNews, boolean withNewestShown) throws Exception {
+        JSONObject root = new JSONObject(TestFixtures.repeat(TestFixtures.SEARCH_10, newNews, 100));
+        JSONArray results = root.getJSONObject("response").getJSONArray("results");
+        if (withNewestShown) {
+            results.put(new JSONObject(mFixture).getJSONObject("response").getJSONArray("results").get(0));
+        }
+        root.getJSONObject("response").put("pageSize", PAGE_SIZE);
+        return root.toString();
+    }
+
+    private static long newest(List<News> newsList) {
+        long newest = NewsDates.UNKNOWN;
+        for (News news : newsList) {
+            newest = Math.max(newest, news.getTimeInMillis());
+        }
+        return newest;
+    }
+
+    private static News news(String webUrl, String date) {
+        return new News("World news", "Title " + webUrl, webUrl, date, null, "News");
+    }
+
+    private static List<String> webUrls(List<News> newsList) {
+        List<String> webUrls = new ArrayList<>();
+        for (News news : newsList) {
+            webUrls.add(news.getWebUrl());
+        }
+        return webUrls;
+    }
+}
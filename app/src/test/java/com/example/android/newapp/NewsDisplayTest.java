@@ -0,0 +1,116 @@
+package com.example.android.newapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the display fields prepared when News are created, and that binding the rows
+ * of a table allocates nothing.
+ */
+public class NewsDisplayTest {
+
+    @Test
+    public void parse_matchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        for (News news : fixtureNews()) {
+            assertEquals(format.parse(news.getDate()).getTime(), news.getTimeInMillis());
+        }
+        assertEquals(0, NewsDates.parse("1970-01-01T00:00:00Z"));
+        assertEquals(951782400000L, NewsDates.parse("2000-02-29T00:00:00Z"));
+        assertEquals(951782400000L, NewsDates.parse("2000-02-29"));
+    }
+
+    @Test
+    public void parse_rejectsMalformedDates() {
+        assertEquals(NewsDates.UNKNOWN, NewsDates.parse(null));
+        assertEquals(NewsDates.UNKNOWN, NewsDates.parse(""));
+        assertEquals(NewsDates.UNKNOWN, NewsDates.parse("yesterday"));
+        assertEquals(NewsDates.UNKNOWN, NewsDates.parse("2019-13-01T00:00:00Z"));
+    }
+
+    @Test
+    public void isFormatted_onlyForTheFormattedTime() {
+        long millis = NewsDates.parse("2019-01-29T18:42:11Z");
+        assertTrue(NewsDates.isFormatted("2019-01-29T18:42:11Z", millis));
+        assertFalse(NewsDates.isFormatted("2019-01-29", NewsDates.parse("2019-01-29")));
+        assertFalse(NewsDates.isFormatted("2019-01-29T18:42Z", NewsDates.parse("2019-01-29T18:42Z")));
+        assertFalse(NewsDates.isFormatted(null, millis));
+        assertFalse(NewsDates.isFormatted("yesterday", NewsDates.UNKNOWN));
+    }
+
+    @Test
+    public void displayDate_matchesOldSplit() throws Exception {
+        for (News news : fixtureNews()) {
+            assertEquals(news.getDate().split("T")[0], news.getDisplayDate());
+        }
+        assertEquals("2019-01-29", NewsDates.displayDate("2019-01-29"));
+    }
+
+    @Test
+    public void bindLoop_allocatesNothing() throws Exception {
+        List<News> newsList = NewsParser.parse(new ByteArrayInputStream(
+                TestFixtures.bytes(TestFixtures.repeat(TestFixtures.SEARCH_10, 1000))));
+
+        // Colored the way the loader does, with the resource standing in for the color it names
+        List<News> colored = new ArrayList<>(newsList.size());
+        for (News news : newsList) {
+            colored.add(news.withSectionColor(SectionColors.getColorResource(news.getPillarName())));
+        }
+        NewsTable table = NewsTable.of(colored);
+        CountingRow row = new CountingRow();
+
+        // Warm up, so class loading and the JIT don't count
+        bindLoop(table, row);
+
+        long before = allocatedBytes();
+        bindLoop(table, row);
+        long bindBytes = allocatedBytes() - before;
+
+        assertTrue(row.mChecksum != 0);
+        assertTrue("bind loop allocated " + bindBytes + " bytes", bindBytes < 1024);
+    }
+
+    // Every row read the way the adapter reads it when binding
+    private static void bindLoop(NewsTable table, CountingRow row) {
+        for (int position = 0; position < table.size(); position++) {
+            NewsAdapter.bindRow(table, position, row);
+        }
+    }
+
+    /**
+     * Row without views, which only looks at what it is given.
+     */
+    private static final class CountingRow implements NewsAdapter.RowBinder {
+        int mChecksum;
+
+        @Override
+        public void bind(int sectionColor, String section, String title, String displayDate, String author,
+                         String thumbnailUrl) {
+            mChecksum += sectionColor + section.length() + title.length() + displayDate.length();
+            mChecksum += author != null ? author.length() : 0;
+            mChecksum += thumbnailUrl != null ? thumbnailUrl.length() : 0;
+        }
+    }
+
+    private static List<News> fixtureNews() throws Exception {
+        return NewsParser.parse(new ByteArrayInputStream(TestFixtures.bytes(TestFixtures.read(TestFixtures.SEARCH_10))));
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
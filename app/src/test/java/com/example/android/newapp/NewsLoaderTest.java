@@ -0,0 +1,176 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts the requests which reach the server while loaders are recreated and restarted
+ * the way the activity does it around rotations.
+ */
+public class NewsLoaderTest {
+
+    private static final long TTL = 10 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private FakeClock mClock;
+    private NewsCache mCache;
+    private String mFixture;
+    private String mUrl;
+
+    /**
+     * Loader which counts how often it was asked to load and to deliver.
+     */
+    private static class CountingLoader extends NewsLoader {
+
+        int loads;
+        int deliveries;
+
+        CountingLoader(String url, NewsCache cache) {
+            super(null, url, cache, null, true);
+        }
+
+        @Override
+        public void forceLoad() {
+            loads++;
+            deliverResult(load());
+        }
+
+        @Override
+        public void deliverResult(List<News> data) {
+            deliveries++;
+            super.deliverResult(data);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClock = new FakeClock(1548787331000L);
+        mCache = new NewsCache(new File(mFolder.getRoot(), "news"), NewsCache.DEFAULT_MAX_BYTES, TTL, mClock,
+                new NewsMemoryCache(1024 * 1024));
+        mFixture = TestFixtures.read(TestFixtures.SEARCH_10);
+        mUrl = mServer.url("/search?section=news&page=1&api-key=test").toString();
+        QueryUtils.getConditionalGetCache().clear();
+        QueryUtils.getRequestCoalescer().resetCounts();
+        TestFixtures.resetResilience();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        QueryUtils.getConditionalGetCache().clear();
+        TestFixtures.resetResilience();
+    }
+
+    @Test
+    public void recreatedLoaders_reuseTheParsedFeed() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        List<News> first = new NewsLoader(null, mUrl, mCache, null, true).load();
+
+        // Every rotation builds a new activity, which may build a new loader for the same query
+        for (int rotation = 0; rotation < 5; rotation++) {
+            List<News> again = new NewsLoader(null, mUrl, mCache, null, true).load();
+            assertEquals(first.size(), again.size());
+            assertEquals(first.get(0).getWebUrl(), again.get(0).getWebUrl());
+        }
+
+        assertEquals(1, mServer.getRequestCount());
+        // Answered from memory, the cache file was not parsed again
+        assertEquals(5, mCache.getMemoryCache().getHitCount());
+    }
+
+    @Test
+    public void malformedResponse_fallsBackToTheCachedNews() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        assertEquals(10, new NewsLoader(null, mUrl, mCache, null, false).load().size());
+
+        // Stale, so the next page loader goes to the network, which breaks off half way
+        mClock.advance(TTL + 1);
+        mServer.enqueue(new MockResponse().setBody(mFixture.substring(0, mFixture.length() / 2)));
+        List<News> newsList = new NewsLoader(null, mUrl, mCache, null, false).load();
+
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(10, newsList.size());
+    }
+
+    @Test
+    public void restartedLoader_deliversItsNewsWithoutLoading() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        CountingLoader loader = new CountingLoader(mUrl, mCache);
+        loader.onStartLoading();
+
+        // Rotations and coming back from the settings start the retained loader again
+        for (int start = 0; start < 5; start++) {
+            loader.onStartLoading();
+        }
+
+        assertEquals(1, loader.loads);
+        assertEquals(6, loader.deliveries);
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void resetLoader_loadsAgainFromMemory() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        CountingLoader loader = new CountingLoader(mUrl, mCache);
+        loader.onStartLoading();
+
+        loader.onReset();
+        loader.onStartLoading();
+
+        assertEquals(2, loader.loads);
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void concurrentLoadsOfTheSameQuery_shareOneRequest() throws Exception {
+        int loaders = 4;
+        mServer.enqueue(new MockResponse().setBody(mFixture).setBodyDelay(1, TimeUnit.SECONDS));
+        ExecutorService executor = Executors.newFixedThreadPool(loaders);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<News>>> results = new ArrayList<>();
+            for (int i = 0; i < loaders; i++) {
+                results.add(executor.submit(new Callable<List<News>>() {
+                    @Override
+                    public List<News> call() throws Exception {
+                        start.await();
+                        return new NewsLoader(null, mUrl, mCache, null, true).load();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<List<News>> result : results) {
+                assertEquals(10, result.get().size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(1, QueryUtils.getRequestCoalescer().getRequestCount());
+        assertEquals(loaders - 1, QueryUtils.getRequestCoalescer().getCoalescedCount());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.android.newapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NewsMemoryCacheTest {
+
+    @Test
+    public void leastRecentlyUsedQuery_isEvictedWhenOverTheLimit() {
+        List<News> feed = feed(20);
+        long feedBytes = NewsMemoryCache.estimateBytes(feed);
+        NewsMemoryCache cache = new NewsMemoryCache(feedBytes * 2);
+
+        cache.put("news", feed, 0);
+        cache.put("sport", feed, 0);
+        // Use the first query so the second one becomes the oldest
+        assertNotNull(cache.get("news"));
+        cache.put("culture", feed, 0);
+
+        assertNotNull(cache.get("news"));
+        assertNull(cache.get("sport"));
+        assertNotNull(cache.get("culture"));
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.size() <= feedBytes * 2);
+    }
+
+    @Test
+    public void queryBiggerThanTheLimit_isNotKept() {
+        NewsMemoryCache cache = new NewsMemoryCache(NewsMemoryCache.estimateBytes(feed(5)));
+        cache.put("news", feed(5), 0);
+
+        cache.put("sport", feed(50), 0);
+
+        assertNotNull(cache.get("news"));
+        assertNull(cache.get("sport"));
+    }
+
+    @Test
+    public void keptList_isNotChangedByTheCaller() {
+        NewsMemoryCache cache = new NewsMemoryCache(1024 * 1024);
+        List<News> feed = feed(3);
+        cache.put("news", feed, 0);
+
+        feed.clear();
+        cache.get("news").getNews().clear();
+
+        assertEquals(3, cache.get("news").getNews().size());
+    }
+
+    @Test
+    public void markFresh_restartsTheAge() {
+        NewsMemoryCache cache = new NewsMemoryCache(1024 * 1024);
+        cache.put("news", feed(3), 1000);
+
+        cache.markFresh("news", 5000);
+
+        assertEquals(5000, cache.get("news").getStoredAt());
+    }
+
+    private static List<News> feed(int size) {
+        List<News> newsList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            newsList.add(new News("World news", "Title " + i, "https://www.theguardian.com/world/" + i,
+                    "2019-01-29T17:45:20Z", "Christian Davies", "News"));
+        }
+        return newsList;
+    }
+}
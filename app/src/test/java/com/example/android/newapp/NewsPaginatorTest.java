@@ -0,0 +1,128 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NewsPaginatorTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int PREFETCH_DISTANCE = 3;
+    private static final int TOTAL = 35;
+
+    private MockWebServer mServer;
+
+    /** Rows of the list, standing for the adapter */
+    private final List<News> mRows = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        // Feed of 35 News served in pages of 10
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                int page = Integer.parseInt(request.getRequestUrl().queryParameter("page"));
+                int first = (page - 1) * PAGE_SIZE;
+                int count = Math.max(0, Math.min(PAGE_SIZE, TOTAL - first));
+                try {
+                    return new MockResponse().setBody(TestFixtures.repeat(TestFixtures.SEARCH_10, count, first));
+                } catch (Exception e) {
+                    return new MockResponse().setResponseCode(500);
+                }
+            }
+        });
+        mServer.start();
+        TestFixtures.resetResilience();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        QueryUtils.getConditionalGetCache().clear();
+        TestFixtures.resetResilience();
+    }
+
+    @Test
+    public void scrolling_requestsPagesInOrderOnce() throws Exception {
+        NewsPaginator paginator = new NewsPaginator(PAGE_SIZE, PREFETCH_DISTANCE);
+        mRows.addAll(paginator.onPageLoaded(1, QueryUtils.fetchEarthquakeData(url(1))));
+
+        // Far from the end nothing is requested
+        assertEquals(NewsPaginator.NO_PAGE, paginator.onScrolled(4, mRows.size()));
+
+        // Inside the prefetch distance page 2 is requested, and only once
+        int page = paginator.onScrolled(6, mRows.size());
+        assertEquals(2, page);
+        assertEquals(NewsPaginator.NO_PAGE, paginator.onScrolled(7, mRows.size()));
+        assertEquals(NewsPaginator.NO_PAGE, paginator.onScrolled(9, mRows.size()));
+        load(paginator, page, 10);
+
+        load(paginator, paginator.onScrolled(19, mRows.size()), 10);
+        load(paginator, paginator.onScrolled(29, mRows.size()), 5);
+
+        // Last page was short, so the end of the feed is reached
+        assertTrue(paginator.isEndReached());
+        assertEquals(NewsPaginator.NO_PAGE, paginator.onScrolled(34, mRows.size()));
+
+        assertEquals(TOTAL, mRows.size());
+        assertEquals(4, mServer.getRequestCount());
+        for (int expected = 1; expected <= 4; expected++) {
+            assertEquals(String.valueOf(expected), mServer.takeRequest().getRequestUrl().queryParameter("page"));
+        }
+    }
+
+    @Test
+    public void pageOverlappingShownRows_appendsOnlyNewNews() throws Exception {
+        NewsPaginator paginator = new NewsPaginator(PAGE_SIZE, PREFETCH_DISTANCE);
+        List<News> firstPage = QueryUtils.fetchEarthquakeData(url(1));
+        mRows.addAll(paginator.onPageLoaded(1, firstPage));
+
+        // New articles were published, so the second page starts with the last rows of the first
+        List<News> shifted = new ArrayList<>(firstPage.subList(7, 10));
+        shifted.addAll(QueryUtils.fetchEarthquakeData(url(2)).subList(0, 7));
+
+        List<News> appended = paginator.onPageLoaded(paginator.onScrolled(9, mRows.size()), shifted);
+
+        assertEquals(7, appended.size());
+        for (News news : appended) {
+            assertFalse(firstPage.contains(news));
+        }
+    }
+
+    @Test
+    public void failedPage_stopsPagingUntilReset() throws Exception {
+        NewsPaginator paginator = new NewsPaginator(PAGE_SIZE, PREFETCH_DISTANCE);
+        mRows.addAll(paginator.onPageLoaded(1, QueryUtils.fetchEarthquakeData(url(1))));
+
+        assertTrue(paginator.onPageLoaded(paginator.onScrolled(9, mRows.size()), null).isEmpty());
+        assertEquals(NewsPaginator.NO_PAGE, paginator.onScrolled(9, mRows.size()));
+
+        paginator.reset();
+        paginator.onPageLoaded(1, QueryUtils.fetchEarthquakeData(url(1)));
+        assertEquals(2, paginator.onScrolled(9, mRows.size()));
+    }
+
+    // Load the page and append its new News, like the activity does
+    private void load(NewsPaginator paginator, int page, int expectedAppended) {
+        List<News> appended = paginator.onPageLoaded(page, QueryUtils.fetchEarthquakeData(url(page)));
+        assertEquals(expectedAppended, appended.size());
+        mRows.addAll(appended);
+    }
+
+    private String url(int page) {
+        return mServer.url("/search?section=news&page=" + page + "&page-size=" + PAGE_SIZE).toString();
+    }
+}
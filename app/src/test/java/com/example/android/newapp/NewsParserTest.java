@@ -0,0 +1,56 @@
+package com.example.android.newapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks what the streaming parser reads out of the recorded response. How fast it is
+ * and what it allocates is measured by ParseBenchmark of the benchmark module.
+ */
+public class NewsParserTest {
+
+    @Test
+    public void streamingParse_joinsAuthorsAndKeepsMissingAuthorNull() throws Exception {
+        String json = TestFixtures.read(TestFixtures.SEARCH_10);
+        List<News> newsList = NewsParser.parse(new ByteArrayInputStream(TestFixtures.bytes(json)));
+
+        assertNull(newsList.get(2).getAuthor());
+        assertEquals("Alex Hern\nJulia Kollewe\nRob Davies", newsList.get(6).getAuthor());
+    }
+
+    @Test
+    public void streamingParse_readsThumbnailOutOfFields() throws Exception {
+        String json = TestFixtures.read(TestFixtures.SEARCH_10).replaceFirst("\"isHosted\": false,",
+                "\"fields\": {\"trailText\": \"MPs vote\", \"thumbnail\": \"https://media.guim.co.uk/1/500.jpg\"}, \"isHosted\": false,");
+        List<News> newsList = NewsParser.parse(new ByteArrayInputStream(TestFixtures.bytes(json)));
+
+        assertEquals(10, newsList.size());
+        assertEquals("https://media.guim.co.uk/1/500.jpg", newsList.get(0).getThumbnailUrl());
+        assertNull(newsList.get(1).getThumbnailUrl());
+    }
+
+    @Test
+    public void streamingParse_readsEveryResultOfALargePage() throws Exception {
+        String json = TestFixtures.repeat(TestFixtures.SEARCH_10, 500);
+
+        List<News> newsList = QueryUtils.extractNews(new ByteArrayInputStream(TestFixtures.bytes(json)));
+
+        assertEquals(500, newsList.size());
+        assertEquals(newsList.get(0).getTitle(), newsList.get(10).getTitle());
+    }
+
+    @Test
+    public void streamingParse_stopsOnMalformedResult() throws Exception {
+        String json = TestFixtures.read(TestFixtures.SEARCH_10).replaceFirst("\"pillarName\": \"Opinion\"", "\"pillar\": \"Opinion\"");
+
+        List<News> newsList = QueryUtils.extractNews(new ByteArrayInputStream(TestFixtures.bytes(json)));
+
+        // The News before the broken result are kept
+        assertEquals(2, newsList.size());
+    }
+}
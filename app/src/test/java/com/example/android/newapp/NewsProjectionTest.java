@@ -0,0 +1,175 @@
+package com.example.android.newapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks what the projections ask for and that the responses get smaller, with the recorded fixture served by a stand-in which adds and leaves out tags and
+ * fields the way the Guardian API does.
+ */
+public class NewsProjectionTest {
+
+    /** 1920 px tall xxhdpi phone */
+    private static final int SCREEN_HEIGHT = 1920;
+    private static final int ROW_HEIGHT = 130 * 3;
+    private static final int PREFETCH_DISTANCE = 5;
+    private static final int MAX_PAGE_SIZE = 20;
+
+    private MockWebServer mServer;
+    private OkHttpClient mClient;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                try {
+                    return new MockResponse().setBody(respond(request.getRequestUrl()));
+                } catch (Exception e) {
+                    return new MockResponse().setResponseCode(500);
+                }
+            }
+        });
+        mServer.start();
+        mClient = new OkHttpClient();
+        TestFixtures.resetResilience();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        TestFixtures.resetResilience();
+    }
+
+    @Test
+    public void feed_asksForContributorsAndThumbnail() {
+        assertEquals("contributor", NewsProjection.FEED.getShowTags());
+        assertEquals("thumbnail", NewsProjection.FEED.getShowFields());
+
+        NewsProjection titlesOnly = new NewsProjection(R.dimen.news_row_min_height);
+        assertNull(titlesOnly.getShowTags());
+        assertNull(titlesOnly.getShowFields());
+
+        // A slow link gets titles only
+        assertEquals(NewsProjection.FEED, NewsProjection.feed(FetchStrategy.DEFAULT));
+        assertNull(NewsProjection.feed(FetchStrategy.SMALL).getShowTags());
+        assertNull(NewsProjection.feed(FetchStrategy.SMALL).getShowFields());
+    }
+
+    @Test
+    public void pageSize_fillsScreenAndLeavesRoomToScroll() throws Exception {
+        // 5 rows visible, the paginator must not ask for page 2 before the list is scrolled
+        int pageSize = NewsProjection.pageSize(SCREEN_HEIGHT, ROW_HEIGHT, PREFETCH_DISTANCE, MAX_PAGE_SIZE);
+        assertEquals(11, pageSize);
+        NewsPaginator paginator = new NewsPaginator(pageSize, PREFETCH_DISTANCE);
+        paginator.onPageLoaded(1, TestFixtures.news(TestFixtures.repeat(TestFixtures.SEARCH_10, pageSize)));
+        assertEquals(NewsPaginator.NO_PAGE, paginator.onScrolled(4, pageSize));
+        assertEquals(2, paginator.onScrolled(5, pageSize));
+
+        // Never more than asked for, nor more than the API gives
+        assertEquals(MAX_PAGE_SIZE, NewsProjection.pageSize(10000, ROW_HEIGHT, PREFETCH_DISTANCE, MAX_PAGE_SIZE));
+        assertEquals(NewsProjection.MAX_PAGE_SIZE, NewsProjection.pageSize(10000, 10, PREFETCH_DISTANCE, 200));
+    }
+
+    @Test
+    public void trimmedResponse_parsesToSameRows() throws Exception {
+        List<News> full = NewsParser.parse(new ByteArrayInputStream(fetch(query(NewsProjection.FEED, MAX_PAGE_SIZE))));
+        List<News> trimmed = NewsParser.parse(new ByteArrayInputStream(
+                fetch(query(new NewsProjection(R.dimen.news_row_min_height, NewsProjection.Field.THUMBNAIL), 11))));
+
+        assertEquals(11, trimmed.size());
+        for (int i = 0; i < trimmed.size(); i++) {
+            assertEquals(full.get(i).getTitle(), trimmed.get(i).getTitle());
+            assertEquals(full.get(i).getWebUrl(), trimmed.get(i).getWebUrl());
+            assertEquals(full.get(i).getThumbnailUrl(), trimmed.get(i).getThumbnailUrl());
+            assertNull(trimmed.get(i).getAuthor());
+        }
+    }
+
+    /**
+     * The old query asked for a fixed page of 20 with contributors and thumbnails on
+     * every screen.
+     */
+    @Test
+    public void trimmedQueries_getSmallerResponses() throws Exception {
+        int pageSize = NewsProjection.pageSize(SCREEN_HEIGHT, ROW_HEIGHT, PREFETCH_DISTANCE, MAX_PAGE_SIZE);
+        NewsProjection noAuthor = new NewsProjection(R.dimen.news_row_min_height, NewsProjection.Field.THUMBNAIL);
+        NewsProjection titlesOnly = new NewsProjection(R.dimen.news_row_min_height);
+
+        int before = fetch(query(NewsProjection.FEED, MAX_PAGE_SIZE)).length;
+        int feed = fetch(query(NewsProjection.FEED, pageSize)).length;
+        int withoutAuthor = fetch(query(noAuthor, pageSize)).length;
+        int titles = fetch(query(titlesOnly, pageSize)).length;
+
+        assertTrue(feed < before);
+        assertTrue(withoutAuthor < feed);
+        assertTrue(titles < withoutAuthor);
+    }
+
+    private HttpUrl query(NewsProjection projection, int pageSize) {
+        HttpUrl.Builder url = mServer.url("/search").newBuilder()
+                .addQueryParameter("section", "news")
+                .addQueryParameter("order-by", "newest")
+                .addQueryParameter("page", "1")
+                .addQueryParameter("page-size", String.valueOf(pageSize));
+        if (projection.getShowTags() != null) {
+            url.addQueryParameter("show-tags", projection.getShowTags());
+        }
+        if (projection.getShowFields() != null) {
+            url.addQueryParameter("show-fields", projection.getShowFields());
+        }
+        return url.build();
+    }
+
+    private byte[] fetch(HttpUrl url) throws Exception {
+        Response response = mClient.newCall(new Request.Builder().url(url).build()).execute();
+        try {
+            assertEquals(200, response.code());
+            return response.body().bytes();
+        } finally {
+            response.close();
+        }
+    }
+
+    // The recorded page, cut to the page size, tags only when asked for and a
+    // thumbnail field on every result when asked for
+    private static String respond(HttpUrl url) throws Exception {
+        int pageSize = Integer.parseInt(url.queryParameter("page-size"));
+        JSONObject root = new JSONObject(TestFixtures.repeat(TestFixtures.SEARCH_10, pageSize));
+        JSONArray results = root.getJSONObject("response").getJSONArray("results");
+        boolean tags = "contributor".equals(url.queryParameter("show-tags"));
+        boolean thumbnail = "thumbnail".equals(url.queryParameter("show-fields"));
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            if (!tags) {
+                result.remove("tags");
+            }
+            if (thumbnail) {
+                result.put("fields", new JSONObject().put("thumbnail",
+                        "https://media.guim.co.uk/" + Integer.toHexString(result.getString("id").hashCode())
+                                + "/0_0_3000_1800/500.jpg"));
+            }
+        }
+        return root.toString();
+    }
+}
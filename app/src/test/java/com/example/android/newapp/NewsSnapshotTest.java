@@ -0,0 +1,150 @@
+package com.example.android.newapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that a snapshot gives back exactly the News it was written from, and is
+ * smaller than the JSON of the same feed.
+ */
+public class NewsSnapshotTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_matchesExtractNews() throws Exception {
+        List<News> expected = TestFixtures.news(TestFixtures.read(TestFixtures.SEARCH_10));
+
+        List<News> actual = NewsSnapshot.read(ByteBuffer.wrap(write(expected)));
+
+        assertEquals(10, expected.size());
+        assertSameNews(expected, actual);
+    }
+
+    @Test
+    public void roundTripThroughFile_matchesExtractNewsOnLargeFeed() throws Exception {
+        List<News> expected = TestFixtures.news(TestFixtures.repeat(TestFixtures.SEARCH_10, 1000));
+        File file = new File(mFolder.getRoot(), "feed.snapshot");
+
+        NewsSnapshot.write(expected, file);
+
+        assertSameNews(expected, NewsSnapshot.read(file));
+    }
+
+    @Test
+    public void repeatedStrings_areStoredOnceAndShared() throws Exception {
+        List<News> newsList = TestFixtures.news(TestFixtures.repeat(TestFixtures.SEARCH_10, 1000));
+
+        List<News> restored = NewsSnapshot.read(ByteBuffer.wrap(write(newsList)));
+
+        // Copy 10 is the first result again
+        assertSame(restored.get(0).getSection(), restored.get(10).getSection());
+        assertSame(restored.get(0).getPillarName(), restored.get(10).getPillarName());
+        assertSame(restored.get(0).getAuthor(), restored.get(10).getAuthor());
+    }
+
+    @Test
+    public void missingFieldsAndOddDates_survive() throws Exception {
+        List<News> expected = Arrays.asList(
+                new News("World news", "Title", "https://www.theguardian.com/a", "2019-01-29", null, "News",
+                        "https://media.guim.co.uk/a/500.jpg"),
+                new News("Sport", "Title", "https://www.theguardian.com/b", "yesterday", "Barney Ronay", "Sport"),
+                new News("Sport", "Title", "https://www.theguardian.com/c", null, null, "Sport"));
+
+        List<News> actual = NewsSnapshot.read(ByteBuffer.wrap(write(expected)));
+
+        assertSameNews(expected, actual);
+        assertNull(actual.get(2).getDate());
+        assertEquals(NewsDates.UNKNOWN, actual.get(1).getTimeInMillis());
+    }
+
+    @Test
+    public void brokenSnapshot_isRejected() throws Exception {
+        byte[] snapshot = write(TestFixtures.news(TestFixtures.read(TestFixtures.SEARCH_10)));
+
+        assertRejected(Arrays.copyOf(snapshot, snapshot.length - 1));
+        assertRejected(Arrays.copyOf(snapshot, 10));
+        assertRejected(TestFixtures.bytes(TestFixtures.read(TestFixtures.SEARCH_10)));
+        assertRejected(new byte[0]);
+
+        // Counts no file of this size could hold are rejected before anything is allocated
+        byte[] strings = snapshot.clone();
+        ByteBuffer.wrap(strings).putInt(8, Integer.MAX_VALUE);
+        assertRejected(strings);
+        byte[] news = snapshot.clone();
+        ByteBuffer.wrap(news).putInt(12, Integer.MAX_VALUE / 2);
+        assertRejected(news);
+    }
+
+    @Test
+    public void dates_areFormattedBackExactly() {
+        for (String date : new String[]{"1970-01-01T00:00:00Z", "1969-12-31T23:59:59Z", "2000-02-29T12:00:00Z",
+                "2019-01-29T18:42:11Z", "2099-12-31T23:59:59Z"}) {
+            assertEquals(date, NewsDates.format(NewsDates.parse(date)));
+        }
+    }
+
+    /**
+     * How restoring from the snapshot compares in time with parsing the JSON is measured
+     * by SnapshotBenchmark of the benchmark module.
+     */
+    @Test
+    public void snapshot_isSmallerThanTheJson() throws Exception {
+        byte[] json = TestFixtures.bytes(TestFixtures.repeat(TestFixtures.SEARCH_10, 1000));
+        List<News> newsList = QueryUtils.extractNews(new ByteArrayInputStream(json));
+        File file = new File(mFolder.getRoot(), "feed.snapshot");
+
+        NewsSnapshot.write(newsList, file);
+
+        assertTrue(file.length() < json.length);
+        assertSameNews(newsList, NewsSnapshot.read(file));
+    }
+
+    private static byte[] write(List<News> newsList) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NewsSnapshot.write(newsList, output);
+        return output.toByteArray();
+    }
+
+    private static void assertRejected(byte[] snapshot) {
+        try {
+            NewsSnapshot.read(ByteBuffer.wrap(snapshot));
+            fail("Read a broken snapshot");
+        } catch (IOException expected) {
+            // The caller falls back to the network
+        }
+    }
+
+    private static void assertSameNews(List<News> expected, List<News> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            News e = expected.get(i);
+            News a = actual.get(i);
+            assertEquals(e.getSection(), a.getSection());
+            assertEquals(e.getTitle(), a.getTitle());
+            assertEquals(e.getWebUrl(), a.getWebUrl());
+            assertEquals(e.getDate(), a.getDate());
+            assertEquals(e.getAuthor(), a.getAuthor());
+            assertEquals(e.getPillarName(), a.getPillarName());
+            assertEquals(e.getThumbnailUrl(), a.getThumbnailUrl());
+            assertEquals(e.getTimeInMillis(), a.getTimeInMillis());
+            assertEquals(e.getDisplayDate(), a.getDisplayDate());
+        }
+    }
+}
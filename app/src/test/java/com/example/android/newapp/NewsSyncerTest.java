@@ -0,0 +1,221 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class NewsSyncerTest {
+
+    private static final long TTL = 10 * 60 * 1000;
+
+    /** Time every request takes on the fake clock */
+    private static final long REQUEST_MILLIS = 200;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private FakeClock mClock;
+    private NewsCache mCache;
+    private ExecutorService mExecutor;
+    private final Map<String, List<News>> mSynced = Collections.synchronizedMap(new HashMap<String, List<News>>());
+    private volatile boolean mServerDown;
+
+    /** Holds the answers back while set, counted down once a request arrived */
+    private volatile CountDownLatch mRequested;
+    private volatile CountDownLatch mRelease;
+
+    @Before
+    public void setUp() throws Exception {
+        final String fixture = TestFixtures.read(TestFixtures.SEARCH_10);
+        mClock = new FakeClock(1548787331000L);
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                mClock.advance(REQUEST_MILLIS);
+                CountDownLatch release = mRelease;
+                if (release != null) {
+                    mRequested.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (mServerDown) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                return new MockResponse().setBody(fixture);
+            }
+        });
+        mServer.start();
+        mCache = new NewsCache(new File(mFolder.getRoot(), "news"), NewsCache.DEFAULT_MAX_BYTES, TTL, mClock);
+        mExecutor = Executors.newFixedThreadPool(SectionFanOut.MAX_PARALLEL_REQUESTS);
+        QueryUtils.getConditionalGetCache().clear();
+        TestFixtures.resetResilience();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mRelease != null) {
+            mRelease.countDown();
+        }
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+        QueryUtils.getConditionalGetCache().clear();
+        TestFixtures.resetResilience();
+    }
+
+    @Test
+    public void sync_writesEveryQueryIntoTheCache() throws Exception {
+        List<String> urls = urls("news", "sport", "culture");
+
+        NewsSyncer.Result result = syncer().sync(urls);
+
+        assertEquals(3, result.getFetched());
+        assertEquals(0, result.getSkipped());
+        assertEquals(0, result.getFailed());
+        assertEquals(3, mServer.getRequestCount());
+        for (String url : urls) {
+            NewsCache.Entry entry = mCache.get(url);
+            assertNotNull(entry);
+            assertTrue(entry.isFresh());
+            assertEquals(10, mSynced.get(url).size());
+        }
+    }
+
+    @Test
+    public void sync_recordsHowLongItTook() throws Exception {
+        long start = mClock.currentTimeMillis();
+
+        NewsSyncer.Result result = syncer().sync(urls("news", "sport"));
+
+        assertEquals(start, result.getStartedAt());
+        assertEquals(2 * REQUEST_MILLIS, result.getDurationMillis());
+    }
+
+    @Test
+    public void freshQueries_areNotRequestedAgain() throws Exception {
+        List<String> urls = urls("news", "sport");
+        syncer().sync(urls);
+        mClock.advance(TTL / 2);
+
+        NewsSyncer.Result result = syncer().sync(urls);
+
+        assertEquals(0, result.getFetched());
+        assertEquals(2, result.getSkipped());
+        assertEquals(0, result.getDurationMillis());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void staleQueries_areRequestedAgain() throws Exception {
+        syncer().sync(urls("news"));
+        mClock.advance(TTL);
+        List<String> urls = urls("news", "sport");
+
+        NewsSyncer.Result result = syncer().sync(urls);
+
+        assertEquals(2, result.getFetched());
+        assertEquals(0, result.getSkipped());
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void failedSync_asksForRetryAndKeepsTheCache() throws Exception {
+        List<String> urls = urls("news");
+        syncer().sync(urls);
+        mClock.advance(TTL);
+        mServerDown = true;
+        mSynced.clear();
+
+        NewsSyncer.Result result = syncer().sync(urls);
+
+        assertEquals(1, result.getFailed());
+        assertTrue(result.needsRetry());
+        assertTrue(mSynced.isEmpty());
+        NewsCache.Entry entry = mCache.get(urls.get(0));
+        assertNotNull(entry);
+        assertFalse(entry.isFresh());
+    }
+
+    @Test
+    public void cancelledSync_abortsItsRequestAndSendsNoMore() throws Exception {
+        mRequested = new CountDownLatch(1);
+        mRelease = new CountDownLatch(1);
+        final FetchCancellation cancellation = new FetchCancellation();
+        final List<String> urls = urls("news", "sport", "world");
+        // One request at a time, the other two wait for the executor
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final NewsSyncer syncer = syncer(executor);
+        final AtomicBoolean stopped = new AtomicBoolean();
+        Thread syncing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    syncer.sync(urls, cancellation);
+                } catch (InterruptedException e) {
+                    stopped.set(true);
+                }
+            }
+        });
+        syncing.start();
+        assertTrue(mRequested.await(10, TimeUnit.SECONDS));
+
+        cancellation.cancel();
+        syncing.join(5000);
+        executor.shutdownNow();
+
+        assertFalse(syncing.isAlive());
+        assertTrue(stopped.get());
+        assertEquals(1, mServer.getRequestCount());
+        assertTrue(mSynced.isEmpty());
+    }
+
+    private NewsSyncer syncer() {
+        return syncer(mExecutor);
+    }
+
+    private NewsSyncer syncer(Executor executor) {
+        return new NewsSyncer(mCache, new NewsSyncer.Sink() {
+            @Override
+            public void onSynced(String url, List<News> newsList) {
+                mSynced.put(url, newsList);
+            }
+        }, mClock, executor);
+    }
+
+    private List<String> urls(String... sections) {
+        String[] urls = new String[sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            urls[i] = mServer.url("/search?section=" + sections[i] + "&page=1&api-key=test").toString();
+        }
+        return Arrays.asList(urls);
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.android.newapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a table gives back the News it was built from, row by row and after
+ * appending and prepending. The {@link Report} prints its heap footprint against a
+ * list of News.
+ */
+public class NewsTableTest {
+
+    private List<News> mRecorded;
+
+    @Before
+    public void setUp() throws Exception {
+        mRecorded = TestFixtures.news(TestFixtures.read(TestFixtures.SEARCH_10));
+    }
+
+    @Test
+    public void rows_matchNewsTheyWereBuiltFrom() {
+        List<News> expected = feed(0, 50);
+
+        NewsTable table = NewsTable.of(expected);
+
+        assertEquals(expected.size(), table.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertSameNews(expected.get(row), table.get(row));
+            assertEquals(expected.get(row).getDisplayDate(), table.getDisplayDate(row));
+        }
+        assertSameNews(expected.get(7), table.asList().get(7));
+    }
+
+    @Test
+    public void repeatedValues_areStoredOnce() {
+        NewsTable table = NewsTable.of(feed(0, 50));
+
+        // Row 10 is a copy of row 0, with strings of its own like the parser gives
+        assertSame(table.getSection(0), table.getSection(10));
+        assertSame(table.getPillarName(0), table.getPillarName(10));
+        assertSame(table.getAuthor(0), table.getAuthor(10));
+        assertSame(table.getDisplayDate(0), table.getDisplayDate(10));
+    }
+
+    @Test
+    public void oddDates_areKeptAsReceived() {
+        List<News> newsList = Arrays.asList(
+                new News("World news", "Formatted", "https://www.theguardian.com/world/a", "2019-01-29T18:42:11Z",
+                        null, "News"),
+                new News("World news", "No seconds", "https://www.theguardian.com/world/b", "2019-01-29T18:42Z",
+                        null, "News"),
+                new News("World news", "Unknown", "https://www.theguardian.com/world/c", "yesterday", null, "News"),
+                new News("World news", "None", "c", null, null, null));
+
+        NewsTable table = NewsTable.of(newsList);
+
+        for (int row = 0; row < newsList.size(); row++) {
+            assertSameNews(newsList.get(row), table.get(row));
+        }
+        assertNull(table.getDate(3));
+        assertNull(table.getAuthor(0));
+    }
+
+    @Test
+    public void missingWebUrl_isKeptAsNull() {
+        NewsTable table = NewsTable.of(Arrays.asList(
+                new News("World news", "No url", null, "2019-01-29T18:42:11Z", null, "News")));
+
+        assertNull(table.getWebUrl(0));
+        assertNull(table.get(0).getWebUrl());
+        assertTrue(table.hasSameWebUrl(0, table, 0));
+        assertFalse(table.hasSameWebUrl(0, NewsTable.of(feed(0, 1)), 0));
+    }
+
+    @Test
+    public void appendAndPrepend_keepRowsInOrder() {
+        List<News> firstPage = feed(0, 20);
+        List<News> secondPage = feed(20, 20);
+        List<News> delta = feed(100, 3);
+        NewsTable table = NewsTable.of(firstPage);
+
+        NewsTable appended = table.append(secondPage);
+        NewsTable refreshed = appended.prepend(delta);
+
+        List<News> expected = new ArrayList<>(delta);
+        expected.addAll(firstPage);
+        expected.addAll(secondPage);
+        assertEquals(expected.size(), refreshed.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertSameNews(expected.get(row), refreshed.get(row));
+        }
+        // Tables never change
+        assertEquals(20, table.size());
+        assertSame(table, table.append(new ArrayList<News>()));
+    }
+
+    @Test
+    public void appendMissing_dropsTheNewsShownAlready_likeThePaginator() {
+        List<News> firstPage = feed(0, 20);
+        // Overlaps the first page by five, e.g. News published meanwhile moved them down
+        List<News> secondPage = feed(15, 20);
+        NewsPaginator paginator = new NewsPaginator(20, 5);
+        paginator.onPageLoaded(1, firstPage);
+
+        NewsTable table = NewsTable.of(firstPage).appendMissing(secondPage);
+
+        List<News> expected = new ArrayList<>(firstPage);
+        expected.addAll(paginator.onPageLoaded(2, secondPage));
+        assertEquals(35, expected.size());
+        assertEquals(expected.size(), table.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertSameNews(expected.get(row), table.get(row));
+        }
+
+        List<News> delta = new ArrayList<>(feed(100, 3));
+        delta.addAll(firstPage);
+        NewsTable refreshed = table.prependMissing(delta);
+        assertEquals(table.size() + 3, refreshed.size());
+        assertSameNews(delta.get(2), refreshed.get(2));
+        assertSameNews(firstPage.get(0), refreshed.get(3));
+    }
+
+    @Test
+    public void rowsOfDifferentTables_compareByColumns() {
+        NewsTable table = NewsTable.of(feed(0, 20));
+        NewsTable other = NewsTable.of(feed(5, 20));
+
+        assertTrue(table.hasSameWebUrl(5, other, 0));
+        assertTrue(table.hasSameContents(5, other, 0));
+        assertFalse(table.hasSameWebUrl(5, other, 1));
+
+        News changed = feed(5, 1).get(0);
+        NewsTable retitled = NewsTable.of(Arrays.asList(new News(changed.getSection(), "changed title",
+                changed.getWebUrl(), changed.getDate(), changed.getAuthor(), changed.getPillarName(),
+                changed.getThumbnailUrl())));
+        assertTrue(table.hasSameWebUrl(5, retitled, 0));
+        assertFalse(table.hasSameContents(5, retitled, 0));
+    }
+
+    /**
+     * Not an assertion of the sizes themselves, only that the table is smaller, the
+     * numbers are printed. Measured as the heap still used after a collection, so they
+     * move a little from run to run.
+     */
+    @Test
+    @Category(Report.class)
+    public void reportHeapFootprint() {
+        System.out.println("Heap taken by a feed, list of News against table");
+        for (int size : new int[]{1000, 10000, 50000}) {
+            long base = usedHeap();
+            List<News> newsList = feed(0, size);
+            long listBytes = usedHeap() - base;
+
+            NewsTable table = NewsTable.of(newsList);
+            newsList = null;
+            long tableBytes = usedHeap() - base;
+
+            System.out.println(String.format("  %6d News: list %9d bytes (%4d per News), table %9d bytes (%4d per row),"
+                    + " %5.1f%%", size, listBytes, listBytes / size, tableBytes, tableBytes / size,
+                    100.0 * tableBytes / listBytes));
+            assertEquals(size, table.size());
+            if (size >= 10000) {
+                assertTrue(tableBytes < listBytes);
+            }
+        }
+    }
+
+    // Copies of the recorded News with their own urls and their own String objects,
+    // as parsing a long feed gives them, and a thumbnail each like the feed asks for
+    private List<News> feed(int firstCopy, int count) {
+        List<News> newsList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int number = firstCopy + i;
+            News recorded = mRecorded.get(number % mRecorded.size());
+            News news = new News(copy(recorded.getSection()), copy(recorded.getTitle()),
+                    recorded.getWebUrl() + "-" + number, copy(recorded.getDate()), copy(recorded.getAuthor()),
+                    copy(recorded.getPillarName()),
+                    "https://media.guim.co.uk/" + Integer.toHexString(number * 31 + 7) + "/0_0_3000_1800/500.jpg");
+            newsList.add(news.withSectionColor(0xff000000 | recorded.getSection().hashCode()));
+        }
+        return newsList;
+    }
+
+    private static String copy(String string) {
+        return string != null ? new String(string) : null;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static void assertSameNews(News expected, News actual) {
+        assertEquals(expected.getSection(), actual.getSection());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getWebUrl(), actual.getWebUrl());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getPillarName(), actual.getPillarName());
+        assertEquals(expected.getThumbnailUrl(), actual.getThumbnailUrl());
+        assertEquals(expected.getTimeInMillis(), actual.getTimeInMillis());
+        assertEquals(expected.getDisplayDate(), actual.getDisplayDate());
+        assertEquals(expected.getSectionColor(), actual.getSectionColor());
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.android.newapp;
+
+/**
+ * Category of the tests which only print how something performs, timings or heap sizes
+ * moving from run to run. The unit tests leave them out, -Preports runs them.
+ */
+interface Report {
+}
@@ -0,0 +1,286 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scripts failures on a local server and checks what is tried again, when the loaders
+ * stop asking and how long a load may take.
+ */
+public class ResilientFetchTest {
+
+    private static final long TTL = 60 * 1000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private FakeClock mClock;
+    private NewsCache mCache;
+    private String mFixture;
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClock = new FakeClock(1548787331000L);
+        mCache = new NewsCache(new File(mFolder.getRoot(), "news"), NewsCache.DEFAULT_MAX_BYTES, TTL, mClock);
+        mFixture = TestFixtures.read(TestFixtures.SEARCH_10);
+        mUrl = mServer.url("/search?section=news&page=1&api-key=test").toString();
+        QueryUtils.getConditionalGetCache().clear();
+        // Short waits keep the tests fast
+        QueryUtils.setRetryPolicy(new RetryPolicy(3, 10, 10));
+        QueryUtils.getCircuitBreaker().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        QueryUtils.getConditionalGetCache().clear();
+        TestFixtures.resetResilience();
+    }
+
+    @Test
+    public void transientFailures_areTriedAgain() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setResponseCode(502));
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+
+        List<News> newsList = QueryUtils.fetchEarthquakeData(mUrl, mCache);
+
+        assertEquals(10, newsList.size());
+        assertEquals(3, mServer.getRequestCount());
+        assertNotNull(mCache.get(mUrl));
+        assertEquals(CircuitBreaker.State.CLOSED, QueryUtils.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void clientErrors_areNotTriedAgain() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(404));
+
+        assertNull(QueryUtils.fetchEarthquakeData(mUrl, mCache));
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void retryAfter_isWaitedFor() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+
+        long start = System.nanoTime();
+        List<News> newsList = QueryUtils.fetchEarthquakeData(mUrl, mCache);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(10, newsList.size());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis >= 1000);
+    }
+
+    @Test
+    public void retryAfterPastTheDeadline_givesUpAtOnce() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "120"));
+
+        long start = System.nanoTime();
+        assertNull(QueryUtils.fetchEarthquakeData(mUrl, mCache));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(1, mServer.getRequestCount());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1000);
+    }
+
+    @Test
+    public void slowServer_isCutAtTheDeadline() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mServer.enqueue(new MockResponse().setBody(mFixture).setHeadersDelay(5, TimeUnit.SECONDS));
+        }
+
+        long start = System.nanoTime();
+        assertNull(QueryUtils.fetchEarthquakeData(mUrl, mCache, 500));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis >= 500 && elapsedMillis < 1500);
+    }
+
+    @Test
+    public void slowBody_isCutAtTheDeadline() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(mFixture).throttleBody(256, 1, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        QueryUtils.fetchEarthquakeData(mUrl, mCache, 500);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1500);
+        assertNull(mCache.get(mUrl));
+    }
+
+    @Test
+    public void openBreaker_servesTheCacheWithoutAsking() throws Exception {
+        QueryUtils.setCircuitBreaker(new CircuitBreaker(2, 30 * 1000, mClock));
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        new NewsLoader(null, mUrl, mCache, null, false).load();
+        mClock.advance(TTL);
+
+        // The API goes down, every load still gets the stale feed
+        for (int i = 0; i < 2 * 3; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(503));
+        }
+        for (int load = 0; load < 2; load++) {
+            assertEquals(10, new NewsLoader(null, mUrl, mCache, null, false).load().size());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, QueryUtils.getCircuitBreaker().getState());
+        int requests = mServer.getRequestCount();
+
+        // While the breaker is open nothing goes out
+        long start = System.nanoTime();
+        List<News> newsList = new NewsLoader(null, mUrl, mCache, null, false).load();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(10, newsList.size());
+        assertEquals(requests, mServer.getRequestCount());
+        assertEquals(1, QueryUtils.getCircuitBreaker().getRejectedCount());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 100);
+    }
+
+    @Test
+    public void probeAfterTheOpenTime_closesTheBreaker() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 30 * 1000, mClock);
+        QueryUtils.setCircuitBreaker(breaker);
+        QueryUtils.setRetryPolicy(RetryPolicy.NONE);
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        assertNull(QueryUtils.fetchEarthquakeData(mUrl, mCache));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        mClock.advance(30 * 1000);
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+
+        assertEquals(10, QueryUtils.fetchEarthquakeData(mUrl, mCache).size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void cancelDuringTheBackoff_givesUpWithoutAFailure() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 30 * 1000, mClock);
+        QueryUtils.setCircuitBreaker(breaker);
+        mServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "5"));
+        final FetchCancellation cancellation = new FetchCancellation();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                cancellation.cancel();
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        assertNull(QueryUtils.fetchEarthquakeData(mUrl, mCache, QueryUtils.LOAD_DEADLINE_MILLIS, cancellation));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 2000);
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void interruptDuringTheBackoff_keepsTheFlagWithoutAFailure() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 30 * 1000, mClock);
+        QueryUtils.setCircuitBreaker(breaker);
+        mServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "5"));
+        final Thread fetching = Thread.currentThread();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                fetching.interrupt();
+            }
+        }).start();
+
+        assertNull(QueryUtils.fetchEarthquakeData(mUrl, mCache));
+
+        // Clears the flag for the next tests too
+        assertTrue(Thread.interrupted());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void cancelledProbe_letsTheNextRequestProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 30 * 1000, mClock);
+        QueryUtils.setCircuitBreaker(breaker);
+        QueryUtils.setRetryPolicy(RetryPolicy.NONE);
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        assertNull(QueryUtils.fetchEarthquakeData(mUrl, mCache));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        mClock.advance(30 * 1000);
+        FetchCancellation cancellation = new FetchCancellation();
+        cancellation.cancel();
+        assertNull(QueryUtils.fetchEarthquakeData(mUrl, mCache, QueryUtils.LOAD_DEADLINE_MILLIS, cancellation));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // Not stuck half open, the next request goes out as the probe
+        mServer.enqueue(new MockResponse().setBody(mFixture));
+        assertEquals(10, QueryUtils.fetchEarthquakeData(mUrl, mCache).size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void failedProbe_opensTheBreakerAgain() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000, mClock);
+        breaker.onFailure();
+        mClock.advance(1000);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only one probe at a time
+        assertFalse(breaker.allowRequest());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void backoff_growsAndStaysBelowItsBound() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 300);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.getDelayMillis(1, RetryPolicy.NO_RETRY_AFTER) < 100);
+            assertTrue(policy.getDelayMillis(2, RetryPolicy.NO_RETRY_AFTER) < 200);
+            assertTrue(policy.getDelayMillis(4, RetryPolicy.NO_RETRY_AFTER) < 300);
+            assertTrue(policy.getDelayMillis(1, 2000) >= 2000);
+        }
+    }
+
+    @Test
+    public void retryAfter_isReadAsSecondsOrDate() {
+        long now = 1548787331000L;
+        assertEquals(5000, RetryPolicy.parseRetryAfter("5", now));
+        assertEquals(10000, RetryPolicy.parseRetryAfter("Tue, 29 Jan 2019 18:42:21 GMT", now));
+        assertEquals(RetryPolicy.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter("soon", now));
+        assertEquals(RetryPolicy.NO_RETRY_AFTER, RetryPolicy.parseRetryAfter(null, now));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SectionFanOutTest {
+
+    /** Delay of each section, the slowest one decides the total time */
+    private static final String[] SECTIONS = {"news", "sport", "technology"};
+    private static final long[] DELAYS_MILLIS = {300, 600, 900};
+
+    private MockWebServer mServer;
+    private ExecutorService mExecutor;
+    private SectionFanOut mFanOut;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String section = request.getRequestUrl().queryParameter("section");
+                int index = Arrays.asList(SECTIONS).indexOf(section);
+                if (index < 0) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                try {
+                    // Sections overlap by one article, which has to be kept once
+                    String body = TestFixtures.repeat(TestFixtures.SEARCH_10, 10, index * 9);
+                    return new MockResponse().setBody(body)
+                            .setHeadersDelay(DELAYS_MILLIS[index], TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    return new MockResponse().setResponseCode(500);
+                }
+            }
+        });
+        mServer.start();
+        mExecutor = Executors.newFixedThreadPool(SectionFanOut.MAX_PARALLEL_REQUESTS);
+        mFanOut = new SectionFanOut(mExecutor, new SectionFanOut.Fetcher() {
+            @Override
+            public List<News> fetch(String url) {
+                return QueryUtils.fetchEarthquakeData(url);
+            }
+        });
+        QueryUtils.getConditionalGetCache().clear();
+        TestFixtures.resetResilience();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+        TestFixtures.resetResilience();
+    }
+
+    @Test
+    public void totalLatency_followsSlowestSection() throws Exception {
+        long start = System.nanoTime();
+        List<News> merged = mFanOut.fetch(urls(SECTIONS), null);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long slowest = DELAYS_MILLIS[2];
+        long sum = DELAYS_MILLIS[0] + DELAYS_MILLIS[1] + DELAYS_MILLIS[2];
+
+        assertTrue(elapsedMillis >= slowest);
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < slowest + (sum - slowest) / 2);
+        assertEquals(28, merged.size());
+    }
+
+    @Test
+    public void mergedFeed_isOrderedByDateWithoutDuplicates() throws Exception {
+        List<News> merged = mFanOut.fetch(urls(SECTIONS), null);
+
+        Set<String> webUrls = new HashSet<>();
+        for (int i = 0; i < merged.size(); i++) {
+            assertTrue(webUrls.add(merged.get(i).getWebUrl()));
+            if (i > 0) {
+                assertTrue(merged.get(i - 1).getTimeInMillis() >= merged.get(i).getTimeInMillis());
+            }
+        }
+    }
+
+    @Test
+    public void partialResults_arriveAsSectionsFinish() throws Exception {
+        final List<Integer> sizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Long> times = Collections.synchronizedList(new ArrayList<Long>());
+        final long start = System.nanoTime();
+
+        mFanOut.fetch(urls(SECTIONS), new SectionFanOut.Listener() {
+            @Override
+            public void onPartialResult(List<News> mergedSoFar, int finishedSections, int totalSections) {
+                sizes.add(mergedSoFar.size());
+                times.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                assertEquals(3, totalSections);
+            }
+        });
+
+        assertEquals(Arrays.asList(10, 19, 28), sizes);
+        // The fastest section is shown long before the slowest one is done
+        assertTrue(times.get(0) < DELAYS_MILLIS[2]);
+    }
+
+    @Test
+    public void failedSection_leavesTheOthers() throws Exception {
+        List<News> merged = mFanOut.fetch(urls("news", "unknown"), null);
+        assertEquals(10, merged.size());
+
+        assertNull(mFanOut.fetch(urls("unknown"), null));
+    }
+
+    private List<String> urls(String... sections) {
+        List<String> urls = new ArrayList<>();
+        for (String section : sections) {
+            urls.add(mServer.url("/search?section=" + section + "&page=1").toString());
+        }
+        return urls;
+    }
+}
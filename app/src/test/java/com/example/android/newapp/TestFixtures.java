@@ -0,0 +1,94 @@
+package com.example.android.newapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Helpers for reading recorded Guardian responses from the test resources, and for
+ * putting the client the app shares back the way the tests found it.
+ */
+final class TestFixtures {
+
+    static final String SEARCH_10 = "guardian_search_10.json";
+
+    private TestFixtures() {}
+
+    /**
+     * Read fixture file from the test resources as a String.
+     */
+    static String read(String name) throws IOException {
+        InputStream inputStream = TestFixtures.class.getClassLoader().getResourceAsStream(name);
+        if (inputStream == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Build a bigger response by repeating the results of the recorded fixture.
+     * Every copy gets its own webUrl, so the results stay unique.
+     */
+    static String repeat(String name, int resultCount) throws IOException, JSONException {
+        return repeat(name, resultCount, 0);
+    }
+
+    /**
+     * Same as {@link #repeat(String, int)}, but the copies are numbered from firstCopy,
+     * so consecutive pages of a feed can be built without duplicates.
+     */
+    static String repeat(String name, int resultCount, int firstCopy) throws IOException, JSONException {
+        JSONObject root = new JSONObject(read(name));
+        JSONObject response = root.getJSONObject("response");
+        JSONArray recorded = response.getJSONArray("results");
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < resultCount; i++) {
+            int number = firstCopy + i;
+            JSONObject copy = new JSONObject(recorded.getJSONObject(number % recorded.length()).toString());
+            copy.put("webUrl", copy.getString("webUrl") + "?copy=" + number);
+            results.put(copy);
+        }
+        response.put("results", results);
+        response.put("pageSize", resultCount);
+        return root.toString();
+    }
+
+    /**
+     * Put the retry policy and the circuit breaker of the shared client back to their
+     * defaults. A test which opened the breaker or turned the retries off would fail the
+     * tests run after it in the same process.
+     */
+    static void resetResilience() {
+        QueryUtils.setRetryPolicy(RetryPolicy.DEFAULT);
+        QueryUtils.setCircuitBreaker(new CircuitBreaker(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD,
+                CircuitBreaker.DEFAULT_OPEN_MILLIS, Clock.SYSTEM));
+    }
+
+    static byte[] bytes(String json) {
+        return json.getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Parse the fixture the way the app parses a response.
+     */
+    static List<News> news(String json) {
+        return QueryUtils.extractNews(new ByteArrayInputStream(bytes(json)));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.android.newapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the disk cache of the thumbnails and the size they are decoded at.
+ */
+public class ThumbnailCacheTest {
+
+    private static final int IMAGE_BYTES = 1000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private FakeClock mClock;
+    private File mDirectory;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock(1548787331000L);
+        mDirectory = new File(mFolder.getRoot(), "thumbnails");
+    }
+
+    @Test
+    public void storedImage_isReadBack() throws Exception {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(mDirectory, ThumbnailDiskCache.DEFAULT_MAX_BYTES, mClock);
+        byte[] image = image(1);
+
+        cache.put("https://media.guim.co.uk/1/500.jpg", new ByteArrayInputStream(image));
+
+        File file = cache.get("https://media.guim.co.uk/1/500.jpg");
+        assertNotNull(file);
+        assertArrayEquals(image, Files.readAllBytes(file.toPath()));
+        assertNull(cache.get("https://media.guim.co.uk/2/500.jpg"));
+    }
+
+    @Test
+    public void brokenDownload_leavesNoEntry() throws Exception {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(mDirectory, ThumbnailDiskCache.DEFAULT_MAX_BYTES, mClock);
+        assertNull(cache.put("https://media.guim.co.uk/2/500.jpg", new FailingInputStream()));
+
+        assertNull(cache.get("https://media.guim.co.uk/2/500.jpg"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void leftTempFile_isDeletedWhenTheCacheOpens() throws Exception {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(mDirectory, ThumbnailDiskCache.DEFAULT_MAX_BYTES, mClock);
+        cache.put("https://media.guim.co.uk/1/500.jpg", new ByteArrayInputStream(image(1)));
+        File left = new File(mDirectory, "0123456789abcdef.img.7.tmp");
+        Files.write(left.toPath(), image(2));
+
+        cache = new ThumbnailDiskCache(mDirectory, ThumbnailDiskCache.DEFAULT_MAX_BYTES, mClock);
+
+        assertFalse(left.exists());
+        assertNotNull(cache.get("https://media.guim.co.uk/1/500.jpg"));
+    }
+
+    @Test
+    public void leastRecentlyUsedImage_isEvicted() throws Exception {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(mDirectory, 2 * IMAGE_BYTES, mClock);
+        String first = "https://media.guim.co.uk/1/500.jpg";
+        String second = "https://media.guim.co.uk/2/500.jpg";
+        String third = "https://media.guim.co.uk/3/500.jpg";
+
+        cache.put(first, new ByteArrayInputStream(image(1)));
+        mClock.advance(1000);
+        cache.put(second, new ByteArrayInputStream(image(2)));
+        mClock.advance(1000);
+        // Show the first image again so the second one becomes the oldest
+        assertNotNull(cache.get(first));
+        mClock.advance(1000);
+        cache.put(third, new ByteArrayInputStream(image(3)));
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertTrue(cache.size() <= 2 * IMAGE_BYTES);
+    }
+
+    @Test
+    public void sampleSize_keepsTheImageAtLeastAsBigAsTheView() {
+        // Guardian thumbnails are 500 x 300
+        assertEquals(1, ThumbnailDecoder.calculateInSampleSize(500, 300, 288, 174));
+        assertEquals(2, ThumbnailDecoder.calculateInSampleSize(500, 300, 192, 116));
+        assertEquals(4, ThumbnailDecoder.calculateInSampleSize(500, 300, 96, 58));
+        assertEquals(1, ThumbnailDecoder.calculateInSampleSize(500, 300, 600, 400));
+        assertEquals(1, ThumbnailDecoder.calculateInSampleSize(500, 300, 0, 0));
+    }
+
+    private static byte[] image(int seed) {
+        byte[] image = new byte[IMAGE_BYTES];
+        Arrays.fill(image, (byte) seed);
+        return image;
+    }
+
+    /**
+     * Stream of a download which drops in the middle.
+     */
+    private static final class FailingInputStream extends InputStream {
+
+        private int mRead;
+
+        @Override
+        public int read() throws IOException {
+            if (mRead++ > IMAGE_BYTES / 2) {
+                throw new IOException("connection reset");
+            }
+            return 0;
+        }
+    }
+}
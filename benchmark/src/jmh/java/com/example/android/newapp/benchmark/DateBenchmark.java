@@ -0,0 +1,60 @@
+package com.example.android.newapp.benchmark;
+
+import com.example.android.newapp.NewsDates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and formatting of the publication dates of the recorded results, next to
+ * the SimpleDateFormat parse they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DateBenchmark {
+
+    private String[] mDates;
+    private SimpleDateFormat mFormat;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDates = Fixtures.dates();
+        mFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        mFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String date : mDates) {
+            blackhole.consume(NewsDates.parse(date));
+        }
+    }
+
+    @Benchmark
+    public void displayDate(Blackhole blackhole) {
+        for (String date : mDates) {
+            blackhole.consume(NewsDates.displayDate(date));
+        }
+    }
+
+    @Benchmark
+    public void simpleDateFormat(Blackhole blackhole) throws ParseException {
+        for (String date : mDates) {
+            blackhole.consume(mFormat.parse(date).getTime());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.newapp.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Guardian responses of any size, built from the recorded response of 10 results.
+ */
+final class Fixtures {
+
+    static final String SEARCH_10 = "guardian_search_10.json";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Fixtures() {}
+
+    /**
+     * @return UTF-8 body of a response with the given number of results. Every copy of a
+     *         recorded result gets its own webUrl, so the results stay unique.
+     */
+    static byte[] search(int resultCount) throws IOException {
+        JsonObject root = new JsonParser().parse(read(SEARCH_10)).getAsJsonObject();
+        JsonObject response = root.getAsJsonObject("response");
+        JsonArray recorded = response.getAsJsonArray("results");
+        JsonArray results = new JsonArray();
+        for (int i = 0; i < resultCount; i++) {
+            JsonObject copy = recorded.get(i % recorded.size()).getAsJsonObject().deepCopy();
+            copy.addProperty("webUrl", copy.get("webUrl").getAsString() + "?copy=" + i);
+            results.add(copy);
+        }
+        response.add("results", results);
+        response.addProperty("pageSize", resultCount);
+        return root.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * @return publication dates of the recorded results
+     */
+    static String[] dates() throws IOException {
+        JsonArray results = new JsonParser().parse(read(SEARCH_10)).getAsJsonObject()
+                .getAsJsonObject("response").getAsJsonArray("results");
+        String[] dates = new String[results.size()];
+        int i = 0;
+        for (JsonElement result : results) {
+            dates[i++] = result.getAsJsonObject().get("webPublicationDate").getAsString();
+        }
+        return dates;
+    }
+
+    private static String read(String name) throws IOException {
+        InputStream inputStream = Fixtures.class.getClassLoader().getResourceAsStream(name);
+        if (inputStream == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+}
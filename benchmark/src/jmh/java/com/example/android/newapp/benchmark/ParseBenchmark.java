@@ -0,0 +1,92 @@
+package com.example.android.newapp.benchmark;
+
+import com.example.android.newapp.News;
+import com.example.android.newapp.NewsParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and parsing of a Guardian response of 10, 200 and 5000 results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParseBenchmark {
+
+    @Param({"10", "200", "5000"})
+    public int resultCount;
+
+    private byte[] mBody;
+
+    /** Fields of every result, so News can be built without parsing */
+    private String[][] mFields;
+
+    @Setup
+    public void setUp() throws IOException {
+        mBody = Fixtures.search(resultCount);
+        List<News> newsList = NewsParser.parse(new ByteArrayInputStream(mBody));
+        if (newsList.size() != resultCount) {
+            throw new IllegalStateException("Parsed " + newsList.size() + " of " + resultCount + " results");
+        }
+        mFields = new String[newsList.size()][];
+        for (int i = 0; i < newsList.size(); i++) {
+            News news = newsList.get(i);
+            mFields[i] = new String[]{news.getSection(), news.getTitle(), news.getWebUrl(),
+                    news.getDate(), news.getAuthor(), news.getPillarName()};
+        }
+    }
+
+    /**
+     * The whole body read into a String line by line, which is what the app did before the
+     * JSON was parsed, before it parsed the stream directly.
+     */
+    @Benchmark
+    public String readToString() throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(mBody);
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+        return output.toString();
+    }
+
+    /**
+     * Streaming parse straight from the bytes, including building every News.
+     */
+    @Benchmark
+    public List<News> parse() throws IOException {
+        return NewsParser.parse(new ByteArrayInputStream(mBody));
+    }
+
+    /**
+     * Only building the News, which parses their publication date.
+     */
+    @Benchmark
+    public News[] construct() {
+        News[] newsArray = new News[mFields.length];
+        for (int i = 0; i < mFields.length; i++) {
+            String[] fields = mFields[i];
+            newsArray[i] = new News(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
+        }
+        return newsArray;
+    }
+}
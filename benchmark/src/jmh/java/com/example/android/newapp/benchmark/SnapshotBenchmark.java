@@ -0,0 +1,79 @@
+package com.example.android.newapp.benchmark;
+
+import com.example.android.newapp.News;
+import com.example.android.newapp.NewsParser;
+import com.example.android.newapp.NewsSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restoring a feed from its JSON against restoring it from a {@link NewsSnapshot},
+ * from memory and from a memory mapped file, and the cost of writing the snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotBenchmark {
+
+    @Param({"200", "1000"})
+    public int resultCount;
+
+    private byte[] mJson;
+    private List<News> mNews;
+    private byte[] mSnapshot;
+    private File mFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        mJson = Fixtures.search(resultCount);
+        mNews = NewsParser.parse(new ByteArrayInputStream(mJson));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NewsSnapshot.write(mNews, output);
+        mSnapshot = output.toByteArray();
+        mFile = File.createTempFile("feed", ".snapshot");
+        NewsSnapshot.write(mNews, mFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public List<News> parseJson() throws IOException {
+        return NewsParser.parse(new ByteArrayInputStream(mJson));
+    }
+
+    @Benchmark
+    public List<News> readSnapshot() throws IOException {
+        return NewsSnapshot.read(ByteBuffer.wrap(mSnapshot));
+    }
+
+    @Benchmark
+    public List<News> readMappedSnapshot() throws IOException {
+        return NewsSnapshot.read(mFile);
+    }
+
+    @Benchmark
+    public int writeSnapshot() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(mSnapshot.length);
+        NewsSnapshot.write(mNews, output);
+        return output.size();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.android.newapp;
+
+/**
+ * Stops calling the API for a while after several loads in a row failed, so a struggling
+ * server isn't kept busy by retries and the app answers from its cache at once. After
+ * the open time a single probe request is let through, and its result decides whether
+ * the breaker closes again or stays open for another round.
+ */
+public final class CircuitBreaker {
+
+    /** Failed loads in a row which open the breaker */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /** Time the breaker stays open before a probe is let through */
+    public static final long DEFAULT_OPEN_MILLIS = 30 * 1000;
+
+    public enum State {
+        /** Requests go out */
+        CLOSED,
+        /** Requests are refused */
+        OPEN,
+        /** One probe request is out, the others are refused */
+        HALF_OPEN
+    }
+
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+    private final Clock mClock;
+
+    private State mState = State.CLOSED;
+    private int mFailures;
+    private long mOpenedAt;
+    private long mRejected;
+
+    public CircuitBreaker(int failureThreshold, long openMillis, Clock clock) {
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+        mClock = clock;
+    }
+
+    /**
+     * @return true when the request may go out, every true must be followed by
+     *         {@link #onSuccess()}, {@link #onFailure()} or {@link #onAbandoned()}
+     */
+    public synchronized boolean allowRequest() {
+        if (mState == State.OPEN && mClock.currentTimeMillis() - mOpenedAt >= mOpenMillis) {
+            mState = State.HALF_OPEN;
+            return true;
+        }
+        if (mState == State.CLOSED) {
+            return true;
+        }
+        mRejected++;
+        return false;
+    }
+
+    /**
+     * The server answered, even if not with News.
+     */
+    public synchronized void onSuccess() {
+        mState = State.CLOSED;
+        mFailures = 0;
+    }
+
+    /**
+     * The load failed after all its attempts.
+     */
+    public synchronized void onFailure() {
+        mFailures++;
+        if (mState == State.HALF_OPEN || mFailures >= mFailureThreshold) {
+            mState = State.OPEN;
+            mOpenedAt = mClock.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The request was given up before the server had its say, which tells nothing about
+     * its health. A probe given up that way lets the next request probe instead.
+     */
+    public synchronized void onAbandoned() {
+        if (mState == State.HALF_OPEN) {
+            // The open time has passed already, so the next request goes out as the probe
+            mState = State.OPEN;
+        }
+    }
+
+    public synchronized State getState() {
+        return mState;
+    }
+
+    /**
+     * @return number of requests refused while the breaker was open
+     */
+    public synchronized long getRejectedCount() {
+        return mRejected;
+    }
+
+    public synchronized void reset() {
+        mState = State.CLOSED;
+        mFailures = 0;
+        mRejected = 0;
+    }
+}
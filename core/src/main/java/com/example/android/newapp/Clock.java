@@ -0,0 +1,17 @@
+package com.example.android.newapp;
+
+/**
+ * Source of the current time. Lets the caching code be tested with a fake clock.
+ */
+public interface Clock {
+
+    /** Clock backed by {@link System#currentTimeMillis()} */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long currentTimeMillis();
+}
@@ -0,0 +1,139 @@
+package com.example.android.newapp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the validators (ETag, Last-Modified) and the parsed {@link News} of the last
+ * successful response for every query, so the next request can be conditional and a
+ * "304 Not Modified" answer can reuse the News without reading or parsing anything.
+ *
+ * It also counts how many bytes the conditional requests saved.
+ */
+public final class ConditionalGetCache {
+
+    /** Number of queries remembered before the oldest one is dropped */
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+
+    private final Map<String, Entry> mEntries;
+
+    private long mFullResponses;
+    private long mNotModifiedResponses;
+    private long mBytesReceived;
+    private long mBytesSaved;
+
+    /**
+     * Validators and News of one response.
+     */
+    public static final class Entry {
+
+        private final String mETag;
+        private final String mLastModified;
+        private final List<News> mNews;
+        private final long mBodyBytes;
+
+        Entry(String eTag, String lastModified, List<News> news, long bodyBytes) {
+            mETag = eTag;
+            mLastModified = lastModified;
+            mNews = news;
+            mBodyBytes = bodyBytes;
+        }
+
+        public String getETag() {
+            return mETag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        /**
+         * @return copy of the News list, which the caller is free to change
+         */
+        public List<News> getNews() {
+            return new ArrayList<>(mNews);
+        }
+
+        public long getBodyBytes() {
+            return mBodyBytes;
+        }
+    }
+
+    public ConditionalGetCache(final int maxEntries) {
+        mEntries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ConditionalGetCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return validators of the last response for the query, or null when there are none
+     */
+    public synchronized Entry get(String url) {
+        String key = GuardianClient.queryKey(url);
+        return key == null ? null : mEntries.get(key);
+    }
+
+    /**
+     * Remember a full response. Responses without any validator are counted but not kept.
+     */
+    public synchronized void put(String url, String eTag, String lastModified, List<News> news, long bodyBytes) {
+        mFullResponses++;
+        mBytesReceived += bodyBytes;
+
+        String key = GuardianClient.queryKey(url);
+        if (key == null) {
+            return;
+        }
+        if (eTag == null && lastModified == null) {
+            mEntries.remove(key);
+            return;
+        }
+        mEntries.put(key, new Entry(eTag, lastModified, new ArrayList<>(news), bodyBytes));
+    }
+
+    /**
+     * Count a "304 Not Modified" answer to a request made with the entry's validators.
+     */
+    public synchronized void recordNotModified(Entry entry) {
+        mNotModifiedResponses++;
+        mBytesSaved += entry.getBodyBytes();
+    }
+
+    public synchronized long getFullResponses() {
+        return mFullResponses;
+    }
+
+    public synchronized long getNotModifiedResponses() {
+        return mNotModifiedResponses;
+    }
+
+    /**
+     * @return body bytes received with full responses
+     */
+    public synchronized long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    /**
+     * @return body bytes which were not sent again thanks to "304 Not Modified" answers
+     */
+    public synchronized long getBytesSaved() {
+        return mBytesSaved;
+    }
+
+    /**
+     * Forget all validators and reset the counters.
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mFullResponses = 0;
+        mNotModifiedResponses = 0;
+        mBytesReceived = 0;
+        mBytesSaved = 0;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.android.newapp;
+
+import java.util.List;
+
+/**
+ * Loads one query of the feed the way the app shows it. Fresh cached News are answered
+ * at once, stale ones or the stored articles matching a new query are shown first and
+ * the network is asked right after, and a refresh of the first page only asks for the
+ * News published since, see {@link NewsDelta}. The fetches go through a {@link NewsEngine}.
+ * <p>
+ * It keeps what it delivered between its loads, so the loader of the platform only runs
+ * {@link #load()} in the background and tells it about every delivery.
+ */
+public final class FeedLoad {
+
+    /**
+     * Responses of earlier loads.
+     */
+    public interface Cache extends GuardianClient.ResponseStore {
+        /**
+         * @return the response cached for the query, null when there is none
+         */
+        Cached get(String url);
+    }
+
+    /**
+     * One response of the {@link Cache}.
+     */
+    public interface Cached {
+        List<News> getNews();
+
+        /**
+         * @return true when it is young enough to be shown without asking the network
+         */
+        boolean isFresh();
+    }
+
+    /**
+     * Articles kept across queries, searched when a query wasn't loaded before.
+     */
+    public interface Store {
+        /**
+         * @return stored articles matching the query, newest first
+         */
+        List<News> queryUrl(String url);
+
+        /**
+         * Keep the News loaded for the query.
+         */
+        void saveUrl(String url, List<News> newsList);
+    }
+
+    private final NewsEngine mEngine;
+    private final String mUrl;
+
+    /** May be null */
+    private final Cache mCache;
+
+    /** May be null */
+    private final Store mStore;
+
+    /** When true a stale cache entry is delivered first and refreshed right after */
+    private final boolean mStaleWhileRevalidate;
+
+    /** When true the refresh only asks for the News newer than the delivered ones */
+    private volatile boolean mDeltaRefresh;
+
+    /** News answered from the local store, the network refresh is merged into them */
+    private volatile List<News> mLocalNews;
+
+    /** Set when the delivered result came from a stale cache entry */
+    private volatile boolean mRevalidate;
+
+    /** Set for the refresh load, which has to go to the network */
+    private volatile boolean mSkipCache;
+
+    /** News on screen when the refresh started, the delta is merged into them */
+    private volatile List<News> mDeltaBase;
+
+    /** Set when the last loaded News are the delivered ones with the delta on top */
+    private volatile boolean mDeltaResult;
+
+    /**
+     * @param cache responses of earlier loads, null to always use the network
+     * @param store articles kept across queries, null to not keep them
+     * @param staleWhileRevalidate deliver stale cached News at once and then the fresh ones,
+     *                             for a query not in the cache the matching stored articles
+     */
+    public FeedLoad(NewsEngine engine, String url, Cache cache, Store store, boolean staleWhileRevalidate) {
+        mEngine = engine;
+        mUrl = url;
+        mCache = cache;
+        mStore = store;
+        mStaleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    /**
+     * Refresh stale News with only what was published since. Only for the first page of
+     * a feed ordered by newest.
+     */
+    public void setDeltaRefresh(boolean deltaRefresh) {
+        mDeltaRefresh = deltaRefresh;
+    }
+
+    public boolean isDeltaRefresh() {
+        return mDeltaRefresh;
+    }
+
+    /**
+     * @return true when the last loaded News are the ones delivered before, with the News
+     *         published since on top. The rows below them don't have to change.
+     */
+    public boolean isDeltaResult() {
+        return mDeltaResult;
+    }
+
+    /**
+     * Load the News from the cache, the store or the network, on the caller's thread.
+     * @return News to show, null when there are none
+     */
+    public List<News> load() {
+
+        // Don't perform the request if there are no URLs, or the first URL is null.
+        if (mUrl == null) {
+            return null;
+        }
+
+        // Answer from the cache when it has a fresh entry, or a stale one we may show first
+        Cached cached = null;
+        if (mCache != null && !mSkipCache) {
+            cached = mCache.get(mUrl);
+            if (cached != null && cached.isFresh()) {
+                return cached.getNews();
+            }
+            if (cached != null && mStaleWhileRevalidate) {
+                mRevalidate = true;
+                return cached.getNews();
+            }
+        }
+
+        // A query never loaded before, e.g. a new keyword, is answered from the local index first
+        if (cached == null && mStore != null && mStaleWhileRevalidate && !mSkipCache) {
+            List<News> local = mStore.queryUrl(mUrl);
+            if (!local.isEmpty()) {
+                mLocalNews = local;
+                mRevalidate = true;
+                return local;
+            }
+        }
+        mSkipCache = false;
+        mDeltaResult = false;
+
+        // Refresh of News on screen, ask only for the ones published since
+        List<News> base = mDeltaBase;
+        mDeltaBase = null;
+        if (base != null && mDeltaRefresh) {
+            List<News> merged = loadDelta(base);
+            if (merged != null) {
+                mLocalNews = null;
+                return merged;
+            }
+        }
+
+        List<News> result = mEngine.load(mUrl, mCache, GuardianClient.LOAD_DEADLINE_MILLIS);
+
+        if (result != null && mStore != null) {
+            mStore.saveUrl(mUrl, result);
+        }
+
+        // Local matches are already on screen, merge the fresh News in by date
+        List<News> local = mLocalNews;
+        mLocalNews = null;
+        if (local != null && result != null) {
+            NewsMerger merger = new NewsMerger();
+            merger.add(result);
+            merger.add(local);
+            return merger.getNews();
+        }
+
+        // Better old News than none when the network failed
+        if (result == null && mCache != null) {
+            if (cached == null) {
+                cached = mCache.get(mUrl);
+            }
+            if (cached != null) {
+                return cached.getNews();
+            }
+        }
+        // Offline the store still has whatever matched the query before. Only the first page
+        // does this, a later page must not append articles which don't belong to it.
+        if (result == null && mStore != null && mStaleWhileRevalidate) {
+            return local != null ? local : mStore.queryUrl(mUrl);
+        }
+        return result;
+    }
+
+    /**
+     * The loaded News were delivered to the screen.
+     * @return true when they were stale, the fresh ones have to be loaded now
+     */
+    public boolean revalidate(List<News> delivered) {
+        if (!mRevalidate) {
+            return false;
+        }
+        mRevalidate = false;
+        mSkipCache = true;
+        mDeltaBase = delivered;
+        return true;
+    }
+
+    // Load the News published since the newest of the base and put them on top of it.
+    // Returns null when the first page has to be loaded in full.
+    private List<News> loadDelta(List<News> base) {
+        String deltaUrl = NewsDelta.url(mUrl, base);
+        if (deltaUrl == null) {
+            return null;
+        }
+
+        // Not cached, the query is a different one every time
+        List<News> delta = mEngine.load(deltaUrl, null, GuardianClient.LOAD_DEADLINE_MILLIS);
+        if (delta == null) {
+            // What is on screen stays there, same as after a failed full refresh
+            mDeltaResult = true;
+            return base;
+        }
+        int pageSize = NewsDelta.pageSize(mUrl);
+        if (!NewsDelta.isComplete(delta, pageSize)) {
+            return null;
+        }
+
+        if (mStore != null) {
+            mStore.saveUrl(mUrl, delta);
+        }
+        Metrics.getInstance().increment(Metrics.COUNTER_DELTA_SAVED, pageSize - delta.size());
+        mDeltaResult = true;
+        return NewsDelta.merge(base, delta);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.android.newapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+
+/**
+ * Lets a fetch be given up while it runs. Cancelling aborts the HTTP call of the current
+ * attempt, which closes its connection and makes the parse of a body being read fail on
+ * its next read, and wakes the wait before the next attempt. A fetch which was cancelled
+ * returns null.
+ */
+public final class FetchCancellation {
+
+    private boolean mCancelled;
+    private Call mCall;
+    private List<Runnable> mListeners;
+
+    /**
+     * Give up the fetch, may be called from any thread and more than once.
+     */
+    public void cancel() {
+        Call call;
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            call = mCall;
+            mCall = null;
+            listeners = mListeners;
+            mListeners = null;
+            notifyAll();
+        }
+        if (call != null) {
+            call.cancel();
+        }
+        // Outside the lock, a listener may wait for other locks
+        if (listeners != null) {
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Run the listener on the cancelling thread once the fetch is cancelled, at once when
+     * it is cancelled already.
+     */
+    void addListener(Runnable listener) {
+        synchronized (this) {
+            if (!mCancelled) {
+                if (mListeners == null) {
+                    mListeners = new ArrayList<>(1);
+                }
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    synchronized void removeListener(Runnable listener) {
+        if (mListeners != null) {
+            mListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Wait between two attempts, or until the fetch is cancelled.
+     */
+    synchronized void sleep(long millis) throws InterruptedException {
+        long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (!mCancelled) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return;
+            }
+            wait(remainingMillis);
+        }
+    }
+
+    /**
+     * Make the call the one to abort, or abort it at once when the fetch is already cancelled.
+     */
+    void attach(Call call) {
+        synchronized (this) {
+            if (!mCancelled) {
+                mCall = call;
+                return;
+            }
+        }
+        call.cancel();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.android.newapp;
+
+/**
+ * Picks the {@link FetchStrategy} of a feed from the estimated link: the biggest one
+ * whose first page is predicted to be in within {@link #FIRST_PAGE_BUDGET_MILLIS}, or
+ * the smallest when none is. The prediction is a round trip plus the page at the
+ * estimated throughput, for the pages of this screen.
+ * <p>
+ * A link which sits close to a limit would flip between two strategies, and every flip
+ * changes the queries, so their cached responses aren't used. Going up to a bigger
+ * strategy than the current one therefore needs the page to fit in a part of the budget
+ * only, going down happens as soon as it doesn't fit in the budget any more.
+ */
+public final class FetchPlanner {
+
+    /** Time the first page of the feed should take on the estimated link */
+    public static final long FIRST_PAGE_BUDGET_MILLIS = 1000;
+
+    /** Share of the budget a bigger strategy than the current one has to fit in */
+    static final double UPGRADE_SHARE = 0.6;
+
+    private final int mVisibleRows;
+    private final int mPrefetchDistance;
+    private final int mMaxPageSize;
+
+    /**
+     * @param visibleRows rows which fit on the screen
+     * @param prefetchDistance rows from the end of the list the next page is asked for at
+     * @param maxPageSize most News in a page of the default strategy
+     */
+    public FetchPlanner(int visibleRows, int prefetchDistance, int maxPageSize) {
+        mVisibleRows = visibleRows;
+        mPrefetchDistance = prefetchDistance;
+        mMaxPageSize = maxPageSize;
+    }
+
+    /**
+     * @return number of News in a page of the strategy on this screen
+     */
+    public int getPageSize(FetchStrategy strategy) {
+        return strategy.pageSize(mVisibleRows, mPrefetchDistance, mMaxPageSize);
+    }
+
+    /**
+     * @return time the first page of the strategy takes on the link, in milliseconds
+     */
+    public double predictFirstPageMillis(FetchStrategy strategy, double rttMillis, double bytesPerSecond) {
+        return rttMillis + strategy.pageBytes(getPageSize(strategy)) * 1000 / bytesPerSecond;
+    }
+
+    /**
+     * @param current strategy of the feed on screen, null when there is none yet
+     * @return strategy for the next feed, the current one or the default one while the
+     *         link is not known
+     */
+    public FetchStrategy choose(NetworkEstimator estimator, FetchStrategy current) {
+        double rttMillis = estimator.getRttMillis();
+        double bytesPerSecond = estimator.getBytesPerSecond();
+        if (rttMillis == NetworkEstimator.UNKNOWN || bytesPerSecond == NetworkEstimator.UNKNOWN) {
+            return current != null ? current : FetchStrategy.DEFAULT;
+        }
+        return choose(rttMillis, bytesPerSecond, current);
+    }
+
+    FetchStrategy choose(double rttMillis, double bytesPerSecond, FetchStrategy current) {
+        FetchStrategy[] strategies = FetchStrategy.values();
+        for (int i = strategies.length - 1; i > 0; i--) {
+            FetchStrategy strategy = strategies[i];
+            double budget = FIRST_PAGE_BUDGET_MILLIS;
+            if (current != null && strategy.compareTo(current) > 0) {
+                budget *= UPGRADE_SHARE;
+            }
+            if (predictFirstPageMillis(strategy, rttMillis, bytesPerSecond) <= budget) {
+                return strategy;
+            }
+        }
+        return strategies[0];
+    }
+}
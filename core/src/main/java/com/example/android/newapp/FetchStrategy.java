@@ -0,0 +1,95 @@
+package com.example.android.newapp;
+
+import java.util.Locale;
+
+/**
+ * How much the feed asks for at once: the rows of a page, whether they come with the
+ * author and thumbnail, and how many article bodies are loaded ahead for the reader.
+ * A slow link gets small text only pages, so the first rows are on screen soon and the
+ * next page follows while they are read. A fast one gets a few screens in one request.
+ */
+public enum FetchStrategy {
+
+    /** One screen of rows without author and thumbnail, bodies only once a row is opened */
+    SMALL(1, false, true, 0),
+
+    /** One screen and the rows the paginator keeps below it, what the feed always asked for */
+    DEFAULT(1, true, false, 5),
+
+    /** Three screens and twice the bodies, one request for what is read in a while */
+    LARGE(3, true, false, 10);
+
+    /** Guardian limit of the page-size parameter */
+    public static final int MAX_PAGE_SIZE = 50;
+
+    /** Decoded size of a result with the contributor tags and the thumbnail field, about */
+    static final int FULL_BYTES_PER_ITEM = 1000;
+
+    /** Decoded size of a result with the default fields only, about */
+    static final int LEAN_BYTES_PER_ITEM = 550;
+
+    /** Decoded size of the response around the results */
+    static final int ENVELOPE_BYTES = 300;
+
+    private final int mScreens;
+    private final boolean mPrefetchMargin;
+    private final boolean mLean;
+    private final int mArticlePrefetchRows;
+
+    FetchStrategy(int screens, boolean prefetchMargin, boolean lean, int articlePrefetchRows) {
+        mScreens = screens;
+        mPrefetchMargin = prefetchMargin;
+        mLean = lean;
+        mArticlePrefetchRows = articlePrefetchRows;
+    }
+
+    /**
+     * @return name used in the metrics, e.g. "small"
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.US);
+    }
+
+    /**
+     * @return true when the rows are asked for without author and thumbnail
+     */
+    public boolean isLean() {
+        return mLean;
+    }
+
+    /**
+     * @return rows from the first visible one whose bodies are loaded ahead, 0 for none
+     */
+    public int getArticlePrefetchRows() {
+        return mArticlePrefetchRows;
+    }
+
+    /**
+     * @return stage of the time to the first News on screen with this strategy
+     */
+    public String getFirstContentStage() {
+        return Metrics.STAGE_FIRST_CONTENT + "_" + getName();
+    }
+
+    /**
+     * Without the prefetch margin the paginator asks for the next page as soon as the
+     * first one is shown, which is what a slow link wants: the screen is filled by the
+     * smallest request, the rest comes in the background.
+     * @param visibleRows rows which fit on the screen
+     * @param prefetchDistance rows from the end of the list the next page is asked for at
+     * @param maxPageSize most News in a page of the default strategy, bigger strategies
+     *                    may ask for as many times that as they have screens
+     * @return number of News in a page
+     */
+    public int pageSize(int visibleRows, int prefetchDistance, int maxPageSize) {
+        int pageSize = mScreens * visibleRows + (mPrefetchMargin ? prefetchDistance : 0) + 1;
+        return Math.max(1, Math.min(pageSize, Math.min(mScreens * maxPageSize, MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * @return decoded size of a page of that many News, about
+     */
+    public long pageBytes(int pageSize) {
+        return ENVELOPE_BYTES + (long) pageSize * (mLean ? LEAN_BYTES_PER_ITEM : FULL_BYTES_PER_ITEM);
+    }
+}
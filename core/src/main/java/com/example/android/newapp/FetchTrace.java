@@ -0,0 +1,231 @@
+package com.example.android.newapp;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What happened during one {@link GuardianClient#fetch(String, GuardianClient.ResponseStore, long, FetchCancellation)} call:
+ * the query it was made for, how long each stage took and how it ended. Stages which did
+ * not happen, e.g. connecting on a pooled connection, stay at {@link #NOT_MEASURED}.
+ */
+public final class FetchTrace {
+
+    /** Duration of a stage which did not happen */
+    public static final long NOT_MEASURED = -1;
+
+    private static final String API_KEY_PARAMETER = "api-key";
+
+    private final Map<String, String> mTags;
+    private final long mStartNanos;
+
+    // Stages are written by the thread running the call and read once it is over
+    private volatile long mConnectNanos = NOT_MEASURED;
+    private volatile long mTtfbNanos = NOT_MEASURED;
+    private volatile long mBodyNanos = NOT_MEASURED;
+    private volatile long mTotalNanos = NOT_MEASURED;
+    private volatile long mConnectStartNanos;
+
+    private volatile int mAttempts;
+    private volatile int mResponseCode;
+    private volatile long mBytes;
+    private volatile int mItems;
+    private volatile String mError;
+    private volatile boolean mCoalesced;
+    private volatile boolean mCancelled;
+
+    FetchTrace(String url) {
+        mTags = queryTags(url);
+        mStartNanos = System.nanoTime();
+    }
+
+    /**
+     * @return query parameters of the request except the api key, e.g. section and q
+     */
+    public Map<String, String> getTags() {
+        return mTags;
+    }
+
+    public long getConnectNanos() {
+        return mConnectNanos;
+    }
+
+    /** @return time from the start of the call to the first byte of the response headers */
+    public long getTtfbNanos() {
+        return mTtfbNanos;
+    }
+
+    /** @return time spent reading and parsing the body, the parser reads as the body comes in */
+    public long getBodyNanos() {
+        return mBodyNanos;
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    /** @return number of requests made, 0 when none was allowed to go out */
+    public int getAttempts() {
+        return mAttempts;
+    }
+
+    /** @return HTTP status code of the last attempt, 0 when no response was received */
+    public int getResponseCode() {
+        return mResponseCode;
+    }
+
+    /** @return body bytes read, after gzip decoding */
+    public long getBytes() {
+        return mBytes;
+    }
+
+    /** @return number of News returned */
+    public int getItems() {
+        return mItems;
+    }
+
+    /** @return reason of the failure, null when the fetch succeeded */
+    public String getError() {
+        return mError;
+    }
+
+    /** @return true when the call waited for an identical request instead of making its own */
+    public boolean isCoalesced() {
+        return mCoalesced;
+    }
+
+    /** @return true when the fetch was given up by its caller before it was over */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    void connectStarted() {
+        mConnectStartNanos = System.nanoTime();
+    }
+
+    void connectFinished() {
+        mConnectNanos = System.nanoTime() - mConnectStartNanos;
+    }
+
+    void responseHeadersStarted() {
+        mTtfbNanos = System.nanoTime() - mStartNanos;
+    }
+
+    void setBodyNanos(long nanos) {
+        mBodyNanos = nanos;
+    }
+
+    void setAttempts(int attempts) {
+        mAttempts = attempts;
+    }
+
+    void setResponseCode(int responseCode) {
+        mResponseCode = responseCode;
+    }
+
+    void setBytes(long bytes) {
+        mBytes = bytes;
+    }
+
+    void setError(String error) {
+        mError = error;
+    }
+
+    void setCoalesced(boolean coalesced) {
+        mCoalesced = coalesced;
+    }
+
+    void setCancelled() {
+        mCancelled = true;
+        mError = "cancelled";
+    }
+
+    void finish(int items) {
+        mItems = items;
+        mTotalNanos = System.nanoTime() - mStartNanos;
+    }
+
+    /**
+     * @return the trace as one line of JSON, durations in microseconds
+     */
+    public String toJson() {
+        StringWriter output = new StringWriter();
+        JsonWriter writer = new JsonWriter(output);
+        try {
+            writer.beginObject();
+            writer.name("tags").beginObject();
+            for (Map.Entry<String, String> tag : mTags.entrySet()) {
+                writer.name(tag.getKey()).value(tag.getValue());
+            }
+            writer.endObject();
+            writeStage(writer, "connect_us", mConnectNanos);
+            writeStage(writer, "ttfb_us", mTtfbNanos);
+            writeStage(writer, "body_us", mBodyNanos);
+            writeStage(writer, "total_us", mTotalNanos);
+            writer.name("attempts").value(mAttempts);
+            writer.name("code").value(mResponseCode);
+            writer.name("bytes").value(mBytes);
+            writer.name("items").value(mItems);
+            writer.name("coalesced").value(mCoalesced);
+            writer.name("cancelled").value(mCancelled);
+            if (mError != null) {
+                writer.name("error").value(mError);
+            }
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            // A StringWriter doesn't throw
+            throw new AssertionError(e);
+        }
+        return output.toString();
+    }
+
+    private static void writeStage(JsonWriter writer, String name, long nanos) throws IOException {
+        if (nanos != NOT_MEASURED) {
+            writer.name(name).value(nanos / 1000);
+        }
+    }
+
+    private static Map<String, String> queryTags(String url) {
+        if (url == null) {
+            return Collections.emptyMap();
+        }
+        String query;
+        try {
+            query = new URI(url).getRawQuery();
+        } catch (URISyntaxException e) {
+            return Collections.emptyMap();
+        }
+        if (query == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (name.isEmpty() || name.equals(API_KEY_PARAMETER)) {
+                continue;
+            }
+            tags.put(decode(name), equals < 0 ? "" : decode(parameter.substring(equals + 1)));
+        }
+        return Collections.unmodifiableMap(tags);
+    }
+
+    private static String decode(String text) {
+        try {
+            return URLDecoder.decode(text, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // Every Java platform has to provide UTF-8
+            throw new AssertionError(e);
+        }
+    }
+}
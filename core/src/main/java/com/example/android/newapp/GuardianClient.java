@@ -0,0 +1,487 @@
+package com.example.android.newapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fetches and parses Guardian queries on a plain JVM. Failed requests are tried again
+ * within a deadline, a circuit breaker stops them while the API keeps failing, identical
+ * requests in flight share one call and a query asked again is sent with the validators
+ * of its last response. Every fetch gives one {@link FetchTrace} to {@link Metrics}.
+ * <p>
+ * Blocking, {@link NewsEngine} runs the fetches on a bounded pool for callers which can't
+ * wait. The app shares one instance through its QueryUtils.
+ */
+public final class GuardianClient {
+
+    /** Default time allowed for opening a connection */
+    public static final long CONNECT_TIMEOUT_MILLIS = 15000;
+
+    /** Default time allowed between two reads of the response */
+    public static final long READ_TIMEOUT_MILLIS = 10000;
+
+    /** Idle connections kept open for the next requests */
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    /** Default time allowed for a whole load, all attempts and waits between them included */
+    public static final long LOAD_DEADLINE_MILLIS = 20000;
+
+    private static final String API_KEY_PARAMETER = "api-key";
+
+    /**
+     * Where the body of a successful response is copied while it is parsed, e.g. a disk
+     * cache of responses.
+     */
+    public interface ResponseStore {
+        /**
+         * @param body response body as it comes from the network
+         * @return recording of the body, or null when it can't be stored
+         */
+        Recording record(String url, InputStream body);
+
+        /**
+         * The server answered that the stored response of the query is still current.
+         */
+        void markFresh(String url);
+    }
+
+    /**
+     * Receives what went wrong in a fetch, e.g. to write it to the log of the platform.
+     */
+    public interface Logger {
+        /**
+         * @param e cause of the failure, may be null
+         */
+        void error(String message, Throwable e);
+    }
+
+    /** Logger of a client nobody listens to */
+    public static final Logger NO_LOGGER = new Logger() {
+        @Override
+        public void error(String message, Throwable e) {
+        }
+    };
+
+    /**
+     * Copy of one response body being written.
+     */
+    public interface Recording {
+        /**
+         * @return stream which should be read instead of the response body
+         */
+        InputStream getInputStream();
+
+        /**
+         * The whole body was parsed, keep it.
+         */
+        void commit(List<News> parsed);
+
+        /**
+         * The body was broken, drop what was copied.
+         */
+        void abort();
+    }
+
+    /** Validators and News of the last response for every query */
+    private final ConditionalGetCache mConditionalGets =
+            new ConditionalGetCache(ConditionalGetCache.DEFAULT_MAX_ENTRIES);
+
+    /** Identical requests in flight at the same time share one network call */
+    private final RequestCoalescer mCoalescer = new RequestCoalescer();
+
+    /** Counts the response bytes which really went over the network */
+    private final TrafficCounter mTrafficCounter = new TrafficCounter();
+
+    /** How failed requests are tried again */
+    private RetryPolicy mRetryPolicy = RetryPolicy.DEFAULT;
+
+    /** Stops requests for a while when the API keeps failing, the callers then answer from their caches */
+    private CircuitBreaker mCircuitBreaker = new CircuitBreaker(
+            CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, CircuitBreaker.DEFAULT_OPEN_MILLIS, Clock.SYSTEM);
+
+    /**
+     * Client shared by all requests. It keeps connections alive in its pool, speaks HTTP/2
+     * when the server supports it and asks for gzip, which it decodes transparently.
+     */
+    private OkHttpClient mClient = newClientBuilder().build();
+
+    /** Where the failures go, the trace only keeps their names */
+    private volatile Logger mLogger = NO_LOGGER;
+
+    /**
+     * @return builder of a client with the default timeouts, pool, traffic counter and tracing,
+     * to be changed and passed to {@link #setClient(OkHttpClient)}
+     */
+    public OkHttpClient.Builder newClientBuilder() {
+        return new OkHttpClient.Builder()
+                .connectTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .addNetworkInterceptor(mTrafficCounter)
+                .eventListenerFactory(TraceEventListener.FACTORY);
+    }
+
+    /**
+     * Replace the client, e.g. to change the timeouts.
+     */
+    public synchronized void setClient(OkHttpClient client) {
+        mClient = client;
+    }
+
+    public synchronized OkHttpClient getClient() {
+        return mClient;
+    }
+
+    /**
+     * Report the failures of the fetches to the logger, e.g. logcat in the app.
+     */
+    public void setLogger(Logger logger) {
+        mLogger = logger != null ? logger : NO_LOGGER;
+    }
+
+    public Logger getLogger() {
+        return mLogger;
+    }
+
+    public synchronized void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
+    public synchronized RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    /**
+     * Replace the circuit breaker, e.g. to change its threshold.
+     */
+    public synchronized void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        mCircuitBreaker = circuitBreaker;
+    }
+
+    public synchronized CircuitBreaker getCircuitBreaker() {
+        return mCircuitBreaker;
+    }
+
+    /**
+     * @return validators of earlier responses together with the bytes saved by them
+     */
+    public ConditionalGetCache getConditionalGetCache() {
+        return mConditionalGets;
+    }
+
+    /**
+     * @return coalescer of identical requests, with the number of requests it saved
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return mCoalescer;
+    }
+
+    /**
+     * @return counter of the response bytes received over the network, before gzip decoding
+     */
+    public TrafficCounter getTrafficCounter() {
+        return mTrafficCounter;
+    }
+
+    /**
+     * Query the Guardian, trying again after transient failures until the deadline.
+     * Identical fetches in flight at the same time share one request. Cancelling one only
+     * gives up its own wait, the request is aborted once all of them are cancelled.
+     * @param store where the response body is recorded, may be null
+     * @param deadlineMillis time allowed for all attempts together
+     * @param cancellation cancels the fetch, may be null
+     * @return News, or null when there was no successful response in time or the fetch
+     *         was cancelled, in which case the caller should fall back to what it has cached
+     */
+    public List<News> fetch(String requestUrl, final ResponseStore store, final long deadlineMillis,
+                            FetchCancellation cancellation) {
+        final FetchTrace trace = new FetchTrace(requestUrl);
+        trace.setCoalesced(true);
+
+        // Loaders of the same query running at the same time, e.g. the old and the new one
+        // around a rotation, share one request
+        List<News> newsList = mCoalescer.fetch(requestUrl, cancellation, new RequestCoalescer.Fetcher() {
+            @Override
+            public List<News> fetch(String url, FetchCancellation shared) {
+                trace.setCoalesced(false);
+                return fetchWithRetries(url, store, trace, deadlineMillis, shared);
+            }
+        });
+        if (cancellation != null && cancellation.isCancelled()) {
+            trace.setCancelled();
+        }
+
+        trace.finish(newsList != null ? newsList.size() : 0);
+        if (newsList == null && trace.getError() == null) {
+            trace.setError("no result");
+        }
+        Metrics.getInstance().record(trace);
+        return newsList;
+    }
+
+    private List<News> fetchWithRetries(String requestUrl, ResponseStore store, FetchTrace trace, long deadlineMillis,
+                                        FetchCancellation cancellation) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        RetryPolicy retryPolicy = getRetryPolicy();
+        CircuitBreaker circuitBreaker = getCircuitBreaker();
+
+        // The API keeps failing, don't add to its load. The caller answers from its cache.
+        if (!circuitBreaker.allowRequest()) {
+            trace.setError("circuit open");
+            return null;
+        }
+
+        HttpUrl url = HttpUrl.parse(requestUrl);
+
+        Attempt attempt = new Attempt();
+        for (int number = 1; ; number++) {
+            if (cancellation != null && cancellation.isCancelled()) {
+                trace.setCancelled();
+                circuitBreaker.onAbandoned();
+                return null;
+            }
+            attempt.mRetryable = false;
+            attempt.mRetryAfterMillis = RetryPolicy.NO_RETRY_AFTER;
+            trace.setAttempts(number);
+
+            // Perform HTTP request to the URL and parse the JSON response while it is being received
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            List<News> newsList = makeHttpRequest(url, requestUrl, store, trace, attempt,
+                    Math.max(1, remainingMillis), cancellation);
+
+            // Whatever the aborted call left behind is not an answer of the server, and
+            // says nothing about its health either
+            if (cancellation != null && cancellation.isCancelled()) {
+                trace.setCancelled();
+                circuitBreaker.onAbandoned();
+                return null;
+            }
+
+            // The server answered, even a 404 or a broken body won't get better by asking again
+            if (!attempt.mRetryable) {
+                circuitBreaker.onSuccess();
+                return newsList;
+            }
+            if (number >= retryPolicy.getMaxAttempts()) {
+                break;
+            }
+
+            // Give up at once when the wait would run past the deadline, cached News beat no News
+            long delayMillis = retryPolicy.getDelayMillis(number, attempt.mRetryAfterMillis);
+            if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis) >= deadlineNanos) {
+                trace.setError("deadline");
+                break;
+            }
+            try {
+                if (cancellation != null) {
+                    // Cancelling wakes the wait, the loop then gives up
+                    cancellation.sleep(delayMillis);
+                } else {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                // The caller gave up, that says nothing about the health of the API
+                Thread.currentThread().interrupt();
+                trace.setCancelled();
+                circuitBreaker.onAbandoned();
+                return null;
+            }
+        }
+        circuitBreaker.onFailure();
+        return null;
+    }
+
+    /**
+     * How a single attempt ended, filled by {@link #makeHttpRequest}.
+     */
+    private static final class Attempt {
+        boolean mRetryable;
+        long mRetryAfterMillis;
+    }
+
+    /**
+     * Make an HTTP request to the given URL and return the list of {@link News} streamed
+     * from the response, or null when there was no successful response or its body
+     * couldn't be parsed to the end. What went wrong is left in the trace.
+     * When validators of an earlier response are known the request is conditional, and
+     * a "304 Not Modified" answer returns the News parsed from that earlier response.
+     */
+    private List<News> makeHttpRequest(HttpUrl url, String requestUrl, ResponseStore store, FetchTrace trace,
+                                       Attempt attempt, long timeoutMillis, FetchCancellation cancellation) {
+        if (url == null) {
+            trace.setError("invalid url");
+            mLogger.error("Error with creating URL " + requestUrl, null);
+            return null;
+        }
+
+        List<News> newsList = null;
+        Response response = null;
+        CountingInputStream inputStream = null;
+        try {
+            // The trace rides along with the request, so the event listener can time the connection
+            Request.Builder request = new Request.Builder().url(url).get().tag(FetchTrace.class, trace);
+
+            // Send validators of the last response, so the server can skip the body
+            ConditionalGetCache.Entry previous = mConditionalGets.get(requestUrl);
+            if (previous != null) {
+                if (previous.getETag() != null) {
+                    request.header("If-None-Match", previous.getETag());
+                }
+                if (previous.getLastModified() != null) {
+                    request.header("If-Modified-Since", previous.getLastModified());
+                }
+            }
+            // Bounds the whole call, the body included, by what is left of the load deadline
+            Call call = getClient().newCall(request.build());
+            call.timeout().timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (cancellation != null) {
+                // Cancelling from now on aborts the connection and the parse reading from it
+                cancellation.attach(call);
+            }
+            response = call.execute();
+
+            // If the response was successful (code 200) then parse the input stream as it arrives
+            int responseCode = response.code();
+            trace.setResponseCode(responseCode);
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                long bodyStart = System.nanoTime();
+                inputStream = new CountingInputStream(response.body().byteStream());
+                ArrayList<News> parsed = new ArrayList<>();
+                Exception parseError = streamNews(inputStream,
+                        store != null ? store.record(requestUrl, inputStream) : null, parsed);
+                trace.setBodyNanos(System.nanoTime() - bodyStart);
+                trace.setBytes(inputStream.getCount());
+                if (parseError == null) {
+                    mConditionalGets.put(requestUrl, response.header("ETag"),
+                            response.header("Last-Modified"), parsed, inputStream.getCount());
+                    newsList = parsed;
+                } else {
+                    // Part of a page is no answer, the caller falls back to what it has cached
+                    trace.setError("malformed body");
+                    mLogger.error("Problem parsing the news JSON stream of " + requestUrl, parseError);
+                }
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                // Nothing changed, reuse the News we already have
+                mConditionalGets.recordNotModified(previous);
+                if (store != null) {
+                    store.markFresh(requestUrl);
+                }
+                newsList = previous.getNews();
+            } else {
+                trace.setError("http " + responseCode);
+                mLogger.error("Error response code: " + responseCode + " for " + requestUrl, null);
+                attempt.mRetryable = RetryPolicy.isRetryable(responseCode);
+                attempt.mRetryAfterMillis = RetryPolicy.parseRetryAfter(response.header("Retry-After"),
+                        System.currentTimeMillis());
+            }
+        } catch (IOException e) {
+            trace.setError(e.getClass().getSimpleName());
+            mLogger.error("Problem can't connect to " + requestUrl, e);
+            // Timeouts and dropped connections are often gone a moment later
+            attempt.mRetryable = true;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    // The News are parsed already
+                    mLogger.error("Error closing input stream", e);
+                }
+            }
+            if (response != null) {
+                // Closing the response hands its connection back to the pool
+                response.close();
+            }
+        }
+        return newsList;
+    }
+
+    /**
+     * Return a list of {@link News} objects read directly from the response stream,
+     * without building the whole JSON String or JSON tree first.
+     */
+    public static ArrayList<News> extractNews(InputStream inputStream) {
+        ArrayList<News> newsList = new ArrayList<>();
+        streamNews(inputStream, null, newsList);
+        return newsList;
+    }
+
+    /**
+     * Stream the {@link News} out of the response into the list and copy the body into
+     * the recording. If the JSON is malformed the list keeps everything parsed so far,
+     * but the recording is dropped.
+     * @return what broke the parse, null when the whole response was parsed without errors
+     */
+    private static Exception streamNews(InputStream inputStream, Recording recording, final List<News> newsList) {
+        try {
+            NewsParser.parse(recording != null ? recording.getInputStream() : inputStream, new NewsParser.Callback() {
+                @Override
+                public void onNews(News news) {
+                    newsList.add(news);
+                }
+            });
+            if (recording != null) {
+                recording.commit(newsList);
+            }
+            return null;
+        } catch (IOException | IllegalStateException e) {
+            if (recording != null) {
+                recording.abort();
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Key of a query for the caches: host, path and the sorted parameters without the api
+     * key, so the same query gets the same key whatever the order of its parameters.
+     * @return key, or null when the url is not valid
+     */
+    public static String queryKey(String url) {
+        if (url == null) {
+            return null;
+        }
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+
+        List<String> parameters = new ArrayList<>();
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.isEmpty() || parameter.startsWith(API_KEY_PARAMETER + "=")) {
+                    continue;
+                }
+                parameters.add(parameter);
+            }
+        }
+        Collections.sort(parameters);
+
+        StringBuilder key = new StringBuilder(uri.getHost()).append(uri.getPath()).append('?');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                key.append('&');
+            }
+            key.append(parameters.get(i));
+        }
+        return key.toString();
+    }
+}
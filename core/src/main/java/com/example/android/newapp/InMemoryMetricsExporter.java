@@ -0,0 +1,28 @@
+package com.example.android.newapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the traces in memory, so tests can look at them.
+ */
+public class InMemoryMetricsExporter implements MetricsExporter {
+
+    private final List<FetchTrace> mTraces = new ArrayList<>();
+
+    @Override
+    public synchronized void onTrace(FetchTrace trace) {
+        mTraces.add(trace);
+    }
+
+    /**
+     * @return copy of the traces received so far
+     */
+    public synchronized List<FetchTrace> getTraces() {
+        return new ArrayList<>(mTraces);
+    }
+
+    public synchronized void clear() {
+        mTraces.clear();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.android.newapp;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and counters of the fetch, parse and bind pipeline, shared by the whole app.
+ * Every stage has a {@link Histogram}, every fetch gives one {@link FetchTrace} which is
+ * handed to the registered exporters.
+ */
+public final class Metrics {
+
+    /** Opening a new connection, TCP and TLS */
+    public static final String STAGE_CONNECT = "connect";
+
+    /** From the start of the call to the first byte of the response headers */
+    public static final String STAGE_TTFB = "ttfb";
+
+    /** Reading and parsing the body, which happen together */
+    public static final String STAGE_BODY = "body";
+
+    /** The whole fetch */
+    public static final String STAGE_FETCH = "fetch";
+
+    /** Handing a loaded feed to the list, on the main thread */
+    public static final String STAGE_DELIVER = "deliver";
+
+    /** Binding one row of the list */
+    public static final String STAGE_BIND = "bind";
+
+    /** Decoding one thumbnail, downsampled to the size of its view */
+    public static final String STAGE_DECODE = "decode";
+
+    /** From the creation of the feed screen to its first frame with News on it */
+    public static final String STAGE_FIRST_CONTENT = "first_content";
+
+    /** From a tap on a row to the first frame of the reader with the article text */
+    public static final String STAGE_TAP_TO_CONTENT = "tap_to_content";
+
+    public static final String COUNTER_REQUESTS = "requests";
+    public static final String COUNTER_BYTES = "bytes";
+    public static final String COUNTER_ITEMS = "items";
+    public static final String COUNTER_ERRORS = "errors";
+    public static final String COUNTER_RETRIES = "retries";
+
+    /** Fetches given up by their caller, e.g. searches superseded by the next keystroke */
+    public static final String COUNTER_CANCELLED = "cancelled";
+
+    /** Article bodies loaded for the reader, prefetched or not */
+    public static final String COUNTER_BODIES_LOADED = "bodies_loaded";
+
+    /** News a refresh didn't have to parse, because it only asked for the new ones */
+    public static final String COUNTER_DELTA_SAVED = "delta_saved";
+
+    private static final Metrics sInstance = new Metrics();
+
+    private final ConcurrentMap<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> mCounters = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<MetricsExporter> mExporters = new CopyOnWriteArrayList<>();
+
+    // Starts without exporters, the app adds the one writing to logcat
+    Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * @return histogram of the stage, created the first time it is asked for
+     */
+    public Histogram histogram(String stage) {
+        Histogram histogram = mHistograms.get(stage);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = mHistograms.putIfAbsent(stage, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    public void increment(String counter, long delta) {
+        AtomicLong value = mCounters.get(counter);
+        if (value == null) {
+            AtomicLong created = new AtomicLong();
+            value = mCounters.putIfAbsent(counter, created);
+            if (value == null) {
+                value = created;
+            }
+        }
+        value.addAndGet(delta);
+    }
+
+    public long getCount(String counter) {
+        AtomicLong value = mCounters.get(counter);
+        return value == null ? 0 : value.get();
+    }
+
+    public void addExporter(MetricsExporter exporter) {
+        mExporters.addIfAbsent(exporter);
+    }
+
+    public void removeExporter(MetricsExporter exporter) {
+        mExporters.remove(exporter);
+    }
+
+    /**
+     * Add the finished trace to the histograms and counters and export it.
+     */
+    void record(FetchTrace trace) {
+        recordStage(STAGE_CONNECT, trace.getConnectNanos());
+        recordStage(STAGE_TTFB, trace.getTtfbNanos());
+        recordStage(STAGE_BODY, trace.getBodyNanos());
+        recordStage(STAGE_FETCH, trace.getTotalNanos());
+        if (!trace.isCoalesced()) {
+            increment(COUNTER_REQUESTS, trace.getAttempts());
+            increment(COUNTER_RETRIES, Math.max(0, trace.getAttempts() - 1));
+            increment(COUNTER_BYTES, trace.getBytes());
+        }
+        increment(COUNTER_ITEMS, trace.getItems());
+        if (trace.isCancelled()) {
+            increment(COUNTER_CANCELLED, 1);
+        } else if (trace.getError() != null) {
+            increment(COUNTER_ERRORS, 1);
+        }
+        for (MetricsExporter exporter : mExporters) {
+            exporter.onTrace(trace);
+        }
+    }
+
+    private void recordStage(String stage, long nanos) {
+        if (nanos != FetchTrace.NOT_MEASURED) {
+            histogram(stage).record(nanos);
+        }
+    }
+
+    /**
+     * Forget all histograms and counters, the exporters stay.
+     */
+    public void reset() {
+        for (Histogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+        mCounters.clear();
+    }
+
+    /**
+     * @return every histogram and counter as JSON, durations in microseconds
+     */
+    public String dump() {
+        StringWriter output = new StringWriter();
+        JsonWriter writer = new JsonWriter(output);
+        try {
+            writer.beginObject();
+            writer.name("stages").beginObject();
+            for (Map.Entry<String, Histogram> stage : new TreeMap<>(mHistograms).entrySet()) {
+                Histogram histogram = stage.getValue();
+                writer.name(stage.getKey()).beginObject()
+                        .name("count").value(histogram.getCount())
+                        .name("mean_us").value(histogram.getMeanNanos() / 1000)
+                        .name("p50_us").value(histogram.getPercentileNanos(0.5) / 1000)
+                        .name("p95_us").value(histogram.getPercentileNanos(0.95) / 1000)
+                        .name("p99_us").value(histogram.getPercentileNanos(0.99) / 1000)
+                        .name("max_us").value(histogram.getMaxNanos() / 1000)
+                        .endObject();
+            }
+            writer.endObject();
+            writer.name("counters").beginObject();
+            for (Map.Entry<String, AtomicLong> counter : new TreeMap<>(mCounters).entrySet()) {
+                writer.name(counter.getKey()).value(counter.getValue().get());
+            }
+            writer.endObject();
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            // A StringWriter doesn't throw
+            throw new AssertionError(e);
+        }
+        return output.toString();
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.android.newapp;
+
+/**
+ * Receives every finished {@link FetchTrace}. It is called on the thread which made the
+ * fetch, so it should hand heavy work off instead of doing it inline.
+ */
+public interface MetricsExporter {
+    void onTrace(FetchTrace trace);
+}
@@ -0,0 +1,121 @@
+package com.example.android.newapp;
+
+/**
+ * Estimates the round trip time and the throughput of the link from the traces of the
+ * fetches made lately, as exponentially weighted averages so a handover shows within a
+ * few fetches. Both are measured the way the app sees them: the round trip is the time
+ * to the response headers, server time included, and the throughput is body bytes after
+ * gzip decoding over the time spent reading and parsing them. That is what a page of
+ * News costs, whatever the compression.
+ * <p>
+ * The throughput is averaged as time per byte, so one fetch on a link many times
+ * slower pulls the estimate down at once, while one fast fetch on a slow link doesn't
+ * make it look fast.
+ * <p>
+ * Until there are measurements, or once they are too old to say anything about the
+ * link, the prior given by the caller is used, e.g. a guess from the connection type.
+ */
+public class NetworkEstimator implements MetricsExporter {
+
+    /** Value of an estimate which is not known */
+    public static final double UNKNOWN = -1;
+
+    /** Weight of a new sample against the average of the ones before */
+    static final double SAMPLE_WEIGHT = 0.5;
+
+    /**
+     * Bodies smaller than this come in with the headers, their read time is the parser's
+     * and says nothing about the throughput. They still give a round trip. A small page
+     * of the slow strategy is bigger, or a slow link could never show it got faster.
+     */
+    static final long MIN_THROUGHPUT_BYTES = 2 * 1024;
+
+    /** Measurements older than this are forgotten, the device may be on another network */
+    public static final long MAX_AGE_MILLIS = 2 * 60 * 1000;
+
+    private final Clock mClock;
+
+    private double mRttMillis = UNKNOWN;
+    private double mMillisPerByte = UNKNOWN;
+    private long mLastSampleMillis;
+
+    private double mPriorRttMillis = UNKNOWN;
+    private double mPriorBytesPerSecond = UNKNOWN;
+
+    public NetworkEstimator(Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Only single attempts which got their answer are used. A coalesced fetch didn't make
+     * the request, and the time of a retried one includes the backoff.
+     */
+    @Override
+    public void onTrace(FetchTrace trace) {
+        if (trace.isCoalesced() || trace.getError() != null || trace.getAttempts() != 1
+                || trace.getTtfbNanos() == FetchTrace.NOT_MEASURED) {
+            return;
+        }
+        long bodyNanos = trace.getBodyNanos();
+        addSample(trace.getTtfbNanos() / 1e6, trace.getBytes(),
+                bodyNanos == FetchTrace.NOT_MEASURED ? 0 : bodyNanos / 1e6);
+    }
+
+    /**
+     * @param rttMillis time to the response headers
+     * @param bytes body bytes read
+     * @param bodyMillis time the body took
+     */
+    public synchronized void addSample(double rttMillis, long bytes, double bodyMillis) {
+        forgetIfStale();
+        mRttMillis = average(mRttMillis, rttMillis);
+        if (bytes >= MIN_THROUGHPUT_BYTES && bodyMillis > 0) {
+            mMillisPerByte = average(mMillisPerByte, bodyMillis / bytes);
+        }
+        mLastSampleMillis = mClock.currentTimeMillis();
+    }
+
+    /**
+     * Set what is assumed while nothing was measured.
+     * @param rttMillis round trip, or {@link #UNKNOWN}
+     * @param bytesPerSecond throughput, or {@link #UNKNOWN}
+     */
+    public synchronized void setPrior(double rttMillis, double bytesPerSecond) {
+        mPriorRttMillis = rttMillis;
+        mPriorBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @return round trip time in milliseconds, or {@link #UNKNOWN}
+     */
+    public synchronized double getRttMillis() {
+        forgetIfStale();
+        return mRttMillis != UNKNOWN ? mRttMillis : mPriorRttMillis;
+    }
+
+    /**
+     * @return throughput in bytes per second, or {@link #UNKNOWN}
+     */
+    public synchronized double getBytesPerSecond() {
+        forgetIfStale();
+        return mMillisPerByte != UNKNOWN ? 1000 / mMillisPerByte : mPriorBytesPerSecond;
+    }
+
+    /**
+     * @return true when both the round trip and the throughput are known, measured or prior
+     */
+    public synchronized boolean hasEstimate() {
+        return getRttMillis() != UNKNOWN && getBytesPerSecond() != UNKNOWN;
+    }
+
+    private void forgetIfStale() {
+        if (mRttMillis != UNKNOWN && mClock.currentTimeMillis() - mLastSampleMillis > MAX_AGE_MILLIS) {
+            mRttMillis = UNKNOWN;
+            mMillisPerByte = UNKNOWN;
+        }
+    }
+
+    private static double average(double average, double sample) {
+        return average == UNKNOWN ? sample : average + SAMPLE_WEIGHT * (sample - average);
+    }
+}
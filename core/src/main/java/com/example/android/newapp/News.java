@@ -0,0 +1,153 @@
+package com.example.android.newapp;
+
+public class News {
+
+    // Title of News from database
+    private String mTitle;
+
+    // Section group form database
+    private String mSectionName;
+
+    // Url address of news item from database
+    private String mWebUrl;
+
+    // Date of publication of News
+    private String mDate;
+
+    // Author name
+    private String mAuthor;
+
+    // Pillar name
+    private String mPillarName;
+
+    // Date of publication in milliseconds since the epoch, parsed once at creation
+    private long mTimeInMillis;
+
+    // Date of publication as shown in the list, prepared once at creation
+    private String mDisplayDate;
+
+    // Url of the thumbnail image, null when the article has none
+    private String mThumbnailUrl;
+
+    // Background color of the section, 0 until the app made a copy with it, see withSectionColor
+    private int mSectionColor;
+
+    /**
+     * Creates new News object
+     * @param sectionName name of group news
+     * @param title of the news
+     * @param webUrl of news
+     * @param author of a news
+     */
+    public News(String sectionName, String title, String webUrl, String date, String author, String pillarName){
+        this(sectionName, title, webUrl, date, author, pillarName, null);
+    }
+
+    /**
+     * Creates new News object with a thumbnail
+     * @param thumbnailUrl of the thumbnail image, may be null
+     */
+    public News(String sectionName, String title, String webUrl, String date, String author, String pillarName,
+                String thumbnailUrl){
+
+        this.mSectionName = sectionName;
+        this.mTitle = title;
+        this.mWebUrl = webUrl;
+        this.mDate = date;
+        this.mAuthor = author;
+        this.mPillarName = pillarName;
+        this.mThumbnailUrl = thumbnailUrl;
+        this.mTimeInMillis = NewsDates.parse(date);
+        this.mDisplayDate = NewsDates.displayDate(date);
+    }
+
+    /**
+     * Creates News whose date was parsed before, e.g. restored from a {@link NewsSnapshot}
+     * @param timeInMillis date of publication, as returned by {@link NewsDates#parse(String)}
+     * @param sectionColor background color of the section, 0 when not known yet
+     */
+    News(String sectionName, String title, String webUrl, String date, String author, String pillarName,
+         String thumbnailUrl, long timeInMillis, int sectionColor){
+
+        this.mSectionName = sectionName;
+        this.mTitle = title;
+        this.mWebUrl = webUrl;
+        this.mDate = date;
+        this.mAuthor = author;
+        this.mPillarName = pillarName;
+        this.mThumbnailUrl = thumbnailUrl;
+        this.mTimeInMillis = timeInMillis;
+        this.mDisplayDate = NewsDates.displayDate(date);
+        this.mSectionColor = sectionColor;
+    }
+
+
+    public String getSection() {
+        return mSectionName;
+    }
+
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+
+    public String getWebUrl() {
+        return mWebUrl;
+    }
+
+
+    public String getDate() {
+        return mDate;
+    }
+
+
+    public String getAuthor() {
+        return mAuthor;
+    }
+
+
+    public String getPillarName() {
+        return mPillarName;
+    }
+
+
+    /**
+     * @return url of the thumbnail image, or null
+     */
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+
+    /**
+     * @return date of publication in milliseconds since the epoch, or {@link NewsDates#UNKNOWN}
+     */
+    public long getTimeInMillis() {
+        return mTimeInMillis;
+    }
+
+
+    public String getDisplayDate() {
+        return mDisplayDate;
+    }
+
+
+    public int getSectionColor() {
+        return mSectionColor;
+    }
+
+
+    /**
+     * The same News may be held by the caches and handed to several loaders, so it is
+     * never changed, the color goes into a copy.
+     * @return these News with the section color, this object when it has the color already
+     */
+    News withSectionColor(int sectionColor) {
+        if (sectionColor == mSectionColor) {
+            return this;
+        }
+        return new News(mSectionName, mTitle, mWebUrl, mDate, mAuthor, mPillarName, mThumbnailUrl, mTimeInMillis,
+                sectionColor);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.android.newapp;
+
+/**
+ * Parses the Guardian publication dates, e.g. "2019-01-29T18:42:11Z".
+ * It is done once when the {@link News} is created, not every time a row is shown.
+ */
+public final class NewsDates {
+
+    /** Value returned for a date which can't be parsed */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private NewsDates() {}
+
+    /**
+     * @param date date in the "yyyy-MM-dd'T'HH:mm:ss'Z'" format, seconds and zone are optional
+     * @return milliseconds since the epoch, or {@link #UNKNOWN}
+     */
+    public static long parse(String date) {
+        if (date == null || date.length() < 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return UNKNOWN;
+        }
+
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 2);
+        int day = digits(date, 8, 2);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (date.length() >= 16 && date.charAt(10) == 'T' && date.charAt(13) == ':') {
+            hour = digits(date, 11, 2);
+            minute = digits(date, 14, 2);
+            if (date.length() >= 19 && date.charAt(16) == ':') {
+                second = digits(date, 17, 2);
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return UNKNOWN;
+        }
+
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L;
+    }
+
+    /**
+     * Inverse of {@link #parse(String)} for dates in the Guardian format.
+     * @param millis milliseconds since the epoch, whole seconds
+     * @return date in the "yyyy-MM-dd'T'HH:mm:ss'Z'" format, e.g. "2019-01-29T18:42:11Z"
+     */
+    public static String format(long millis) {
+        long days = millis / DAY_MILLIS;
+        if (millis % DAY_MILLIS < 0) {
+            days--;
+        }
+        int seconds = (int) ((millis - days * DAY_MILLIS) / 1000);
+
+        // Days since 1970-01-01 to year, month and day of the proleptic Gregorian calendar
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] text = new char[20];
+        put(text, 0, (int) year, 4);
+        text[4] = '-';
+        put(text, 5, month, 2);
+        text[7] = '-';
+        put(text, 8, day, 2);
+        text[10] = 'T';
+        put(text, 11, seconds / 3600, 2);
+        text[13] = ':';
+        put(text, 14, seconds / 60 % 60, 2);
+        text[16] = ':';
+        put(text, 17, seconds % 60, 2);
+        text[19] = 'Z';
+        return new String(text);
+    }
+
+    /**
+     * Most dates are the formatted time, only the odd one needs its text kept.
+     * @return true when the date is {@link #format(long)} of the time, so it needn't be stored
+     */
+    public static boolean isFormatted(String date, long millis) {
+        return millis != UNKNOWN && date != null && date.length() == 20 && date.equals(format(millis));
+    }
+
+    /**
+     * @return date part shown in the list, e.g. "2019-01-29"
+     */
+    public static String displayDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        int separator = date.indexOf('T');
+        return separator < 0 ? date : date.substring(0, separator);
+    }
+
+    // Write the value as count decimal digits, padded with zeros
+    private static void put(char[] text, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    // Parse the decimal digits, -1 when there is something else
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Number of days between 1970-01-01 and the given date of the proleptic Gregorian calendar
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.android.newapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Refresh of a feed ordered by newest which only asks for the News published since the
+ * newest one shown, instead of the whole first page again. The few new News go on top
+ * of the list, everything below stays as it is.
+ */
+public final class NewsDelta {
+
+    private static final String FROM_DATE_PARAMETER = "from-date";
+    private static final String PAGE_SIZE_PARAMETER = "page-size";
+
+    /** Page size the Guardian API uses when the query doesn't say */
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    private NewsDelta() {}
+
+    /**
+     * @param url query URL of the first page of the feed
+     * @param shown News on screen
+     * @return query URL of the News published since the newest shown one, or null when
+     *         none of them has a known date
+     */
+    public static String url(String url, List<News> shown) {
+        long newest = NewsDates.UNKNOWN;
+        for (News news : shown) {
+            if (news.getTimeInMillis() != NewsDates.UNKNOWN
+                    && (newest == NewsDates.UNKNOWN || news.getTimeInMillis() > newest)) {
+                newest = news.getTimeInMillis();
+            }
+        }
+        if (newest == NewsDates.UNKNOWN) {
+            return null;
+        }
+        try {
+            // "On or after", so the newest shown News comes back too and is dropped by merge
+            return url + (url.indexOf('?') < 0 ? '?' : '&') + FROM_DATE_PARAMETER + '='
+                    + URLEncoder.encode(NewsDates.format(newest), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return News asked for in a page of the query
+     */
+    public static int pageSize(String url) {
+        try {
+            String query = new URI(url).getRawQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    if (parameter.startsWith(PAGE_SIZE_PARAMETER + "=")) {
+                        return Integer.parseInt(parameter.substring(PAGE_SIZE_PARAMETER.length() + 1));
+                    }
+                }
+            }
+        } catch (URISyntaxException | NumberFormatException e) {
+            // Same as a query without a page size
+        }
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * A delta as long as a page may have left out News published between the shown ones
+     * and the delta, the first page has to be loaded again.
+     * @return true when the delta can be put on top of the shown News
+     */
+    public static boolean isComplete(List<News> delta, int pageSize) {
+        return delta.size() < pageSize;
+    }
+
+    /**
+     * @param shown News on screen, newest first
+     * @param delta News published since the newest shown one, newest first
+     * @return the News of the delta not shown yet, followed by the shown News in their order
+     */
+    public static List<News> merge(List<News> shown, List<News> delta) {
+        Set<String> webUrls = new HashSet<>();
+        for (News news : shown) {
+            webUrls.add(news.getWebUrl());
+        }
+        List<News> merged = new ArrayList<>(shown.size() + delta.size());
+        for (News news : delta) {
+            if (webUrls.add(news.getWebUrl())) {
+                merged.add(news);
+            }
+        }
+        merged.addAll(shown);
+        return merged;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.android.newapp;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs fetches of a {@link GuardianClient} without blocking the caller. At most a fixed
+ * number of fetches run at the same time and a bounded number wait for their turn, a
+ * submit beyond that is rejected at once instead of piling up work the server can't take.
+ * That is the backpressure: a caller told to slow down can drop the query, retry later
+ * or answer from its cache.
+ * <p>
+ * Every fetch can be cancelled through its future, which aborts its connection and its
+ * parse. The futures are plain {@link Future}s with a callback, the app runs on devices
+ * which don't have CompletableFuture.
+ */
+public final class NewsEngine {
+
+    /** Fetches running at the same time by default, as many as the app's pool keeps idle connections */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    /** Fetches waiting for their turn by default */
+    public static final int DEFAULT_MAX_QUEUED = 16;
+
+    private static final long IDLE_THREAD_SECONDS = 30;
+
+    /**
+     * Receives the result of a fetch, on the thread which ran it.
+     */
+    public interface Callback {
+        /**
+         * @param newsList News of the query, or null when there was no successful response.
+         *                 Not called for a cancelled fetch.
+         */
+        void onNews(String url, List<News> newsList);
+    }
+
+    private final GuardianClient mClient;
+    private final ThreadPoolExecutor mExecutor;
+
+    /** Fetches waiting or running, so shutting down can abort their calls */
+    private final Set<FetchTask> mTasks = Collections.newSetFromMap(new ConcurrentHashMap<FetchTask, Boolean>());
+
+    private final AtomicLong mSubmitted = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+
+    /**
+     * @param maxInFlight most fetches running at the same time
+     * @param maxQueued most fetches waiting for one of the running ones to end
+     */
+    public NewsEngine(GuardianClient client, int maxInFlight, int maxQueued) {
+        mClient = client;
+        mExecutor = new ThreadPoolExecutor(maxInFlight, maxInFlight, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(maxQueued), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "NewsEngine #" + mCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.AbortPolicy());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Fetch the query in the background.
+     * @param store where the response body is recorded, may be null
+     * @param deadlineMillis time allowed for all attempts together
+     * @param callback told about the result, may be null
+     * @return future of the News, null when there was no successful response. Cancelling
+     *         it aborts the fetch.
+     * @throws RejectedExecutionException when as many fetches as allowed are running and
+     *         waiting already, or the engine was shut down
+     */
+    public Future<List<News>> submit(String url, GuardianClient.ResponseStore store, long deadlineMillis,
+                                     Callback callback) {
+        FetchCancellation cancellation = new FetchCancellation();
+        FetchTask task = new FetchTask(url, fetch(url, store, deadlineMillis, cancellation), cancellation, callback);
+        mTasks.add(task);
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            mTasks.remove(task);
+            mRejected.incrementAndGet();
+            throw e;
+        }
+        mSubmitted.incrementAndGet();
+        return task;
+    }
+
+    /**
+     * Fetch the query the way {@link #submit} does and wait for it, for a caller which is
+     * running in the background already.
+     * @param store where the response body is recorded, may be null
+     * @param deadlineMillis time allowed for all attempts together
+     * @return News, or null when there was no successful response in time, the engine had
+     *         no room for the fetch or the waiting thread was interrupted
+     */
+    public List<News> load(String url, GuardianClient.ResponseStore store, long deadlineMillis) {
+        Future<List<News>> future;
+        try {
+            future = submit(url, store, deadlineMillis, null);
+        } catch (RejectedExecutionException e) {
+            mClient.getLogger().error("Too many fetches waiting, not loading " + url, null);
+            return null;
+        }
+        try {
+            List<News> newsList = future.get();
+            if (newsList == null) {
+                mClient.getLogger().error("No News loaded for " + url, null);
+            }
+            return newsList;
+        } catch (InterruptedException e) {
+            // Nobody waits for it any more, the engine aborts the call
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            mClient.getLogger().error("Problem loading " + url, e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * @return number of fetches running right now
+     */
+    public int getInFlightCount() {
+        return mExecutor.getActiveCount();
+    }
+
+    /**
+     * @return number of fetches waiting for their turn right now
+     */
+    public int getQueuedCount() {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * @return number of fetches accepted so far
+     */
+    public long getSubmittedCount() {
+        return mSubmitted.get();
+    }
+
+    /**
+     * @return number of fetches turned away because the engine was full
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    /**
+     * Cancel every waiting and running fetch, nothing can be submitted any more.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+        for (FetchTask task : mTasks) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Waits for the fetches still running after {@link #shutdown()}.
+     * @return true when they all ended in time
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return mExecutor.awaitTermination(timeout, unit);
+    }
+
+    // The fetch run by a task, its cancellation is created first so the task can hold it
+    private Callable<List<News>> fetch(final String url, final GuardianClient.ResponseStore store,
+                                       final long deadlineMillis, final FetchCancellation cancellation) {
+        return new Callable<List<News>>() {
+            @Override
+            public List<News> call() {
+                return mClient.fetch(url, store, deadlineMillis, cancellation);
+            }
+        };
+    }
+
+    /**
+     * One fetch, its cancellation aborts the call instead of only interrupting the thread.
+     */
+    private final class FetchTask extends FutureTask<List<News>> {
+
+        private final String mUrl;
+        private final FetchCancellation mCancellation;
+        private final Callback mCallback;
+
+        FetchTask(String url, Callable<List<News>> fetch, FetchCancellation cancellation, Callback callback) {
+            super(fetch);
+            mUrl = url;
+            mCancellation = cancellation;
+            mCallback = callback;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            mCancellation.cancel();
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        protected void done() {
+            mTasks.remove(this);
+            if (mCallback == null || isCancelled()) {
+                return;
+            }
+            List<News> newsList;
+            try {
+                newsList = get();
+            } catch (InterruptedException | CancellationException e) {
+                return;
+            } catch (ExecutionException e) {
+                newsList = null;
+            }
+            // A fetch cancelled while its result was being handed over
+            if (!mCancellation.isCancelled()) {
+                mCallback.onNews(mUrl, newsList);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.android.newapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Merges lists of {@link News} coming from several queries into one feed ordered by
+ * publication date, newest first. An article found in more than one list is kept once.
+ */
+public class NewsMerger {
+
+    /** Newest first, News with an unknown date go to the end */
+    static final Comparator<News> NEWEST_FIRST = new Comparator<News>() {
+        @Override
+        public int compare(News first, News second) {
+            long firstTime = first.getTimeInMillis();
+            long secondTime = second.getTimeInMillis();
+            return firstTime < secondTime ? 1 : (firstTime > secondTime ? -1 : 0);
+        }
+    };
+
+    private final List<News> mNews = new ArrayList<>();
+    private final Set<String> mWebUrls = new HashSet<>();
+
+    /**
+     * Add the News which are not in the feed yet and keep the feed ordered.
+     * @param newsList News to add, null is ignored
+     */
+    public synchronized void add(List<News> newsList) {
+        if (newsList == null) {
+            return;
+        }
+        for (News news : newsList) {
+            if (mWebUrls.add(news.getWebUrl())) {
+                mNews.add(news);
+            }
+        }
+        // Sort is stable, so News published at the same time keep the order they came in
+        Collections.sort(mNews, NEWEST_FIRST);
+    }
+
+    /**
+     * @return copy of the merged feed
+     */
+    public synchronized List<News> getNews() {
+        return new ArrayList<>(mNews);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.android.newapp;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for the Guardian search response. It reads the JSON token by token
+ * straight from the {@link InputStream}, so the whole response is never held in memory
+ * as a String or as a JSON tree. Fields we never display are skipped.
+ */
+public final class NewsParser {
+
+    /**
+     * Receives every {@link News} as soon as it has been read from the stream.
+     */
+    public interface Callback {
+        void onNews(News news);
+    }
+
+    private NewsParser() {}
+
+    /**
+     * Parse the whole stream and return all the {@link News} found in it.
+     */
+    public static List<News> parse(InputStream inputStream) throws IOException {
+        final List<News> newsList = new ArrayList<>();
+        parse(inputStream, new Callback() {
+            @Override
+            public void onNews(News news) {
+                newsList.add(news);
+            }
+        });
+        return newsList;
+    }
+
+    /**
+     * Parse the stream and pass every {@link News} to the callback as it goes.
+     * When a result is missing one of the required fields parsing stops, exactly like
+     * the JSON tree parser of the app does, and an IOException is thrown.
+     */
+    public static void parse(InputStream inputStream, Callback callback) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("response")) {
+                    readResponse(reader, callback);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Read the "response" object and look for the "results" array inside of it
+    private static void readResponse(JsonReader reader, Callback callback) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("results")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    callback.onNews(readNews(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    // Read single result object and build News from it
+    private static News readNews(JsonReader reader) throws IOException {
+        String section = null;
+        String title = null;
+        String urlAddress = null;
+        String date = null;
+        String pillar = null;
+        String fullAuthor = null;
+        String thumbnail = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sectionName":
+                    section = readString(reader);
+                    break;
+                case "webTitle":
+                    title = readString(reader);
+                    break;
+                case "webUrl":
+                    urlAddress = readString(reader);
+                    break;
+                case "webPublicationDate":
+                    date = readString(reader);
+                    break;
+                case "pillarName":
+                    pillar = readString(reader);
+                    break;
+                case "fields":
+                    thumbnail = readThumbnail(reader);
+                    break;
+                case "tags":
+                    fullAuthor = readAuthors(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        // No tags when the screen shows no author, see NewsProjection
+        if (section == null || title == null || urlAddress == null || date == null || pillar == null) {
+            throw new IOException("Missing required field in news result");
+        }
+        return new News(section, title, urlAddress, date, fullAuthor, pillar, thumbnail);
+    }
+
+    // Read "thumbnail" out of the optional "fields" object, other fields are skipped
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String thumbnail = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("thumbnail")) {
+                thumbnail = readString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnail;
+    }
+
+    // Join "webTitle" of every contributor tag, one author per line
+    private static String readAuthors(JsonReader reader) throws IOException {
+        StringBuilder authors = null;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String author = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("webTitle")) {
+                    author = readString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (author == null) {
+                throw new IOException("Missing webTitle in tag");
+            }
+            if (authors == null) {
+                authors = new StringBuilder(author);
+            } else {
+                authors.append('\n').append(author);
+            }
+        }
+        reader.endArray();
+
+        return authors == null ? null : authors.toString();
+    }
+
+    // Read string value, JSON null is treated as a missing value
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
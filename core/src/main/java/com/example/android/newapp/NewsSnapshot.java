@@ -0,0 +1,205 @@
+package com.example.android.newapp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a list of {@link News}, read back much faster than the JSON
+ * it came from. Every distinct string is stored once, so the few section and pillar
+ * names repeated on every article cost an index each, and the restored News share
+ * the same String objects. Dates are stored as epoch milliseconds and only formatted
+ * back, never parsed. A file is read through a memory mapping, without copying it
+ * into a buffer first.
+ *
+ * Layout, all numbers big endian:
+ * <pre>
+ *   int magic, int version, int string count, int news count
+ *   string table: per string an int length and the UTF-8 bytes
+ *   records: per News {@link #RECORD_BYTES} bytes, the string indexes of section,
+ *            title, web url, author, pillar, thumbnail and date text, then the long
+ *            publication time. A missing string is -1, so is the date text when it
+ *            is the formatted publication time.
+ * </pre>
+ */
+public final class NewsSnapshot {
+
+    /** "NWSS" */
+    private static final int MAGIC = 0x4E575353;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 * 4;
+    private static final int RECORD_BYTES = 7 * 4 + 8;
+    private static final int NO_STRING = -1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private NewsSnapshot() {}
+
+    /**
+     * Write the snapshot to the file. The file is replaced only once the snapshot was
+     * completely written, so a reader never sees half of it.
+     */
+    public static void write(List<News> newsList, File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        OutputStream output = new FileOutputStream(tempFile);
+        try {
+            write(newsList, output);
+        } finally {
+            output.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Can't rename " + tempFile);
+        }
+    }
+
+    /**
+     * Write the snapshot to the stream, which is flushed but not closed.
+     */
+    public static void write(List<News> newsList, OutputStream outputStream) throws IOException {
+        // Strings are numbered in the order they first appear
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] records = new int[newsList.size() * 7];
+        for (int i = 0; i < newsList.size(); i++) {
+            News news = newsList.get(i);
+            int offset = i * 7;
+            records[offset] = index(news.getSection(), indexes, strings);
+            records[offset + 1] = index(news.getTitle(), indexes, strings);
+            records[offset + 2] = index(news.getWebUrl(), indexes, strings);
+            records[offset + 3] = index(news.getAuthor(), indexes, strings);
+            records[offset + 4] = index(news.getPillarName(), indexes, strings);
+            records[offset + 5] = index(news.getThumbnailUrl(), indexes, strings);
+            records[offset + 6] = NewsDates.isFormatted(news.getDate(), news.getTimeInMillis())
+                    ? NO_STRING : index(news.getDate(), indexes, strings);
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream, 16 * 1024));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(strings.size());
+        output.writeInt(newsList.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        for (int i = 0; i < newsList.size(); i++) {
+            for (int field = 0; field < 7; field++) {
+                output.writeInt(records[i * 7 + field]);
+            }
+            output.writeLong(newsList.get(i).getTimeInMillis());
+        }
+        output.flush();
+    }
+
+    /**
+     * Read the snapshot through a read-only memory mapping of the file.
+     * @throws IOException when the file is missing, not a snapshot or cut short
+     */
+    public static List<News> read(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Read the snapshot from the buffer, starting at its position.
+     * @throws IOException when the buffer does not hold a whole snapshot
+     */
+    public static List<News> read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a News snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unknown snapshot version " + version);
+            }
+            int stringCount = buffer.getInt();
+            int newsCount = buffer.getInt();
+            if (stringCount < 0 || newsCount < 0) {
+                throw new IOException("Corrupt snapshot header");
+            }
+            // Every string takes its length at least, and every News its record. A corrupt
+            // count must not allocate arrays bigger than the file could hold.
+            if ((long) stringCount * 4 + (long) newsCount * RECORD_BYTES > buffer.remaining()) {
+                throw new IOException("Corrupt snapshot header");
+            }
+
+            String[] strings = new String[stringCount];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < stringCount; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Corrupt snapshot string " + i);
+                }
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, UTF_8);
+            }
+
+            if (buffer.remaining() < (long) newsCount * RECORD_BYTES) {
+                throw new IOException("Snapshot cut short");
+            }
+            List<News> newsList = new ArrayList<>(newsCount);
+            for (int i = 0; i < newsCount; i++) {
+                String section = string(strings, buffer.getInt());
+                String title = string(strings, buffer.getInt());
+                String webUrl = string(strings, buffer.getInt());
+                String author = string(strings, buffer.getInt());
+                String pillar = string(strings, buffer.getInt());
+                String thumbnail = string(strings, buffer.getInt());
+                int dateIndex = buffer.getInt();
+                long timeInMillis = buffer.getLong();
+                String date = dateIndex == NO_STRING ? NewsDates.format(timeInMillis) : string(strings, dateIndex);
+                newsList.add(new News(section, title, webUrl, date, author, pillar, thumbnail, timeInMillis, 0));
+            }
+            return newsList;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Snapshot cut short", e);
+        }
+    }
+
+    private static int index(String string, Map<String, Integer> indexes, List<String> strings) {
+        if (string == null) {
+            return NO_STRING;
+        }
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    private static String string(String[] strings, int index) throws IOException {
+        if (index == NO_STRING) {
+            return null;
+        }
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Corrupt snapshot string index " + index);
+        }
+        return strings[index];
+    }
+}
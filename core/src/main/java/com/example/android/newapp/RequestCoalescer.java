@@ -0,0 +1,189 @@
+package com.example.android.newapp;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lets identical requests share one network call. The first caller for a query runs the
+ * request, callers asking for the same query while it is in flight wait for it and get
+ * the same News instead of going to the network themselves.
+ * <p>
+ * A caller can give up its wait through its {@link FetchCancellation} without taking the
+ * answer away from the others. The shared request is only aborted once every caller
+ * waiting for it gave up, a caller which can't be cancelled keeps it going.
+ */
+public final class RequestCoalescer {
+
+    /** No android.util.Log outside of the app, the JDK logger ends up in logcat there too */
+    private static final Logger LOGGER = Logger.getLogger(RequestCoalescer.class.getName());
+
+    /**
+     * Runs the shared request.
+     */
+    public interface Fetcher {
+        /**
+         * @param cancellation cancelled once every caller waiting for the request gave up
+         */
+        List<News> fetch(String url, FetchCancellation cancellation);
+    }
+
+    private final Map<String, Request> mInFlight = new HashMap<>();
+
+    private long mRequests;
+    private long mCoalesced;
+
+    /**
+     * Run the fetch, or wait for the identical one already running. The caller which runs
+     * it runs it to the end, even when it gave up itself, as long as others wait for it.
+     * @param cancellation gives up this caller's wait, may be null
+     * @return News of the query, or null when the request failed, the wait was given up
+     *         or interrupted
+     */
+    public List<News> fetch(final String url, FetchCancellation cancellation, Fetcher fetcher) {
+        String key = GuardianClient.queryKey(url);
+        if (key == null) {
+            key = url;
+        }
+
+        final Request request;
+        boolean owner = false;
+        synchronized (this) {
+            Request inFlight = mInFlight.get(key);
+            if (inFlight == null) {
+                inFlight = new Request(key);
+                mInFlight.put(key, inFlight);
+                owner = true;
+                mRequests++;
+            } else {
+                mCoalesced++;
+            }
+            inFlight.mWaiters++;
+            request = inFlight;
+        }
+
+        // Cancelled and interrupted at once still leaves once
+        final AtomicBoolean left = new AtomicBoolean();
+        Runnable onCancel = null;
+        if (cancellation != null) {
+            onCancel = new Runnable() {
+                @Override
+                public void run() {
+                    if (left.compareAndSet(false, true)) {
+                        leave(request);
+                    }
+                    request.wake();
+                }
+            };
+            cancellation.addListener(onCancel);
+        }
+
+        try {
+            if (owner) {
+                List<News> newsList = null;
+                try {
+                    newsList = fetcher.fetch(url, request.mCancellation);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Problem fetching " + url, e);
+                } finally {
+                    synchronized (this) {
+                        if (mInFlight.get(key) == request) {
+                            mInFlight.remove(key);
+                        }
+                    }
+                    request.finish(newsList);
+                }
+                return cancellation != null && cancellation.isCancelled() ? null : newsList;
+            }
+
+            try {
+                return request.await(cancellation);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (left.compareAndSet(false, true)) {
+                    leave(request);
+                }
+                return null;
+            }
+        } finally {
+            if (onCancel != null) {
+                cancellation.removeListener(onCancel);
+            }
+        }
+    }
+
+    // A caller gave up, the last one takes the request down with it
+    private void leave(Request request) {
+        synchronized (this) {
+            request.mWaiters--;
+            if (request.mWaiters > 0) {
+                return;
+            }
+            // A new caller for the query starts over instead of joining the aborted request
+            if (mInFlight.get(request.mKey) == request) {
+                mInFlight.remove(request.mKey);
+            }
+        }
+        request.mCancellation.cancel();
+    }
+
+    /**
+     * @return number of requests which really went out
+     */
+    public synchronized long getRequestCount() {
+        return mRequests;
+    }
+
+    /**
+     * @return number of requests answered by one already in flight
+     */
+    public synchronized long getCoalescedCount() {
+        return mCoalesced;
+    }
+
+    public synchronized void resetCounts() {
+        mRequests = 0;
+        mCoalesced = 0;
+    }
+
+    /**
+     * One request in flight and the callers waiting for it.
+     */
+    private static final class Request {
+        final String mKey;
+        final FetchCancellation mCancellation = new FetchCancellation();
+
+        /** Callers which didn't give up, guarded by the coalescer */
+        int mWaiters;
+
+        private boolean mDone;
+        private List<News> mNews;
+
+        Request(String key) {
+            mKey = key;
+        }
+
+        synchronized void finish(List<News> newsList) {
+            mNews = newsList;
+            mDone = true;
+            notifyAll();
+        }
+
+        synchronized void wake() {
+            notifyAll();
+        }
+
+        synchronized List<News> await(FetchCancellation cancellation) throws InterruptedException {
+            while (!mDone) {
+                if (cancellation != null && cancellation.isCancelled()) {
+                    return null;
+                }
+                wait();
+            }
+            return cancellation != null && cancellation.isCancelled() ? null : mNews;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.android.newapp;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Decides whether a failed GET is tried again and how long to wait before that.
+ * The wait grows exponentially with every attempt and is picked at random below that
+ * bound ("full jitter"), so clients failing together don't come back together. A delay
+ * asked for by the server with Retry-After is never shortened.
+ */
+public final class RetryPolicy {
+
+    /** Three attempts, waiting up to 250 ms and then up to 500 ms */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(3, 250, 4000);
+
+    /** A single attempt */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    /** No Retry-After header, or one which could not be read */
+    public static final long NO_RETRY_AFTER = -1;
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final Random mRandom;
+
+    /**
+     * @param maxAttempts attempts in total, including the first one
+     * @param baseDelayMillis bound of the wait after the first failed attempt
+     * @param maxDelayMillis bound of any wait not asked for by the server
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, new Random());
+    }
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mRandom = random;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * @param failedAttempt number of the attempt which failed, 1 for the first one
+     * @param retryAfterMillis wait asked for by the server, or {@link #NO_RETRY_AFTER}
+     * @return time to wait before the next attempt
+     */
+    public long getDelayMillis(int failedAttempt, long retryAfterMillis) {
+        long bound = Math.min(mMaxDelayMillis, mBaseDelayMillis << Math.min(failedAttempt - 1, 20));
+        long jittered = (long) (mRandom.nextDouble() * bound);
+        return retryAfterMillis == NO_RETRY_AFTER ? jittered : Math.max(retryAfterMillis, jittered);
+    }
+
+    /**
+     * @return true for the status codes of a failure which may be gone on the next attempt
+     */
+    public static boolean isRetryable(int responseCode) {
+        switch (responseCode) {
+            case 408:   // Request Timeout
+            case 429:   // Too Many Requests
+            case 500:   // Internal Server Error
+            case 502:   // Bad Gateway
+            case 503:   // Service Unavailable
+            case 504:   // Gateway Timeout
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read a Retry-After header, which is either a number of seconds or an HTTP date.
+     * @param nowMillis current time, for the date form
+     * @return wait in milliseconds, or {@link #NO_RETRY_AFTER}
+     */
+    public static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null) {
+            return NO_RETRY_AFTER;
+        }
+        value = value.trim();
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds < 0 ? NO_RETRY_AFTER : seconds * 1000;
+        } catch (NumberFormatException e) {
+            // Not seconds, so it should be a date
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(value).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return NO_RETRY_AFTER;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.newapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one query per section in parallel and merges the results by publication date.
+ * The total time follows the slowest section instead of the sum of all of them.
+ */
+public class SectionFanOut {
+
+    /** Most requests run at the same time by the shared executor */
+    public static final int MAX_PARALLEL_REQUESTS = 4;
+
+    private static Executor sExecutor;
+
+    /**
+     * Fetches the News of a single query.
+     */
+    public interface Fetcher {
+        List<News> fetch(String url);
+    }
+
+    /**
+     * Receives the merged feed every time one more section has finished.
+     */
+    public interface Listener {
+        void onPartialResult(List<News> mergedSoFar, int finishedSections, int totalSections);
+    }
+
+    private final Executor mExecutor;
+    private final Fetcher mFetcher;
+
+    public SectionFanOut(Executor executor, Fetcher fetcher) {
+        mExecutor = executor;
+        mFetcher = fetcher;
+    }
+
+    /**
+     * @return bounded executor shared by all fan-out loads of the app
+     */
+    public static synchronized Executor getSharedExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SectionFanOut #" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Fetch all the queries and block until every one of them has finished.
+     * @param urls one query URL per section
+     * @param listener receives partial results as sections finish, may be null
+     * @return merged feed, or null when every query failed
+     * @throws InterruptedException when the caller was interrupted, the queries still
+     *         waiting for the executor are dropped then
+     */
+    public List<News> fetch(List<String> urls, Listener listener) throws InterruptedException {
+        CompletionService<List<News>> completionService = new ExecutorCompletionService<>(mExecutor);
+        List<Future<List<News>>> futures = new ArrayList<>(urls.size());
+        for (final String url : urls) {
+            futures.add(completionService.submit(new Callable<List<News>>() {
+                @Override
+                public List<News> call() {
+                    return mFetcher.fetch(url);
+                }
+            }));
+        }
+
+        NewsMerger merger = new NewsMerger();
+        boolean anySucceeded = false;
+        for (int finished = 1; finished <= urls.size(); finished++) {
+            Future<List<News>> future;
+            try {
+                future = completionService.take();
+            } catch (InterruptedException e) {
+                // Nobody waits for the rest, don't leave them queued on a shared executor
+                for (Future<List<News>> pending : futures) {
+                    pending.cancel(true);
+                }
+                throw e;
+            }
+            List<News> newsList;
+            try {
+                newsList = future.get();
+            } catch (ExecutionException e) {
+                // A failed section leaves the others untouched
+                newsList = null;
+            }
+            if (newsList != null) {
+                anySucceeded = true;
+                merger.add(newsList);
+            }
+            if (listener != null) {
+                listener.onPartialResult(merger.getNews(), finished, urls.size());
+            }
+        }
+        return anySucceeded ? merger.getNews() : null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.android.newapp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * Fills the connect and time-to-first-byte stages of the {@link FetchTrace} attached to
+ * the request. Calls without a trace get no listener at all.
+ */
+class TraceEventListener extends EventListener {
+
+    static final EventListener.Factory FACTORY = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            FetchTrace trace = call.request().tag(FetchTrace.class);
+            return trace != null ? new TraceEventListener(trace) : EventListener.NONE;
+        }
+    };
+
+    private final FetchTrace mTrace;
+
+    private TraceEventListener(FetchTrace trace) {
+        mTrace = trace;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        mTrace.connectStarted();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        mTrace.connectFinished();
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                              Protocol protocol, IOException ioe) {
+        mTrace.connectFinished();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        mTrace.responseHeadersStarted();
+    }
+}
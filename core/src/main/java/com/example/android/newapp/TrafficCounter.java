@@ -0,0 +1,92 @@
+package com.example.android.newapp;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Network interceptor which counts the response body bytes as they come over the wire,
+ * that is before the client decodes gzip.
+ */
+public class TrafficCounter implements Interceptor {
+
+    private final AtomicLong mResponses = new AtomicLong();
+    private final AtomicLong mBodyBytes = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        mResponses.incrementAndGet();
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        return response.newBuilder().body(new CountingBody(body)).build();
+    }
+
+    /**
+     * @return number of responses received from the network
+     */
+    public long getResponses() {
+        return mResponses.get();
+    }
+
+    /**
+     * @return response body bytes received from the network
+     */
+    public long getBodyBytes() {
+        return mBodyBytes.get();
+    }
+
+    public void reset() {
+        mResponses.set(0);
+        mBodyBytes.set(0);
+    }
+
+    /**
+     * Response body which adds every byte read from it to the counter.
+     */
+    private final class CountingBody extends ResponseBody {
+
+        private final ResponseBody mBody;
+        private final BufferedSource mSource;
+
+        CountingBody(ResponseBody body) {
+            mBody = body;
+            mSource = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        mBodyBytes.addAndGet(read);
+                    }
+                    return read;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mBody.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return mBody.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return mSource;
+        }
+    }
+}
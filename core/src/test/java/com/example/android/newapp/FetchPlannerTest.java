@@ -0,0 +1,238 @@
+package com.example.android.newapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the feed loads of simulated links through the planner: every load asks for the
+ * first page of the chosen strategy, takes a round trip plus the page at the link's
+ * throughput, and the estimator measures it the way the app does. The links are traces
+ * of round trip and throughput, with some jitter, and the same traces are loaded with
+ * every strategy fixed too, so the time to the first item can be compared.
+ */
+public class FetchPlannerTest {
+
+    /** 1920 px tall xxhdpi phone with rows of 130 dp, as in NewsProjectionTest */
+    private static final int VISIBLE_ROWS = 5;
+    private static final int PREFETCH_DISTANCE = 5;
+    private static final int MAX_PAGE_SIZE = 20;
+
+    /** Time between two loads of the feed in the traces */
+    private static final long LOAD_INTERVAL_MILLIS = 30 * 1000;
+
+    private final FetchPlanner mPlanner = new FetchPlanner(VISIBLE_ROWS, PREFETCH_DISTANCE, MAX_PAGE_SIZE);
+
+    @Test
+    public void pageSizes_growWithTheStrategy() {
+        assertEquals(6, mPlanner.getPageSize(FetchStrategy.SMALL));
+        // What the feed asked for before
+        assertEquals(11, mPlanner.getPageSize(FetchStrategy.DEFAULT));
+        assertEquals(21, mPlanner.getPageSize(FetchStrategy.LARGE));
+
+        // The Guardian limit whatever the screen
+        FetchPlanner tall = new FetchPlanner(40, PREFETCH_DISTANCE, MAX_PAGE_SIZE);
+        assertEquals(MAX_PAGE_SIZE, tall.getPageSize(FetchStrategy.DEFAULT));
+        assertEquals(FetchStrategy.MAX_PAGE_SIZE, tall.getPageSize(FetchStrategy.LARGE));
+    }
+
+    @Test
+    public void unknownLink_keepsTheCurrentStrategy() {
+        NetworkEstimator estimator = new NetworkEstimator(Clock.SYSTEM);
+        assertEquals(FetchStrategy.DEFAULT, mPlanner.choose(estimator, null));
+        assertEquals(FetchStrategy.SMALL, mPlanner.choose(estimator, FetchStrategy.SMALL));
+
+        estimator.setPrior(800, 40 * 1024);
+        assertEquals(FetchStrategy.SMALL, mPlanner.choose(estimator, FetchStrategy.LARGE));
+    }
+
+    @Test
+    public void choice_followsTheLink() {
+        assertEquals(FetchStrategy.LARGE, mPlanner.choose(40, 2000000, null));
+        assertEquals(FetchStrategy.DEFAULT, mPlanner.choose(500, 30000, null));
+        assertEquals(FetchStrategy.SMALL, mPlanner.choose(700, 30000, null));
+        // Nothing fits, the smallest page is still the quickest
+        assertEquals(FetchStrategy.SMALL, mPlanner.choose(3000, 5000, null));
+    }
+
+    @Test
+    public void linkNearALimit_doesNotFlip() {
+        // The large page fits in the budget but not in the upgrade share of it
+        double rtt = 300;
+        double bytesPerSecond = 40000;
+        assertTrue(mPlanner.predictFirstPageMillis(FetchStrategy.LARGE, rtt, bytesPerSecond)
+                > FetchPlanner.FIRST_PAGE_BUDGET_MILLIS * FetchPlanner.UPGRADE_SHARE);
+        assertEquals(FetchStrategy.DEFAULT, mPlanner.choose(rtt, bytesPerSecond, FetchStrategy.DEFAULT));
+
+        assertEquals(FetchStrategy.LARGE, mPlanner.choose(rtt, 60000, FetchStrategy.LARGE));
+        assertEquals(FetchStrategy.DEFAULT, mPlanner.choose(rtt, 60000, FetchStrategy.DEFAULT));
+    }
+
+    @Test
+    public void handover_isFollowedWithinAFewLoads() {
+        Run run = run(new Trace("wifi-to-edge", Phase.WIFI, Phase.EDGE), null);
+        int handover = Phase.WIFI.mLoads;
+        assertEquals(FetchStrategy.LARGE, run.mStrategies.get(handover - 1));
+        assertTrue(run.mStrategies.subList(handover, handover + 3).contains(FetchStrategy.SMALL));
+        assertEquals(FetchStrategy.SMALL, run.mStrategies.get(run.mStrategies.size() - 1));
+
+        run = run(new Trace("edge-to-wifi", Phase.EDGE, Phase.WIFI), null);
+        handover = Phase.EDGE.mLoads;
+        assertEquals(FetchStrategy.SMALL, run.mStrategies.get(handover - 1));
+        assertTrue(run.mStrategies.subList(handover, handover + 3).contains(FetchStrategy.LARGE));
+        assertEquals(FetchStrategy.LARGE, run.mStrategies.get(run.mStrategies.size() - 1));
+    }
+
+    @Test
+    public void jitteryLink_changesStrategyRarely() {
+        Run run = run(new Trace("3g-jitter", Phase.HSPA_JITTER), null);
+        assertTrue("changed " + run.changes() + " times", run.changes() <= 2);
+    }
+
+    /**
+     * Adapting has to be about as quick to the first page as the quickest fixed strategy
+     * of a trace, or within the budget, and ask for more rows at once than the default
+     * where the link allows it. The loads right after a handover are slow whatever it
+     * does, the link is only known once it was used.
+     */
+    @Test
+    public void adaptive_isAboutAsQuickAsTheQuickestStrategy() {
+        List<Trace> traces = Arrays.asList(
+                new Trace("wifi", Phase.WIFI),
+                new Trace("lte", Phase.LTE),
+                new Trace("3g", Phase.HSPA_JITTER),
+                new Trace("edge", Phase.EDGE),
+                new Trace("gprs", Phase.GPRS),
+                new Trace("wifi-to-edge", Phase.WIFI, Phase.EDGE),
+                new Trace("commute", Phase.LTE, Phase.HSPA_JITTER, Phase.EDGE, Phase.HSPA_JITTER, Phase.WIFI));
+
+        for (Trace trace : traces) {
+            double quickest = Double.MAX_VALUE;
+            for (FetchStrategy strategy : FetchStrategy.values()) {
+                quickest = Math.min(quickest, run(trace, strategy).percentile(0.5));
+            }
+            Run adaptive = run(trace, null);
+
+            assertTrue(trace.mName, adaptive.percentile(0.5)
+                    <= Math.max(quickest * 1.25, FetchPlanner.FIRST_PAGE_BUDGET_MILLIS));
+            if (trace.mPhases[0] == Phase.WIFI || trace.mPhases[0] == Phase.LTE) {
+                assertTrue(trace.mName, adaptive.meanRows() > mPlanner.getPageSize(FetchStrategy.DEFAULT));
+            }
+        }
+    }
+
+    /**
+     * @param fixed strategy of every load, null for the planner's choice
+     */
+    private Run run(Trace trace, FetchStrategy fixed) {
+        final long[] now = {0};
+        NetworkEstimator estimator = new NetworkEstimator(new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now[0];
+            }
+        });
+        // Every trace jitters the same way, whatever the strategy
+        Random random = new Random(7);
+        Run run = new Run();
+        FetchStrategy strategy = null;
+        for (Phase phase : trace.mPhases) {
+            for (int i = 0; i < phase.mLoads; i++) {
+                double jitter = 1 + phase.mJitter * (2 * random.nextDouble() - 1);
+                double rttMillis = phase.mRttMillis * jitter;
+                double bytesPerSecond = phase.mBytesPerSecond / jitter;
+
+                strategy = fixed != null ? fixed : mPlanner.choose(estimator, strategy);
+                int pageSize = mPlanner.getPageSize(strategy);
+                long bytes = strategy.pageBytes(pageSize);
+                double bodyMillis = bytes * 1000 / bytesPerSecond;
+                run.add(strategy, pageSize, rttMillis + bodyMillis);
+
+                estimator.addSample(rttMillis, bytes, bodyMillis);
+                now[0] += LOAD_INTERVAL_MILLIS;
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Link for a number of loads: round trip and throughput of decoded bytes, both moving
+     * by up to the jitter share from load to load.
+     */
+    private enum Phase {
+        WIFI(40, 2000000, 0.2, 10),
+        LTE(80, 600000, 0.3, 10),
+        HSPA_JITTER(300, 60000, 0.4, 20),
+        EDGE(800, 25000, 0.2, 10),
+        GPRS(1200, 8000, 0.2, 10);
+
+        final double mRttMillis;
+        final double mBytesPerSecond;
+        final double mJitter;
+        final int mLoads;
+
+        Phase(double rttMillis, double bytesPerSecond, double jitter, int loads) {
+            mRttMillis = rttMillis;
+            mBytesPerSecond = bytesPerSecond;
+            mJitter = jitter;
+            mLoads = loads;
+        }
+    }
+
+    private static final class Trace {
+        final String mName;
+        final Phase[] mPhases;
+
+        Trace(String name, Phase... phases) {
+            mName = name;
+            mPhases = phases;
+        }
+    }
+
+    /**
+     * Strategy, page size and time to the first page of every load.
+     */
+    private static final class Run {
+        final List<FetchStrategy> mStrategies = new ArrayList<>();
+        final List<Integer> mRows = new ArrayList<>();
+        final List<Double> mMillis = new ArrayList<>();
+
+        void add(FetchStrategy strategy, int rows, double millis) {
+            mStrategies.add(strategy);
+            mRows.add(rows);
+            mMillis.add(millis);
+        }
+
+        double percentile(double percentile) {
+            List<Double> sorted = new ArrayList<>(mMillis);
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+            return sorted.get(Math.max(0, index));
+        }
+
+        double meanRows() {
+            long rows = 0;
+            for (int row : mRows) {
+                rows += row;
+            }
+            return (double) rows / mRows.size();
+        }
+
+        int changes() {
+            int changes = 0;
+            for (int i = 1; i < mStrategies.size(); i++) {
+                if (mStrategies.get(i) != mStrategies.get(i - 1)) {
+                    changes++;
+                }
+            }
+            return changes;
+        }
+    }
+}
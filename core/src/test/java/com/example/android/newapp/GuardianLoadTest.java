@@ -0,0 +1,96 @@
+package com.example.android.newapp;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the fetch and parse pipeline with many threads against a stand-in server which
+ * replays the recorded Guardian response, fast, slow, big and failing, and compares the
+ * numbers with the stored baseline. Not part of the unit tests, it runs with
+ *
+ *   ./gradlew :core:loadTest
+ *
+ * and fails when a scenario regressed, or when there is no baseline to compare with.
+ * After an intended change, a new scenario, or on a new machine, the baseline is
+ * recorded again with -PupdateLoadBaseline.
+ */
+public class GuardianLoadTest {
+
+    /** Baseline file, set by the Gradle task */
+    private static final String BASELINE_PROPERTY = "loadtest.baseline";
+    private static final String UPDATE_PROPERTY = "loadtest.updateBaseline";
+
+    /** Read timeout of the stalled server scenario, shorter than the app's so the run stays short */
+    private static final long STALLED_READ_TIMEOUT_MILLIS = 500;
+
+    private static List<LoadScenario> scenarios() {
+        return Arrays.asList(
+                // One fetch at a time straight from the loopback, the cost of the pipeline itself
+                new LoadScenario("sequential").fetches(100),
+                new LoadScenario("concurrent-16").concurrency(16).fetches(400).latencyMillis(20),
+                new LoadScenario("big-payload").concurrency(4).fetches(40).resultsPerResponse(500),
+                // About a 3G link, well inside the default timeouts
+                new LoadScenario("slow-link").concurrency(4).fetches(16).latencyMillis(300)
+                        .bytesPerSecond(64 * 1024),
+                new LoadScenario("flaky-10pct").concurrency(8).fetches(200).latencyMillis(10).errorRate(0.1),
+                // Headers later than the read timeout, every fetch has to give up at the timeout
+                new LoadScenario("stalled").concurrency(4).fetches(8).latencyMillis(3 * STALLED_READ_TIMEOUT_MILLIS)
+                        .readTimeoutMillis(STALLED_READ_TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void scenarios_doNotRegress() throws Exception {
+        String recorded = RecordedResponses.read(RecordedResponses.SEARCH_10);
+        List<LoadReport> reports = new ArrayList<>();
+        for (LoadScenario scenario : scenarios()) {
+            LoadReport report = LoadTestRunner.run(scenario, recorded);
+            System.out.println(report);
+            reports.add(report);
+            checkScenario(scenario, report);
+        }
+
+        File file = new File(System.getProperty(BASELINE_PROPERTY, "src/test/resources/load_baseline.json"));
+        if (Boolean.getBoolean(UPDATE_PROPERTY)) {
+            new LoadBaseline(reports).write(file);
+            System.out.println("Baseline recorded in " + file);
+            return;
+        }
+        LoadBaseline baseline = LoadBaseline.read(file);
+        // Without a baseline nothing would be compared, and the run would pass whatever the numbers
+        assertNotNull("No baseline in " + file + ", record one with ./gradlew :core:loadTest -PupdateLoadBaseline",
+                baseline);
+        List<String> regressions = new ArrayList<>();
+        for (LoadReport report : reports) {
+            regressions.addAll(baseline.regressions(report));
+        }
+        assertTrue("Regressed against " + file + ":\n" + join(regressions), regressions.isEmpty());
+    }
+
+    // What must hold whatever the baseline says
+    private static void checkScenario(LoadScenario scenario, LoadReport report) {
+        if (scenario.name.equals("stalled")) {
+            assertEquals(scenario.fetches, report.errors);
+            // Given up at the read timeout, not at the answer or at the load deadline
+            assertTrue(report.p50Millis >= STALLED_READ_TIMEOUT_MILLIS);
+            assertTrue(report.p99Millis < scenario.latencyMillis);
+        } else if (scenario.errorRate == 0) {
+            assertEquals(0, report.errors);
+        }
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder joined = new StringBuilder();
+        for (String line : lines) {
+            joined.append("  ").append(line).append('\n');
+        }
+        return joined.toString();
+    }
+}
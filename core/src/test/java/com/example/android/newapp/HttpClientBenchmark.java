@@ -0,0 +1,196 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import okio.Buffer;
+import okio.GzipSink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the shared pooled client with the old connection-per-request code on
+ * repeated refreshes of a feed served over TLS by a local server. Prints its numbers,
+ * so it runs with :core:benchmarkTest and not with the unit tests.
+ */
+public class HttpClientBenchmark {
+
+    private static final int REFRESHES = 20;
+
+    private MockWebServer mServer;
+    private GuardianClient mClient;
+    private HandshakeCertificates mClientCertificates;
+    private byte[] mBody;
+    private byte[] mGzipBody;
+
+    @Before
+    public void setUp() throws Exception {
+        String localhost = InetAddress.getByName("localhost").getCanonicalHostName();
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName(localhost)
+                .build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(certificate)
+                .build();
+        mClientCertificates = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate())
+                .build();
+
+        mBody = ReplayServer.repeat(RecordedResponses.read(RecordedResponses.SEARCH_10), 200)
+                .getBytes(Charset.forName("UTF-8"));
+        Buffer gzip = new Buffer();
+        GzipSink sink = new GzipSink(gzip);
+        sink.write(new Buffer().write(mBody), mBody.length);
+        sink.close();
+        mGzipBody = gzip.readByteArray();
+
+        mServer = new MockWebServer();
+        mServer.useHttps(serverCertificates.sslSocketFactory(), false);
+        mServer.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        // Compress the feed for clients which ask for it, like the Guardian API does
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String acceptEncoding = request.getHeader("Accept-Encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    return new MockResponse().setBody(new Buffer().write(mGzipBody))
+                            .setHeader("Content-Encoding", "gzip");
+                }
+                return new MockResponse().setBody(new Buffer().write(mBody));
+            }
+        });
+        mServer.start();
+
+        mClient = new GuardianClient();
+        mClient.setClient(mClient.newClientBuilder()
+                .sslSocketFactory(mClientCertificates.sslSocketFactory(), mClientCertificates.trustManager())
+                .build());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void sharedClient_usesHttp2AndGzip() throws Exception {
+        Response response = mClient.getClient().newCall(new Request.Builder().url(url()).build()).execute();
+        response.close();
+
+        assertEquals(Protocol.HTTP_2, response.protocol());
+        assertEquals("gzip", mServer.takeRequest().getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    public void compareWithConnectionPerRequest() throws Exception {
+        String url = url();
+
+        // Warm up both paths once
+        assertEquals(200, fetch(url).size());
+        assertEquals(200, fetchWithNewConnection(url).newsCount);
+        int warmUpRequests = mServer.getRequestCount();
+        for (int i = 0; i < warmUpRequests; i++) {
+            mServer.takeRequest();
+        }
+
+        mClient.getTrafficCounter().reset();
+        long[] pooled = new long[REFRESHES];
+        for (int i = 0; i < REFRESHES; i++) {
+            long start = System.nanoTime();
+            fetch(url);
+            pooled[i] = System.nanoTime() - start;
+        }
+        long pooledBytes = mClient.getTrafficCounter().getBodyBytes();
+        int reused = 0;
+        for (int i = 0; i < REFRESHES; i++) {
+            if (mServer.takeRequest().getSequenceNumber() > 0) {
+                reused++;
+            }
+        }
+
+        long[] perRequest = new long[REFRESHES];
+        long perRequestBytes = 0;
+        for (int i = 0; i < REFRESHES; i++) {
+            long start = System.nanoTime();
+            perRequestBytes += fetchWithNewConnection(url).bytes;
+            perRequest[i] = System.nanoTime() - start;
+        }
+
+        System.out.println(String.format("%d refreshes of a %d KB feed over TLS:", REFRESHES, mBody.length / 1024));
+        System.out.println(String.format("  connection per request: median %6.2f ms, %7d bytes over the wire",
+                median(perRequest) / 1e6, perRequestBytes));
+        System.out.println(String.format("  shared pooled client  : median %6.2f ms, %7d bytes over the wire, %d/%d on a reused connection",
+                median(pooled) / 1e6, pooledBytes, reused, REFRESHES));
+
+        assertEquals(REFRESHES, reused);
+        assertTrue(pooledBytes <= REFRESHES * (long) mGzipBody.length);
+        assertTrue(pooledBytes < perRequestBytes / 2);
+    }
+
+    /**
+     * Result of the old way of fetching.
+     */
+    private static final class Fetch {
+        int newsCount;
+        long bytes;
+    }
+
+    // What makeHttpRequest did before: a new connection for each call, closed at the end
+    private Fetch fetchWithNewConnection(String url) throws IOException {
+        HttpsURLConnection connection = (HttpsURLConnection) new URL(url).openConnection();
+        connection.setSSLSocketFactory(mClientCertificates.sslSocketFactory());
+        connection.setReadTimeout(10000);
+        connection.setConnectTimeout(15000);
+        Fetch fetch = new Fetch();
+        InputStream inputStream = null;
+        try {
+            connection.connect();
+            CountingInputStream counting = new CountingInputStream(connection.getInputStream());
+            inputStream = counting;
+            List<News> newsList = GuardianClient.extractNews(counting);
+            fetch.newsCount = newsList.size();
+            fetch.bytes = counting.getCount();
+        } finally {
+            connection.disconnect();
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+        return fetch;
+    }
+
+    private List<News> fetch(String url) {
+        return mClient.fetch(url, null, GuardianClient.LOAD_DEADLINE_MILLIS, null);
+    }
+
+    private String url() {
+        return mServer.url("/search?section=news&page-size=200").toString();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
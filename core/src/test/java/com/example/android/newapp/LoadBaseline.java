@@ -0,0 +1,178 @@
+package com.example.android.newapp;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Stored results of the load test scenarios, which later runs are compared with. Load
+ * numbers move from run to run, a run regressed only when it is worse than the baseline
+ * by more than the tolerances below.
+ */
+final class LoadBaseline {
+
+    /** Latency percentiles may grow by this share of the baseline ... */
+    static final double LATENCY_TOLERANCE = 0.5;
+
+    /** ... plus this, so fast scenarios don't fail on scheduling noise */
+    static final double LATENCY_SLACK_MILLIS = 5;
+
+    /** Throughput may drop by this share of the baseline */
+    static final double THROUGHPUT_TOLERANCE = 0.3;
+
+    /** Allocation per fetch is steady, it may only grow by this share */
+    static final double ALLOCATION_TOLERANCE = 0.2;
+
+    /** Share of failed fetches may grow by this much */
+    static final double ERROR_RATE_TOLERANCE = 0.02;
+
+    private final Map<String, LoadReport> mReports = new LinkedHashMap<>();
+
+    LoadBaseline(List<LoadReport> reports) {
+        for (LoadReport report : reports) {
+            mReports.put(report.name, report);
+        }
+    }
+
+    /**
+     * @return baseline stored in the file, or null when there is none yet
+     */
+    static LoadBaseline read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        List<LoadReport> reports = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), Charset.forName("UTF-8")));
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reports.add(readReport(reader));
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+        return new LoadBaseline(reports);
+    }
+
+    void write(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")));
+        writer.setIndent("  ");
+        try {
+            writer.beginArray();
+            for (LoadReport report : mReports.values()) {
+                writer.beginObject();
+                writer.name("name").value(report.name);
+                writer.name("fetches").value(report.fetches);
+                writer.name("errors").value(report.errors);
+                writer.name("fetchesPerSecond").value(round(report.fetchesPerSecond));
+                writer.name("p50Millis").value(round(report.p50Millis));
+                writer.name("p95Millis").value(round(report.p95Millis));
+                writer.name("p99Millis").value(round(report.p99Millis));
+                writer.name("allocatedBytesPerFetch").value(report.allocatedBytesPerFetch);
+                writer.endObject();
+            }
+            writer.endArray();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return what got worse than the baseline beyond the tolerances, empty when nothing
+     *         did or the scenario has no baseline
+     */
+    List<String> regressions(LoadReport current) {
+        List<String> regressions = new ArrayList<>();
+        LoadReport baseline = mReports.get(current.name);
+        if (baseline == null) {
+            regressions.add(current.name + ": not in the baseline, record it again");
+            return regressions;
+        }
+        checkLatency(regressions, current.name, "p50", baseline.p50Millis, current.p50Millis);
+        checkLatency(regressions, current.name, "p95", baseline.p95Millis, current.p95Millis);
+        checkLatency(regressions, current.name, "p99", baseline.p99Millis, current.p99Millis);
+        if (current.fetchesPerSecond < baseline.fetchesPerSecond * (1 - THROUGHPUT_TOLERANCE)) {
+            regressions.add(String.format(Locale.US, "%s: throughput %.1f/s, baseline %.1f/s",
+                    current.name, current.fetchesPerSecond, baseline.fetchesPerSecond));
+        }
+        if (baseline.allocatedBytesPerFetch != LoadReport.NOT_MEASURED
+                && current.allocatedBytesPerFetch != LoadReport.NOT_MEASURED
+                && current.allocatedBytesPerFetch > baseline.allocatedBytesPerFetch * (1 + ALLOCATION_TOLERANCE)) {
+            regressions.add(String.format(Locale.US, "%s: %d bytes allocated per fetch, baseline %d",
+                    current.name, current.allocatedBytesPerFetch, baseline.allocatedBytesPerFetch));
+        }
+        if (current.errorRate() > baseline.errorRate() + ERROR_RATE_TOLERANCE) {
+            regressions.add(String.format(Locale.US, "%s: %.1f%% errors, baseline %.1f%%",
+                    current.name, current.errorRate() * 100, baseline.errorRate() * 100));
+        }
+        return regressions;
+    }
+
+    private static void checkLatency(List<String> regressions, String name, String percentile, double baseline,
+                                     double current) {
+        if (current > baseline * (1 + LATENCY_TOLERANCE) + LATENCY_SLACK_MILLIS) {
+            regressions.add(String.format(Locale.US, "%s: %s %.1f ms, baseline %.1f ms",
+                    name, percentile, current, baseline));
+        }
+    }
+
+    private static LoadReport readReport(JsonReader reader) throws IOException {
+        String name = null;
+        int fetches = 0;
+        int errors = 0;
+        double fetchesPerSecond = 0;
+        double p50 = 0;
+        double p95 = 0;
+        double p99 = 0;
+        long allocated = LoadReport.NOT_MEASURED;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (field.equals("name")) {
+                name = reader.nextString();
+            } else if (field.equals("fetches")) {
+                fetches = reader.nextInt();
+            } else if (field.equals("errors")) {
+                errors = reader.nextInt();
+            } else if (field.equals("fetchesPerSecond")) {
+                fetchesPerSecond = reader.nextDouble();
+            } else if (field.equals("p50Millis")) {
+                p50 = reader.nextDouble();
+            } else if (field.equals("p95Millis")) {
+                p95 = reader.nextDouble();
+            } else if (field.equals("p99Millis")) {
+                p99 = reader.nextDouble();
+            } else if (field.equals("allocatedBytesPerFetch")) {
+                allocated = reader.nextLong();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new LoadReport(name, fetches, errors, fetchesPerSecond, p50, p95, p99, allocated);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
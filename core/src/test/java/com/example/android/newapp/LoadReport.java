@@ -0,0 +1,46 @@
+package com.example.android.newapp;
+
+import java.util.Locale;
+
+/**
+ * Numbers of one load test run.
+ */
+final class LoadReport {
+
+    /** Allocation couldn't be measured on this JVM */
+    static final long NOT_MEASURED = -1;
+
+    final String name;
+    final int fetches;
+    final int errors;
+    final double fetchesPerSecond;
+    final double p50Millis;
+    final double p95Millis;
+    final double p99Millis;
+
+    /** Bytes allocated by the fetching thread for one fetch and parse, on average */
+    final long allocatedBytesPerFetch;
+
+    LoadReport(String name, int fetches, int errors, double fetchesPerSecond, double p50Millis, double p95Millis,
+               double p99Millis, long allocatedBytesPerFetch) {
+        this.name = name;
+        this.fetches = fetches;
+        this.errors = errors;
+        this.fetchesPerSecond = fetchesPerSecond;
+        this.p50Millis = p50Millis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+        this.allocatedBytesPerFetch = allocatedBytesPerFetch;
+    }
+
+    double errorRate() {
+        return fetches == 0 ? 0 : (double) errors / fetches;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%-16s %5d fetches %5.1f%% errors %8.1f/s  p50 %8.1f ms  p95 %8.1f ms"
+                        + "  p99 %8.1f ms  %8d bytes/fetch", name, fetches, errorRate() * 100, fetchesPerSecond,
+                p50Millis, p95Millis, p99Millis, allocatedBytesPerFetch);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.android.newapp;
+
+/**
+ * How a load test run drives the fetch pipeline and how the stand-in server answers it.
+ * Setters return the scenario, so a run reads as one expression.
+ */
+final class LoadScenario {
+
+    final String name;
+    int concurrency = 1;
+    int fetches = 100;
+
+    /** Time to the response headers */
+    long latencyMillis;
+
+    /** Speed of the response body, 0 for as fast as the loopback goes */
+    long bytesPerSecond;
+
+    /** Results in every response, copies of the recorded ones */
+    int resultsPerResponse = 10;
+
+    /** Share of the requests answered with a 503, between 0 and 1 */
+    double errorRate;
+
+    long connectTimeoutMillis = GuardianClient.CONNECT_TIMEOUT_MILLIS;
+    long readTimeoutMillis = GuardianClient.READ_TIMEOUT_MILLIS;
+
+    LoadScenario(String name) {
+        this.name = name;
+    }
+
+    LoadScenario concurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    LoadScenario fetches(int fetches) {
+        this.fetches = fetches;
+        return this;
+    }
+
+    LoadScenario latencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    LoadScenario bytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    LoadScenario resultsPerResponse(int resultsPerResponse) {
+        this.resultsPerResponse = resultsPerResponse;
+        return this;
+    }
+
+    LoadScenario errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    LoadScenario readTimeoutMillis(long readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+        return this;
+    }
+
+    LoadScenario connectTimeoutMillis(long connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+}
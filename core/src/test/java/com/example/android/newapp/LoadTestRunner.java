@@ -0,0 +1,117 @@
+package com.example.android.newapp;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a {@link LoadScenario}: a number of threads fetch and parse queries from a
+ * {@link ReplayServer} as fast as they can, each one timed and the allocations of the
+ * fetching thread counted. The client is the app's, with the scenario's timeouts, no
+ * retries and no circuit breaker, so every fetch is one request and its failures show.
+ */
+final class LoadTestRunner {
+
+    /** Fetches before the measured ones, for the JIT and the connection pool, per thread */
+    private static final int WARM_UP_FETCHES = 2;
+
+    private LoadTestRunner() {}
+
+    static LoadReport run(final LoadScenario scenario, String recorded) throws Exception {
+        final ReplayServer server = new ReplayServer(scenario, recorded);
+        server.start();
+        final GuardianClient client = new GuardianClient();
+        client.setClient(client.newClientBuilder()
+                .connectTimeout(scenario.connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(scenario.readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .build());
+        client.setRetryPolicy(RetryPolicy.NONE);
+        client.setCircuitBreaker(new CircuitBreaker(Integer.MAX_VALUE, 0, Clock.SYSTEM));
+
+        final long[] nanos = new long[scenario.fetches];
+        final AtomicInteger next = new AtomicInteger(-WARM_UP_FETCHES * scenario.concurrency);
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicLong allocated = new AtomicLong();
+        final boolean measureAllocation = allocationSupported();
+        final Object started = new Object();
+        final long[] startNanos = {0};
+
+        Thread[] workers = new Thread[scenario.concurrency];
+        try {
+            for (int t = 0; t < workers.length; t++) {
+                workers[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        int fetch;
+                        while ((fetch = next.getAndIncrement()) < scenario.fetches) {
+                            if (fetch == 0) {
+                                synchronized (started) {
+                                    startNanos[0] = System.nanoTime();
+                                }
+                            }
+                            long allocatedBefore = measureAllocation ? threadAllocatedBytes() : 0;
+                            long start = System.nanoTime();
+                            List<News> newsList = client.fetch(server.url(fetch), null,
+                                    GuardianClient.LOAD_DEADLINE_MILLIS, null);
+                            long elapsed = System.nanoTime() - start;
+                            if (fetch < 0) {
+                                continue;
+                            }
+                            nanos[fetch] = elapsed;
+                            if (measureAllocation) {
+                                allocated.addAndGet(threadAllocatedBytes() - allocatedBefore);
+                            }
+                            if (newsList == null || newsList.size() != scenario.resultsPerResponse) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                }, "load-" + scenario.name + "-" + t);
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } finally {
+            server.shutdown();
+        }
+        long wallNanos;
+        synchronized (started) {
+            wallNanos = System.nanoTime() - startNanos[0];
+        }
+
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return new LoadReport(scenario.name, scenario.fetches, errors.get(),
+                scenario.fetches / (wallNanos / 1e9),
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.95), percentileMillis(sorted, 0.99),
+                measureAllocation ? allocated.get() / scenario.fetches : LoadReport.NOT_MEASURED);
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private static boolean allocationSupported() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    private static long threadAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
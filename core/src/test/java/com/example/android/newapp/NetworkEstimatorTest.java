@@ -0,0 +1,106 @@
+package com.example.android.newapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkEstimatorTest {
+
+    private long mNowMillis = 1000000;
+    private NetworkEstimator mEstimator;
+
+    @Before
+    public void setUp() {
+        mEstimator = new NetworkEstimator(new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return mNowMillis;
+            }
+        });
+    }
+
+    @Test
+    public void nothingMeasured_isUnknownUntilPriorSet() {
+        assertFalse(mEstimator.hasEstimate());
+        assertEquals(NetworkEstimator.UNKNOWN, mEstimator.getRttMillis(), 0);
+
+        mEstimator.setPrior(800, 40000);
+        assertTrue(mEstimator.hasEstimate());
+        assertEquals(800, mEstimator.getRttMillis(), 0);
+        assertEquals(40000, mEstimator.getBytesPerSecond(), 0);
+    }
+
+    @Test
+    public void samples_areAveragedTowardsTheLatest() {
+        mEstimator.setPrior(800, 40000);
+        mEstimator.addSample(100, 20000, 10);
+        // The first measurement replaces the prior
+        assertEquals(100, mEstimator.getRttMillis(), 0);
+        assertEquals(2000000, mEstimator.getBytesPerSecond(), 1);
+
+        // A link a hundred times slower shows in the throughput at once ...
+        mEstimator.addSample(900, 20000, 1000);
+        assertTrue(mEstimator.getBytesPerSecond() < 2 * 20000);
+
+        // ... and in the round trip within a few fetches
+        for (int i = 0; i < 4; i++) {
+            mEstimator.addSample(900, 20000, 1000);
+        }
+        assertEquals(900, mEstimator.getRttMillis(), 50);
+        assertEquals(20000, mEstimator.getBytesPerSecond(), 1000);
+    }
+
+    @Test
+    public void smallBody_givesRoundTripOnly() {
+        mEstimator.addSample(200, 50000, 500);
+        mEstimator.addSample(400, 300, 0.1);
+        assertEquals(200 + NetworkEstimator.SAMPLE_WEIGHT * 200, mEstimator.getRttMillis(), 0.001);
+        assertEquals(100000, mEstimator.getBytesPerSecond(), 0.001);
+    }
+
+    @Test
+    public void oldMeasurements_areForgotten() {
+        mEstimator.setPrior(300, 150000);
+        mEstimator.addSample(50, 100000, 20);
+        mNowMillis += NetworkEstimator.MAX_AGE_MILLIS;
+        assertEquals(50, mEstimator.getRttMillis(), 0);
+
+        mNowMillis += 1;
+        assertEquals(300, mEstimator.getRttMillis(), 0);
+        assertEquals(150000, mEstimator.getBytesPerSecond(), 0);
+    }
+
+    @Test
+    public void traces_ofFailedRetriedAndCoalescedFetches_areIgnored() {
+        FetchTrace failed = answeredTrace();
+        failed.setError("HTTP 503");
+        FetchTrace retried = answeredTrace();
+        retried.setAttempts(2);
+        FetchTrace coalesced = answeredTrace();
+        coalesced.setCoalesced(true);
+        FetchTrace notAnswered = new FetchTrace("https://content.guardianapis.com/search?q=none");
+        notAnswered.setAttempts(1);
+
+        mEstimator.onTrace(failed);
+        mEstimator.onTrace(retried);
+        mEstimator.onTrace(coalesced);
+        mEstimator.onTrace(notAnswered);
+        assertFalse(mEstimator.hasEstimate());
+
+        mEstimator.onTrace(answeredTrace());
+        assertTrue(mEstimator.hasEstimate());
+    }
+
+    private static FetchTrace answeredTrace() {
+        FetchTrace trace = new FetchTrace("https://content.guardianapis.com/search?q=brexit");
+        trace.setAttempts(1);
+        trace.responseHeadersStarted();
+        trace.setBytes(10000);
+        trace.setBodyNanos(5000000);
+        trace.finish(10);
+        return trace;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives the engine with many fetches at once against a local server answering the
+ * recorded Guardian response, on a plain JVM. The server counts the requests it is
+ * answering at the same time, which must never go over what the engine allows.
+ */
+public class NewsEngineTest {
+
+    /** Time every response takes, so the fetches overlap */
+    private static final long RESPONSE_DELAY_MILLIS = 20;
+
+    private MockWebServer mServer;
+    private GuardianClient mClient;
+    private NewsEngine mEngine;
+    private String mFixture;
+
+    private final AtomicInteger mConcurrent = new AtomicInteger();
+    private final AtomicInteger mMaxConcurrent = new AtomicInteger();
+
+    /** Released by the tests which hold the server's answers back */
+    private CountDownLatch mRelease;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = RecordedResponses.read(RecordedResponses.SEARCH_10);
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int concurrent = mConcurrent.incrementAndGet();
+                synchronized (mMaxConcurrent) {
+                    mMaxConcurrent.set(Math.max(mMaxConcurrent.get(), concurrent));
+                }
+                try {
+                    CountDownLatch release = mRelease;
+                    if (release != null) {
+                        release.await(10, TimeUnit.SECONDS);
+                    } else {
+                        Thread.sleep(RESPONSE_DELAY_MILLIS);
+                    }
+                    return new MockResponse().setBody(mFixture);
+                } finally {
+                    mConcurrent.decrementAndGet();
+                }
+            }
+        });
+        mServer.start();
+        mClient = new GuardianClient();
+        Metrics.getInstance().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mRelease != null) {
+            mRelease.countDown();
+        }
+        if (mEngine != null) {
+            mEngine.shutdown();
+            mEngine.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        mServer.shutdown();
+    }
+
+    @Test
+    public void manyFetches_runAtMostMaxInFlightAtOnce() throws Exception {
+        int fetches = 200;
+        int maxInFlight = 8;
+        mEngine = new NewsEngine(mClient, maxInFlight, fetches);
+        final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+
+        List<Future<List<News>>> futures = new ArrayList<>();
+        for (int i = 0; i < fetches; i++) {
+            futures.add(mEngine.submit(url("q" + i), null, GuardianClient.LOAD_DEADLINE_MILLIS,
+                    new NewsEngine.Callback() {
+                        @Override
+                        public void onNews(String url, List<News> newsList) {
+                            delivered.add(newsList != null ? newsList.size() : -1);
+                        }
+                    }));
+        }
+        for (Future<List<News>> future : futures) {
+            assertEquals(10, future.get(10, TimeUnit.SECONDS).size());
+        }
+
+        assertEquals(fetches, mServer.getRequestCount());
+        assertTrue("at most " + maxInFlight + " at once, was " + mMaxConcurrent.get(),
+                mMaxConcurrent.get() <= maxInFlight);
+        awaitCallbacks(delivered, fetches);
+        assertEquals(Collections.nCopies(fetches, 10), delivered);
+    }
+
+    @Test
+    public void fullEngine_rejectsInsteadOfQueueing() throws Exception {
+        mRelease = new CountDownLatch(1);
+        mEngine = new NewsEngine(mClient, 1, 2);
+
+        List<Future<List<News>>> accepted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            accepted.add(mEngine.submit(url("q" + i), null, GuardianClient.LOAD_DEADLINE_MILLIS, null));
+        }
+        try {
+            mEngine.submit(url("q3"), null, GuardianClient.LOAD_DEADLINE_MILLIS, null);
+            fail("one running and two waiting, the fourth has no room");
+        } catch (RejectedExecutionException expected) {
+            // The caller decides what to do with the query
+        }
+        mRelease.countDown();
+
+        for (Future<List<News>> future : accepted) {
+            assertEquals(10, future.get(10, TimeUnit.SECONDS).size());
+        }
+        assertEquals(3, mEngine.getSubmittedCount());
+        assertEquals(1, mEngine.getRejectedCount());
+        assertEquals(1, mMaxConcurrent.get());
+    }
+
+    @Test
+    public void cancelledFetch_isAbortedAndNotDelivered() throws Exception {
+        mRelease = new CountDownLatch(1);
+        mEngine = new NewsEngine(mClient, 2, 2);
+        final AtomicInteger callbacks = new AtomicInteger();
+
+        Future<List<News>> future = mEngine.submit(url("slow"), null, GuardianClient.LOAD_DEADLINE_MILLIS,
+                new NewsEngine.Callback() {
+                    @Override
+                    public void onNews(String url, List<News> newsList) {
+                        callbacks.incrementAndGet();
+                    }
+                });
+        // The request is on the server, waiting for its answer
+        mServer.takeRequest(5, TimeUnit.SECONDS);
+        assertTrue(future.cancel(true));
+
+        mEngine.shutdown();
+        assertTrue(mEngine.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+        assertEquals(0, callbacks.get());
+        assertEquals(1, Metrics.getInstance().getCount(Metrics.COUNTER_CANCELLED));
+    }
+
+    @Test
+    public void failedFetch_deliversNull() throws Exception {
+        mClient.setRetryPolicy(new RetryPolicy(1, 0, 0));
+        mEngine = new NewsEngine(mClient, 1, 1);
+        final List<List<News>> delivered = Collections.synchronizedList(new ArrayList<List<News>>());
+
+        Future<List<News>> future = mEngine.submit("not a url", null, GuardianClient.LOAD_DEADLINE_MILLIS,
+                new NewsEngine.Callback() {
+                    @Override
+                    public void onNews(String url, List<News> newsList) {
+                        delivered.add(newsList);
+                    }
+                });
+
+        assertNull(future.get(5, TimeUnit.SECONDS));
+        awaitCallbacks(delivered, 1);
+        assertNull(delivered.get(0));
+        assertFalse(future.isCancelled());
+    }
+
+    private String url(String keyword) {
+        return mServer.url("/search").newBuilder()
+                .addQueryParameter("q", keyword)
+                .addQueryParameter("page-size", "10")
+                .build().toString();
+    }
+
+    // Callbacks run on the fetch threads, right after the futures are done
+    private static void awaitCallbacks(List<?> delivered, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delivered.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, delivered.size());
+    }
+}
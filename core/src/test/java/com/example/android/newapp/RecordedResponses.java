@@ -0,0 +1,36 @@
+package com.example.android.newapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Recorded Guardian responses, shared with the app tests through the test resources.
+ */
+final class RecordedResponses {
+
+    static final String SEARCH_10 = "guardian_search_10.json";
+
+    private RecordedResponses() {}
+
+    /**
+     * Read the recorded response as a String.
+     */
+    static String read(String name) throws IOException {
+        InputStream inputStream = RecordedResponses.class.getClassLoader().getResourceAsStream(name);
+        if (inputStream == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+}
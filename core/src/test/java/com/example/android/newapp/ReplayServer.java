@@ -0,0 +1,100 @@
+package com.example.android.newapp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local stand-in for the Guardian API which replays a recorded response, as slow, as big
+ * and as unreliable as the scenario asks. The body is built once, so the server costs
+ * the same for every run and the numbers are the client's.
+ */
+final class ReplayServer {
+
+    /** Bandwidth throttling sends the body in slices of this many milliseconds */
+    private static final long THROTTLE_PERIOD_MILLIS = 50;
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final LoadScenario mScenario;
+    private final String mBody;
+
+    /** Decides which requests fail, seeded so every run fails the same ones */
+    private final Random mRandom = new Random(42);
+
+    ReplayServer(LoadScenario scenario, String recorded) {
+        mScenario = scenario;
+        mBody = repeat(recorded, scenario.resultsPerResponse);
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return answer();
+            }
+        });
+    }
+
+    void start() throws IOException {
+        mServer.start();
+    }
+
+    void shutdown() throws IOException {
+        mServer.shutdown();
+    }
+
+    /**
+     * @return query of one fetch, a different one every time so nothing is coalesced or
+     *         sent with the validators of an earlier response
+     */
+    String url(int fetch) {
+        return mServer.url("/search").newBuilder()
+                .addQueryParameter("q", "load" + fetch)
+                .addQueryParameter("page-size", String.valueOf(mScenario.resultsPerResponse))
+                .build().toString();
+    }
+
+    private MockResponse answer() {
+        boolean fail;
+        synchronized (mRandom) {
+            fail = mRandom.nextDouble() < mScenario.errorRate;
+        }
+        MockResponse response = fail ? new MockResponse().setResponseCode(503)
+                : new MockResponse().setBody(mBody);
+        if (mScenario.latencyMillis > 0) {
+            response.setHeadersDelay(mScenario.latencyMillis, TimeUnit.MILLISECONDS);
+        }
+        if (mScenario.bytesPerSecond > 0) {
+            response.throttleBody(Math.max(1, mScenario.bytesPerSecond * THROTTLE_PERIOD_MILLIS / 1000),
+                    THROTTLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    /**
+     * Build a bigger response by repeating the results of the recorded one. Every copy gets
+     * its own webUrl, so the results stay unique.
+     */
+    static String repeat(String recorded, int resultCount) {
+        JsonObject root = new JsonParser().parse(recorded).getAsJsonObject();
+        JsonObject response = root.getAsJsonObject("response");
+        JsonArray results = response.getAsJsonArray("results");
+        JsonArray repeated = new JsonArray();
+        for (int i = 0; i < resultCount; i++) {
+            JsonElement copy = new JsonParser().parse(results.get(i % results.size()).toString());
+            JsonObject result = copy.getAsJsonObject();
+            result.addProperty("webUrl", result.get("webUrl").getAsString() + "?copy=" + i);
+            repeated.add(result);
+        }
+        response.add("results", repeated);
+        response.addProperty("pageSize", resultCount);
+        return root.toString();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.android.newapp;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Callers of the same query sharing one fetch, which is held until the test lets it
+ * answer, so no network is involved.
+ */
+public class RequestCoalescerTest {
+
+    private static final String URL = "https://content.guardianapis.com/search?q=news";
+    private static final List<News> NEWS = Collections.emptyList();
+
+    private final RequestCoalescer mCoalescer = new RequestCoalescer();
+    private final CountDownLatch mStarted = new CountDownLatch(1);
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private final AtomicInteger mFetches = new AtomicInteger();
+    private final AtomicReference<FetchCancellation> mShared = new AtomicReference<>();
+
+    /** Answers once released, or gives up once the shared cancellation is cancelled */
+    private final RequestCoalescer.Fetcher mFetcher = new RequestCoalescer.Fetcher() {
+        @Override
+        public List<News> fetch(String url, FetchCancellation cancellation) {
+            mFetches.incrementAndGet();
+            mShared.set(cancellation);
+            mStarted.countDown();
+            try {
+                while (!mRelease.await(10, TimeUnit.MILLISECONDS)) {
+                    if (cancellation.isCancelled()) {
+                        return null;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return NEWS;
+        }
+    };
+
+    @Test
+    public void sameQuery_sharesOneFetch() throws Exception {
+        Caller first = new Caller(null);
+        first.start();
+        assertTrue(mStarted.await(10, TimeUnit.SECONDS));
+        Caller second = new Caller(null);
+        second.start();
+        awaitCoalesced(1);
+
+        mRelease.countDown();
+        first.join(10000);
+        second.join(10000);
+
+        assertSame(NEWS, first.mResult.get());
+        assertSame(NEWS, second.mResult.get());
+        assertEquals(1, mFetches.get());
+        assertEquals(1, mCoalescer.getRequestCount());
+    }
+
+    @Test
+    public void oneCallerCancels_theOtherStillGetsTheNews() throws Exception {
+        FetchCancellation firstCancellation = new FetchCancellation();
+        Caller first = new Caller(firstCancellation);
+        first.start();
+        assertTrue(mStarted.await(10, TimeUnit.SECONDS));
+        Caller second = new Caller(new FetchCancellation());
+        second.start();
+        awaitCoalesced(1);
+
+        firstCancellation.cancel();
+        assertFalse(mShared.get().isCancelled());
+
+        mRelease.countDown();
+        first.join(10000);
+        second.join(10000);
+
+        assertNull(first.mResult.get());
+        assertSame(NEWS, second.mResult.get());
+        assertEquals(1, mFetches.get());
+    }
+
+    @Test
+    public void everyCallerCancels_abortsTheFetch() throws Exception {
+        FetchCancellation firstCancellation = new FetchCancellation();
+        FetchCancellation secondCancellation = new FetchCancellation();
+        Caller first = new Caller(firstCancellation);
+        first.start();
+        assertTrue(mStarted.await(10, TimeUnit.SECONDS));
+        Caller second = new Caller(secondCancellation);
+        second.start();
+        awaitCoalesced(1);
+
+        secondCancellation.cancel();
+        second.join(10000);
+        assertNull(second.mResult.get());
+        assertFalse(mShared.get().isCancelled());
+
+        firstCancellation.cancel();
+        assertTrue(mShared.get().isCancelled());
+        first.join(10000);
+        assertNull(first.mResult.get());
+
+        // Starts over instead of joining the aborted fetch
+        mRelease.countDown();
+        assertSame(NEWS, mCoalescer.fetch(URL, null, mFetcher));
+        assertEquals(2, mFetches.get());
+    }
+
+    private void awaitCoalesced(long coalesced) throws InterruptedException {
+        long endMillis = System.currentTimeMillis() + 10000;
+        while (mCoalescer.getCoalescedCount() < coalesced) {
+            assertTrue(System.currentTimeMillis() < endMillis);
+            Thread.sleep(5);
+        }
+    }
+
+    private final class Caller extends Thread {
+        final FetchCancellation mCancellation;
+        final AtomicReference<List<News>> mResult = new AtomicReference<>();
+
+        Caller(FetchCancellation cancellation) {
+            mCancellation = cancellation;
+        }
+
+        @Override
+        public void run() {
+            mResult.set(mCoalescer.fetch(URL, mCancellation, mFetcher));
+        }
+    }
+}
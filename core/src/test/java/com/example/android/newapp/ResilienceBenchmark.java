@@ -0,0 +1,132 @@
+package com.example.android.newapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Latency and success rate of loads against a server failing a share of its requests,
+ * without and with retries, and of loads refused by an open circuit breaker. Prints its
+ * numbers, so it runs with :core:benchmarkTest and not with the unit tests.
+ */
+public class ResilienceBenchmark {
+
+    private static final int LOADS = 40;
+
+    /** Time the server takes for every answer, failures included */
+    private static final long SERVER_MILLIS = 20;
+
+    private MockWebServer mServer;
+    private GuardianClient mClient;
+    private String mFixture;
+    private volatile double mFailureRate;
+    private final Random mRandom = new Random(42);
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = RecordedResponses.read(RecordedResponses.SEARCH_10);
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                boolean fail;
+                synchronized (mRandom) {
+                    fail = mRandom.nextDouble() < mFailureRate;
+                }
+                MockResponse response = fail ? new MockResponse().setResponseCode(503)
+                        : new MockResponse().setBody(mFixture);
+                return response.setHeadersDelay(SERVER_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+        mServer.start();
+        // A client of its own, the policies it changes can't leak into other tests
+        mClient = new GuardianClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void latencyUnderFailure() throws Exception {
+        // The breaker would open during the runs, it is measured on its own below
+        mClient.setCircuitBreaker(new CircuitBreaker(Integer.MAX_VALUE, 0, Clock.SYSTEM));
+        RetryPolicy retries = new RetryPolicy(3, 50, 400);
+
+        System.out.println(String.format("%d loads, server answering in %d ms:", LOADS, SERVER_MILLIS));
+        for (double failureRate : new double[]{0, 0.3, 0.6}) {
+            mFailureRate = failureRate;
+            Run once = run(RetryPolicy.NONE);
+            Run retried = run(retries);
+            System.out.println(String.format("  %2.0f%% failing: no retry %3d%% loaded, median %5.1f ms, p95 %5.1f ms"
+                            + " | retry %3d%% loaded, median %5.1f ms, p95 %5.1f ms",
+                    failureRate * 100, once.successPercent(), once.percentileMillis(0.5), once.percentileMillis(0.95),
+                    retried.successPercent(), retried.percentileMillis(0.5), retried.percentileMillis(0.95)));
+
+            if (failureRate > 0) {
+                assertTrue(retried.successes >= once.successes);
+            }
+        }
+
+        // The API is down, compare waiting for the retries with an open breaker
+        mFailureRate = 1;
+        Run failing = run(retries);
+        mClient.setCircuitBreaker(new CircuitBreaker(1, CircuitBreaker.DEFAULT_OPEN_MILLIS, Clock.SYSTEM));
+        fetch();
+        Run open = run(retries);
+        System.out.println(String.format("  API down: retrying median %5.1f ms, breaker open median %5.3f ms",
+                failing.percentileMillis(0.5), open.percentileMillis(0.5)));
+
+        assertTrue(open.percentileMillis(0.5) < SERVER_MILLIS);
+    }
+
+    /**
+     * Durations of a series of loads.
+     */
+    private static final class Run {
+        final long[] nanos = new long[LOADS];
+        int successes;
+
+        int successPercent() {
+            return successes * 100 / LOADS;
+        }
+
+        double percentileMillis(double percentile) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            return sorted[Math.min(LOADS - 1, (int) (percentile * LOADS))] / 1e6;
+        }
+    }
+
+    private Run run(RetryPolicy policy) {
+        mClient.setRetryPolicy(policy);
+        Run run = new Run();
+        for (int i = 0; i < LOADS; i++) {
+            long start = System.nanoTime();
+            List<News> newsList = fetch();
+            run.nanos[i] = System.nanoTime() - start;
+            if (newsList != null) {
+                run.successes++;
+            }
+        }
+        return run;
+    }
+
+    private List<News> fetch() {
+        return mClient.fetch(mServer.url("/search?section=news&page=1").toString(), null,
+                GuardianClient.LOAD_DEADLINE_MILLIS, null);
+    }
+}